@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import greensopinion.restexample.jdbc.BlogPurgeJob;
+
+import java.io.File;
+
+/**
+ * Runs the {@link BlogPurgeJob} once against the primary database of each shard of the web application, and reports
+ * the rows that were removed. Stopping the JVM stops the job after the current batch. Run as a Java application with optional
+ * <code>name=value</code> arguments, for example:
+ *
+ * <pre>
+ * java greensopinion.restexample.server.BlogPurgeLauncher webRoot=greensopinion.restexample.web/web \
+ *     batchSize=500 pause=100 grace=0
+ * </pre>
+ *
+ * <code>pause</code> and <code>grace</code> are in milliseconds.
+ *
+ * @author David Green
+ */
+public class BlogPurgeLauncher {
+
+	public static void main(String[] args) throws Exception {
+		LauncherOptions options = new LauncherOptions(args);
+
+		final BlogPurgeJob job = new BlogPurgeJob();
+		job.setDataSources(DataSources.createShardDataSources(new File(options.get("webRoot",
+				"greensopinion.restexample.web/web"))));
+		job.setBatchSize(Integer.parseInt(options.get("batchSize", "500")));
+		job.setPauseMillis(Long.parseLong(options.get("pause", "100")));
+		job.setGraceMillis(Long.parseLong(options.get("grace", "0")));
+
+		final Thread main = Thread.currentThread();
+		Thread shutdownHook = new Thread("shutdown") {
+			@Override
+			public void run() {
+				job.stop();
+				try {
+					main.join();
+				} catch (InterruptedException e) {
+					// exiting
+				}
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		job.run();
+		System.out.println(job.getResult());
+	}
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import greensopinion.restexample.jdbc.ContentRecompressionJob;
+
+import java.io.File;
+
+/**
+ * Runs the {@link ContentRecompressionJob} against the primary database of the web application, and reports the
+ * compression achieved. Stopping the JVM stops the job after the current row. Run as a Java application with optional
+ * <code>name=value</code> arguments, for example:
+ *
+ * <pre>
+ * java greensopinion.restexample.server.ContentRecompressionLauncher webRoot=greensopinion.restexample.web/web \
+ *     batchSize=100 pause=100 threshold=1024
+ * </pre>
+ *
+ * <code>pause</code> is in milliseconds.
+ *
+ * @author David Green
+ */
+public class ContentRecompressionLauncher {
+
+	public static void main(String[] args) throws Exception {
+		LauncherOptions options = new LauncherOptions(args);
+
+		final ContentRecompressionJob job = new ContentRecompressionJob();
+		job.setDataSource(DataSources.createPrimaryDataSource(new File(options.get("webRoot",
+				"greensopinion.restexample.web/web"))));
+		job.setBatchSize(Integer.parseInt(options.get("batchSize", "100")));
+		job.setPauseMillis(Long.parseLong(options.get("pause", "100")));
+		job.setCompressionThreshold(Integer.parseInt(options.get("threshold", "1024")));
+
+		final Thread main = Thread.currentThread();
+		Thread shutdownHook = new Thread("shutdown") {
+			@Override
+			public void run() {
+				job.stop();
+				try {
+					main.join();
+				} catch (InterruptedException e) {
+					// exiting
+				}
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		job.run();
+		System.out.println(job.getResult());
+	}
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Creates data sources for tools that run outside of the web application.
+ *
+ * @author David Green
+ */
+public class DataSources {
+
+	private DataSources() {
+	}
+
+	/**
+	 * create a data source for the primary database configured by the web application
+	 *
+	 * @param webRoot
+	 *            the web application directory, containing WEB-INF
+	 */
+	public static DataSource createPrimaryDataSource(File webRoot) throws IOException {
+		Properties properties = loadProperties(new File(webRoot, "WEB-INF/spring/database.properties"));
+		return createDataSource(properties, properties.getProperty("database.url"));
+	}
+
+	/**
+	 * create a data source for each shard configured by the web application: the primary database followed by the
+	 * databases configured by <code>database.shard.1.url</code>, <code>database.shard.2.url</code> and so on
+	 *
+	 * @param webRoot
+	 *            the web application directory, containing WEB-INF
+	 */
+	public static List<DataSource> createShardDataSources(File webRoot) throws IOException {
+		Properties properties = loadProperties(new File(webRoot, "WEB-INF/spring/database.properties"));
+		List<DataSource> shards = new ArrayList<DataSource>();
+		shards.add(createDataSource(properties, properties.getProperty("database.url")));
+		String url;
+		while ((url = properties.getProperty("database.shard." + shards.size() + ".url")) != null) {
+			shards.add(createDataSource(properties, url));
+		}
+		return shards;
+	}
+
+	private static DataSource createDataSource(Properties properties, String url) {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource();
+		dataSource.setDriverClassName(properties.getProperty("database.driverClassName"));
+		dataSource.setUrl(url);
+		dataSource.setUsername(properties.getProperty("database.username"));
+		dataSource.setPassword(properties.getProperty("database.password"));
+		return dataSource;
+	}
+
+	private static Properties loadProperties(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		return properties;
+	}
+}
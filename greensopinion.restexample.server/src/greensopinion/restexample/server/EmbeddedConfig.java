@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+
+/**
+ * The configuration of a servlet or filter, as it would be specified in web.xml.
+ *
+ * @author David Green
+ */
+public class EmbeddedConfig implements ServletConfig, FilterConfig {
+
+	private final String name;
+
+	private final ServletContext servletContext;
+
+	private final Map<String, String> initParameters = new HashMap<String, String>();
+
+	public EmbeddedConfig(String name, ServletContext servletContext) {
+		this.name = name;
+		this.servletContext = servletContext;
+	}
+
+	public EmbeddedConfig addInitParameter(String name, String value) {
+		initParameters.put(name, value);
+		return this;
+	}
+
+	public String getServletName() {
+		return name;
+	}
+
+	public String getFilterName() {
+		return name;
+	}
+
+	public ServletContext getServletContext() {
+		return servletContext;
+	}
+
+	public String getInitParameter(String name) {
+		return initParameters.get(name);
+	}
+
+	public Enumeration<String> getInitParameterNames() {
+		return Collections.enumeration(initParameters.keySet());
+	}
+}
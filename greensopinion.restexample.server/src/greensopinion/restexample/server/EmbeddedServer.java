@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import greensopinion.restexample.web.AdmissionControlFilter;
+import greensopinion.restexample.web.ReadYourWritesFilter;
+import greensopinion.restexample.web.SqlProfilingFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.servlet.Filter;
+import javax.servlet.ServletException;
+
+import org.springframework.web.context.ContextLoader;
+import org.springframework.web.filter.CharacterEncodingFilter;
+import org.springframework.web.filter.HiddenHttpMethodFilter;
+import org.springframework.web.filter.RequestContextFilter;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the web application in process using the HTTP server of the JDK, which accepts connections with non-blocking
+ * IO and hands requests to an executor. The Spring root context and the <code>blog-service</code>
+ * {@link DispatcherServlet} are configured from the web application directory exactly as they are by web.xml, with
+ * the same filters in the same order.
+ * <p>
+ * Requests are handled on virtual threads when the JVM supports them and {@link #setVirtualThreads(boolean)
+ * virtualThreads} is set, otherwise on a bounded pool of {@link #setMaxThreads(int) maxThreads}. Note that virtual
+ * threads that block while holding a monitor, as some JDBC drivers and connection pools do, pin their carrier thread;
+ * the size of the connection pool remains the limit on concurrent database work either way.
+ * </p>
+ *
+ * @author David Green
+ * @see ServerLauncher
+ */
+public class EmbeddedServer {
+
+	private static final Logger log = Logger.getLogger(EmbeddedServer.class.getName());
+
+	private static final String SERVLET_PATH = "/api";
+
+	private int port = 8080;
+
+	private File webRoot;
+
+	private String contextPath = "";
+
+	private int maxThreads = 200;
+
+	private int queueCapacity = 1000;
+
+	private boolean virtualThreads = true;
+
+	private int shutdownTimeoutSeconds = 30;
+
+	private EmbeddedServletContext servletContext;
+
+	private ContextLoader contextLoader;
+
+	private DispatcherServlet servlet;
+
+	private final List<Filter> filters = new ArrayList<Filter>();
+
+	private ExecutorService executor;
+
+	private HttpServer server;
+
+	/**
+	 * start the server, returning once the web application is initialized and the server is accepting connections
+	 */
+	public void start() throws IOException, ServletException {
+		if (server != null) {
+			throw new IllegalStateException("started");
+		}
+		if (webRoot == null || !webRoot.isDirectory()) {
+			throw new IllegalStateException("webRoot must be a directory: " + webRoot);
+		}
+		long startTime = System.currentTimeMillis();
+
+		Map<String, String> initParameters = new HashMap<String, String>();
+		initParameters.put(ContextLoader.CONFIG_LOCATION_PARAM, "/WEB-INF/spring/applicationContext*.xml");
+		servletContext = new EmbeddedServletContext(webRoot, contextPath, initParameters);
+
+		contextLoader = new ContextLoader();
+		contextLoader.initWebApplicationContext(servletContext);
+		long rootContextTime = System.currentTimeMillis();
+
+		addFilter(new RequestContextFilter(), new EmbeddedConfig("RequestContextFilter", servletContext));
+		addFilter(new CharacterEncodingFilter(), new EmbeddedConfig("CharacterEncodingFilter", servletContext)
+				.addInitParameter("encoding", "UTF-8").addInitParameter("forceEncoding", "true"));
+		addFilter(new HiddenHttpMethodFilter(), new EmbeddedConfig("httpMethodFilter", servletContext));
+		addFilter(new AdmissionControlFilter(), new EmbeddedConfig("AdmissionControlFilter", servletContext));
+		addFilter(new ReadYourWritesFilter(), new EmbeddedConfig("ReadYourWritesFilter", servletContext));
+		addFilter(new SqlProfilingFilter(), new EmbeddedConfig("SqlProfilingFilter", servletContext));
+
+		servlet = new DispatcherServlet();
+		servlet.init(new EmbeddedConfig("blog-service", servletContext));
+		long servletTime = System.currentTimeMillis();
+
+		String threadMode;
+		executor = virtualThreads ? RequestExecutors.newVirtualThreadExecutor() : null;
+		if (executor != null) {
+			threadMode = "virtual threads";
+		} else {
+			executor = RequestExecutors.newBoundedExecutor(maxThreads, queueCapacity);
+			threadMode = maxThreads + " threads, queue " + queueCapacity;
+		}
+
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext(contextPath.length() == 0 ? "/" : contextPath,
+				new ServletHandler(servletContext, SERVLET_PATH, filters, servlet));
+		server.setExecutor(executor);
+		server.start();
+		long endTime = System.currentTimeMillis();
+
+		log.info(String.format("Started on port %d with %s in %dms (root context %dms, %s servlet %dms, server %dms)",
+				getPort(), threadMode, endTime - startTime, rootContextTime - startTime, servlet.getServletName(),
+				servletTime - rootContextTime, endTime - servletTime));
+	}
+
+	private void addFilter(Filter filter, EmbeddedConfig config) throws ServletException {
+		filter.init(config);
+		filters.add(filter);
+	}
+
+	/**
+	 * stop the server, waiting up to {@link #setShutdownTimeoutSeconds(int) shutdownTimeoutSeconds} for requests in
+	 * progress to complete before closing the web application
+	 */
+	public void stop() {
+		if (server == null) {
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		// stops accepting connections, then waits for exchanges in progress
+		server.stop(shutdownTimeoutSeconds);
+		server = null;
+		executor.shutdown();
+		try {
+			long remaining = TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds)
+					- (System.currentTimeMillis() - startTime);
+			if (!executor.awaitTermination(Math.max(remaining, 0L), TimeUnit.MILLISECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+		servlet.destroy();
+		servlet = null;
+		for (Filter filter : filters) {
+			filter.destroy();
+		}
+		filters.clear();
+		contextLoader.closeWebApplicationContext(servletContext);
+		contextLoader = null;
+		log.info(String.format("Stopped in %dms", System.currentTimeMillis() - startTime));
+	}
+
+	public boolean isRunning() {
+		return server != null;
+	}
+
+	/**
+	 * the port on which the server is listening, which is only known after the server is started when the configured
+	 * port is 0
+	 */
+	public int getPort() {
+		return server == null ? port : server.getAddress().getPort();
+	}
+
+	/**
+	 * the port on which to listen, or 0 for any free port. Defaults to 8080.
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public File getWebRoot() {
+		return webRoot;
+	}
+
+	/**
+	 * the web application directory, containing WEB-INF
+	 */
+	public void setWebRoot(File webRoot) {
+		this.webRoot = webRoot;
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	/**
+	 * the context path of the web application, for example <code>/blog</code>. Defaults to the root context.
+	 */
+	public void setContextPath(String contextPath) {
+		this.contextPath = contextPath;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	/**
+	 * the number of threads that handle requests when virtual threads are not used. Defaults to 200.
+	 */
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * the number of requests that may wait for a thread when virtual threads are not used. Defaults to 1000.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * indicate whether requests should be handled on virtual threads when the JVM supports them. Defaults to true.
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public int getShutdownTimeoutSeconds() {
+		return shutdownTimeoutSeconds;
+	}
+
+	/**
+	 * the time to wait for requests in progress when stopping. Defaults to 30 seconds.
+	 */
+	public void setShutdownTimeoutSeconds(int shutdownTimeoutSeconds) {
+		this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.Servlet;
+import javax.servlet.ServletContext;
+
+/**
+ * A servlet context for a web application that is deployed as an exploded WAR directory.
+ *
+ * @author David Green
+ */
+public class EmbeddedServletContext implements ServletContext {
+
+	private static final Map<String, String> MIME_TYPES = new HashMap<String, String>();
+	static {
+		MIME_TYPES.put("css", "text/css");
+		MIME_TYPES.put("html", "text/html");
+		MIME_TYPES.put("js", "application/javascript");
+		MIME_TYPES.put("json", "application/json");
+		MIME_TYPES.put("txt", "text/plain");
+		MIME_TYPES.put("xml", "application/xml");
+	}
+
+	private final Logger log = Logger.getLogger(EmbeddedServletContext.class.getName());
+
+	private final File webRoot;
+
+	private final String contextPath;
+
+	private final Map<String, String> initParameters;
+
+	private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * @param webRoot
+	 *            the root folder of the web application, containing WEB-INF
+	 * @param contextPath
+	 *            the context path, which is the empty string for the root context
+	 * @param initParameters
+	 *            the context parameters, as they would be specified in web.xml
+	 */
+	public EmbeddedServletContext(File webRoot, String contextPath, Map<String, String> initParameters) {
+		this.webRoot = webRoot;
+		this.contextPath = contextPath;
+		this.initParameters = new HashMap<String, String>(initParameters);
+	}
+
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration(attributes.keySet());
+	}
+
+	public void setAttribute(String name, Object value) {
+		if (value == null) {
+			removeAttribute(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+	}
+
+	public String getInitParameter(String name) {
+		return initParameters.get(name);
+	}
+
+	public Enumeration<String> getInitParameterNames() {
+		return Collections.enumeration(initParameters.keySet());
+	}
+
+	public String getServletContextName() {
+		return webRoot.getName();
+	}
+
+	public ServletContext getContext(String uripath) {
+		return null;
+	}
+
+	public String getServerInfo() {
+		return "greensopinion.restexample.server";
+	}
+
+	public String getMimeType(String file) {
+		int index = file.lastIndexOf('.');
+		return index == -1 ? null : MIME_TYPES.get(file.substring(index + 1).toLowerCase());
+	}
+
+	public int getMajorVersion() {
+		return 2;
+	}
+
+	public int getMinorVersion() {
+		return 5;
+	}
+
+	public RequestDispatcher getRequestDispatcher(String path) {
+		return null;
+	}
+
+	public RequestDispatcher getNamedDispatcher(String name) {
+		return null;
+	}
+
+	private File getFile(String path) {
+		if (path == null || !path.startsWith("/") || path.contains("..")) {
+			return null;
+		}
+		return new File(webRoot, path.substring(1));
+	}
+
+	public String getRealPath(String path) {
+		File file = getFile(path);
+		return file == null ? null : file.getAbsolutePath();
+	}
+
+	public URL getResource(String path) throws MalformedURLException {
+		File file = getFile(path);
+		if (file == null || !file.exists()) {
+			return null;
+		}
+		return file.toURI().toURL();
+	}
+
+	public InputStream getResourceAsStream(String path) {
+		File file = getFile(path);
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		try {
+			return new FileInputStream(file);
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+	}
+
+	public Set<String> getResourcePaths(String path) {
+		File folder = getFile(path);
+		if (folder == null || !folder.isDirectory()) {
+			return null;
+		}
+		String prefix = path.endsWith("/") ? path : path + "/";
+		Set<String> paths = new TreeSet<String>();
+		File[] children = folder.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				paths.add(prefix + child.getName() + (child.isDirectory() ? "/" : ""));
+			}
+		}
+		return paths;
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	@Deprecated
+	public Servlet getServlet(String name) {
+		return null;
+	}
+
+	@Deprecated
+	public Enumeration<String> getServletNames() {
+		return Collections.enumeration(Collections.<String> emptySet());
+	}
+
+	@Deprecated
+	public Enumeration<Servlet> getServlets() {
+		return Collections.enumeration(Collections.<Servlet> emptySet());
+	}
+
+	@Deprecated
+	public void log(Exception exception, String msg) {
+		log(msg, exception);
+	}
+
+	public void log(String msg) {
+		log.info(msg);
+	}
+
+	public void log(String message, Throwable throwable) {
+		log.log(Level.SEVERE, message, throwable);
+	}
+}
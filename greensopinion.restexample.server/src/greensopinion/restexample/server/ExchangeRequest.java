@@ -0,0 +1,438 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.security.Principal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsExchange;
+
+/**
+ * An {@link HttpServletRequest} for an {@link HttpExchange}. Sessions are not supported.
+ *
+ * @author David Green
+ */
+public class ExchangeRequest implements HttpServletRequest {
+
+	private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+	private final HttpExchange exchange;
+
+	private final ServletContext servletContext;
+
+	private final String servletPath;
+
+	private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+	private String characterEncoding;
+
+	private Map<String, String[]> parameters;
+
+	private ServletInputStream inputStream;
+
+	private BufferedReader reader;
+
+	/**
+	 * @param servletPath
+	 *            the path to which the servlet is mapped, such as <code>/api</code>
+	 */
+	public ExchangeRequest(HttpExchange exchange, ServletContext servletContext, String servletPath) {
+		this.exchange = exchange;
+		this.servletContext = servletContext;
+		this.servletPath = servletPath;
+	}
+
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration(new ArrayList<String>(attributes.keySet()));
+	}
+
+	public void setAttribute(String name, Object value) {
+		if (value == null) {
+			attributes.remove(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+	}
+
+	public String getCharacterEncoding() {
+		if (characterEncoding == null) {
+			characterEncoding = ExchangeResponse.parseCharset(getContentType());
+		}
+		return characterEncoding;
+	}
+
+	public void setCharacterEncoding(String env) throws UnsupportedEncodingException {
+		if (!Charset.isSupported(env)) {
+			throw new UnsupportedEncodingException(env);
+		}
+		characterEncoding = env;
+	}
+
+	public int getContentLength() {
+		return getIntHeader("Content-Length");
+	}
+
+	public String getContentType() {
+		return getHeader("Content-Type");
+	}
+
+	public ServletInputStream getInputStream() throws IOException {
+		if (reader != null) {
+			throw new IllegalStateException();
+		}
+		if (inputStream == null) {
+			final InputStream in = exchange.getRequestBody();
+			inputStream = new ServletInputStream() {
+				@Override
+				public int read() throws IOException {
+					return in.read();
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					return in.read(b, off, len);
+				}
+			};
+		}
+		return inputStream;
+	}
+
+	public BufferedReader getReader() throws IOException {
+		if (reader == null) {
+			String encoding = getCharacterEncoding();
+			reader = new BufferedReader(new InputStreamReader(getInputStream(), encoding == null ? "ISO-8859-1"
+					: encoding));
+		}
+		return reader;
+	}
+
+	public String getLocalAddr() {
+		return exchange.getLocalAddress().getAddress().getHostAddress();
+	}
+
+	public String getLocalName() {
+		return exchange.getLocalAddress().getHostName();
+	}
+
+	public int getLocalPort() {
+		return exchange.getLocalAddress().getPort();
+	}
+
+	public Locale getLocale() {
+		return getLocales().nextElement();
+	}
+
+	public Enumeration<Locale> getLocales() {
+		List<Locale> locales = new ArrayList<Locale>();
+		String acceptLanguage = getHeader("Accept-Language");
+		if (acceptLanguage != null) {
+			for (String range : acceptLanguage.split(",")) {
+				String tag = range.split(";")[0].trim();
+				if (tag.length() > 0 && !tag.equals("*")) {
+					String[] parts = tag.split("-");
+					locales.add(parts.length > 1 ? new Locale(parts[0], parts[1]) : new Locale(parts[0]));
+				}
+			}
+		}
+		if (locales.isEmpty()) {
+			locales.add(Locale.getDefault());
+		}
+		return Collections.enumeration(locales);
+	}
+
+	public String getParameter(String name) {
+		String[] values = getParameters().get(name);
+		return values == null ? null : values[0];
+	}
+
+	public Map<String, String[]> getParameterMap() {
+		return Collections.unmodifiableMap(getParameters());
+	}
+
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(getParameters().keySet());
+	}
+
+	public String[] getParameterValues(String name) {
+		return getParameters().get(name);
+	}
+
+	private Map<String, String[]> getParameters() {
+		if (parameters == null) {
+			Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+			try {
+				parse(values, exchange.getRequestURI().getRawQuery(), "UTF-8");
+				String contentType = getContentType();
+				if ("POST".equals(getMethod()) && contentType != null && contentType.startsWith(FORM_CONTENT_TYPE)
+						&& inputStream == null && reader == null) {
+					String encoding = getCharacterEncoding();
+					parse(values, readBody(), encoding == null ? "ISO-8859-1" : encoding);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			parameters = new LinkedHashMap<String, String[]>();
+			for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+				parameters.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+			}
+		}
+		return parameters;
+	}
+
+	private String readBody() throws IOException {
+		InputStream in = getInputStream();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			out.write(buffer, 0, length);
+		}
+		return new String(out.toByteArray(), "ISO-8859-1");
+	}
+
+	private void parse(Map<String, List<String>> values, String encoded, String encoding)
+			throws UnsupportedEncodingException {
+		if (encoded == null || encoded.length() == 0) {
+			return;
+		}
+		for (String pair : encoded.split("&")) {
+			int index = pair.indexOf('=');
+			String name = URLDecoder.decode(index == -1 ? pair : pair.substring(0, index), encoding);
+			String value = index == -1 ? "" : URLDecoder.decode(pair.substring(index + 1), encoding);
+			List<String> list = values.get(name);
+			if (list == null) {
+				list = new ArrayList<String>(1);
+				values.put(name, list);
+			}
+			list.add(value);
+		}
+	}
+
+	public String getProtocol() {
+		return exchange.getProtocol();
+	}
+
+	public String getRemoteAddr() {
+		InetSocketAddress address = exchange.getRemoteAddress();
+		return address.getAddress() == null ? address.getHostName() : address.getAddress().getHostAddress();
+	}
+
+	public String getRemoteHost() {
+		return getRemoteAddr();
+	}
+
+	public int getRemotePort() {
+		return exchange.getRemoteAddress().getPort();
+	}
+
+	public RequestDispatcher getRequestDispatcher(String path) {
+		return null;
+	}
+
+	public String getScheme() {
+		return exchange instanceof HttpsExchange ? "https" : "http";
+	}
+
+	public String getServerName() {
+		String host = getHeader("Host");
+		if (host != null) {
+			int index = host.lastIndexOf(':');
+			return index > host.lastIndexOf(']') && index != -1 ? host.substring(0, index) : host;
+		}
+		return getLocalName();
+	}
+
+	public int getServerPort() {
+		return getLocalPort();
+	}
+
+	public boolean isSecure() {
+		return exchange instanceof HttpsExchange;
+	}
+
+	@Deprecated
+	public String getRealPath(String path) {
+		return servletContext.getRealPath(path);
+	}
+
+	public String getAuthType() {
+		return null;
+	}
+
+	public String getContextPath() {
+		return servletContext.getContextPath();
+	}
+
+	public Cookie[] getCookies() {
+		List<Cookie> cookies = new ArrayList<Cookie>();
+		List<String> headers = exchange.getRequestHeaders().get("Cookie");
+		if (headers != null) {
+			for (String header : headers) {
+				for (String pair : header.split(";")) {
+					int index = pair.indexOf('=');
+					if (index > 0) {
+						cookies.add(new Cookie(pair.substring(0, index).trim(), pair.substring(index + 1).trim()));
+					}
+				}
+			}
+		}
+		return cookies.isEmpty() ? null : cookies.toArray(new Cookie[cookies.size()]);
+	}
+
+	public long getDateHeader(String name) {
+		String value = getHeader(name);
+		if (value == null) {
+			return -1L;
+		}
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		try {
+			return format.parse(value).getTime();
+		} catch (ParseException e) {
+			throw new IllegalArgumentException(value);
+		}
+	}
+
+	public String getHeader(String name) {
+		return exchange.getRequestHeaders().getFirst(name);
+	}
+
+	public Enumeration<String> getHeaderNames() {
+		return Collections.enumeration(exchange.getRequestHeaders().keySet());
+	}
+
+	public Enumeration<String> getHeaders(String name) {
+		List<String> values = exchange.getRequestHeaders().get(name);
+		return Collections.enumeration(values == null ? Collections.<String> emptyList() : values);
+	}
+
+	public int getIntHeader(String name) {
+		String value = getHeader(name);
+		return value == null ? -1 : Integer.parseInt(value.trim());
+	}
+
+	public String getMethod() {
+		return exchange.getRequestMethod();
+	}
+
+	public String getPathInfo() {
+		String path = exchange.getRequestURI().getPath().substring(getContextPath().length());
+		if (path.length() <= servletPath.length()) {
+			return null;
+		}
+		return path.substring(servletPath.length());
+	}
+
+	public String getPathTranslated() {
+		String pathInfo = getPathInfo();
+		return pathInfo == null ? null : servletContext.getRealPath(pathInfo);
+	}
+
+	public String getQueryString() {
+		return exchange.getRequestURI().getRawQuery();
+	}
+
+	public String getRemoteUser() {
+		return null;
+	}
+
+	public String getRequestedSessionId() {
+		return null;
+	}
+
+	public String getRequestURI() {
+		return exchange.getRequestURI().getRawPath();
+	}
+
+	public StringBuffer getRequestURL() {
+		URI uri = exchange.getRequestURI();
+		StringBuffer url = new StringBuffer();
+		url.append(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort());
+		url.append(uri.getRawPath());
+		return url;
+	}
+
+	public String getServletPath() {
+		return servletPath;
+	}
+
+	public HttpSession getSession() {
+		return getSession(true);
+	}
+
+	public HttpSession getSession(boolean create) {
+		if (create) {
+			throw new UnsupportedOperationException("Sessions are not supported");
+		}
+		return null;
+	}
+
+	public Principal getUserPrincipal() {
+		return null;
+	}
+
+	public boolean isRequestedSessionIdFromCookie() {
+		return false;
+	}
+
+	public boolean isRequestedSessionIdFromURL() {
+		return false;
+	}
+
+	@Deprecated
+	public boolean isRequestedSessionIdFromUrl() {
+		return false;
+	}
+
+	public boolean isRequestedSessionIdValid() {
+		return false;
+	}
+
+	public boolean isUserInRole(String role) {
+		return false;
+	}
+}
@@ -0,0 +1,413 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * An {@link HttpServletResponse} for an {@link HttpExchange}. Output is buffered until the buffer is full or flushed,
+ * so that short responses are sent with a Content-Length and longer ones are streamed using chunked encoding.
+ *
+ * @author David Green
+ */
+public class ExchangeResponse implements HttpServletResponse {
+
+	private static final String DEFAULT_CHARACTER_ENCODING = "ISO-8859-1";
+
+	private final HttpExchange exchange;
+
+	private final Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+	private final boolean headRequest;
+
+	private int bufferSize = 8192;
+
+	private int status = SC_OK;
+
+	private int contentLength = -1;
+
+	private String contentType;
+
+	private String characterEncoding;
+
+	private Locale locale = Locale.getDefault();
+
+	private boolean committed;
+
+	private boolean finished;
+
+	private OutputStream body;
+
+	private ServletOutputStream outputStream;
+
+	private PrintWriter writer;
+
+	public ExchangeResponse(HttpExchange exchange) {
+		this.exchange = exchange;
+		this.headRequest = "HEAD".equals(exchange.getRequestMethod());
+	}
+
+	static String parseCharset(String contentType) {
+		if (contentType != null) {
+			for (String parameter : contentType.split(";")) {
+				parameter = parameter.trim();
+				if (parameter.toLowerCase().startsWith("charset=")) {
+					return parameter.substring("charset=".length()).replace("\"", "");
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * send any buffered output and complete the response
+	 */
+	public void finish() throws IOException {
+		// flushing the writer must not commit the response, so that the content length can still be sent
+		finished = true;
+		if (writer != null) {
+			writer.flush();
+		}
+		if (!committed) {
+			if (contentLength == -1) {
+				contentLength = buffer.size();
+			}
+			commit();
+		}
+		body.close();
+	}
+
+	private void commit() throws IOException {
+		committed = true;
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			exchange.getResponseHeaders().put(header.getKey(), header.getValue());
+		}
+		if (contentType != null) {
+			String value = contentType;
+			if (characterEncoding != null && parseCharset(contentType) == null) {
+				value += ";charset=" + characterEncoding;
+			}
+			exchange.getResponseHeaders().set("Content-Type", value);
+		}
+		long length;
+		if (headRequest || status == SC_NOT_MODIFIED || status == SC_NO_CONTENT) {
+			length = -1L;
+		} else if (contentLength >= 0) {
+			length = contentLength == 0 ? -1L : contentLength;
+		} else {
+			// chunked
+			length = 0L;
+		}
+		exchange.sendResponseHeaders(status, length);
+		if (length == -1L) {
+			// the exchange has no body, discard any content
+			body = new ByteArrayOutputStream();
+		} else {
+			body = exchange.getResponseBody();
+			buffer.writeTo(body);
+		}
+		buffer.reset();
+	}
+
+	private void write(byte[] bytes, int offset, int length) throws IOException {
+		if (!committed) {
+			if (buffer.size() + length <= bufferSize) {
+				buffer.write(bytes, offset, length);
+				return;
+			}
+			commit();
+		}
+		body.write(bytes, offset, length);
+	}
+
+	public void flushBuffer() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		flushOutput();
+	}
+
+	private void flushOutput() throws IOException {
+		if (!committed) {
+			commit();
+		}
+		body.flush();
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int size) {
+		if (committed || buffer.size() > 0) {
+			throw new IllegalStateException();
+		}
+		bufferSize = size;
+	}
+
+	public void reset() {
+		resetBuffer();
+		headers.clear();
+		status = SC_OK;
+		contentLength = -1;
+		contentType = null;
+		characterEncoding = null;
+	}
+
+	public void resetBuffer() {
+		if (committed) {
+			throw new IllegalStateException("Response is committed");
+		}
+		buffer.reset();
+	}
+
+	public boolean isCommitted() {
+		return committed;
+	}
+
+	public String getCharacterEncoding() {
+		if (characterEncoding != null) {
+			return characterEncoding;
+		}
+		String charset = parseCharset(contentType);
+		return charset == null ? DEFAULT_CHARACTER_ENCODING : charset;
+	}
+
+	public void setCharacterEncoding(String charset) {
+		if (!committed && writer == null) {
+			characterEncoding = charset;
+		}
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public void setContentType(String type) {
+		if (committed) {
+			return;
+		}
+		contentType = type;
+		String charset = parseCharset(type);
+		if (charset != null && writer == null) {
+			characterEncoding = charset;
+		}
+	}
+
+	public void setContentLength(int length) {
+		if (!committed) {
+			contentLength = length;
+		}
+	}
+
+	public Locale getLocale() {
+		return locale;
+	}
+
+	public void setLocale(Locale locale) {
+		if (!committed) {
+			this.locale = locale;
+		}
+	}
+
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (writer != null) {
+			throw new IllegalStateException("getWriter() has been called");
+		}
+		if (outputStream == null) {
+			outputStream = new ServletOutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					ExchangeResponse.this.write(new byte[] { (byte) b }, 0, 1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					ExchangeResponse.this.write(b, off, len);
+				}
+
+				@Override
+				public void flush() throws IOException {
+					if (!finished) {
+						flushOutput();
+					}
+				}
+			};
+		}
+		return outputStream;
+	}
+
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			if (outputStream != null) {
+				throw new IllegalStateException("getOutputStream() has been called");
+			}
+			ServletOutputStream out = getOutputStream();
+			outputStream = null;
+			writer = new PrintWriter(new OutputStreamWriter(out, getCharacterEncoding()));
+		}
+		return writer;
+	}
+
+	public void addCookie(Cookie cookie) {
+		StringBuilder value = new StringBuilder();
+		value.append(cookie.getName()).append('=').append(cookie.getValue());
+		if (cookie.getPath() != null) {
+			value.append("; Path=").append(cookie.getPath());
+		}
+		if (cookie.getMaxAge() >= 0) {
+			value.append("; Max-Age=").append(cookie.getMaxAge());
+		}
+		if (cookie.getSecure()) {
+			value.append("; Secure");
+		}
+		addHeader("Set-Cookie", value.toString());
+	}
+
+	private String formatDate(long date) {
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(new Date(date));
+	}
+
+	public void addDateHeader(String name, long date) {
+		addHeader(name, formatDate(date));
+	}
+
+	public void setDateHeader(String name, long date) {
+		setHeader(name, formatDate(date));
+	}
+
+	public void addIntHeader(String name, int value) {
+		addHeader(name, Integer.toString(value));
+	}
+
+	public void setIntHeader(String name, int value) {
+		setHeader(name, Integer.toString(value));
+	}
+
+	public void addHeader(String name, String value) {
+		if (committed) {
+			return;
+		}
+		if (name.equalsIgnoreCase("Content-Type")) {
+			setContentType(value);
+			return;
+		}
+		List<String> values = headers.get(name);
+		if (values == null) {
+			values = new ArrayList<String>(1);
+			headers.put(name, values);
+		}
+		values.add(value);
+	}
+
+	public void setHeader(String name, String value) {
+		if (committed) {
+			return;
+		}
+		if (name.equalsIgnoreCase("Content-Type")) {
+			setContentType(value);
+			return;
+		}
+		if (name.equalsIgnoreCase("Content-Length")) {
+			setContentLength(Integer.parseInt(value));
+			return;
+		}
+		List<String> values = new ArrayList<String>(1);
+		values.add(value);
+		headers.put(name, values);
+	}
+
+	public boolean containsHeader(String name) {
+		return headers.containsKey(name);
+	}
+
+	public String encodeRedirectURL(String url) {
+		return url;
+	}
+
+	public String encodeURL(String url) {
+		return url;
+	}
+
+	@Deprecated
+	public String encodeRedirectUrl(String url) {
+		return url;
+	}
+
+	@Deprecated
+	public String encodeUrl(String url) {
+		return url;
+	}
+
+	public void sendError(int sc) throws IOException {
+		sendError(sc, null);
+	}
+
+	public void sendError(int sc, String msg) throws IOException {
+		resetBuffer();
+		status = sc;
+		writer = null;
+		outputStream = null;
+		byte[] content = (msg == null ? Integer.toString(sc) : msg).getBytes("UTF-8");
+		setContentType("text/plain;charset=UTF-8");
+		setContentLength(content.length);
+		getOutputStream().write(content);
+		commit();
+	}
+
+	public void sendRedirect(String location) throws IOException {
+		resetBuffer();
+		setHeader("Location", location);
+		status = SC_MOVED_TEMPORARILY;
+		contentLength = 0;
+		commit();
+	}
+
+	public void setStatus(int sc) {
+		if (!committed) {
+			status = sc;
+		}
+	}
+
+	@Deprecated
+	public void setStatus(int sc, String sm) {
+		setStatus(sc);
+	}
+
+	/**
+	 * the status code of the response
+	 */
+	public int getStatus() {
+		return status;
+	}
+}
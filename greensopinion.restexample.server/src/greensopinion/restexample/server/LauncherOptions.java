@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line options of the form <code>name=value</code>.
+ *
+ * @author David Green
+ */
+public class LauncherOptions {
+
+	private final Map<String, String> options = new HashMap<String, String>();
+
+	public LauncherOptions(String[] args) {
+		for (String arg : args) {
+			int index = arg.indexOf('=');
+			if (index <= 0) {
+				throw new IllegalArgumentException("Expected name=value but got " + arg);
+			}
+			options.put(arg.substring(0, index), arg.substring(index + 1));
+		}
+	}
+
+	/**
+	 * the value of the given option, or the default value if it was not specified
+	 */
+	public String get(String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null ? defaultValue : value;
+	}
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors for handling requests.
+ *
+ * @author David Green
+ */
+public class RequestExecutors {
+
+	private RequestExecutors() {
+	}
+
+	/**
+	 * create an executor that runs each request on a new virtual thread, which is only possible on a JVM that supports
+	 * them
+	 *
+	 * @return the executor, or null if virtual threads are not supported by the running JVM
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		// looked up reflectively so that the server can be compiled for and run on older JVMs
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (Exception e) {
+			// virtual threads are a preview feature on some JVMs
+			return null;
+		}
+	}
+
+	/**
+	 * create an executor with a fixed number of threads and a bounded queue. When the queue is full, the thread
+	 * accepting connections waits for space, so that a burst of requests slows acceptance rather than exhausting
+	 * memory.
+	 *
+	 * @param threads
+	 *            the number of threads
+	 * @param queueCapacity
+	 *            the number of requests that may wait for a thread
+	 */
+	public static ExecutorService newBoundedExecutor(int threads, int queueCapacity) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new RequestThreadFactory(), new WaitPolicy());
+		executor.prestartAllCoreThreads();
+		return executor;
+	}
+
+	private static class WaitPolicy implements RejectedExecutionHandler {
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException();
+			}
+			BlockingQueue<Runnable> queue = executor.getQueue();
+			try {
+				queue.put(r);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(e);
+			}
+		}
+	}
+
+	private static class RequestThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "request-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
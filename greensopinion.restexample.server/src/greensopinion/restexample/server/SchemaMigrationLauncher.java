@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import greensopinion.restexample.jdbc.SchemaMigration;
+
+import java.io.File;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * Applies the {@link SchemaMigration schema migration} scripts to the primary database of the web application and to
+ * each of its shards, as a deployment step before any server is started. Run as a Java application with an optional <code>webRoot</code>
+ * argument, for example:
+ *
+ * <pre>
+ * java greensopinion.restexample.server.SchemaMigrationLauncher webRoot=greensopinion.restexample.web/web
+ * </pre>
+ *
+ * @author David Green
+ */
+public class SchemaMigrationLauncher {
+
+	public static void main(String[] args) throws Exception {
+		LauncherOptions options = new LauncherOptions(args);
+		File webRoot = new File(options.get("webRoot", "greensopinion.restexample.web/web"));
+
+		List<DataSource> shards = DataSources.createShardDataSources(webRoot);
+		for (int x = 0; x < shards.size(); ++x) {
+			SchemaMigration migration = new SchemaMigration();
+			migration.setDataSource(shards.get(x));
+			int count = migration.migrate();
+			System.out.println(String.format("Shard %d: applied %d scripts, schema is at version %d", x, count,
+					migration.getCurrentVersion()));
+		}
+	}
+}
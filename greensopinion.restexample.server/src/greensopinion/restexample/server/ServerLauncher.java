@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.io.File;
+
+/**
+ * Runs the web application in an {@link EmbeddedServer} until the JVM is shut down, for example by Ctrl+C or
+ * SIGTERM, at which point requests in progress are allowed to complete. Run as a Java application with optional
+ * <code>name=value</code> arguments, for example:
+ *
+ * <pre>
+ * java greensopinion.restexample.server.ServerLauncher port=8080 webRoot=greensopinion.restexample.web/web  *     virtualThreads=false threads=200 queue=1000 shutdownTimeout=30
+ * </pre>
+ *
+ * @author David Green
+ */
+public class ServerLauncher {
+
+	public static void main(String[] args) throws Exception {
+		LauncherOptions options = new LauncherOptions(args);
+
+		final EmbeddedServer server = new EmbeddedServer();
+		server.setPort(Integer.parseInt(options.get("port", "8080")));
+		server.setWebRoot(new File(options.get("webRoot", "greensopinion.restexample.web/web")));
+		server.setContextPath(options.get("contextPath", ""));
+		server.setVirtualThreads(Boolean.parseBoolean(options.get("virtualThreads", "true")));
+		server.setMaxThreads(Integer.parseInt(options.get("threads", "200")));
+		server.setQueueCapacity(Integer.parseInt(options.get("queue", "1000")));
+		server.setShutdownTimeoutSeconds(Integer.parseInt(options.get("shutdownTimeout", "30")));
+
+		Runtime.getRuntime().addShutdownHook(new Thread("shutdown") {
+			@Override
+			public void run() {
+				server.stop();
+			}
+		});
+		server.start();
+	}
+
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.Servlet;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * An {@link HttpHandler} that passes requests for the servlet path through a chain of filters to a servlet, in the
+ * same way that the filters and servlet mapped to <code>/api/*</code> in web.xml are invoked by a servlet container.
+ *
+ * @author David Green
+ */
+public class ServletHandler implements HttpHandler {
+
+	private static final Logger log = Logger.getLogger(ServletHandler.class.getName());
+
+	private final ServletContext servletContext;
+
+	private final String servletPath;
+
+	private final List<Filter> filters;
+
+	private final Servlet servlet;
+
+	/**
+	 * @param servletContext
+	 *            the servlet context
+	 * @param servletPath
+	 *            the path of the servlet relative to the context path, for example <code>/api</code>
+	 * @param filters
+	 *            the filters to apply, in order
+	 * @param servlet
+	 *            the servlet that handles requests
+	 */
+	public ServletHandler(ServletContext servletContext, String servletPath, List<Filter> filters, Servlet servlet) {
+		this.servletContext = servletContext;
+		this.servletPath = servletPath;
+		this.filters = filters;
+		this.servlet = servlet;
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		ExchangeResponse response = new ExchangeResponse(exchange);
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String prefix = servletContext.getContextPath() + servletPath;
+			if (!path.equals(prefix) && !path.startsWith(prefix + "/")) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			} else {
+				ExchangeRequest request = new ExchangeRequest(exchange, servletContext, servletPath);
+				new Chain().doFilter(request, response);
+			}
+			response.finish();
+		} catch (Throwable t) {
+			log.log(Level.SEVERE, "Cannot handle " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), t);
+			if (!response.isCommitted()) {
+				response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private class Chain implements FilterChain {
+		private int index;
+
+		public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+			if (index < filters.size()) {
+				filters.get(index++).doFilter(request, response, this);
+			} else {
+				servlet.service(request, response);
+			}
+		}
+	}
+}
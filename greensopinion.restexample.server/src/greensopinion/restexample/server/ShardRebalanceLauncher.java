@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import greensopinion.restexample.jdbc.ShardMap;
+import greensopinion.restexample.jdbc.ShardRebalancer;
+
+import java.io.File;
+
+/**
+ * Moves a blog to another shard of the web application using a {@link ShardRebalancer}. Run as a Java application with
+ * <code>name=value</code> arguments, for example:
+ *
+ * <pre>
+ * java greensopinion.restexample.server.ShardRebalanceLauncher webRoot=greensopinion.restexample.web/web \
+ *     blog=4503599627371521 shard=1
+ * </pre>
+ *
+ * Shards are numbered from 0, the primary database.
+ *
+ * @author David Green
+ */
+public class ShardRebalanceLauncher {
+
+	public static void main(String[] args) throws Exception {
+		LauncherOptions options = new LauncherOptions(args);
+		String blog = options.get("blog", null);
+		String shard = options.get("shard", null);
+		if (blog == null || shard == null) {
+			throw new IllegalArgumentException("blog and shard are required");
+		}
+
+		ShardMap shardMap = new ShardMap();
+		shardMap.setShards(DataSources.createShardDataSources(new File(options.get("webRoot",
+				"greensopinion.restexample.web/web"))));
+		ShardRebalancer rebalancer = new ShardRebalancer();
+		rebalancer.setShardMap(shardMap);
+
+		long start = System.currentTimeMillis();
+		int articles = rebalancer.move(Long.valueOf(blog), Integer.parseInt(shard));
+		System.out.println(String.format("Moved blog %s with %d articles to shard %s in %dms", blog, articles, shard,
+				System.currentTimeMillis() - start));
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time from starting a new server process to the first successful <code>GET /api/blog/{id}</code>,
+ * which is the delay before a newly started instance can take traffic. Each run starts a separate JVM with the class
+ * path of this one, so that nothing is warmed up by a previous run. Run as a Java application with optional
+ * <code>name=value</code> arguments, for example:
+ *
+ * <pre>
+ * java greensopinion.restexample.server.StartupBenchmark runs=5 port=18080 blogId=1  *     webRoot=greensopinion.restexample.web/web jvmArgs=-Xmx256m
+ * </pre>
+ *
+ * The blog must exist, and the schema must have been created with {@link SchemaMigrationLauncher}.
+ *
+ * @author David Green
+ */
+public class StartupBenchmark {
+
+	private static final long POLL_INTERVAL_MILLIS = 10L;
+
+	public static void main(String[] args) throws Exception {
+		LauncherOptions options = new LauncherOptions(args);
+		int runs = Integer.parseInt(options.get("runs", "5"));
+		int port = Integer.parseInt(options.get("port", "18080"));
+		long timeoutMillis = Long.parseLong(options.get("timeout", "120")) * 1000L;
+		URL url = new URL("http://localhost:" + port + "/api/blog/" + options.get("blogId", "1"));
+
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+		String jvmArgs = options.get("jvmArgs", "").trim();
+		if (jvmArgs.length() > 0) {
+			command.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ServerLauncher.class.getName());
+		command.add("port=" + port);
+		command.add("webRoot=" + options.get("webRoot", "greensopinion.restexample.web/web"));
+		command.add("shutdownTimeout=0");
+
+		long[] times = new long[runs];
+		for (int run = 0; run < runs; ++run) {
+			times[run] = measure(command, url, timeoutMillis);
+			System.out.println(String.format("run %d: %dms", run + 1, times[run]));
+		}
+		Arrays.sort(times);
+		System.out.println(String.format("startup to first response: min %dms, median %dms, max %dms", times[0],
+				times[runs / 2], times[runs - 1]));
+	}
+
+	private static long measure(List<String> command, URL url, long timeoutMillis) throws IOException,
+			InterruptedException {
+		long start = System.currentTimeMillis();
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		try {
+			drain(process.getInputStream());
+			while (System.currentTimeMillis() - start < timeoutMillis) {
+				if (isAvailable(url)) {
+					return System.currentTimeMillis() - start;
+				}
+				try {
+					int exitValue = process.exitValue();
+					throw new IllegalStateException("Server exited with " + exitValue);
+				} catch (IllegalThreadStateException e) {
+					// still running
+				}
+				Thread.sleep(POLL_INTERVAL_MILLIS);
+			}
+			throw new IllegalStateException("No response from " + url + " within " + timeoutMillis + "ms");
+		} finally {
+			process.destroy();
+			process.waitFor();
+		}
+	}
+
+	private static boolean isAvailable(URL url) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			try {
+				connection.setConnectTimeout(1000);
+				connection.setReadTimeout(10000);
+				if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+					return false;
+				}
+				InputStream in = connection.getInputStream();
+				while (in.read() != -1) {
+				}
+				in.close();
+				return true;
+			} finally {
+				connection.disconnect();
+			}
+		} catch (IOException e) {
+			// not yet listening
+			return false;
+		}
+	}
+
+	private static void drain(final InputStream in) {
+		// the server's output is discarded, but must be read so that the server doesn't block writing to it
+		Thread thread = new Thread("drain") {
+			@Override
+			public void run() {
+				byte[] buffer = new byte[4096];
+				try {
+					while (in.read(buffer) != -1) {
+					}
+				} catch (IOException e) {
+					// process ended
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+}
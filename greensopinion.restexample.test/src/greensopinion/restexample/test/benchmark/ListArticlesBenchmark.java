@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.benchmark;
+
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.test.domain.MockFactory;
+import greensopinion.restexample.test.util.Allocations;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares {@link BlogService#listArticles(Long, Date) listArticles} of 10,000 rows using a read-write transaction with
+ * managed entities (before) against the read-only query path (after). Uses a real entity manager factory, so that
+ * transactions commit as they would in production. Run as a Java application:
+ *
+ * <pre>
+ * java greensopinion.restexample.test.benchmark.ListArticlesBenchmark [rows] [iterations]
+ * </pre>
+ *
+ * @author David Green
+ */
+public class ListArticlesBenchmark {
+
+	private static final int DEFAULT_ROWS = 10000;
+
+	private static final int DEFAULT_ITERATIONS = 20;
+
+	private final BlogService service;
+
+	private final EntityManagerFactory entityManagerFactory;
+
+	private final TransactionTemplate readWriteTransaction;
+
+	private final Date since = new Date(0L);
+
+	private Long blogId;
+
+	public ListArticlesBenchmark(BlogService service, EntityManagerFactory entityManagerFactory,
+			PlatformTransactionManager transactionManager) {
+		this.service = service;
+		this.entityManagerFactory = entityManagerFactory;
+		this.readWriteTransaction = new TransactionTemplate(transactionManager);
+	}
+
+	public void populate(final int rows) {
+		readWriteTransaction.execute(new TransactionCallback<Object>() {
+			public Object doInTransaction(TransactionStatus status) {
+				EntityManager entityManager = entityManager();
+				Blog blog = MockFactory.on(Blog.class).create(entityManager);
+				for (Article article : MockFactory.on(Article.class).create(null, rows)) {
+					article.setBlog(blog);
+					entityManager.persist(article);
+				}
+				blogId = blog.getId();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * list articles the way it was done before the read-only query path: within a read-write transaction, with every
+	 * entity registered in the unit of work
+	 */
+	public List<?> listManaged() {
+		return readWriteTransaction.execute(new TransactionCallback<List<?>>() {
+			public List<?> doInTransaction(TransactionStatus status) {
+				return entityManager()
+						.createQuery("select e from " + Article.class.getSimpleName() + " e where e.created >= :date")
+						.setParameter("date", since).getResultList();
+			}
+		});
+	}
+
+	public List<?> listReadOnly() {
+		return service.listArticles(blogId, since);
+	}
+
+	private EntityManager entityManager() {
+		return EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+	}
+
+	private Result measure(String name, int iterations, boolean readOnly) {
+		Result result = new Result(name);
+		for (int x = 0; x < iterations; ++x) {
+			System.gc();
+			long allocatedBefore = Allocations.currentThreadAllocatedBytes();
+			long start = System.nanoTime();
+			List<?> articles = readOnly ? listReadOnly() : listManaged();
+			result.add(System.nanoTime() - start, Allocations.currentThreadAllocatedBytes() - allocatedBefore,
+					articles.size());
+		}
+		return result;
+	}
+
+	public void run(int iterations) {
+		// warm up both paths so that neither pays for class loading or JIT compilation
+		measure("warmup", Math.max(1, iterations / 4), false);
+		measure("warmup", Math.max(1, iterations / 4), true);
+
+		System.out.println(measure("before (read-write, managed)", iterations, false));
+		System.out.println(measure("after (read-only)", iterations, true));
+	}
+
+	private static class Result {
+		private final String name;
+
+		private long totalNanos;
+
+		private long minNanos = Long.MAX_VALUE;
+
+		private long totalAllocatedBytes;
+
+		private int iterations;
+
+		private int rows;
+
+		Result(String name) {
+			this.name = name;
+		}
+
+		void add(long nanos, long allocatedBytes, int rows) {
+			totalNanos += nanos;
+			minNanos = Math.min(minNanos, nanos);
+			totalAllocatedBytes += allocatedBytes;
+			this.rows = rows;
+			++iterations;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d rows, mean %.2f ms, min %.2f ms, allocated %s per call", name, rows,
+					totalNanos / (iterations * 1000000d), minNanos / 1000000d,
+					Allocations.format(totalAllocatedBytes < 0 ? -1 : totalAllocatedBytes / iterations));
+		}
+	}
+
+	public static void main(String[] args) {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("/applicationContext-benchmark.xml");
+		try {
+			ListArticlesBenchmark benchmark = new ListArticlesBenchmark((BlogService) context.getBean("blogService"),
+					context.getBean(EntityManagerFactory.class), context.getBean(PlatformTransactionManager.class));
+			benchmark.populate(rows);
+			benchmark.run(iterations);
+		} finally {
+			context.close();
+		}
+	}
+}
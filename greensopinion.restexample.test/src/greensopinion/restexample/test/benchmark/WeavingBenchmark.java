@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.benchmark;
+
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.test.domain.MockFactory;
+import greensopinion.restexample.test.util.Allocations;
+import greensopinion.restexample.test.util.StatementCountingDataSource;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Measures the statements executed and the bytes allocated by {@link BlogService#getArticle(Long) getArticle} and
+ * {@link BlogService#listArticles(Long, Date) listArticles}. Without weaving, the lazy {@link Article#getBlog() blog} of
+ * each article is read eagerly. Run as a Java application, once with classes compiled by Eclipse and again after
+ * running the <code>weave</code> target of the web project's build.xml, and compare the output:
+ *
+ * <pre>
+ * java greensopinion.restexample.test.benchmark.WeavingBenchmark [articles] [iterations]
+ * </pre>
+ *
+ * @author David Green
+ */
+public class WeavingBenchmark {
+
+	private static final int DEFAULT_ARTICLES = 1000;
+
+	private static final int DEFAULT_ITERATIONS = 20;
+
+	private final BlogService service;
+
+	private final StatementCountingDataSource dataSource;
+
+	private final Date since = new Date(0L);
+
+	private final List<Long> articleIds = new ArrayList<Long>();
+
+	private Long blogId;
+
+	public WeavingBenchmark(BlogService service, StatementCountingDataSource dataSource) {
+		this.service = service;
+		this.dataSource = dataSource;
+	}
+
+	public void populate(int articles) {
+		blogId = service.createBlog(MockFactory.on(Blog.class).create(null)).getId();
+		for (Article article : MockFactory.on(Article.class).create(null, articles)) {
+			articleIds.add(service.createArticle(blogId, article).getId());
+		}
+	}
+
+	private Result measureGetArticle(int iterations) {
+		Result result = new Result("getArticle");
+		for (int x = 0; x < iterations; ++x) {
+			for (Long articleId : articleIds) {
+				long statementsBefore = dataSource.getStatementCount();
+				long allocatedBefore = Allocations.currentThreadAllocatedBytes();
+				service.getArticle(articleId);
+				result.add(dataSource.getStatementCount() - statementsBefore, Allocations.currentThreadAllocatedBytes()
+						- allocatedBefore);
+			}
+		}
+		return result;
+	}
+
+	private Result measureListArticles(int iterations) {
+		Result result = new Result("listArticles");
+		for (int x = 0; x < iterations; ++x) {
+			long statementsBefore = dataSource.getStatementCount();
+			long allocatedBefore = Allocations.currentThreadAllocatedBytes();
+			service.listArticles(blogId, since);
+			result.add(dataSource.getStatementCount() - statementsBefore, Allocations.currentThreadAllocatedBytes()
+					- allocatedBefore);
+		}
+		return result;
+	}
+
+	public void run(int iterations) {
+		System.out.println("entities woven: " + isWoven());
+
+		// warm up so that neither operation pays for class loading or JIT compilation
+		measureGetArticle(1);
+		measureListArticles(Math.max(1, iterations / 4));
+
+		System.out.println(measureGetArticle(iterations));
+		System.out.println(measureListArticles(iterations));
+	}
+
+	private static boolean isWoven() {
+		try {
+			Class<?> woven = Class.forName("org.eclipse.persistence.internal.weaving.PersistenceWeaved");
+			return woven.isAssignableFrom(Article.class);
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	private static class Result {
+		private final String name;
+
+		private long totalStatements;
+
+		private long totalAllocatedBytes;
+
+		private int calls;
+
+		Result(String name) {
+			this.name = name;
+		}
+
+		void add(long statements, long allocatedBytes) {
+			totalStatements += statements;
+			totalAllocatedBytes += allocatedBytes;
+			++calls;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d calls, %.2f statements per call, allocated %s per call", name, calls,
+					totalStatements / (double) calls, Allocations.format(totalAllocatedBytes < 0 ? -1
+							: totalAllocatedBytes / calls));
+		}
+	}
+
+	public static void main(String[] args) {
+		int articles = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ARTICLES;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("/applicationContext-benchmark.xml");
+		try {
+			WeavingBenchmark benchmark = new WeavingBenchmark((BlogService) context.getBean("blogService"),
+					context.getBean(StatementCountingDataSource.class));
+			benchmark.populate(articles);
+			benchmark.run(iterations);
+		} finally {
+			context.close();
+		}
+	}
+}
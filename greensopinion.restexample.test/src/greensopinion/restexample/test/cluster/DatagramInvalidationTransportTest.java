@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.cluster;
+
+import static org.junit.Assert.assertEquals;
+import greensopinion.restexample.cluster.DatagramInvalidationTransport;
+import greensopinion.restexample.cluster.InvalidationMessage;
+import greensopinion.restexample.cluster.InvalidationTransport;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test {@link DatagramInvalidationTransport} on the loopback address
+ *
+ * @author David Green
+ */
+public class DatagramInvalidationTransportTest {
+
+	private final DatagramInvalidationTransport sender = createTransport();
+
+	private final DatagramInvalidationTransport receiver = createTransport();
+
+	private final BlockingQueue<InvalidationMessage> received = new LinkedBlockingQueue<InvalidationMessage>();
+
+	@After
+	public void after() {
+		sender.stop();
+		receiver.stop();
+	}
+
+	@Test
+	public void testSend() throws Exception {
+		sender.start(new InvalidationTransport.Receiver() {
+			public void receive(InvalidationMessage message) {
+			}
+		});
+		receiver.start(new InvalidationTransport.Receiver() {
+			public void receive(InvalidationMessage message) {
+				received.add(message);
+			}
+		});
+		sender.setPeers(Arrays.asList("127.0.0.1:" + sender.getLocalPort(), "127.0.0.1:" + receiver.getLocalPort()));
+
+		Map<String, Set<Long>> invalidations = Collections.<String, Set<Long>> singletonMap("Article",
+				new LinkedHashSet<Long>(Arrays.asList(3L, 4L)));
+		sender.send(new InvalidationMessage("node", 1L, invalidations));
+
+		InvalidationMessage message = received.poll(5, TimeUnit.SECONDS);
+		assertEquals(1L, message.getSequence());
+		assertEquals(invalidations, message.getInvalidations());
+	}
+
+	@Test(expected = IOException.class)
+	public void testSendNotStarted() throws IOException {
+		sender.send(new InvalidationMessage("node", 1L, Collections.<String, Set<Long>> emptyMap()));
+	}
+
+	private DatagramInvalidationTransport createTransport() {
+		DatagramInvalidationTransport transport = new DatagramInvalidationTransport();
+		transport.setBindAddress("127.0.0.1");
+		return transport;
+	}
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.cluster.InvalidationBus;
+import greensopinion.restexample.cluster.InvalidationListener;
+import greensopinion.restexample.cluster.InvalidationMessage;
+import greensopinion.restexample.cluster.LoopbackInvalidationTransport;
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test {@link InvalidationBus}
+ *
+ * @author David Green
+ */
+public class InvalidationBusTest {
+
+	private static class RecordingListener implements InvalidationListener {
+		private final List<String> invalidations = new ArrayList<String>();
+
+		private int invalidateAllCount;
+
+		public synchronized void invalidate(String entityName, Long id) {
+			invalidations.add(entityName + ":" + id);
+		}
+
+		public synchronized void invalidateAll() {
+			++invalidateAllCount;
+		}
+	}
+
+	/**
+	 * a transport that loses messages when asked to
+	 */
+	private static class LossyTransport extends LoopbackInvalidationTransport {
+		private boolean lose;
+
+		public LossyTransport(Network network) {
+			super(network);
+		}
+
+		@Override
+		public void send(InvalidationMessage message) throws IOException {
+			if (!lose) {
+				super.send(message);
+			}
+		}
+	}
+
+	private final LoopbackInvalidationTransport.Network network = new LoopbackInvalidationTransport.Network();
+
+	private final LossyTransport senderTransport = new LossyTransport(network);
+
+	private final InvalidationBus sender = new InvalidationBus();
+
+	private final InvalidationBus receiver = new InvalidationBus();
+
+	private final RecordingListener listener = new RecordingListener();
+
+	@Before
+	public void before() throws IOException {
+		// batches are flushed by the test
+		sender.setFlushIntervalMillis(60000L);
+		sender.setHeartbeatIntervalMillis(60000L);
+		sender.setTransport(senderTransport);
+		sender.start();
+		receiver.setTransport(new LoopbackInvalidationTransport(network));
+		receiver.start();
+		receiver.addListener(listener);
+	}
+
+	@After
+	public void after() {
+		sender.stop();
+		receiver.stop();
+	}
+
+	@Test
+	public void testPublish() {
+		sender.publish(Article.class, 3L);
+		sender.publish(Blog.class, 1L);
+		assertEquals(1, sender.flush());
+		assertEquals(Arrays.asList("Article:3", "Blog:1"), listener.invalidations);
+		assertEquals(0, listener.invalidateAllCount);
+		assertEquals(1L, receiver.getReceivedMessageCount());
+	}
+
+	@Test
+	public void testCoalesced() {
+		sender.publish(Article.class, 3L);
+		sender.publish(Article.class, 4L);
+		sender.publish(Article.class, 3L);
+		assertEquals(1, sender.flush());
+		assertEquals(Arrays.asList("Article:3", "Article:4"), listener.invalidations);
+		assertEquals(0, sender.flush());
+	}
+
+	@Test
+	public void testMaxBatchSize() {
+		sender.setMaxBatchSize(2);
+		sender.publish(Article.class, 1L);
+		sender.publish(Article.class, 2L);
+		sender.publish(Blog.class, 3L);
+		// the first batch may be sent by the background thread as soon as it is full
+		sender.flush();
+		assertEquals(2L, sender.getSentMessageCount());
+		assertEquals(Arrays.asList("Article:1", "Article:2", "Blog:3"), listener.invalidations);
+		assertEquals(0, listener.invalidateAllCount);
+	}
+
+	@Test
+	public void testPublishAll() {
+		sender.publish(Article.class, 3L);
+		sender.publishAll();
+		assertEquals(2, sender.flush());
+		assertEquals(1, listener.invalidateAllCount);
+		assertEquals(Arrays.asList("Article:3"), listener.invalidations);
+		assertEquals(0L, receiver.getResyncCount());
+	}
+
+	@Test
+	public void testOwnMessagesAreIgnored() {
+		RecordingListener senderListener = new RecordingListener();
+		sender.addListener(senderListener);
+		sender.publish(Article.class, 3L);
+		sender.flush();
+		assertTrue(senderListener.invalidations.isEmpty());
+	}
+
+	@Test
+	public void testResyncAfterMissedMessage() {
+		senderTransport.lose = true;
+		sender.publish(Article.class, 3L);
+		sender.flush();
+		senderTransport.lose = false;
+		sender.publish(Article.class, 4L);
+		sender.flush();
+		assertEquals(1, listener.invalidateAllCount);
+		assertEquals(1L, receiver.getResyncCount());
+
+		sender.publish(Article.class, 5L);
+		sender.flush();
+		assertEquals(Arrays.asList("Article:5"), listener.invalidations);
+		assertEquals(1, listener.invalidateAllCount);
+	}
+
+	@Test
+	public void testHeartbeatDetectsMissedMessage() {
+		sender.publish(Article.class, 3L);
+		sender.flush();
+		sender.sendHeartbeat();
+		assertEquals(0, listener.invalidateAllCount);
+
+		senderTransport.lose = true;
+		sender.publish(Article.class, 4L);
+		sender.flush();
+		senderTransport.lose = false;
+		sender.sendHeartbeat();
+		assertEquals(1, listener.invalidateAllCount);
+		assertEquals(Arrays.asList("Article:3"), listener.invalidations);
+	}
+
+	@Test
+	public void testBatchedInBackground() throws IOException, InterruptedException {
+		sender.stop();
+		InvalidationBus bus = new InvalidationBus();
+		bus.setTransport(new LoopbackInvalidationTransport(network));
+		bus.setFlushIntervalMillis(10L);
+		bus.start();
+		try {
+			for (long id = 0; id < 100; ++id) {
+				bus.publish(Article.class, id);
+			}
+			long deadline = System.currentTimeMillis() + 5000L;
+			while (listener.invalidations.size() < 100 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+			assertEquals(100, listener.invalidations.size());
+			assertTrue(bus.getSentMessageCount() < 100);
+		} finally {
+			bus.stop();
+		}
+	}
+
+	@Test
+	public void testEncodeDecode() throws IOException {
+		Map<String, Set<Long>> invalidations = new LinkedHashMap<String, Set<Long>>();
+		invalidations.put("Article", new LinkedHashSet<Long>(Arrays.asList(1L, Long.MAX_VALUE)));
+		byte[] bytes = new InvalidationMessage("node", 7L, invalidations).encode();
+		InvalidationMessage message = InvalidationMessage.decode(bytes, 0, bytes.length);
+		assertEquals("node", message.getNode());
+		assertEquals(7L, message.getSequence());
+		assertEquals(invalidations, message.getInvalidations());
+		assertFalse(message.isAll());
+
+		bytes = new InvalidationMessage("node", 8L, true, new LinkedHashMap<String, Set<Long>>()).encode();
+		message = InvalidationMessage.decode(bytes, 0, bytes.length);
+		assertTrue(message.isAll());
+		assertFalse(message.isHeartbeat());
+	}
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.data;
+
+/**
+ * The ids of a dataset created by a {@link DatasetGenerator}. Blogs have consecutive ids, followed by the consecutive
+ * ids of their articles.
+ *
+ * @author David Green
+ */
+public class Dataset {
+
+	private final long firstId;
+
+	private final int blogCount;
+
+	private final long articleCount;
+
+	public Dataset(long firstId, int blogCount, long articleCount) {
+		this.firstId = firstId;
+		this.blogCount = blogCount;
+		this.articleCount = articleCount;
+	}
+
+	public int getBlogCount() {
+		return blogCount;
+	}
+
+	public long getArticleCount() {
+		return articleCount;
+	}
+
+	/**
+	 * the id of a blog, where blogs are ordered from the blog with the most articles to the blog with the fewest
+	 *
+	 * @param index
+	 *            the index of the blog, from 0
+	 */
+	public long getBlogId(int index) {
+		if (index < 0 || index >= blogCount) {
+			throw new IndexOutOfBoundsException(index + " not in 0.." + (blogCount - 1));
+		}
+		return firstId + index;
+	}
+
+	/**
+	 * the id of an article
+	 *
+	 * @param index
+	 *            the index of the article, from 0
+	 */
+	public long getArticleId(long index) {
+		if (index < 0 || index >= articleCount) {
+			throw new IndexOutOfBoundsException(index + " not in 0.." + (articleCount - 1));
+		}
+		return firstId + blogCount + index;
+	}
+
+	/**
+	 * the largest id of the dataset
+	 */
+	public long getLastId() {
+		return firstId + blogCount + articleCount - 1;
+	}
+
+	@Override
+	public String toString() {
+		return blogCount + " blogs, " + articleCount + " articles, ids " + firstId + ".." + getLastId();
+	}
+}
@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.data;
+
+import greensopinion.restexample.domain.ContentCodec;
+import greensopinion.restexample.test.domain.MockFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Generates large datasets of blogs and articles for benchmarks, writing rows directly with batched JDBC statements
+ * rather than creating entities one at a time as {@link MockFactory} does. Datasets are deterministic: the same
+ * settings always produce the same rows with the same ids, so that results can be compared across runs. Usage:
+ *
+ * <pre><code>
+ * DatasetGenerator generator = new DatasetGenerator();
+ * generator.setBlogCount(1000);
+ * generator.setArticleCount(1000000);
+ * Dataset dataset = generator.load(dataSource, new File(&quot;target/datasets&quot;));
+ * </code></pre>
+ *
+ * {@link #load(DataSource, File) Loading} a dataset snapshots it on first use, so that later runs restore the rows
+ * without generating and compressing content again. The schema must exist, and must not have rows with the ids of the
+ * dataset.
+ *
+ * @author David Green
+ */
+public class DatasetGenerator {
+
+	private static final Logger log = Logger.getLogger(DatasetGenerator.class.getName());
+
+	private static final String[] WORDS = { "the", "of", "and", "to", "in", "a", "is", "that", "for", "it", "as",
+			"was", "with", "be", "by", "on", "not", "he", "this", "are", "or", "his", "from", "at", "which", "but",
+			"have", "an", "had", "they", "you", "were", "their", "one", "all", "we", "can", "her", "has", "there",
+			"been", "if", "more", "when", "will", "would", "who", "so", "no", "rest", "service", "article", "blog",
+			"spring", "query", "entity", "cache", "request", "response", "database", "index", "thread", "latency",
+			"throughput" };
+
+	private long seed = 1L;
+
+	private long firstId = 1L;
+
+	private int blogCount = 100;
+
+	private long articleCount = 10000L;
+
+	private double articlesPerBlogExponent = 1d;
+
+	private int medianContentLength = 2000;
+
+	private double contentLengthDeviation = 1d;
+
+	private int maxContentLength = 64 * 1024;
+
+	private long startMillis = 1230768000000L; // 2009-01-01 UTC
+
+	private long endMillis = 1277942400000L; // 2010-07-01 UTC
+
+	private double modifiedRatio = 0.2d;
+
+	private int compressionThreshold = -1;
+
+	private int batchSize = 1000;
+
+	/**
+	 * load the dataset from its snapshot in the given directory, or generate it and create the snapshot if there is
+	 * none
+	 */
+	public Dataset load(DataSource dataSource, File snapshotDirectory) throws IOException {
+		File snapshot = new File(snapshotDirectory, getSnapshotName());
+		if (snapshot.exists()) {
+			long start = System.currentTimeMillis();
+			Dataset dataset = restore(dataSource, snapshot);
+			log.info("Restored " + dataset + " from " + snapshot + " in " + (System.currentTimeMillis() - start) + "ms");
+			return dataset;
+		}
+		if (!snapshotDirectory.exists() && !snapshotDirectory.mkdirs()) {
+			throw new IOException("Cannot create " + snapshotDirectory);
+		}
+		// write to a temporary file, so that an interrupted run does not leave a partial snapshot
+		File temporary = File.createTempFile(snapshot.getName(), ".tmp", snapshotDirectory);
+		try {
+			long start = System.currentTimeMillis();
+			Dataset dataset = generate(dataSource, temporary);
+			if (!temporary.renameTo(snapshot)) {
+				throw new IOException("Cannot rename " + temporary + " to " + snapshot);
+			}
+			log.info("Generated " + dataset + " to " + snapshot + " in " + (System.currentTimeMillis() - start) + "ms");
+			return dataset;
+		} finally {
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * generate the dataset
+	 *
+	 * @param snapshot
+	 *            the file to which the rows are recorded, or null
+	 */
+	public Dataset generate(DataSource dataSource, final File snapshot) throws IOException {
+		final Dataset dataset = new Dataset(firstId, blogCount, articleCount);
+		return execute(dataSource, new LoaderCallback() {
+			public Dataset doWithLoader(DatasetLoader loader) throws SQLException, IOException {
+				long sequenceCount = loader.getSequenceCount();
+				if (sequenceCount >= firstId) {
+					throw new IllegalStateException("Ids up to " + sequenceCount + " may be in use, the first id must be "
+							+ (sequenceCount + 1) + " or more");
+				}
+				if (snapshot == null) {
+					generate(loader);
+					return dataset;
+				}
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+						new FileOutputStream(snapshot)), 64 * 1024));
+				try {
+					loader.recordTo(out, dataset);
+					generate(loader);
+				} finally {
+					out.close();
+				}
+				return dataset;
+			}
+		});
+	}
+
+	/**
+	 * insert the rows of a snapshot created by {@link #generate(DataSource, File)}
+	 */
+	public Dataset restore(DataSource dataSource, final File snapshot) throws IOException {
+		return execute(dataSource, new LoaderCallback() {
+			public Dataset doWithLoader(DatasetLoader loader) throws SQLException, IOException {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+						new FileInputStream(snapshot)), 64 * 1024));
+				try {
+					return loader.restore(in);
+				} finally {
+					in.close();
+				}
+			}
+		});
+	}
+
+	private void generate(DatasetLoader loader) throws SQLException, IOException {
+		Random random = new Random(seed);
+		long[] articlesPerBlog = new ZipfDistribution(blogCount, articlesPerBlogExponent).apportion(articleCount);
+		StringBuilder content = new StringBuilder(maxContentLength + 16);
+		long articleId = firstId + blogCount;
+		for (int blogIndex = 0; blogIndex < blogCount; ++blogIndex) {
+			long blogId = firstId + blogIndex;
+			loader.addBlog(blogId, startMillis, startMillis, "Blog " + (blogIndex + 1));
+			String author = "Author " + (blogIndex + 1);
+			for (long x = 0; x < articlesPerBlog[blogIndex]; ++x) {
+				long created = startMillis + (long) (random.nextDouble() * (endMillis - startMillis));
+				long modified = created;
+				if (random.nextDouble() < modifiedRatio) {
+					modified += (long) (random.nextDouble() * (endMillis - created));
+				}
+				generateContent(random, content);
+				loader.addArticle(articleId, blogId, created, modified, author, created, "Article " + articleId,
+						ContentCodec.encode(content.toString(), compressionThreshold));
+				++articleId;
+			}
+		}
+		loader.finish();
+	}
+
+	/**
+	 * generate text with a log-normal distribution of lengths, which is typical of the size of documents
+	 */
+	private void generateContent(Random random, StringBuilder content) {
+		int length = (int) Math.min(maxContentLength,
+				Math.round(medianContentLength * Math.exp(contentLengthDeviation * random.nextGaussian())));
+		content.setLength(0);
+		while (content.length() < length) {
+			if (content.length() > 0) {
+				content.append(' ');
+			}
+			content.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		content.setLength(length);
+	}
+
+	private interface LoaderCallback {
+		Dataset doWithLoader(DatasetLoader loader) throws SQLException, IOException;
+	}
+
+	private Dataset execute(DataSource dataSource, final LoaderCallback callback) throws IOException {
+		final IOException[] ioException = new IOException[1];
+		Dataset dataset = new JdbcTemplate(dataSource).execute(new ConnectionCallback<Dataset>() {
+			public Dataset doInConnection(Connection connection) throws SQLException, DataAccessException {
+				boolean autoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(false);
+				DatasetLoader loader = new DatasetLoader(connection, batchSize);
+				try {
+					return callback.doWithLoader(loader);
+				} catch (IOException e) {
+					ioException[0] = e;
+					return null;
+				} finally {
+					loader.close();
+					connection.setAutoCommit(autoCommit);
+				}
+			}
+		});
+		if (ioException[0] != null) {
+			throw ioException[0];
+		}
+		return dataset;
+	}
+
+	/**
+	 * the name of the snapshot of this dataset, which differs for datasets with different settings
+	 */
+	public String getSnapshotName() {
+		return "dataset-" + Integer.toHexString(toString().hashCode()) + ".gz";
+	}
+
+	@Override
+	public String toString() {
+		return "seed=" + seed + " firstId=" + firstId + " blogs=" + blogCount + " articles=" + articleCount
+				+ " articlesPerBlogExponent=" + articlesPerBlogExponent + " medianContentLength="
+				+ medianContentLength + " contentLengthDeviation=" + contentLengthDeviation + " maxContentLength="
+				+ maxContentLength + " start=" + startMillis + " end=" + endMillis + " modifiedRatio="
+				+ modifiedRatio + " compressionThreshold=" + compressionThreshold;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * the seed of the random numbers from which the dataset is generated. Defaults to 1.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public long getFirstId() {
+		return firstId;
+	}
+
+	/**
+	 * the id of the first blog. Must be greater than any id allocated by the persistence provider. Defaults to 1.
+	 */
+	public void setFirstId(long firstId) {
+		this.firstId = firstId;
+	}
+
+	public int getBlogCount() {
+		return blogCount;
+	}
+
+	public void setBlogCount(int blogCount) {
+		this.blogCount = blogCount;
+	}
+
+	public long getArticleCount() {
+		return articleCount;
+	}
+
+	/**
+	 * the number of articles in all blogs
+	 */
+	public void setArticleCount(long articleCount) {
+		this.articleCount = articleCount;
+	}
+
+	public double getArticlesPerBlogExponent() {
+		return articlesPerBlogExponent;
+	}
+
+	/**
+	 * the exponent of the {@link ZipfDistribution} of articles among blogs, 0 for the same number of articles in every
+	 * blog. Defaults to 1.
+	 */
+	public void setArticlesPerBlogExponent(double articlesPerBlogExponent) {
+		this.articlesPerBlogExponent = articlesPerBlogExponent;
+	}
+
+	public int getMedianContentLength() {
+		return medianContentLength;
+	}
+
+	/**
+	 * the median length of article content in characters. Defaults to 2000.
+	 */
+	public void setMedianContentLength(int medianContentLength) {
+		this.medianContentLength = medianContentLength;
+	}
+
+	public double getContentLengthDeviation() {
+		return contentLengthDeviation;
+	}
+
+	/**
+	 * the standard deviation of the logarithm of the content length, 0 for content of the median length. Defaults to
+	 * 1.
+	 */
+	public void setContentLengthDeviation(double contentLengthDeviation) {
+		this.contentLengthDeviation = contentLengthDeviation;
+	}
+
+	public int getMaxContentLength() {
+		return maxContentLength;
+	}
+
+	/**
+	 * the maximum length of article content in characters. Defaults to 64K.
+	 */
+	public void setMaxContentLength(int maxContentLength) {
+		this.maxContentLength = maxContentLength;
+	}
+
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * the time at which blogs were created and before which no articles were created. Defaults to 2009-01-01.
+	 */
+	public void setStartMillis(long startMillis) {
+		this.startMillis = startMillis;
+	}
+
+	public long getEndMillis() {
+		return endMillis;
+	}
+
+	/**
+	 * the time after which no articles were created or modified. Defaults to 2010-07-01.
+	 */
+	public void setEndMillis(long endMillis) {
+		this.endMillis = endMillis;
+	}
+
+	public double getModifiedRatio() {
+		return modifiedRatio;
+	}
+
+	/**
+	 * the fraction of articles that were modified after they were created. Defaults to 0.2.
+	 */
+	public void setModifiedRatio(double modifiedRatio) {
+		this.modifiedRatio = modifiedRatio;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * the length of the shortest content to compress, which should match the compression threshold of the persistence
+	 * unit, or -1 to store content uncompressed. Defaults to -1.
+	 *
+	 * @see ContentCodec#encode(String, int)
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * the number of rows inserted by each batch and transaction. Defaults to 1000.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+}
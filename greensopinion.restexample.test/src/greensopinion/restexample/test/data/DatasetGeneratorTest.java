@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.domain.ContentCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Test {@link DatasetGenerator}
+ *
+ * @author David Green
+ */
+public class DatasetGeneratorTest {
+
+	private static int databaseCount;
+
+	private final DatasetGenerator generator = new DatasetGenerator();
+
+	private File snapshotDirectory;
+
+	@Before
+	public void before() throws IOException {
+		generator.setBlogCount(10);
+		generator.setArticleCount(500);
+		generator.setMedianContentLength(200);
+		generator.setCompressionThreshold(0);
+		generator.setBatchSize(64);
+
+		snapshotDirectory = File.createTempFile(DatasetGeneratorTest.class.getSimpleName(), "");
+		snapshotDirectory.delete();
+	}
+
+	@After
+	public void after() {
+		File[] files = snapshotDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		snapshotDirectory.delete();
+	}
+
+	private static synchronized DataSource createDatabase() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:dataset"
+				+ (++databaseCount), "sa", "");
+		dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE BLOG (ID BIGINT NOT NULL, CREATED TIMESTAMP NOT NULL, "
+				+ "MODIFIED TIMESTAMP, NAME VARCHAR(255), PRIMARY KEY (ID))");
+		jdbcTemplate.execute("CREATE TABLE ARTICLE (ID BIGINT NOT NULL, CREATED TIMESTAMP NOT NULL, "
+				+ "MODIFIED TIMESTAMP, AUTHOR VARCHAR(255), PUBLISHED TIMESTAMP, TITLE VARCHAR(255) NOT NULL, "
+				+ "CONTENT LONGVARBINARY, CONTENTREF VARCHAR(64), blogId BIGINT NOT NULL, "
+				+ "PRIMARY KEY (ID), FOREIGN KEY (blogId) REFERENCES BLOG (ID))");
+		jdbcTemplate.execute("CREATE TABLE SEQUENCE (SEQ_NAME VARCHAR(50) NOT NULL, SEQ_COUNT DECIMAL(38), "
+				+ "PRIMARY KEY (SEQ_NAME))");
+		jdbcTemplate.execute("INSERT INTO SEQUENCE (SEQ_NAME, SEQ_COUNT) VALUES ('SEQ_GEN', 0)");
+		return dataSource;
+	}
+
+	@Test
+	public void testGenerate() throws IOException {
+		DataSource dataSource = createDatabase();
+		Dataset dataset = generator.generate(dataSource, null);
+		assertEquals(10, dataset.getBlogCount());
+		assertEquals(500L, dataset.getArticleCount());
+
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		assertEquals(10, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM BLOG"));
+		assertEquals(500, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM ARTICLE"));
+		assertEquals(dataset.getLastId(), jdbcTemplate.queryForLong("SELECT SEQ_COUNT FROM SEQUENCE"));
+
+		// the first blog has the most articles
+		List<Map<String, Object>> articlesPerBlog = jdbcTemplate
+				.queryForList("SELECT blogId, COUNT(*) AS ARTICLES FROM ARTICLE GROUP BY blogId ORDER BY ARTICLES DESC");
+		assertEquals(dataset.getBlogId(0), ((Number) articlesPerBlog.get(0).get("blogId")).longValue());
+
+		int compressed = 0;
+		for (Map<String, Object> row : jdbcTemplate.queryForList("SELECT CONTENT FROM ARTICLE")) {
+			byte[] content = (byte[]) row.get("CONTENT");
+			if (ContentCodec.isCompressed(content)) {
+				++compressed;
+			}
+			assertTrue(ContentCodec.decode(content).length() <= generator.getMaxContentLength());
+		}
+		// short content is stored uncompressed when compression does not make it smaller
+		assertTrue(compressed > 0);
+	}
+
+	@Test
+	public void testDeterministic() throws IOException {
+		DataSource first = createDatabase();
+		generator.generate(first, null);
+		DataSource second = createDatabase();
+		generator.generate(second, null);
+		assertEquals(checksum(first), checksum(second));
+
+		generator.setSeed(2L);
+		DataSource third = createDatabase();
+		generator.generate(third, null);
+		assertTrue(checksum(first) != checksum(third));
+	}
+
+	@Test
+	public void testLoadRestoresSnapshot() throws IOException {
+		DataSource generated = createDatabase();
+		generator.load(generated, snapshotDirectory);
+		assertTrue(new File(snapshotDirectory, generator.getSnapshotName()).exists());
+
+		DataSource restored = createDatabase();
+		Dataset dataset = generator.load(restored, snapshotDirectory);
+		assertEquals(500L, dataset.getArticleCount());
+		assertEquals(checksum(generated), checksum(restored));
+		assertEquals(dataset.getLastId(), new JdbcTemplate(restored).queryForLong("SELECT SEQ_COUNT FROM SEQUENCE"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testIdsInUse() throws IOException {
+		DataSource dataSource = createDatabase();
+		new JdbcTemplate(dataSource).update("UPDATE SEQUENCE SET SEQ_COUNT = 50");
+		generator.generate(dataSource, null);
+	}
+
+	private long checksum(DataSource dataSource) {
+		long checksum = 0L;
+		for (Map<String, Object> row : new JdbcTemplate(dataSource)
+				.queryForList("SELECT ID, CREATED, MODIFIED, TITLE, CONTENT, blogId FROM ARTICLE ORDER BY ID")) {
+			for (Object value : row.values()) {
+				checksum = checksum * 31L
+						+ (value instanceof byte[] ? Arrays.hashCode((byte[]) value) : value.hashCode());
+			}
+		}
+		return checksum;
+	}
+}
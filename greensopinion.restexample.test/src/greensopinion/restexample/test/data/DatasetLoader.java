@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Inserts the rows of a dataset with batched statements, committing each batch, and optionally records them to a
+ * snapshot from which they can be {@link #restore(DataInputStream) restored} without being generated again.
+ *
+ * @author David Green
+ */
+class DatasetLoader {
+
+	private static final int SNAPSHOT_VERSION = 1;
+
+	private static final byte ROW_END = 0;
+
+	private static final byte ROW_BLOG = 1;
+
+	private static final byte ROW_ARTICLE = 2;
+
+	private final Connection connection;
+
+	private final int batchSize;
+
+	private final PreparedStatement insertBlog;
+
+	private final PreparedStatement insertArticle;
+
+	private int pendingBlogs;
+
+	private int pendingArticles;
+
+	private long maxId;
+
+	private DataOutputStream snapshot;
+
+	DatasetLoader(Connection connection, int batchSize) throws SQLException {
+		this.connection = connection;
+		this.batchSize = batchSize;
+		insertBlog = connection.prepareStatement("INSERT INTO BLOG (ID, CREATED, MODIFIED, NAME) VALUES (?, ?, ?, ?)");
+		insertArticle = connection.prepareStatement("INSERT INTO ARTICLE (ID, CREATED, MODIFIED, AUTHOR, PUBLISHED, "
+				+ "TITLE, CONTENT, blogId) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+	}
+
+	/**
+	 * the count of the sequence from which the persistence provider allocates ids, which must be less than the ids of
+	 * the dataset
+	 */
+	long getSequenceCount() throws SQLException {
+		PreparedStatement statement = connection
+				.prepareStatement("SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = 'SEQ_GEN'");
+		try {
+			ResultSet resultSet = statement.executeQuery();
+			return resultSet.next() ? resultSet.getLong(1) : 0L;
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * record rows to the given snapshot, beginning with the dataset that they make up
+	 */
+	void recordTo(DataOutputStream snapshot, Dataset dataset) throws IOException {
+		this.snapshot = snapshot;
+		snapshot.writeInt(SNAPSHOT_VERSION);
+		snapshot.writeLong(dataset.getBlogId(0));
+		snapshot.writeInt(dataset.getBlogCount());
+		snapshot.writeLong(dataset.getArticleCount());
+	}
+
+	void addBlog(long id, long created, long modified, String name) throws SQLException, IOException {
+		insertBlog.setLong(1, id);
+		insertBlog.setTimestamp(2, new Timestamp(created));
+		insertBlog.setTimestamp(3, new Timestamp(modified));
+		insertBlog.setString(4, name);
+		insertBlog.addBatch();
+		if (snapshot != null) {
+			snapshot.writeByte(ROW_BLOG);
+			snapshot.writeLong(id);
+			snapshot.writeLong(created);
+			snapshot.writeLong(modified);
+			snapshot.writeUTF(name);
+		}
+		++pendingBlogs;
+		added(id);
+	}
+
+	void addArticle(long id, long blogId, long created, long modified, String author, long published, String title,
+			byte[] content) throws SQLException, IOException {
+		insertArticle.setLong(1, id);
+		insertArticle.setTimestamp(2, new Timestamp(created));
+		insertArticle.setTimestamp(3, new Timestamp(modified));
+		insertArticle.setString(4, author);
+		insertArticle.setTimestamp(5, new Timestamp(published));
+		insertArticle.setString(6, title);
+		if (content == null) {
+			insertArticle.setNull(7, Types.VARBINARY);
+		} else {
+			insertArticle.setBytes(7, content);
+		}
+		insertArticle.setLong(8, blogId);
+		insertArticle.addBatch();
+		if (snapshot != null) {
+			snapshot.writeByte(ROW_ARTICLE);
+			snapshot.writeLong(id);
+			snapshot.writeLong(blogId);
+			snapshot.writeLong(created);
+			snapshot.writeLong(modified);
+			snapshot.writeUTF(author);
+			snapshot.writeLong(published);
+			snapshot.writeUTF(title);
+			snapshot.writeInt(content == null ? -1 : content.length);
+			if (content != null) {
+				snapshot.write(content);
+			}
+		}
+		++pendingArticles;
+		added(id);
+	}
+
+	private void added(long id) throws SQLException {
+		maxId = Math.max(maxId, id);
+		if (pendingBlogs + pendingArticles >= batchSize) {
+			flush();
+		}
+	}
+
+	private void flush() throws SQLException {
+		// blogs first, since articles refer to them
+		if (pendingBlogs > 0) {
+			insertBlog.executeBatch();
+			pendingBlogs = 0;
+		}
+		if (pendingArticles > 0) {
+			insertArticle.executeBatch();
+			pendingArticles = 0;
+		}
+		connection.commit();
+	}
+
+	/**
+	 * insert the remaining rows and advance the sequence past the ids of the dataset, so that entities created later
+	 * do not collide with it
+	 */
+	void finish() throws SQLException, IOException {
+		PreparedStatement updateSequence = connection
+				.prepareStatement("UPDATE SEQUENCE SET SEQ_COUNT = ? WHERE SEQ_NAME = 'SEQ_GEN' AND SEQ_COUNT < ?");
+		try {
+			updateSequence.setLong(1, maxId);
+			updateSequence.setLong(2, maxId);
+			updateSequence.executeUpdate();
+		} finally {
+			updateSequence.close();
+		}
+		flush();
+		if (snapshot != null) {
+			snapshot.writeByte(ROW_END);
+		}
+	}
+
+	void close() throws SQLException {
+		insertBlog.close();
+		insertArticle.close();
+	}
+
+	/**
+	 * insert the rows of a snapshot
+	 *
+	 * @return the dataset of the snapshot
+	 */
+	Dataset restore(DataInputStream in) throws SQLException, IOException {
+		int version = in.readInt();
+		if (version != SNAPSHOT_VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		Dataset dataset = new Dataset(in.readLong(), in.readInt(), in.readLong());
+		for (;;) {
+			byte row = in.readByte();
+			if (row == ROW_END) {
+				break;
+			} else if (row == ROW_BLOG) {
+				addBlog(in.readLong(), in.readLong(), in.readLong(), in.readUTF());
+			} else if (row == ROW_ARTICLE) {
+				long id = in.readLong();
+				long blogId = in.readLong();
+				long created = in.readLong();
+				long modified = in.readLong();
+				String author = in.readUTF();
+				long published = in.readLong();
+				String title = in.readUTF();
+				int length = in.readInt();
+				byte[] content = null;
+				if (length >= 0) {
+					content = new byte[length];
+					in.readFully(content);
+				}
+				addArticle(id, blogId, created, modified, author, published, title, content);
+			} else {
+				throw new IOException("Corrupt snapshot, unexpected row type " + row);
+			}
+		}
+		finish();
+		return dataset;
+	}
+}
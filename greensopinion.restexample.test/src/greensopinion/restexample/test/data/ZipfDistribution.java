@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A Zipfian distribution over the ranks <code>1..n</code>, in which the probability of rank <code>k</code> is
+ * proportional to <code>1 / k^exponent</code>. An exponent of 0 is uniform; an exponent of 1 approximates the
+ * popularity of blogs, where a few blogs have most of the articles.
+ *
+ * @author David Green
+ */
+public class ZipfDistribution {
+
+	private final double exponent;
+
+	private final double[] cumulativeProbabilities;
+
+	/**
+	 * @param size
+	 *            the number of ranks, 1 or more
+	 * @param exponent
+	 *            the skew of the distribution, 0 or more
+	 */
+	public ZipfDistribution(int size, double exponent) {
+		if (size < 1) {
+			throw new IllegalArgumentException("size must be 1 or more: " + size);
+		}
+		if (exponent < 0) {
+			throw new IllegalArgumentException("exponent must not be negative: " + exponent);
+		}
+		this.exponent = exponent;
+		cumulativeProbabilities = new double[size];
+		double total = 0;
+		for (int x = 0; x < size; ++x) {
+			total += weight(x + 1);
+			cumulativeProbabilities[x] = total;
+		}
+		for (int x = 0; x < size; ++x) {
+			cumulativeProbabilities[x] /= total;
+		}
+		// avoid rounding error in the last rank, so that every sample has a rank
+		cumulativeProbabilities[size - 1] = 1d;
+	}
+
+	private double weight(int rank) {
+		return 1d / Math.pow(rank, exponent);
+	}
+
+	public int getSize() {
+		return cumulativeProbabilities.length;
+	}
+
+	public double getExponent() {
+		return exponent;
+	}
+
+	/**
+	 * the probability of the given rank
+	 */
+	public double probability(int rank) {
+		return cumulativeProbabilities[rank - 1] - (rank == 1 ? 0d : cumulativeProbabilities[rank - 2]);
+	}
+
+	/**
+	 * select a rank according to the distribution
+	 *
+	 * @return the rank, from 1 to {@link #getSize() size}
+	 */
+	public int sample(Random random) {
+		int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return Math.min(index, cumulativeProbabilities.length - 1) + 1;
+	}
+
+	/**
+	 * divide a total among the ranks in proportion to their probability, without sampling, so that the result depends
+	 * only on the total and the distribution
+	 *
+	 * @return the share of each rank, indexed by rank - 1, which add up to the total and do not increase with rank
+	 */
+	public long[] apportion(long total) {
+		long[] shares = new long[cumulativeProbabilities.length];
+		long remainder = total;
+		for (int x = 0; x < shares.length; ++x) {
+			shares[x] = (long) Math.floor(total * probability(x + 1));
+			remainder -= shares[x];
+		}
+		// rounding down leaves less than one per rank, which goes to the highest ranks
+		for (int x = 0; remainder > 0; x = (x + 1) % shares.length) {
+			++shares[x];
+			--remainder;
+		}
+		return shares;
+	}
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test {@link ZipfDistribution}
+ *
+ * @author David Green
+ */
+public class ZipfDistributionTest {
+
+	@Test
+	public void testProbability() {
+		ZipfDistribution distribution = new ZipfDistribution(3, 1d);
+		// weights 1, 1/2 and 1/3 of 11/6
+		assertEquals(6d / 11d, distribution.probability(1), 0.0001d);
+		assertEquals(3d / 11d, distribution.probability(2), 0.0001d);
+		assertEquals(2d / 11d, distribution.probability(3), 0.0001d);
+	}
+
+	@Test
+	public void testUniform() {
+		ZipfDistribution distribution = new ZipfDistribution(4, 0d);
+		long[] shares = distribution.apportion(100);
+		for (long share : shares) {
+			assertEquals(25L, share);
+		}
+	}
+
+	@Test
+	public void testApportionAddsUpToTotal() {
+		ZipfDistribution distribution = new ZipfDistribution(1000, 1.2d);
+		long[] shares = distribution.apportion(12345L);
+		long total = 0L;
+		for (int x = 0; x < shares.length; ++x) {
+			total += shares[x];
+			if (x > 0) {
+				assertTrue(shares[x] <= shares[x - 1]);
+			}
+		}
+		assertEquals(12345L, total);
+	}
+
+	@Test
+	public void testSample() {
+		ZipfDistribution distribution = new ZipfDistribution(10, 1d);
+		Random random = new Random(1L);
+		int[] counts = new int[distribution.getSize()];
+		final int samples = 100000;
+		for (int x = 0; x < samples; ++x) {
+			++counts[distribution.sample(random) - 1];
+		}
+		for (int rank = 1; rank <= distribution.getSize(); ++rank) {
+			assertEquals(distribution.probability(rank), counts[rank - 1] / (double) samples, 0.01d);
+		}
+	}
+}
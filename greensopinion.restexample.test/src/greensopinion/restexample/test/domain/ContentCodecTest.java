@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.domain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.domain.ContentCodec;
+
+import org.junit.Test;
+
+/**
+ * Test {@link ContentCodec}
+ *
+ * @author David Green
+ */
+public class ContentCodecTest {
+
+	private static String repeat(String text, int count) {
+		StringBuilder buf = new StringBuilder(text.length() * count);
+		for (int x = 0; x < count; ++x) {
+			buf.append(text);
+		}
+		return buf.toString();
+	}
+
+	@Test
+	public void testCompressed() throws Exception {
+		String text = repeat("café content ", 1000);
+		byte[] encoded = ContentCodec.encode(text, 100);
+		assertTrue(ContentCodec.isCompressed(encoded));
+		assertTrue(encoded.length < text.length() / 10);
+		assertEquals(text.getBytes("UTF-8").length, ContentCodec.decodedLength(encoded));
+		assertEquals(text, ContentCodec.decode(encoded));
+	}
+
+	@Test
+	public void testBelowThreshold() throws Exception {
+		String text = repeat("a", 99);
+		byte[] encoded = ContentCodec.encode(text, 100);
+		assertFalse(ContentCodec.isCompressed(encoded));
+		assertArrayEquals(text.getBytes("UTF-8"), encoded);
+	}
+
+	@Test
+	public void testCompressionDisabled() throws Exception {
+		String text = repeat("a", 10000);
+		assertFalse(ContentCodec.isCompressed(ContentCodec.encode(text, -1)));
+	}
+
+	@Test
+	public void testLegacyContentIsReadable() throws Exception {
+		String text = "été legacy content";
+		assertEquals(text, ContentCodec.decode(text.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals("", ContentCodec.decode(ContentCodec.encode("", 0)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownFormat() {
+		ContentCodec.decode(new byte[] { (byte) 0xFF, 9, 0, 0, 0, 1, 0 });
+	}
+}
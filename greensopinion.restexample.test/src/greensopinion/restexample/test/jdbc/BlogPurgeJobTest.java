@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import greensopinion.restexample.jdbc.BlogPurgeJob;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Test {@link BlogPurgeJob} using HSQL databases.
+ *
+ * @author David Green
+ */
+public class BlogPurgeJobTest {
+
+	private static int databaseCount;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private BlogPurgeJob job;
+
+	@Before
+	public void before() {
+		DataSource dataSource = createDataSource();
+		jdbcTemplate = new JdbcTemplate(dataSource);
+
+		job = new BlogPurgeJob();
+		job.setDataSources(Collections.singletonList(dataSource));
+		job.setBatchSize(2);
+		job.setPauseMillis(0L);
+	}
+
+	private DataSource createDataSource() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:purge" + (++databaseCount),
+				"sa", "");
+		dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE BLOG (ID BIGINT NOT NULL, DELETED TIMESTAMP, PRIMARY KEY (ID))");
+		jdbcTemplate.execute("CREATE TABLE ARTICLE (ID BIGINT NOT NULL, blogId BIGINT NOT NULL, PRIMARY KEY (ID), "
+				+ "FOREIGN KEY (blogId) REFERENCES BLOG (ID))");
+		return dataSource;
+	}
+
+	private void insertBlog(long id, Timestamp deleted, int articleCount) {
+		insertBlog(jdbcTemplate, id, deleted, articleCount);
+	}
+
+	private void insertBlog(JdbcTemplate jdbcTemplate, long id, Timestamp deleted, int articleCount) {
+		jdbcTemplate.update("INSERT INTO BLOG (ID, DELETED) VALUES (?, ?)", new Object[] { id, deleted });
+		for (int x = 0; x < articleCount; ++x) {
+			jdbcTemplate.update("INSERT INTO ARTICLE (ID, blogId) VALUES (?, ?)", new Object[] { id * 100 + x, id });
+		}
+	}
+
+	private int count(String table, long blogId) {
+		return jdbcTemplate.queryForInt("SELECT COUNT(*) FROM " + table + " WHERE "
+				+ (table.equals("BLOG") ? "ID" : "blogId") + " = ?", new Object[] { blogId });
+	}
+
+	@Test
+	public void testPurge() {
+		Timestamp deleted = new Timestamp(System.currentTimeMillis() - 1000L);
+		insertBlog(1L, deleted, 5);
+		insertBlog(2L, null, 3);
+		insertBlog(3L, deleted, 0);
+
+		job.run();
+
+		assertEquals(0, count("BLOG", 1L));
+		assertEquals(0, count("ARTICLE", 1L));
+		assertEquals(1, count("BLOG", 2L));
+		assertEquals(3, count("ARTICLE", 2L));
+		assertEquals(0, count("BLOG", 3L));
+
+		BlogPurgeJob.Result result = job.getResult();
+		assertEquals(2L, result.getBlogsPurged());
+		assertEquals(5L, result.getArticlesDeleted());
+		assertEquals(3L, result.getBatches());
+	}
+
+	@Test
+	public void testGrace() {
+		insertBlog(1L, new Timestamp(System.currentTimeMillis()), 1);
+		job.setGraceMillis(60000L);
+
+		job.run();
+
+		assertEquals(1, count("BLOG", 1L));
+		assertEquals(1, count("ARTICLE", 1L));
+		assertEquals(0L, job.getResult().getBlogsPurged());
+	}
+
+	@Test
+	public void testManyBlogs() {
+		Timestamp deleted = new Timestamp(System.currentTimeMillis() - 1000L);
+		for (long id = 1L; id <= 5L; ++id) {
+			insertBlog(id, deleted, 1);
+		}
+
+		job.run();
+
+		assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM BLOG"));
+		assertEquals(5L, job.getResult().getBlogsPurged());
+	}
+
+	@Test
+	public void testShards() {
+		DataSource shard1 = createDataSource();
+		JdbcTemplate shard1Template = new JdbcTemplate(shard1);
+		job.setDataSources(Arrays.asList(job.getDataSources().get(0), shard1));
+		Timestamp deleted = new Timestamp(System.currentTimeMillis() - 1000L);
+		insertBlog(1L, deleted, 2);
+		insertBlog(shard1Template, 2L, deleted, 3);
+		insertBlog(shard1Template, 3L, null, 1);
+
+		job.run();
+
+		assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM BLOG"));
+		assertEquals(1, shard1Template.queryForInt("SELECT COUNT(*) FROM BLOG"));
+		assertEquals(1, shard1Template.queryForInt("SELECT COUNT(*) FROM ARTICLE"));
+		assertEquals(2L, job.getResult().getBlogsPurged());
+		assertEquals(5L, job.getResult().getArticlesDeleted());
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.domain.ContentCodec;
+import greensopinion.restexample.jdbc.ContentRecompressionJob;
+
+import java.sql.Timestamp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Test {@link ContentRecompressionJob} using an HSQL database.
+ *
+ * @author David Green
+ */
+public class ContentRecompressionJobTest {
+
+	private static int databaseCount;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private ContentRecompressionJob job;
+
+	private final String longContent;
+
+	public ContentRecompressionJobTest() {
+		StringBuilder buf = new StringBuilder();
+		while (buf.length() < 10000) {
+			buf.append("some article content ");
+		}
+		longContent = buf.toString();
+	}
+
+	@Before
+	public void before() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:recompression"
+				+ (++databaseCount), "sa", "");
+		dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE ARTICLE (ID BIGINT NOT NULL, MODIFIED TIMESTAMP, CONTENT LONGVARBINARY, "
+				+ "PRIMARY KEY (ID))");
+
+		job = new ContentRecompressionJob();
+		job.setDataSource(dataSource);
+		job.setBatchSize(2);
+		job.setPauseMillis(0L);
+		job.setCompressionThreshold(100);
+	}
+
+	private void insert(long id, Timestamp modified, byte[] content) {
+		jdbcTemplate.update("INSERT INTO ARTICLE (ID, MODIFIED, CONTENT) VALUES (?, ?, ?)", new Object[] { id,
+				modified, content });
+	}
+
+	private byte[] content(long id) {
+		return jdbcTemplate.queryForObject("SELECT CONTENT FROM ARTICLE WHERE ID = ?", new Object[] { id },
+				byte[].class);
+	}
+
+	@Test
+	public void testRecompress() throws Exception {
+		Timestamp modified = new Timestamp(System.currentTimeMillis());
+		insert(1L, modified, longContent.getBytes("UTF-8"));
+		insert(2L, null, longContent.getBytes("UTF-8"));
+		insert(3L, modified, "short".getBytes("UTF-8"));
+		insert(4L, modified, ContentCodec.encode(longContent, 0));
+		insert(5L, modified, null);
+
+		job.run();
+
+		for (long id = 1L; id <= 4L; ++id) {
+			assertEquals(id == 3L ? "short" : longContent, ContentCodec.decode(content(id)));
+		}
+		assertTrue(ContentCodec.isCompressed(content(1L)));
+		assertTrue(ContentCodec.isCompressed(content(2L)));
+		assertFalse(ContentCodec.isCompressed(content(3L)));
+		assertEquals(modified, jdbcTemplate.queryForObject("SELECT MODIFIED FROM ARTICLE WHERE ID = 1",
+				Timestamp.class));
+
+		ContentRecompressionJob.Result result = job.getResult();
+		assertEquals(5L, result.getRowsRead());
+		assertEquals(2L, result.getRowsCompressed());
+		assertTrue(result.getBytesAfter() < result.getBytesBefore());
+		assertTrue(result.getCompressionRatio() < 0.1d);
+	}
+
+	@Test
+	public void testRepeatable() throws Exception {
+		insert(1L, null, longContent.getBytes("UTF-8"));
+		job.run();
+		job.run();
+		assertEquals(0L, job.getResult().getRowsCompressed());
+		assertEquals(longContent, ContentCodec.decode(content(1L)));
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.jdbc.ContentSweepJob;
+import greensopinion.restexample.service.ContentStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Test {@link ContentSweepJob} using HSQL databases.
+ *
+ * @author David Green
+ */
+public class ContentSweepJobTest {
+
+	private static int databaseCount;
+
+	private File root;
+
+	private ContentStore store;
+
+	private JdbcTemplate shard0;
+
+	private JdbcTemplate shard1;
+
+	private ContentSweepJob job;
+
+	@Before
+	public void before() throws IOException {
+		root = File.createTempFile("content", "");
+		root.delete();
+		store = new ContentStore();
+		store.setRoot(root);
+
+		DataSource dataSource0 = createDataSource();
+		DataSource dataSource1 = createDataSource();
+		shard0 = new JdbcTemplate(dataSource0);
+		shard1 = new JdbcTemplate(dataSource1);
+
+		job = new ContentSweepJob();
+		job.setContentStore(store);
+		job.setDataSources(Arrays.asList(dataSource0, dataSource1));
+		job.setBatchSize(2);
+		job.setPauseMillis(0L);
+		job.setGraceMillis(60000L);
+	}
+
+	private DataSource createDataSource() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:sweep" + (++databaseCount),
+				"sa", "");
+		dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+		new JdbcTemplate(dataSource).execute("CREATE TABLE ARTICLE (ID BIGINT NOT NULL, CONTENTREF VARCHAR(64), "
+				+ "PRIMARY KEY (ID))");
+		return dataSource;
+	}
+
+	@After
+	public void after() {
+		delete(root);
+	}
+
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private String put(String content, boolean old) {
+		String reference = store.put(content);
+		if (old) {
+			assertTrue(store.getFile(reference).setLastModified(System.currentTimeMillis() - 120000L));
+		}
+		return reference;
+	}
+
+	private void reference(JdbcTemplate shard, long id, String reference) {
+		shard.update("INSERT INTO ARTICLE (ID, CONTENTREF) VALUES (?, ?)", new Object[] { id, reference });
+	}
+
+	@Test
+	public void testSweep() {
+		String referenced0 = put("referenced by shard 0", true);
+		String referenced1 = put("referenced by shard 1", true);
+		String unreferenced = put("unreferenced", true);
+		String recent = put("recently stored", false);
+		reference(shard0, 1L, referenced0);
+		reference(shard0, 2L, null);
+		reference(shard1, 3L, referenced1);
+
+		job.run();
+
+		assertTrue(store.getFile(referenced0).exists());
+		assertTrue(store.getFile(referenced1).exists());
+		assertFalse(store.getFile(unreferenced).exists());
+		assertTrue(store.getFile(recent).exists());
+
+		ContentSweepJob.Result result = job.getResult();
+		assertEquals(3L, result.getFilesChecked());
+		assertEquals(1L, result.getFilesRemoved());
+		assertEquals(12L, result.getBytesRemoved());
+	}
+
+	@Test
+	public void testStoredAgainIsKept() {
+		String reference = put("stored again", true);
+		store.put("stored again");
+
+		job.run();
+
+		assertTrue(store.getFile(reference).exists());
+		assertEquals(0L, job.getResult().getFilesChecked());
+	}
+
+	@Test
+	public void testEmptyStore() {
+		job.run();
+
+		assertEquals(0L, job.getResult().getFilesChecked());
+	}
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.jdbc.ProfilingContext;
+import greensopinion.restexample.jdbc.ProfilingDataSource;
+import greensopinion.restexample.jdbc.SqlProfile;
+import greensopinion.restexample.jdbc.SqlProfileReporter;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Test {@link ProfilingDataSource}, {@link ProfilingContext} and {@link SqlProfileReporter}
+ *
+ * @author David Green
+ */
+public class ProfilingDataSourceTest {
+
+	private static final String SELECT_ARTICLES = "SELECT ID FROM ARTICLE WHERE blogId = ?";
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void before() {
+		jdbcTemplate = new JdbcTemplate(new ProfilingDataSource(ShardDatabases.create(1).get(0)));
+		for (long id = 1; id <= 3; ++id) {
+			jdbcTemplate.update("INSERT INTO BLOG (ID, CREATED, NAME) VALUES (?, ?, ?)", new Object[] { id,
+					new Timestamp(0L), "blog" + id });
+			for (long articleId = 1; articleId <= id; ++articleId) {
+				jdbcTemplate.update("INSERT INTO ARTICLE (ID, CREATED, TITLE, blogId) VALUES (?, ?, ?, ?)",
+						new Object[] { id * 10 + articleId, new Timestamp(0L), "title", id });
+			}
+		}
+	}
+
+	@Test
+	public void testStatementsGroupedBySql() {
+		SqlProfile profile = ProfilingContext.begin("test");
+		try {
+			List<Long> blogIds = jdbcTemplate.queryForList("SELECT ID FROM BLOG", Long.class);
+			for (Long blogId : blogIds) {
+				jdbcTemplate.queryForList(SELECT_ARTICLES, new Object[] { blogId }, Long.class);
+			}
+		} finally {
+			ProfilingContext.end(profile);
+		}
+		assertFalse(ProfilingContext.isActive());
+		assertEquals(4, profile.getStatementCount());
+		assertEquals(2, profile.getDistinctStatementCount());
+		assertEquals(9L, profile.getRowsRead());
+
+		SqlProfile.Statement mostFrequent = profile.getStatements().get(0);
+		assertEquals(SELECT_ARTICLES, mostFrequent.getSql());
+		assertEquals(3, mostFrequent.getCount());
+		assertEquals(6L, mostFrequent.getRowsRead());
+	}
+
+	@Test
+	public void testNestedProfiles() {
+		SqlProfile outer = ProfilingContext.begin("outer");
+		try {
+			jdbcTemplate.queryForList("SELECT ID FROM BLOG", Long.class);
+			SqlProfile inner = ProfilingContext.begin("inner");
+			try {
+				jdbcTemplate.update("UPDATE BLOG SET NAME = ? WHERE ID = ?", new Object[] { "renamed", 1L });
+			} finally {
+				ProfilingContext.end(inner);
+			}
+			assertEquals(1, inner.getStatementCount());
+			assertEquals(0L, inner.getRowsRead());
+		} finally {
+			ProfilingContext.end(outer);
+		}
+		assertEquals(2, outer.getStatementCount());
+		assertEquals(3L, outer.getRowsRead());
+	}
+
+	@Test
+	public void testNotProfiledOutsideOfProfile() {
+		SqlProfile profile = ProfilingContext.begin("test");
+		ProfilingContext.end(profile);
+		jdbcTemplate.queryForList("SELECT ID FROM BLOG", Long.class);
+		assertEquals(0, profile.getStatementCount());
+	}
+
+	@Test
+	public void testReporterDetectsRepeatedStatements() {
+		SqlProfileReporter reporter = new SqlProfileReporter();
+		reporter.setMaxRepeatedStatements(2);
+
+		SqlProfile profile = ProfilingContext.begin("test");
+		try {
+			jdbcTemplate.queryForList(SELECT_ARTICLES, new Object[] { 1L }, Long.class);
+			jdbcTemplate.queryForList(SELECT_ARTICLES, new Object[] { 2L }, Long.class);
+		} finally {
+			ProfilingContext.end(profile);
+		}
+		assertFalse(reporter.report(profile));
+
+		profile = ProfilingContext.begin("test");
+		try {
+			for (long blogId = 1; blogId <= 3; ++blogId) {
+				jdbcTemplate.queryForList(SELECT_ARTICLES, new Object[] { blogId }, Long.class);
+			}
+		} finally {
+			ProfilingContext.end(profile);
+		}
+		assertTrue(reporter.report(profile));
+	}
+}
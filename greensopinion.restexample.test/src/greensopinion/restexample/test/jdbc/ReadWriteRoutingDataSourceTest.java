@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import greensopinion.restexample.jdbc.ReadWriteRoutingDataSource;
+import greensopinion.restexample.jdbc.RoutingContext;
+
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test {@link ReadWriteRoutingDataSource} using two HSQL instances standing in for the primary and a replica.
+ *
+ * @author David Green
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+	private DataSource primary;
+
+	private DataSource replica;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private DataSourceTransactionManager transactionManager;
+
+	@Before
+	public void before() {
+		primary = createDatabase("primary");
+		replica = createDatabase("replica");
+
+		ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource();
+		routingDataSource.setPrimary(primary);
+		routingDataSource.setReplicas(Collections.singletonList(replica));
+		routingDataSource.afterPropertiesSet();
+
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		transactionManager = new DataSourceTransactionManager(dataSource);
+	}
+
+	@After
+	public void after() {
+		RoutingContext.end();
+		new JdbcTemplate(primary).execute("DROP TABLE server");
+		new JdbcTemplate(replica).execute("DROP TABLE server");
+	}
+
+	private DataSource createDatabase(String name) {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:" + name, "sa", "");
+		dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+		JdbcTemplate template = new JdbcTemplate(dataSource);
+		template.execute("CREATE TABLE server (name VARCHAR(20))");
+		template.update("INSERT INTO server (name) VALUES (?)", new Object[] { name });
+		return dataSource;
+	}
+
+	@Test
+	public void testReadWriteTransactionUsesPrimary() {
+		assertEquals("primary", queryServerName(false));
+	}
+
+	@Test
+	public void testReadOnlyTransactionUsesReplica() {
+		assertEquals("replica", queryServerName(true));
+	}
+
+	@Test
+	public void testNoTransactionUsesPrimary() {
+		assertEquals("primary", jdbcTemplate.queryForObject("SELECT name FROM server", String.class));
+	}
+
+	@Test
+	public void testPinnedToPrimary() {
+		RoutingContext.begin(true);
+		assertEquals("primary", queryServerName(true));
+	}
+
+	@Test
+	public void testReadYourWrites() {
+		RoutingContext.begin(false);
+		assertEquals("replica", queryServerName(true));
+		assertEquals("primary", queryServerName(false));
+		assertEquals("primary", queryServerName(true));
+
+		RoutingContext.end();
+		assertEquals("replica", queryServerName(true));
+	}
+
+	@Test
+	public void testPinnedScopeRestoresEnclosingScope() {
+		RoutingContext.begin(false);
+		Object enclosingScope = RoutingContext.beginPinned();
+		assertEquals("primary", queryServerName(true));
+		RoutingContext.restore(enclosingScope);
+		assertEquals("replica", queryServerName(true));
+
+		RoutingContext.end();
+		enclosingScope = RoutingContext.beginPinned();
+		assertEquals("primary", queryServerName(true));
+		RoutingContext.restore(enclosingScope);
+		assertEquals("replica", queryServerName(true));
+	}
+
+	private String queryServerName(boolean readOnly) {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setReadOnly(readOnly);
+		return transactionTemplate.execute(new TransactionCallback<String>() {
+			public String doInTransaction(TransactionStatus status) {
+				return jdbcTemplate.queryForObject("SELECT name FROM server", String.class);
+			}
+		});
+	}
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import greensopinion.restexample.jdbc.SchemaMigration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Test {@link SchemaMigration} using an HSQL database.
+ *
+ * @author David Green
+ */
+public class SchemaMigrationTest {
+
+	private static int databaseCount;
+
+	private SchemaMigration migration;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void before() {
+		// a new database for each test, since in-memory databases outlive the test
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:migration" + (++databaseCount),
+				"sa", "");
+		dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+
+		migration = new SchemaMigration();
+		migration.setDataSource(dataSource);
+		migration.setLocationPattern("classpath*:greensopinion/restexample/test/jdbc/migration/V*.sql");
+	}
+
+	@Test
+	public void testMigrate() throws Exception {
+		assertEquals(0, migration.getCurrentVersion());
+		assertEquals(2, migration.migrate());
+		assertEquals(2, migration.getCurrentVersion());
+		assertEquals("first", jdbcTemplate.queryForObject("SELECT NAME FROM BLOG WHERE DESCRIPTION IS NULL",
+				String.class));
+	}
+
+	@Test
+	public void testMigrateIsRepeatable() throws Exception {
+		migration.migrate();
+		assertEquals(0, migration.migrate());
+		assertEquals(2, migration.getCurrentVersion());
+		assertEquals(1, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM BLOG"));
+	}
+
+	@Test
+	public void testMigrateFromPreviousVersion() throws Exception {
+		jdbcTemplate.execute("CREATE TABLE SCHEMA_VERSION (VERSION INTEGER NOT NULL, DESCRIPTION VARCHAR(200), "
+				+ "APPLIED TIMESTAMP, PRIMARY KEY (VERSION))");
+		jdbcTemplate.execute("CREATE TABLE BLOG (ID BIGINT NOT NULL, NAME VARCHAR(255), PRIMARY KEY (ID))");
+		jdbcTemplate.update("INSERT INTO SCHEMA_VERSION (VERSION) VALUES (1)");
+		assertEquals(1, migration.migrate());
+		assertEquals(0, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM BLOG"));
+	}
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Creates HSQL instances standing in for the shards of a sharded database, with the tables used by sharding.
+ *
+ * @author David Green
+ */
+class ShardDatabases {
+
+	private static int databaseCount;
+
+	private ShardDatabases() {
+	}
+
+	static synchronized List<DataSource> create(int count) {
+		List<DataSource> shards = new ArrayList<DataSource>();
+		for (int x = 0; x < count; ++x) {
+			DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:shard"
+					+ (++databaseCount), "sa", "");
+			dataSource.setDriverClassName("org.hsqldb.jdbcDriver");
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+			jdbcTemplate.execute("CREATE TABLE BLOG (ID BIGINT NOT NULL, CREATED TIMESTAMP NOT NULL, "
+					+ "MODIFIED TIMESTAMP, NAME VARCHAR(255), PRIMARY KEY (ID))");
+			jdbcTemplate.execute("CREATE TABLE ARTICLE (ID BIGINT NOT NULL, CREATED TIMESTAMP NOT NULL, "
+					+ "MODIFIED TIMESTAMP, TITLE VARCHAR(255) NOT NULL, CONTENT LONGVARBINARY, blogId BIGINT NOT NULL, "
+					+ "PRIMARY KEY (ID), FOREIGN KEY (blogId) REFERENCES BLOG (ID))");
+			jdbcTemplate.execute("CREATE TABLE SEQUENCE (SEQ_NAME VARCHAR(50) NOT NULL, SEQ_COUNT DECIMAL(38), "
+					+ "PRIMARY KEY (SEQ_NAME))");
+			jdbcTemplate.execute("INSERT INTO SEQUENCE (SEQ_NAME, SEQ_COUNT) VALUES ('SHARD_ID', 0)");
+			jdbcTemplate.execute("CREATE TABLE SHARD_OVERRIDE (ID BIGINT NOT NULL, SHARD INTEGER NOT NULL, "
+					+ "PRIMARY KEY (ID))");
+			shards.add(dataSource);
+		}
+		return shards;
+	}
+}
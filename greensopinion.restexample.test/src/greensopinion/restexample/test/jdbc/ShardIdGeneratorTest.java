@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.jdbc.ShardIdGenerator;
+import greensopinion.restexample.jdbc.ShardMap;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Test {@link ShardIdGenerator} using HSQL instances standing in for shards.
+ *
+ * @author David Green
+ */
+public class ShardIdGeneratorTest {
+
+	private ShardMap shardMap;
+
+	private ShardIdGenerator generator;
+
+	@Before
+	public void before() {
+		shardMap = new ShardMap();
+		shardMap.setShards(ShardDatabases.create(2));
+		generator = new ShardIdGenerator();
+		generator.setShardMap(shardMap);
+		generator.setAllocationSize(10);
+	}
+
+	@Test
+	public void testIdsAreUniqueAcrossShards() {
+		Set<Long> ids = new HashSet<Long>();
+		for (int x = 0; x < 25; ++x) {
+			for (int shard = 0; shard < 2; ++shard) {
+				long id = generator.nextId(shard);
+				assertTrue(ids.add(id));
+				assertEquals(shard, shardMap.getShard(id));
+			}
+		}
+	}
+
+	@Test
+	public void testAllocatesBlocks() {
+		for (int x = 0; x < 11; ++x) {
+			generator.nextId(1);
+		}
+		assertEquals(20L, new JdbcTemplate(shardMap.getDataSource(1)).queryForLong(
+				"SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = 'SHARD_ID'"));
+		assertEquals(0L, new JdbcTemplate(shardMap.getDataSource(0)).queryForLong(
+				"SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = 'SHARD_ID'"));
+	}
+
+	@Test
+	public void testAnotherGeneratorDoesNotReuseIds() {
+		ShardIdGenerator other = new ShardIdGenerator();
+		other.setShardMap(shardMap);
+		Set<Long> ids = new HashSet<Long>();
+		for (int x = 0; x < 100; ++x) {
+			assertTrue(ids.add(generator.nextId(0)));
+			assertTrue(ids.add(other.nextId(0)));
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.jdbc.ShardMap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test {@link ShardMap} using HSQL instances standing in for shards.
+ *
+ * @author David Green
+ */
+public class ShardMapTest {
+
+	private ShardMap shardMap;
+
+	@Before
+	public void before() {
+		shardMap = new ShardMap();
+		shardMap.setShards(ShardDatabases.create(3));
+	}
+
+	@Test
+	public void testHomeShard() {
+		long id = ShardMap.toShardedId(12345L, 2);
+		assertTrue(id < (1L << 53));
+		assertEquals(2, ShardMap.getHomeShard(id));
+		assertEquals(2, shardMap.getShard(id));
+		assertTrue(ShardMap.toShardedId(1L, 0) != ShardMap.toShardedId(1L, 1));
+	}
+
+	@Test
+	public void testIdsAllocatedBeforeShardingBelongToFirstShard() {
+		assertEquals(0, ShardMap.getHomeShard(1025L));
+		assertEquals(0, shardMap.getShard(1025L));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testShardNotConfigured() {
+		shardMap.getShard(ShardMap.toShardedId(1L, 3));
+	}
+
+	@Test
+	public void testMove() {
+		long id = ShardMap.toShardedId(1L, 0);
+		shardMap.move(Collections.singletonList(id), 2);
+		assertEquals(2, shardMap.getShard(id));
+
+		// another instance reads the directory
+		ShardMap other = new ShardMap();
+		other.setShards(shardMap.getShards());
+		assertEquals(2, other.getShard(id));
+
+		shardMap.move(Collections.singletonList(id), 0);
+		assertEquals(0, shardMap.getShard(id));
+		other.refresh();
+		assertEquals(0, other.getShard(id));
+	}
+
+	@Test
+	public void testSelectShard() {
+		Set<Integer> selected = new HashSet<Integer>();
+		for (int x = 0; x < 3; ++x) {
+			selected.add(shardMap.selectShard());
+		}
+		assertEquals(new HashSet<Integer>(Arrays.asList(0, 1, 2)), selected);
+
+		shardMap.setPlacementShards(Arrays.asList(1));
+		assertEquals(1, shardMap.selectShard());
+		assertEquals(1, shardMap.selectShard());
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import greensopinion.restexample.jdbc.ShardIdGenerator;
+import greensopinion.restexample.jdbc.ShardMap;
+import greensopinion.restexample.jdbc.ShardRebalancer;
+
+import java.sql.Timestamp;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Test {@link ShardRebalancer} using HSQL instances standing in for shards.
+ *
+ * @author David Green
+ */
+public class ShardRebalancerTest {
+
+	private ShardMap shardMap;
+
+	private ShardIdGenerator generator;
+
+	private ShardRebalancer rebalancer;
+
+	@Before
+	public void before() {
+		shardMap = new ShardMap();
+		shardMap.setShards(ShardDatabases.create(2));
+		generator = new ShardIdGenerator();
+		generator.setShardMap(shardMap);
+		rebalancer = new ShardRebalancer();
+		rebalancer.setShardMap(shardMap);
+	}
+
+	private JdbcTemplate shard(int index) {
+		return new JdbcTemplate(shardMap.getDataSource(index));
+	}
+
+	private long createBlog(int shard, int articleCount) {
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		long blogId = generator.nextId(shard);
+		shard(shard).update("INSERT INTO BLOG (ID, CREATED, MODIFIED, NAME) VALUES (?, ?, ?, ?)", new Object[] {
+				blogId, now, now, "blog" });
+		for (int x = 0; x < articleCount; ++x) {
+			shard(shard).update(
+					"INSERT INTO ARTICLE (ID, CREATED, MODIFIED, TITLE, CONTENT, blogId) VALUES (?, ?, ?, ?, ?, ?)",
+					new Object[] { generator.nextId(shard), now, now, "title" + x, new byte[] { 1, 2, (byte) x },
+							blogId });
+		}
+		return blogId;
+	}
+
+	private int countArticles(int shard, long blogId) {
+		return shard(shard).queryForInt("SELECT COUNT(*) FROM ARTICLE WHERE blogId = ?", new Object[] { blogId });
+	}
+
+	@Test
+	public void testMove() {
+		long blogId = createBlog(0, 3);
+		long otherBlogId = createBlog(0, 1);
+
+		assertEquals(3, rebalancer.move(blogId, 1));
+
+		assertEquals(1, shardMap.getShard(blogId));
+		assertEquals(0, countArticles(0, blogId));
+		assertEquals(3, countArticles(1, blogId));
+		assertEquals(0, shard(0).queryForInt("SELECT COUNT(*) FROM BLOG WHERE ID = ?", new Object[] { blogId }));
+		assertEquals("blog", shard(1).queryForObject("SELECT NAME FROM BLOG WHERE ID = ?", new Object[] { blogId },
+				String.class));
+		assertArrayEquals(new byte[] { 1, 2, 2 }, shard(1).queryForObject(
+				"SELECT CONTENT FROM ARTICLE WHERE TITLE = 'title2'", byte[].class));
+		Long articleId = shard(1).queryForLong("SELECT MIN(ID) FROM ARTICLE WHERE blogId = ?",
+				new Object[] { blogId });
+		assertEquals(1, shardMap.getShard(articleId));
+
+		assertEquals(0, shardMap.getShard(otherBlogId));
+		assertEquals(1, countArticles(0, otherBlogId));
+	}
+
+	@Test
+	public void testMoveBack() {
+		long blogId = createBlog(1, 2);
+		rebalancer.move(blogId, 0);
+		rebalancer.move(blogId, 1);
+
+		assertEquals(1, shardMap.getShard(blogId));
+		assertEquals(2, countArticles(1, blogId));
+		assertEquals(0, countArticles(0, blogId));
+		assertEquals(0, shard(0).queryForInt("SELECT COUNT(*) FROM SHARD_OVERRIDE"));
+	}
+
+	@Test
+	public void testMoveReplacesRowsOfFailedMove() {
+		long blogId = createBlog(0, 2);
+		// rows left on the target by an attempt that failed before the directory was updated
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		shard(1).update("INSERT INTO BLOG (ID, CREATED, NAME) VALUES (?, ?, ?)", new Object[] { blogId, now, "old" });
+
+		rebalancer.move(blogId, 1);
+		assertEquals("blog", shard(1).queryForObject("SELECT NAME FROM BLOG WHERE ID = ?", new Object[] { blogId },
+				String.class));
+		assertEquals(2, countArticles(1, blogId));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMoveMissingBlog() {
+		rebalancer.move(generator.nextId(0), 1);
+	}
+}
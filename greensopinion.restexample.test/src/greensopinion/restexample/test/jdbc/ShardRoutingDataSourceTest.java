@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import greensopinion.restexample.jdbc.ShardContext;
+import greensopinion.restexample.jdbc.ShardRoutingDataSource;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test {@link ShardRoutingDataSource} and {@link ShardContext} using HSQL instances standing in for shards.
+ *
+ * @author David Green
+ */
+public class ShardRoutingDataSourceTest {
+
+	private JdbcTemplate jdbcTemplate;
+
+	private TransactionTemplate transactionTemplate;
+
+	@Before
+	public void before() {
+		List<DataSource> shards = ShardDatabases.create(2);
+		for (int x = 0; x < shards.size(); ++x) {
+			new JdbcTemplate(shards.get(x)).update("INSERT INTO BLOG (ID, CREATED, NAME) VALUES (?, ?, ?)",
+					new Object[] { 1L, new Timestamp(0L), "shard" + x });
+		}
+		ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+		routingDataSource.setShards(shards);
+		routingDataSource.afterPropertiesSet();
+
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+	}
+
+	@After
+	public void after() {
+		ShardContext.restore(null);
+	}
+
+	private String queryShardName() {
+		return jdbcTemplate.queryForObject("SELECT NAME FROM BLOG WHERE ID = 1", String.class);
+	}
+
+	@Test
+	public void testNoShardUsesFirstShard() {
+		assertNull(ShardContext.getCurrentShard());
+		assertEquals("shard0", queryShardName());
+	}
+
+	@Test
+	public void testEnterAndRestore() {
+		Integer previous = ShardContext.enter(1);
+		assertEquals("shard1", queryShardName());
+		Integer nested = ShardContext.enter(0);
+		assertEquals("shard0", queryShardName());
+		ShardContext.restore(nested);
+		assertEquals("shard1", queryShardName());
+		ShardContext.restore(previous);
+		assertNull(ShardContext.getCurrentShard());
+	}
+
+	@Test
+	public void testShardEnteredWithinTransaction() {
+		assertEquals("shard1", transactionTemplate.execute(new TransactionCallback<String>() {
+			public String doInTransaction(TransactionStatus status) {
+				ShardContext.enter(1);
+				return queryShardName();
+			}
+		}));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTransactionCannotSpanShards() {
+		transactionTemplate.execute(new TransactionCallback<String>() {
+			public String doInTransaction(TransactionStatus status) {
+				ShardContext.enter(1);
+				ShardContext.enter(0);
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void testTransactionShardIsReleasedOnCompletion() {
+		testShardEnteredWithinTransaction();
+		ShardContext.restore(null);
+		assertEquals("shard0", transactionTemplate.execute(new TransactionCallback<String>() {
+			public String doInTransaction(TransactionStatus status) {
+				ShardContext.enter(0);
+				return queryShardName();
+			}
+		}));
+	}
+}
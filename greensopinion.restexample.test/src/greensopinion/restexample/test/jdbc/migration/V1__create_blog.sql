@@ -0,0 +1,2 @@
+CREATE TABLE BLOG (ID BIGINT NOT NULL, NAME VARCHAR(255), PRIMARY KEY (ID));
+INSERT INTO BLOG (ID, NAME) VALUES (1, 'first');
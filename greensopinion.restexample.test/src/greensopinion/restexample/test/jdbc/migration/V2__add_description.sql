@@ -0,0 +1,2 @@
+-- a later version, applied after V1
+ALTER TABLE BLOG ADD COLUMN DESCRIPTION VARCHAR(255);
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.load;
+
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.test.data.Dataset;
+import greensopinion.restexample.test.data.DatasetGenerator;
+import greensopinion.restexample.test.domain.MockFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link LoadOperation Operations} on a {@link BlogService}, typically a client, against data that is seeded using
+ * {@link MockFactory} or a {@link DatasetGenerator}.
+ *
+ * @author David Green
+ */
+public class BlogWorkload {
+
+	private abstract static class BlogOperation implements LoadOperation {
+		private final String name;
+
+		private final boolean write;
+
+		protected BlogOperation(String name, boolean write) {
+			this.name = name;
+			this.write = write;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public boolean isWrite() {
+			return write;
+		}
+	}
+
+	private final BlogService service;
+
+	private final List<Long> blogIds = new ArrayList<Long>();
+
+	private final List<Long> articleIds = new ArrayList<Long>();
+
+	private long listWindowMillis = 60000L;
+
+	/**
+	 * @param service
+	 *            the service under test
+	 */
+	public BlogWorkload(BlogService service) {
+		this.service = service;
+	}
+
+	/**
+	 * create the blogs and articles that operations act on
+	 *
+	 * @param seedService
+	 *            the service used to create data, which may differ from the service under test
+	 * @param blogCount
+	 *            the number of blogs to create
+	 * @param articlesPerBlog
+	 *            the number of articles to create in each blog
+	 */
+	public void seed(BlogService seedService, int blogCount, int articlesPerBlog) {
+		for (Blog blog : MockFactory.on(Blog.class).create(null, blogCount)) {
+			Blog newBlog = seedService.createBlog(blog);
+			addBlogId(newBlog.getId());
+			for (Article article : MockFactory.on(Article.class).create(null, articlesPerBlog)) {
+				addArticleId(seedService.createArticle(newBlog.getId(), article).getId());
+			}
+		}
+	}
+
+	/**
+	 * act on the blogs and articles of a generated dataset
+	 */
+	public void seed(Dataset dataset) {
+		for (int x = 0; x < dataset.getBlogCount(); ++x) {
+			addBlogId(dataset.getBlogId(x));
+		}
+		for (long x = 0; x < dataset.getArticleCount(); ++x) {
+			addArticleId(dataset.getArticleId(x));
+		}
+	}
+
+	/**
+	 * the operations of this workload by name: getBlog, getArticle, listArticles, createBlog, createArticle and
+	 * updateArticle
+	 */
+	public Map<String, LoadOperation> getOperations() {
+		Map<String, LoadOperation> operations = new LinkedHashMap<String, LoadOperation>();
+		add(operations, new BlogOperation("getBlog", false) {
+			public void execute(Random random) {
+				service.getBlog(randomBlogId(random));
+			}
+		});
+		add(operations, new BlogOperation("getArticle", false) {
+			public void execute(Random random) {
+				service.getArticle(randomArticleId(random));
+			}
+		});
+		add(operations, new BlogOperation("listArticles", false) {
+			public void execute(Random random) {
+				service.listArticles(randomBlogId(random), new Date(System.currentTimeMillis() - listWindowMillis));
+			}
+		});
+		add(operations, new BlogOperation("createBlog", true) {
+			public void execute(Random random) {
+				addBlogId(service.createBlog(MockFactory.on(Blog.class).create(null)).getId());
+			}
+		});
+		add(operations, new BlogOperation("createArticle", true) {
+			public void execute(Random random) {
+				Article article = service.createArticle(randomBlogId(random), MockFactory.on(Article.class)
+						.create(null));
+				addArticleId(article.getId());
+			}
+		});
+		add(operations, new BlogOperation("updateArticle", true) {
+			public void execute(Random random) {
+				Article article = MockFactory.on(Article.class).create(null);
+				article.setId(randomArticleId(random));
+				service.updateArticle(article);
+			}
+		});
+		return operations;
+	}
+
+	private void add(Map<String, LoadOperation> operations, LoadOperation operation) {
+		operations.put(operation.getName(), operation);
+	}
+
+	private synchronized void addBlogId(Long blogId) {
+		blogIds.add(blogId);
+	}
+
+	private synchronized void addArticleId(Long articleId) {
+		articleIds.add(articleId);
+	}
+
+	private synchronized Long randomBlogId(Random random) {
+		if (blogIds.isEmpty()) {
+			throw new IllegalStateException("no blogs, was the workload seeded?");
+		}
+		return blogIds.get(random.nextInt(blogIds.size()));
+	}
+
+	private synchronized Long randomArticleId(Random random) {
+		if (articleIds.isEmpty()) {
+			throw new IllegalStateException("no articles, was the workload seeded?");
+		}
+		return articleIds.get(random.nextInt(articleIds.size()));
+	}
+
+	public long getListWindowMillis() {
+		return listWindowMillis;
+	}
+
+	/**
+	 * the age of the oldest article returned by listArticles
+	 */
+	public void setListWindowMillis(long listWindowMillis) {
+		this.listWindowMillis = listWindowMillis;
+	}
+}
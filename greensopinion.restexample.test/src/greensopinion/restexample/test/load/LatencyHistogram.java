@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of latencies in nanoseconds with log-linear buckets. Values are recorded with a relative
+ * error of less than 2%, using a fixed amount of memory regardless of the number or range of recorded values.
+ *
+ * @author David Green
+ */
+public class LatencyHistogram {
+
+	/**
+	 * values below this are recorded exactly; above, each power of two is divided into {@link #HALF_SUB_BUCKETS}
+	 * buckets
+	 */
+	private static final int SUB_BUCKETS = 128;
+
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+	private static final int SUB_BUCKET_BITS = 7;
+
+	private static final int BUCKET_COUNT = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong totalCount = new AtomicLong();
+
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * record a single latency
+	 *
+	 * @param nanos
+	 *            the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucketIndex(nanos));
+		totalCount.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get())) {
+			if (maxNanos.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+	}
+
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+		return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) ((value >>> shift) - HALF_SUB_BUCKETS);
+	}
+
+	/**
+	 * the highest value that is recorded in the bucket with the given index
+	 */
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+		long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	public long getCount() {
+		return totalCount.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public double getMeanNanos() {
+		long count = totalCount.get();
+		return count == 0 ? 0d : totalNanos.get() / (double) count;
+	}
+
+	/**
+	 * compute the value at the given percentile
+	 *
+	 * @param percentile
+	 *            the percentile, for example 99.9
+	 * @return the latency in nanoseconds at or below which the given percentage of recorded values fall, or 0 if no
+	 *         values were recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = totalCount.get();
+		if (count == 0) {
+			return 0L;
+		}
+		long target = Math.max(1L, (long) Math.ceil((percentile / 100d) * count));
+		long cumulative = 0L;
+		for (int x = 0; x < BUCKET_COUNT; ++x) {
+			cumulative += counts.get(x);
+			if (cumulative >= target) {
+				return Math.min(bucketUpperBound(x), maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+}
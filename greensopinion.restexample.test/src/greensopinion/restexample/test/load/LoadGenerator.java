@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.load;
+
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates load at a constant rate (open loop). Operations are scheduled at fixed intervals regardless of how long
+ * previous operations take, and latency is measured from the time at which each operation was scheduled to start
+ * rather than from when a thread became available to run it. In this way time spent waiting behind slow operations is
+ * included in the reported latency, avoiding coordinated omission.
+ * <p>
+ * Operations that are scheduled during the warmup period are executed but not measured.
+ * </p>
+ *
+ * @author David Green
+ * @see LoadReport
+ */
+public class LoadGenerator {
+
+	private int rate = 100;
+
+	private int concurrency = 16;
+
+	private long warmupMillis = 10000L;
+
+	private long durationMillis = 60000L;
+
+	private long seed = 1L;
+
+	/**
+	 * run the given mix of operations
+	 *
+	 * @return a report of the measurement period
+	 */
+	public LoadReport run(OperationMix mix) {
+		final LoadReport report = new LoadReport(mix.getOperations());
+		report.setDescription(String.format("rate %d/s, concurrency %d, warmup %d ms, duration %d ms, mix %s", rate,
+				concurrency, warmupMillis, durationMillis, mix));
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		final AtomicLong seeds = new AtomicLong(seed);
+		final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+			@Override
+			protected Random initialValue() {
+				return new Random(seeds.incrementAndGet());
+			}
+		};
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "load-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.prestartAllCoreThreads();
+
+		final Random scheduleRandom = new Random(seed);
+		final long intervalNanos = Math.max(1L, TimeUnit.SECONDS.toNanos(1) / rate);
+		final long start = System.nanoTime();
+		final long warmupEnd = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+		final long end = warmupEnd + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		final AtomicLong lastCompletion = new AtomicLong(warmupEnd);
+		int maxBacklog = 0;
+
+		try {
+			for (long x = 0;; ++x) {
+				final long intendedStart = start + x * intervalNanos;
+				if (intendedStart - end >= 0) {
+					break;
+				}
+				sleepUntil(intendedStart);
+
+				final LoadOperation operation = mix.select(scheduleRandom);
+				final boolean measured = intendedStart - warmupEnd >= 0;
+				executor.execute(new Runnable() {
+					public void run() {
+						Throwable error = null;
+						try {
+							operation.execute(random.get());
+						} catch (Throwable t) {
+							error = t;
+						}
+						long completion = System.nanoTime();
+						if (measured) {
+							if (error == null) {
+								report.recordSuccess(operation, completion - intendedStart);
+							} else {
+								report.recordError(operation, error);
+							}
+							long last;
+							while (completion - (last = lastCompletion.get()) > 0) {
+								if (lastCompletion.compareAndSet(last, completion)) {
+									break;
+								}
+							}
+						}
+					}
+				});
+				if (measured) {
+					maxBacklog = Math.max(maxBacklog, executor.getQueue().size());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		try {
+			if (!executor.awaitTermination(Math.max(durationMillis, 60000L), TimeUnit.MILLISECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+		}
+		report.setElapsedNanos(Math.max(end, lastCompletion.get()) - warmupEnd);
+		report.setMaxBacklog(maxBacklog);
+		return report;
+	}
+
+	private void sleepUntil(long nanoTime) {
+		long remaining;
+		while ((remaining = nanoTime - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+
+	public int getRate() {
+		return rate;
+	}
+
+	/**
+	 * the number of operations to start per second
+	 */
+	public void setRate(int rate) {
+		if (rate <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.rate = rate;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * the number of threads executing operations, which limits the number of operations in progress at any one time
+	 */
+	public void setConcurrency(int concurrency) {
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.concurrency = concurrency;
+	}
+
+	public long getWarmupMillis() {
+		return warmupMillis;
+	}
+
+	public void setWarmupMillis(long warmupMillis) {
+		this.warmupMillis = warmupMillis;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * the length of the measurement period, which follows warmup
+	 */
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * the seed used to select operations, so that runs are repeatable
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.load;
+
+import java.util.Random;
+
+/**
+ * An operation that is executed by the {@link LoadGenerator}. Implementations must be thread-safe.
+ *
+ * @author David Green
+ */
+public interface LoadOperation {
+
+	/**
+	 * the name of the operation as it appears in reports
+	 */
+	public String getName();
+
+	/**
+	 * indicate if this operation modifies data
+	 */
+	public boolean isWrite();
+
+	/**
+	 * execute the operation once
+	 *
+	 * @param random
+	 *            a source of randomness that is confined to the calling thread
+	 * @throws Exception
+	 *             if the operation failed, in which case it is counted as an error
+	 */
+	public void execute(Random random) throws Exception;
+}
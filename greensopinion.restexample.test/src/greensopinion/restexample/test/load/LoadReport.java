@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.load;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The results of a {@link LoadGenerator} run: latency and throughput per operation.
+ *
+ * @author David Green
+ */
+public class LoadReport {
+
+	public static class OperationStatistics {
+		private final String name;
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		private final AtomicLong errors = new AtomicLong();
+
+		private final AtomicReference<String> firstError = new AtomicReference<String>();
+
+		OperationStatistics(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * the latency of successful operations, measured from the time at which the operation was scheduled to start
+		 */
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		public long getErrors() {
+			return errors.get();
+		}
+
+		public String getFirstError() {
+			return firstError.get();
+		}
+	}
+
+	private final Map<String, OperationStatistics> statisticsByOperation = new LinkedHashMap<String, OperationStatistics>();
+
+	private final OperationStatistics total = new OperationStatistics("total");
+
+	private String description;
+
+	private long elapsedNanos;
+
+	private int maxBacklog;
+
+	LoadReport(List<LoadOperation> operations) {
+		for (LoadOperation operation : operations) {
+			statisticsByOperation.put(operation.getName(), new OperationStatistics(operation.getName()));
+		}
+	}
+
+	void recordSuccess(LoadOperation operation, long latencyNanos) {
+		statisticsByOperation.get(operation.getName()).latency.record(latencyNanos);
+		total.latency.record(latencyNanos);
+	}
+
+	void recordError(LoadOperation operation, Throwable error) {
+		OperationStatistics statistics = statisticsByOperation.get(operation.getName());
+		statistics.errors.incrementAndGet();
+		total.errors.incrementAndGet();
+		statistics.firstError.compareAndSet(null, error.toString());
+	}
+
+	void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	void setDescription(String description) {
+		this.description = description;
+	}
+
+	void setMaxBacklog(int maxBacklog) {
+		this.maxBacklog = maxBacklog;
+	}
+
+	/**
+	 * the length of the measurement period, from the end of warmup until the last measured operation completed
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * the largest number of operations that were waiting for a thread during the measurement period. A growing backlog
+	 * indicates that the target rate exceeds the capacity of the system under test.
+	 */
+	public int getMaxBacklog() {
+		return maxBacklog;
+	}
+
+	public OperationStatistics getStatistics(String operationName) {
+		return statisticsByOperation.get(operationName);
+	}
+
+	public OperationStatistics getTotal() {
+		return total;
+	}
+
+	/**
+	 * the number of completed operations per second, including errors
+	 */
+	public double getThroughput(OperationStatistics statistics) {
+		if (elapsedNanos == 0) {
+			return 0d;
+		}
+		return (statistics.latency.getCount() + statistics.getErrors()) / (elapsedNanos / 1000000000d);
+	}
+
+	public void print(PrintWriter out) {
+		if (description != null) {
+			out.println(description);
+		}
+		out.println(String.format("measured %.1f s, max backlog %d", elapsedNanos / 1000000000d, maxBacklog));
+		out.println(String.format("%-16s %10s %8s %12s %10s %10s %10s %10s", "operation", "count", "errors",
+				"ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+		for (OperationStatistics statistics : statisticsByOperation.values()) {
+			print(out, statistics);
+		}
+		print(out, total);
+		for (OperationStatistics statistics : statisticsByOperation.values()) {
+			if (statistics.getFirstError() != null) {
+				out.println(String.format("first %s error: %s", statistics.getName(), statistics.getFirstError()));
+			}
+		}
+	}
+
+	private void print(PrintWriter out, OperationStatistics statistics) {
+		LatencyHistogram latency = statistics.latency;
+		out.println(String.format("%-16s %10d %8d %12.1f %10.2f %10.2f %10.2f %10.2f", statistics.getName(),
+				latency.getCount(), statistics.getErrors(), getThroughput(statistics),
+				millis(latency.getValueAtPercentile(50d)), millis(latency.getValueAtPercentile(99d)),
+				millis(latency.getValueAtPercentile(99.9d)), millis(latency.getMaxNanos())));
+	}
+
+	/**
+	 * the report as a table, as {@link #print(PrintWriter) printed}
+	 */
+	@Override
+	public String toString() {
+		StringWriter buf = new StringWriter();
+		PrintWriter out = new PrintWriter(buf);
+		print(out);
+		out.flush();
+		return buf.toString();
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1000000d;
+	}
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.load;
+
+import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.test.data.DatasetGenerator;
+import greensopinion.restexample.test.util.TestUtil;
+import greensopinion.restexample.test.web.BlogServiceClientTest;
+import greensopinion.restexample.test.web.WebApplicationContainer;
+import greensopinion.restexample.web.BlogServiceClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Drives {@link BlogServiceClient} against the web application running in a {@link WebApplicationContainer} and
+ * reports throughput and latency per operation. Run as a Java application with optional <code>name=value</code>
+ * arguments, for example:
+ *
+ * <pre>
+ * java greensopinion.restexample.test.load.LoadTest rate=500 concurrency=32 warmup=10 duration=60 \
+ *     mix=getArticle=70,listArticles=10,createArticle=10,updateArticle=10 blogs=10 articles=100
+ * </pre>
+ *
+ * <code>warmup</code> and <code>duration</code> are in seconds. The {@link LoadReport report} is logged at INFO, and
+ * the reports of runs with the same arguments can be compared across releases. With <code>dataset=directory</code>
+ * the blogs and articles are created by a {@link DatasetGenerator}, with a Zipfian number of articles per blog, and
+ * snapshotted to the directory so that later runs restore them instead of generating them again.
+ *
+ * @author David Green
+ * @see LoadGenerator
+ */
+public class LoadTest {
+
+	private static final Logger log = Logger.getLogger(LoadTest.class.getName());
+
+	private static final String DEFAULT_MIX = "getBlog=10,getArticle=60,listArticles=10,createArticle=10,updateArticle=10";
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = parseOptions(args);
+
+		LoadGenerator generator = new LoadGenerator();
+		generator.setRate(Integer.parseInt(option(options, "rate", "100")));
+		generator.setConcurrency(Integer.parseInt(option(options, "concurrency", "16")));
+		generator.setWarmupMillis(Long.parseLong(option(options, "warmup", "10")) * 1000L);
+		generator.setDurationMillis(Long.parseLong(option(options, "duration", "60")) * 1000L);
+		generator.setSeed(Long.parseLong(option(options, "seed", "1")));
+
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("/applicationContext-load.xml");
+		try {
+			WebApplicationContainer webContainer = context.getBean(WebApplicationContainer.class);
+			webContainer.setWebRoot(computeWebRoot());
+			webContainer.start();
+			try {
+				BlogServiceClient client = context.getBean(BlogServiceClient.class);
+				client.setBaseUrl(webContainer.getBaseUrl() + "api");
+
+				BlogWorkload workload = new BlogWorkload(client);
+				int blogs = Integer.parseInt(option(options, "blogs", "10"));
+				int articles = Integer.parseInt(option(options, "articles", "100"));
+				String datasetDirectory = options.get("dataset");
+				if (datasetDirectory == null) {
+					workload.seed((BlogService) context.getBean("blogService"), blogs, articles);
+				} else {
+					DatasetGenerator datasetGenerator = new DatasetGenerator();
+					datasetGenerator.setSeed(generator.getSeed());
+					datasetGenerator.setBlogCount(blogs);
+					datasetGenerator.setArticleCount((long) blogs * articles);
+					// as configured by persistence-test.xml
+					datasetGenerator.setCompressionThreshold(0);
+					workload.seed(datasetGenerator.load((DataSource) context.getBean("dataSource"), new File(
+							datasetDirectory)));
+				}
+
+				OperationMix mix = OperationMix.parse(option(options, "mix", DEFAULT_MIX), workload.getOperations());
+				log.info("Load test results:\n" + generator.run(mix));
+			} finally {
+				webContainer.stop();
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	private static File computeWebRoot() {
+		// the web application used by BlogServiceClientTest serves the controller from the parent context
+		File folder = new File(TestUtil.computeClasspathRoot(LoadTest.class).getParentFile(), "resources/"
+				+ BlogServiceClientTest.class.getSimpleName());
+		if (!folder.exists()) {
+			throw new IllegalStateException(folder.getAbsolutePath());
+		}
+		return folder;
+	}
+
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			int index = arg.indexOf('=');
+			if (index <= 0) {
+				throw new IllegalArgumentException("Expected name=value but got " + arg);
+			}
+			options.put(arg.substring(0, index), arg.substring(index + 1));
+		}
+		return options;
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null ? defaultValue : value;
+	}
+}
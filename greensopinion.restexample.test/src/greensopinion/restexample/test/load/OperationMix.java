@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A weighted mix of {@link LoadOperation operations}. Usage:
+ *
+ * <pre><code>
+ * OperationMix mix = new OperationMix().add(getArticle, 80).add(updateArticle, 20);
+ * </code></pre>
+ *
+ * @author David Green
+ */
+public class OperationMix {
+
+	private final List<LoadOperation> operations = new ArrayList<LoadOperation>();
+
+	private final List<Integer> cumulativeWeights = new ArrayList<Integer>();
+
+	private int totalWeight;
+
+	/**
+	 * add an operation to the mix
+	 *
+	 * @param operation
+	 *            the operation
+	 * @param weight
+	 *            the relative frequency of the operation, must be 0 or greater
+	 * @return this mix
+	 */
+	public OperationMix add(LoadOperation operation, int weight) {
+		if (weight < 0) {
+			throw new IllegalArgumentException("weight must not be negative: " + weight);
+		}
+		if (weight > 0) {
+			totalWeight += weight;
+			operations.add(operation);
+			cumulativeWeights.add(totalWeight);
+		}
+		return this;
+	}
+
+	/**
+	 * parse a mix specification of the form <code>name=weight,name=weight</code>
+	 *
+	 * @param specification
+	 *            the specification, for example <code>getArticle=80,updateArticle=20</code>
+	 * @param operationsByName
+	 *            the available operations
+	 * @return the mix
+	 * @throws IllegalArgumentException
+	 *             if the specification is malformed or names an unknown operation
+	 */
+	public static OperationMix parse(String specification, Map<String, LoadOperation> operationsByName) {
+		OperationMix mix = new OperationMix();
+		for (String part : specification.split(",")) {
+			String[] nameAndWeight = part.trim().split("=");
+			if (nameAndWeight.length != 2) {
+				throw new IllegalArgumentException("Expected name=weight but got " + part);
+			}
+			LoadOperation operation = operationsByName.get(nameAndWeight[0].trim());
+			if (operation == null) {
+				throw new IllegalArgumentException("Unknown operation " + nameAndWeight[0] + ", expected one of "
+						+ operationsByName.keySet());
+			}
+			mix.add(operation, Integer.parseInt(nameAndWeight[1].trim()));
+		}
+		return mix;
+	}
+
+	/**
+	 * select an operation according to the weights of the mix
+	 */
+	public LoadOperation select(Random random) {
+		if (totalWeight == 0) {
+			throw new IllegalStateException("no operations");
+		}
+		int value = random.nextInt(totalWeight);
+		for (int x = 0; x < operations.size(); ++x) {
+			if (value < cumulativeWeights.get(x)) {
+				return operations.get(x);
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	public List<LoadOperation> getOperations() {
+		return Collections.unmodifiableList(operations);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		int previousWeight = 0;
+		for (int x = 0; x < operations.size(); ++x) {
+			if (x > 0) {
+				buf.append(',');
+			}
+			int weight = cumulativeWeights.get(x);
+			buf.append(operations.get(x).getName()).append('=').append(weight - previousWeight);
+			previousWeight = weight;
+		}
+		return buf.toString();
+	}
+}
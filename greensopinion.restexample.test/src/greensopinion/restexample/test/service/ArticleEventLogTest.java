@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.service.ArticleEvent;
+import greensopinion.restexample.service.ArticleEventLog;
+import greensopinion.restexample.service.ArticleEvents;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test {@link ArticleEventLog}
+ * 
+ * @author David Green
+ */
+public class ArticleEventLogTest {
+
+	private final ArticleEventLog log = new ArticleEventLog();
+
+	private final List<ArticleEvents> received = new ArrayList<ArticleEvents>();
+
+	private final ArticleEventLog.Subscriber subscriber = new ArticleEventLog.Subscriber() {
+		public void events(ArticleEvents events) {
+			received.add(events);
+		}
+	};
+
+	@Test
+	public void testReadEventsOfBlog() throws InterruptedException {
+		ArticleEvents start = log.read(1L, null, 0L, 0L);
+		assertFalse(start.isReset());
+		assertTrue(start.getEvents().isEmpty());
+
+		log.publish(ArticleEvent.TYPE_CREATED, 1L, 10L, new Date(5L));
+		log.publish(ArticleEvent.TYPE_CREATED, 2L, 20L, new Date(6L));
+		log.publish(ArticleEvent.TYPE_UPDATED, 1L, 10L, new Date(7L));
+
+		ArticleEvents events = log.read(1L, start.getStream(), start.getLastEventId(), 0L);
+		assertFalse(events.isReset());
+		assertEquals(2, events.getEvents().size());
+		assertEquals(ArticleEvent.TYPE_CREATED, events.getEvents().get(0).getType());
+		assertEquals(ArticleEvent.TYPE_UPDATED, events.getEvents().get(1).getType());
+		assertEquals(Long.valueOf(10L), events.getEvents().get(1).getArticleId());
+		assertEquals(3L, events.getLastEventId());
+
+		assertTrue(log.read(1L, events.getStream(), events.getLastEventId(), 0L).getEvents().isEmpty());
+	}
+
+	@Test
+	public void testReadWithoutStreamStartsAfterLastEvent() throws InterruptedException {
+		log.publish(ArticleEvent.TYPE_CREATED, 1L, 10L, null);
+		ArticleEvents events = log.read(1L, null, 0L, 0L);
+		assertTrue(events.getEvents().isEmpty());
+		assertEquals(1L, events.getLastEventId());
+	}
+
+	@Test
+	public void testMaxBatchSize() throws InterruptedException {
+		log.setMaxBatchSize(2);
+		for (long x = 0; x < 3; ++x) {
+			log.publish(ArticleEvent.TYPE_CREATED, 1L, x, null);
+		}
+		ArticleEvents events = log.read(1L, log.getStream(), 0L, 0L);
+		assertEquals(2, events.getEvents().size());
+		events = log.read(1L, log.getStream(), events.getLastEventId(), 0L);
+		assertEquals(1, events.getEvents().size());
+		assertEquals(Long.valueOf(2L), events.getEvents().get(0).getArticleId());
+	}
+
+	@Test
+	public void testResetWhenEventsAreNoLongerRetained() throws InterruptedException {
+		log.setCapacity(2);
+		for (long x = 0; x < 3; ++x) {
+			log.publish(ArticleEvent.TYPE_CREATED, 1L, x, null);
+		}
+		assertTrue(log.read(1L, log.getStream(), 0L, 0L).isReset());
+		ArticleEvents events = log.read(1L, log.getStream(), 1L, 0L);
+		assertFalse(events.isReset());
+		assertEquals(2, events.getEvents().size());
+	}
+
+	@Test
+	public void testResetWhenStreamIsUnknown() throws InterruptedException {
+		log.publish(ArticleEvent.TYPE_CREATED, 1L, 10L, null);
+		ArticleEvents events = log.read(1L, "another", 0L, 0L);
+		assertTrue(events.isReset());
+		assertEquals(log.getStream(), events.getStream());
+		assertEquals(1L, events.getLastEventId());
+	}
+
+	@Test
+	public void testWaitForEvent() throws InterruptedException {
+		final long lastEventId = log.getLastEventId();
+		Thread publisher = new Thread() {
+			@Override
+			public void run() {
+				while (log.getWaiterCount() == 0) {
+					Thread.yield();
+				}
+				log.publish(ArticleEvent.TYPE_CREATED, 2L, 20L, null);
+				log.publish(ArticleEvent.TYPE_CREATED, 1L, 10L, null);
+			}
+		};
+		publisher.start();
+		ArticleEvents events = log.read(1L, log.getStream(), lastEventId, 10000L);
+		publisher.join();
+		assertEquals(1, events.getEvents().size());
+		assertEquals(Long.valueOf(10L), events.getEvents().get(0).getArticleId());
+		assertEquals(0, log.getWaiterCount());
+	}
+
+	@Test
+	public void testMaxWaiters() throws InterruptedException {
+		log.setMaxWaiters(0);
+		long start = System.currentTimeMillis();
+		assertTrue(log.read(1L, null, 0L, 10000L).getEvents().isEmpty());
+		assertTrue(System.currentTimeMillis() - start < 5000L);
+	}
+
+	@Test
+	public void testSubscribeReceivesPublishedEvents() {
+		assertNull(log.subscribe(1L, null, 0L, subscriber));
+		assertEquals(1, log.getWaiterCount());
+
+		log.publish(ArticleEvent.TYPE_CREATED, 2L, 20L, null);
+		assertTrue(received.isEmpty());
+		log.publish(ArticleEvent.TYPE_CREATED, 1L, 10L, null);
+		assertEquals(1, received.size());
+		ArticleEvents events = received.get(0);
+		assertEquals(1, events.getEvents().size());
+		assertEquals(Long.valueOf(10L), events.getEvents().get(0).getArticleId());
+		assertEquals(2L, events.getLastEventId());
+		assertEquals(0, log.getWaiterCount());
+
+		log.publish(ArticleEvent.TYPE_UPDATED, 1L, 10L, null);
+		assertEquals(1, received.size());
+		assertNull(log.unsubscribe(subscriber));
+	}
+
+	@Test
+	public void testSubscribeReturnsPendingEvents() {
+		log.publish(ArticleEvent.TYPE_CREATED, 1L, 10L, null);
+		ArticleEvents events = log.subscribe(1L, log.getStream(), 0L, subscriber);
+		assertNotNull(events);
+		assertEquals(1, events.getEvents().size());
+		assertTrue(log.subscribe(1L, "another", 0L, subscriber).isReset());
+		assertEquals(0, log.getWaiterCount());
+	}
+
+	@Test
+	public void testUnsubscribe() {
+		assertNull(log.subscribe(1L, null, 0L, subscriber));
+		log.publish(ArticleEvent.TYPE_CREATED, 2L, 20L, null);
+		ArticleEvents events = log.unsubscribe(subscriber);
+		assertNotNull(events);
+		assertTrue(events.getEvents().isEmpty());
+		assertEquals(1L, events.getLastEventId());
+		assertEquals(0, log.getWaiterCount());
+
+		log.publish(ArticleEvent.TYPE_CREATED, 1L, 10L, null);
+		assertTrue(received.isEmpty());
+	}
+
+	@Test
+	public void testSubscribeWithMaxWaiters() {
+		log.setMaxWaiters(1);
+		assertNull(log.subscribe(1L, null, 0L, subscriber));
+		ArticleEvents events = log.subscribe(1L, null, 0L, new ArticleEventLog.Subscriber() {
+			public void events(ArticleEvents events) {
+				throw new IllegalStateException();
+			}
+		});
+		assertNotNull(events);
+		assertTrue(events.getEvents().isEmpty());
+		assertEquals(1, log.getWaiterCount());
+	}
+}
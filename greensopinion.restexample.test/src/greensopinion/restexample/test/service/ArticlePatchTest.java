@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.service.ArticlePatch;
+import greensopinion.restexample.service.ConflictException;
+import greensopinion.restexample.service.InvalidRequestException;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test {@link ArticlePatch}
+ *
+ * @author David Green
+ */
+public class ArticlePatchTest {
+
+	@Test
+	public void testFieldsArePresentOnlyWhenSet() {
+		ArticlePatch patch = new ArticlePatch().setTitle("a title").setAuthor(null);
+		assertTrue(patch.has(ArticlePatch.TITLE));
+		assertTrue(patch.has(ArticlePatch.AUTHOR));
+		assertNull(patch.getAuthor());
+		assertFalse(patch.has(ArticlePatch.PUBLISHED));
+		assertFalse(patch.hasContentChange());
+		assertEquals(2, patch.getChanges().size());
+	}
+
+	@Test
+	public void testPublishedAsJson() {
+		Map<String, Object> changes = new HashMap<String, Object>();
+		changes.put(ArticlePatch.PUBLISHED, 1000);
+		assertEquals(new Date(1000L), new ArticlePatch(changes).getPublished());
+	}
+
+	@Test
+	public void testContentEdits() {
+		String content = "the quick brown fox";
+		ArticlePatch patch = new ArticlePatch().setBaseContentDigest(ArticlePatch.digest(content));
+		patch.addContentEdit(4, 5, "slow").addContentEdit(19, 0, " jumps");
+		patch.validate();
+		assertEquals("the slow brown fox jumps", patch.applyContent(content));
+	}
+
+	@Test(expected = ConflictException.class)
+	public void testContentEditsOfModifiedContent() {
+		ArticlePatch patch = new ArticlePatch().setBaseContentDigest(ArticlePatch.digest("original"));
+		patch.addContentEdit(0, 1, "O");
+		patch.applyContent("modified");
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testContentEditsOutOfOrder() {
+		String content = "the quick brown fox";
+		ArticlePatch patch = new ArticlePatch().setBaseContentDigest(ArticlePatch.digest(content));
+		patch.addContentEdit(10, 5, "red").addContentEdit(4, 5, "slow");
+		patch.applyContent(content);
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testContentEditsRequireDigest() {
+		new ArticlePatch().addContentEdit(0, 0, "text").validate();
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testUnknownField() {
+		new ArticlePatch(Collections.<String, Object> singletonMap("id", 5L)).validate();
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testNullTitle() {
+		new ArticlePatch().setTitle(null).validate();
+	}
+}
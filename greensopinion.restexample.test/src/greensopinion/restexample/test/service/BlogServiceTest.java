@@ -11,15 +11,29 @@
 package greensopinion.restexample.test.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import greensopinion.restexample.domain.Article;
 import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.ArticlePatch;
+import greensopinion.restexample.service.BlogExportHandler;
 import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.service.ConflictException;
+import greensopinion.restexample.service.FieldSelection;
+import greensopinion.restexample.service.NotFoundException;
 import greensopinion.restexample.test.domain.MockFactory;
+import greensopinion.restexample.test.util.PerformanceBudget;
+import greensopinion.restexample.test.util.StatementCountingDataSource;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -48,6 +62,24 @@ public class BlogServiceTest {
 	@Qualifier("main")
 	@Autowired
 	protected BlogService service;
+
+	@Autowired
+	protected StatementCountingDataSource dataSource;
+	
+	/**
+	 * begin measuring the work done by a call to the {@link #service}
+	 */
+	protected PerformanceBudget measure() {
+		return PerformanceBudget.measure(dataSource);
+	}
+	
+	/**
+	 * the most bytes that listing 1000 articles may allocate. Measured at 1.5-1.7 MB with EclipseLink 2.4.2 and 
+	 * woven entities on a 64-bit HotSpot VM.
+	 */
+	protected long listArticlesAllocationBudget() {
+		return 4L * 1024L * 1024L;
+	}
 	
 	@Test	
 	public void testCreateBlog() {
@@ -148,4 +180,315 @@ public class BlogServiceTest {
 		assertEquals(newArticle.getTitle(), article.getTitle());
 		assertEquals(newArticle.getContent(), article.getContent());
 	}
+
+	@Test
+	public void testGetArticleStatementBudget() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Article newArticle = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		entityManager.clear();
+		
+		PerformanceBudget budget = measure();
+		service.getArticle(newArticle.getId());
+		budget.assertStatementCount(1);
+	}
+	
+	@Test
+	public void testCreateArticleDoesNotLoadArticles() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		entityManager.clear();
+		
+		PerformanceBudget budget = measure();
+		service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		// select the blog and insert the article, plus the statements of allocating a block of ids
+		budget.assertMaxStatementCount(4);
+		
+		Blog managedBlog = entityManager.find(Blog.class, blog.getId());
+		assertFalse(entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(managedBlog, "articles"));
+	}
+	
+	@Test
+	public void testListArticlesAllocationBudget() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		
+		Date created = new Date(System.currentTimeMillis()-(24*60*60*1000));
+		final int numArticles = 1000;
+		for (int x = 0;x<numArticles;++x) {
+			Article article = MockFactory.on(Article.class).create(null);
+			article.setCreated(created);
+			article.setBlog(blog);
+			entityManager.persist(article);
+		}
+		entityManager.flush();
+		entityManager.clear();
+		
+		// prepare the query without reading any articles
+		service.listArticles(blog.getId(), new Date(System.currentTimeMillis()+(24*60*60*1000)));
+		
+		PerformanceBudget budget = measure();
+		List<Article> articles = service.listArticles(blog.getId(), created);
+		assertEquals(numArticles,articles.size());
+		// the blog of each article is lazy, so only the articles are selected
+		budget.assertStatementCount(1).assertMaxAllocatedBytes(listArticlesAllocationBudget());
+	}
+
+	@Test
+	public void testPatchArticle() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Article article = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		entityManager.clear();
+		
+		Article patchedArticle = service.patchArticle(article.getId(), new ArticlePatch().setTitle("patched"));
+		assertEquals("patched", patchedArticle.getTitle());
+		assertEquals(article.getAuthor(), patchedArticle.getAuthor());
+		assertNull(patchedArticle.getContent());
+		
+		entityManager.clear();
+		Article updatedArticle = service.getArticle(article.getId());
+		assertEquals("patched", updatedArticle.getTitle());
+		assertEquals(article.getContent(), updatedArticle.getContent());
+	}
+	
+	@Test
+	public void testPatchArticleContentEdits() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Article article = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		String content = article.getContent();
+		
+		ArticlePatch patch = new ArticlePatch().setBaseContentDigest(ArticlePatch.digest(content));
+		patch.addContentEdit(0, 1, "edited ");
+		Article patchedArticle = service.patchArticle(article.getId(), patch);
+		assertEquals("edited " + content.substring(1), patchedArticle.getContent());
+		assertEquals(article.getTitle(), patchedArticle.getTitle());
+	}
+	
+	@Test(expected = ConflictException.class)
+	public void testPatchArticleContentEditsConflict() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Article article = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		
+		ArticlePatch patch = new ArticlePatch().setBaseContentDigest(ArticlePatch.digest(article.getContent() + "x"));
+		patch.addContentEdit(0, 1, "edited ");
+		service.patchArticle(article.getId(), patch);
+	}
+
+	@Test
+	public void testGetBlogFields() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		entityManager.flush();
+		entityManager.clear();
+		
+		Blog selectedBlog = service.getBlog(blog.getId(), FieldSelection.parse("name", FieldSelection.BLOG_FIELDS));
+		assertEquals(blog.getId(),selectedBlog.getId());
+		assertEquals(blog.getName(),selectedBlog.getName());
+		assertNull(selectedBlog.getCreated());
+	}
+	
+	@Test
+	public void testGetArticleFields() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Article newArticle = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		entityManager.clear();
+		
+		Set<String> fields = FieldSelection.parse("title", FieldSelection.ARTICLE_FIELDS);
+		PerformanceBudget budget = measure();
+		Article article = service.getArticle(newArticle.getId(), fields);
+		budget.assertStatementCount(1);
+		assertEquals(newArticle.getId(),article.getId());
+		assertEquals(newArticle.getTitle(),article.getTitle());
+		assertNull(article.getContent());
+		assertNull(article.getAuthor());
+		
+		article = service.getArticle(newArticle.getId(), FieldSelection.parse("content", FieldSelection.ARTICLE_FIELDS));
+		assertEquals(newArticle.getContent(),article.getContent());
+		assertNull(article.getTitle());
+	}
+	
+	@Test
+	public void testListArticlesFields() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Date now = new Date(System.currentTimeMillis()-1000L);
+		Article newArticle = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		entityManager.clear();
+		
+		List<Article> articles = service.listArticles(blog.getId(), now, FieldSelection.parse("title,modified", FieldSelection.ARTICLE_FIELDS));
+		assertEquals(1,articles.size());
+		assertEquals(newArticle.getId(),articles.get(0).getId());
+		assertEquals(newArticle.getTitle(),articles.get(0).getTitle());
+		assertNotNull(articles.get(0).getModified());
+		assertNull(articles.get(0).getContent());
+	}
+	
+	@Test(expected = NotFoundException.class)
+	public void testGetArticleFieldsNotFound() {
+		service.getArticle(-1L, FieldSelection.parse("title", FieldSelection.ARTICLE_FIELDS));
+	}
+
+	@Test
+	public void testListRecentArticleIds() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Date since = new Date(System.currentTimeMillis()-(24*60*60*1000));
+		Long[] ids = new Long[3];
+		for (int x = 0;x<ids.length;++x) {
+			Article article = MockFactory.on(Article.class).create(null);
+			article.setCreated(new Date(since.getTime()+(x*1000L)));
+			ids[x] = service.createArticle(blog.getId(), article).getId();
+		}
+		Article oldArticle = MockFactory.on(Article.class).create(null);
+		oldArticle.setCreated(new Date(since.getTime()-1000L));
+		service.createArticle(blog.getId(), oldArticle);
+		entityManager.clear();
+		
+		assertEquals(Arrays.asList(ids[2],ids[1]),service.listRecentArticleIds(blog.getId(), since, 2));
+		assertEquals(Arrays.asList(ids[2],ids[1],ids[0]),service.listRecentArticleIds(blog.getId(), since, 10));
+		assertEquals(4,service.listRecentArticleIds(blog.getId(), null, 10).size());
+	}
+	
+	@Test(expected = NotFoundException.class)
+	public void testListRecentArticleIdsBlogNotFound() {
+		service.listRecentArticleIds(-1L, null, 10);
+	}
+
+	@Test
+	public void testCreateArticles() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		List<Article> articles = new ArrayList<Article>();
+		for (int x = 0;x<3;++x) {
+			articles.add(MockFactory.on(Article.class).create(null));
+		}
+		List<Long> ids = service.createArticles(blog.getId(), articles);
+		entityManager.clear();
+		
+		assertEquals(3,ids.size());
+		for (int x = 0;x<ids.size();++x) {
+			assertEquals(articles.get(x).getTitle(),service.getArticle(ids.get(x)).getTitle());
+		}
+	}
+	
+	@Test
+	public void testCreateArticlesIgnoresContentRef() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Article article = MockFactory.on(Article.class).create(null);
+		article.setContent(null);
+		article.setContentRef("forged");
+		List<Long> ids = service.createArticles(blog.getId(), Arrays.asList(article));
+		entityManager.clear();
+		
+		assertNull(entityManager.find(Article.class, ids.get(0)).getContentRef());
+	}
+	
+	@Test(expected = NotFoundException.class)
+	public void testCreateArticlesBlogNotFound() {
+		service.createArticles(-1L, Arrays.asList(MockFactory.on(Article.class).create(null)));
+	}
+
+	@Test
+	public void testExportBlog() throws IOException {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		final List<Long> ids = new ArrayList<Long>();
+		for (int x = 0;x<3;++x) {
+			ids.add(service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null)).getId());
+		}
+		entityManager.clear();
+		
+		final List<Object> exported = new ArrayList<Object>();
+		service.exportBlog(blog.getId(), new BlogExportHandler() {
+			public void blog(Blog blog) {
+				exported.add(blog.getName());
+			}
+			public void article(Article article) {
+				assertNotNull(article.getContent());
+				exported.add(article.getId());
+			}
+		});
+		assertEquals(Arrays.<Object> asList(blog.getName(),ids.get(0),ids.get(1),ids.get(2)),exported);
+	}
+	
+	@Test(expected = NotFoundException.class)
+	public void testExportBlogNotFound() throws IOException {
+		service.exportBlog(-1L, new BlogExportHandler() {
+			public void blog(Blog blog) {
+				fail();
+			}
+			public void article(Article article) {
+				fail();
+			}
+		});
+	}
+
+	@Test
+	public void testDeleteArticle() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Article article = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		Article otherArticle = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		entityManager.clear();
+		
+		service.deleteArticle(article.getId());
+		entityManager.clear();
+		
+		assertNull(entityManager.find(Article.class, article.getId()));
+		assertFalse(articleIds(service.listArticles(blog.getId(), new Date(0L))).contains(article.getId()));
+		assertEquals(Arrays.asList(otherArticle.getId()),service.listRecentArticleIds(blog.getId(), null, 10));
+	}
+	
+	private List<Long> articleIds(List<Article> articles) {
+		List<Long> ids = new ArrayList<Long>(articles.size());
+		for (Article article: articles) {
+			ids.add(article.getId());
+		}
+		return ids;
+	}
+	
+	@Test(expected = NotFoundException.class)
+	public void testDeleteArticleNotFound() {
+		service.deleteArticle(-1L);
+	}
+
+	@Test
+	public void testDeleteBlog() {
+		Blog blog = MockFactory.on(Blog.class).create(entityManager);
+		Article article = service.createArticle(blog.getId(), MockFactory.on(Article.class).create(null));
+		entityManager.clear();
+		
+		service.deleteBlog(blog.getId());
+		entityManager.clear();
+		
+		// the rows remain until they are purged
+		assertNotNull(entityManager.find(Blog.class, blog.getId()).getDeleted());
+		try {
+			service.getBlog(blog.getId());
+			fail();
+		} catch (NotFoundException e) {
+			// expected
+		}
+		try {
+			service.getArticle(article.getId());
+			fail();
+		} catch (NotFoundException e) {
+			// expected
+		}
+		assertFalse(articleIds(service.listArticles(blog.getId(), new Date(0L))).contains(article.getId()));
+	}
+	
+	@Test(expected = NotFoundException.class)
+	public void testDeleteBlogNotFound() {
+		service.deleteBlog(-1L);
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testGetBlogNotFound() {
+		service.getBlog(-1L);
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testGetArticleNotFound() {
+		service.getArticle(-1L);
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testUpdateArticleNotFound() {
+		Article article = MockFactory.on(Article.class).create(null);
+		article.setId(-1L);
+		service.updateArticle(article);
+	}
 }
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.service.ContentStore;
+import greensopinion.restexample.service.InvalidRequestException;
+import greensopinion.restexample.service.NotFoundException;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test {@link ContentStore}
+ *
+ * @author David Green
+ */
+public class ContentStoreTest {
+
+	private File root;
+
+	private ContentStore store;
+
+	@Before
+	public void before() throws IOException {
+		root = File.createTempFile("content", "");
+		root.delete();
+		store = new ContentStore();
+		store.setRoot(root);
+	}
+
+	@After
+	public void after() {
+		delete(root);
+	}
+
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testPutAndGet() {
+		String reference = store.put("some content é");
+		assertTrue(reference.matches("[0-9a-f]{64}"));
+		assertEquals("some content é", store.get(reference));
+		assertTrue(store.getFile(reference).isFile());
+		assertEquals(15L, store.getFile(reference).length());
+	}
+
+	@Test
+	public void testDuplicateContentIsStoredOnce() {
+		String reference = store.put("same");
+		assertEquals(reference, store.put("same"));
+		assertFalse(reference.equals(store.put("different")));
+		File[] files = store.getFile(reference).getParentFile().listFiles();
+		assertEquals(1, files.length);
+	}
+
+	@Test
+	public void testDuplicateContentTouchesFile() {
+		String reference = store.put("same");
+		File file = store.getFile(reference);
+		assertTrue(file.setLastModified(1000L));
+		store.put("same");
+		assertTrue(file.lastModified() > 1000L);
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testGetMissing() {
+		store.get("0000000000000000000000000000000000000000000000000000000000000000");
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testInvalidReference() {
+		store.getFile("../../etc/passwd");
+	}
+}
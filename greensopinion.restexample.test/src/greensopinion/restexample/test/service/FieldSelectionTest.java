@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.service.FieldSelection;
+import greensopinion.restexample.service.InvalidRequestException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Test {@link FieldSelection}
+ *
+ * @author David Green
+ */
+public class FieldSelectionTest {
+
+	@Test
+	public void testParseAll() {
+		assertNull(FieldSelection.parse(null, FieldSelection.ARTICLE_FIELDS));
+		assertNull(FieldSelection.parse(" ", FieldSelection.ARTICLE_FIELDS));
+	}
+
+	@Test
+	public void testParseIncludesId() {
+		Set<String> fields = FieldSelection.parse("title, modified", FieldSelection.ARTICLE_FIELDS);
+		assertEquals(Arrays.asList("id", "title", "modified"), new ArrayList<String>(fields));
+		assertEquals("id,title,modified", FieldSelection.format(fields));
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testParseUnknownField() {
+		FieldSelection.parse("title,blog", FieldSelection.ARTICLE_FIELDS);
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testParseContentRef() {
+		FieldSelection.parse("title,contentRef", FieldSelection.ARTICLE_FIELDS);
+	}
+
+	@Test
+	public void testToMap() {
+		Article article = new Article();
+		article.setId(3L);
+		article.setTitle("a title");
+		article.setContent("some content");
+		Map<String, Object> values = FieldSelection.toMap(article, FieldSelection.parse("title",
+				FieldSelection.ARTICLE_FIELDS));
+		assertEquals(2, values.size());
+		assertEquals(3L, values.get("id"));
+		assertEquals("a title", values.get("title"));
+	}
+
+	@Test
+	public void testSetAndGet() {
+		Article article = new Article();
+		for (String field : FieldSelection.ARTICLE_FIELDS) {
+			assertNull(FieldSelection.get(article, field));
+		}
+		FieldSelection.set(article, "author", "an author");
+		assertEquals("an author", article.getAuthor());
+	}
+}
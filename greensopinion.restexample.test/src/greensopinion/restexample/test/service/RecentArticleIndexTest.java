@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import greensopinion.restexample.service.RecentArticleIndex;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Test {@link RecentArticleIndex}
+ *
+ * @author David Green
+ */
+public class RecentArticleIndexTest {
+
+	private final RecentArticleIndex index = new RecentArticleIndex();
+
+	@Test
+	public void testNotLoaded() {
+		assertNull(index.latest(1L, 0L, 10));
+		index.add(1L, 100L, 5L);
+		assertNull(index.latest(1L, 0L, 10));
+		assertEquals(0, index.getBlogCount());
+	}
+
+	@Test
+	public void testLatest() {
+		load(1L, new long[] { 300L, 200L, 100L }, new long[] { 3L, 2L, 1L });
+		assertEquals(Arrays.asList(3L, 2L), index.latest(1L, 0L, 2));
+		// the blog's articles are all held
+		assertEquals(Arrays.asList(3L, 2L, 1L), index.latest(1L, 0L, 10));
+		assertEquals(Arrays.asList(3L, 2L), index.latest(1L, 200L, 10));
+		assertEquals(Collections.emptyList(), index.latest(1L, 301L, 10));
+
+		index.add(1L, 400L, 4L);
+		index.add(1L, 250L, 5L);
+		index.add(1L, 400L, 4L);
+		assertEquals(Arrays.asList(4L, 3L, 5L, 2L, 1L), index.latest(1L, 0L, 10));
+	}
+
+	@Test
+	public void testCapacity() {
+		index.setCapacity(3);
+		load(1L, new long[] { 300L, 200L, 100L }, new long[] { 3L, 2L, 1L });
+		// there may be older articles that are not held
+		assertNull(index.latest(1L, 0L, 4));
+		assertEquals(Arrays.asList(3L, 2L, 1L), index.latest(1L, 0L, 3));
+		assertEquals(Arrays.asList(3L, 2L), index.latest(1L, 150L, 4));
+
+		index.add(1L, 400L, 4L);
+		assertEquals(Arrays.asList(4L, 3L, 2L), index.latest(1L, 0L, 3));
+		assertNull(index.latest(1L, 150L, 4));
+		index.add(1L, 50L, 5L);
+		assertEquals(Arrays.asList(4L, 3L, 2L), index.latest(1L, 0L, 3));
+		assertEquals(index.getBytesPerBlog(), index.getSize());
+	}
+
+	@Test
+	public void testAddedWhileLoading() {
+		index.beginLoad(1L);
+		index.add(1L, 400L, 4L);
+		assertNull(index.latest(1L, 0L, 10));
+		index.load(1L, new long[] { 400L, 300L }, new long[] { 4L, 3L });
+		assertEquals(Arrays.asList(4L, 3L), index.latest(1L, 0L, 10));
+	}
+
+	@Test
+	public void testInvalidatedWhileLoading() {
+		index.beginLoad(1L);
+		index.invalidate(1L);
+		index.load(1L, new long[] { 300L }, new long[] { 3L });
+		assertNull(index.latest(1L, 0L, 10));
+	}
+
+	@Test
+	public void testRemove() {
+		index.setCapacity(3);
+		load(1L, new long[] { 300L, 200L, 100L }, new long[] { 3L, 2L, 1L });
+		index.remove(1L, 2L);
+		index.remove(1L, 5L);
+		assertEquals(Arrays.asList(3L, 1L), index.latest(1L, 0L, 2));
+		index.add(1L, 400L, 4L);
+		assertEquals(Arrays.asList(4L, 3L, 1L), index.latest(1L, 0L, 3));
+	}
+
+	@Test
+	public void testRemovedWhileLoading() {
+		index.beginLoad(1L);
+		index.remove(1L, 3L);
+		index.load(1L, new long[] { 300L }, new long[] { 3L });
+		assertNull(index.latest(1L, 0L, 10));
+	}
+
+	@Test
+	public void testMaxBlogs() {
+		index.setMaxBlogs(2);
+		load(1L, new long[] { 100L }, new long[] { 1L });
+		load(2L, new long[] { 100L }, new long[] { 2L });
+		index.latest(1L, 0L, 1);
+		load(3L, new long[] { 100L }, new long[] { 3L });
+		assertEquals(2, index.getBlogCount());
+		assertEquals(Arrays.asList(1L), index.latest(1L, 0L, 1));
+		assertNull(index.latest(2L, 0L, 1));
+		assertEquals(2L * index.getBytesPerBlog(), index.getSize());
+	}
+
+	private void load(Long blogId, long[] created, long[] ids) {
+		index.beginLoad(blogId);
+		index.load(blogId, created, ids);
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Utility for measuring heap allocation in tests and benchmarks. Relies on the HotSpot extension
+ * <code>com.sun.management.ThreadMXBean</code>; on other VMs allocation is reported as -1.
+ *
+ * @author David Green
+ */
+public class Allocations {
+
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	private static final Method getThreadAllocatedBytes = lookupAllocatedBytesMethod();
+
+	private static Method lookupAllocatedBytesMethod() {
+		try {
+			Class<?> hotspotBean = Class.forName("com.sun.management.ThreadMXBean");
+			if (!hotspotBean.isInstance(threadBean)) {
+				return null;
+			}
+			Method method = hotspotBean.getMethod("getThreadAllocatedBytes", long.class);
+			method.setAccessible(true);
+			return method;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * indicate if allocation can be measured on this VM
+	 */
+	public static boolean isSupported() {
+		return getThreadAllocatedBytes != null;
+	}
+
+	/**
+	 * the number of bytes allocated by the current thread since it was started, or -1 if not supported
+	 */
+	public static long currentThreadAllocatedBytes() {
+		return threadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * the number of bytes allocated by all live threads, or -1 if not supported. Bytes allocated by threads that have
+	 * since terminated are not included.
+	 */
+	public static long allThreadsAllocatedBytes() {
+		if (!isSupported()) {
+			return -1L;
+		}
+		long total = 0L;
+		for (long threadId : threadBean.getAllThreadIds()) {
+			long allocated = threadAllocatedBytes(threadId);
+			if (allocated > 0) {
+				total += allocated;
+			}
+		}
+		return total;
+	}
+
+	private static long threadAllocatedBytes(long threadId) {
+		if (getThreadAllocatedBytes == null) {
+			return -1L;
+		}
+		try {
+			return (Long) getThreadAllocatedBytes.invoke(threadBean, threadId);
+		} catch (Exception e) {
+			return -1L;
+		}
+	}
+
+	/**
+	 * format a number of bytes for display
+	 */
+	public static String format(long bytes) {
+		if (bytes < 0) {
+			return "n/a";
+		}
+		if (bytes < 1024) {
+			return bytes + " B";
+		}
+		if (bytes < 1024 * 1024) {
+			return String.format("%.1f KB", bytes / 1024d);
+		}
+		return String.format("%.1f MB", bytes / (1024d * 1024d));
+	}
+}
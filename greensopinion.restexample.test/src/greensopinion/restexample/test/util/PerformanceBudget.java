@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the statements executed and the bytes allocated by a unit of work, so that tests can assert a budget and a
+ * regression that adds queries or allocation fails the build. Usage:
+ *
+ * <pre><code>
+ * PerformanceBudget budget = PerformanceBudget.measure(dataSource);
+ * service.getArticle(articleId);
+ * budget.assertStatementCount(1).assertMaxAllocatedBytes(64 * 1024);
+ * </code></pre>
+ *
+ * Statements are counted by a {@link StatementCountingDataSource} on all threads, so tests that measure work done by
+ * other threads must not run concurrently with other work on the same data source. Allocation assertions are skipped
+ * where {@link Allocations#isSupported() allocation cannot be measured}.
+ *
+ * @author David Green
+ */
+public class PerformanceBudget {
+
+	private final StatementCountingDataSource dataSource;
+
+	private final boolean allThreads;
+
+	private final long startStatementCount;
+
+	private final long startAllocatedBytes;
+
+	private PerformanceBudget(StatementCountingDataSource dataSource, boolean allThreads) {
+		this.dataSource = dataSource;
+		this.allThreads = allThreads;
+		startStatementCount = dataSource.getStatementCount();
+		startAllocatedBytes = allocatedBytes();
+	}
+
+	/**
+	 * begin measuring work done on the current thread
+	 */
+	public static PerformanceBudget measure(StatementCountingDataSource dataSource) {
+		return new PerformanceBudget(dataSource, false);
+	}
+
+	/**
+	 * begin measuring work done on all threads, for example where requests are handled by the threads of a web
+	 * container. Allocation by threads that terminate before the measurement is taken is not included.
+	 */
+	public static PerformanceBudget measureAllThreads(StatementCountingDataSource dataSource) {
+		return new PerformanceBudget(dataSource, true);
+	}
+
+	private long allocatedBytes() {
+		return allThreads ? Allocations.allThreadsAllocatedBytes() : Allocations.currentThreadAllocatedBytes();
+	}
+
+	/**
+	 * the number of statements executed since measuring began
+	 */
+	public long getStatementCount() {
+		return dataSource.getStatementCount() - startStatementCount;
+	}
+
+	/**
+	 * the number of bytes allocated since measuring began, or -1 if allocation cannot be measured
+	 */
+	public long getAllocatedBytes() {
+		if (startAllocatedBytes < 0) {
+			return -1L;
+		}
+		return allocatedBytes() - startAllocatedBytes;
+	}
+
+	public PerformanceBudget assertStatementCount(long expected) {
+		assertEquals("statements executed", expected, getStatementCount());
+		return this;
+	}
+
+	public PerformanceBudget assertMaxStatementCount(long max) {
+		long count = getStatementCount();
+		assertTrue("expected at most " + max + " statements but " + count + " were executed", count <= max);
+		return this;
+	}
+
+	public PerformanceBudget assertMaxAllocatedBytes(long max) {
+		long allocated = getAllocatedBytes();
+		if (allocated >= 0) {
+			assertTrue("expected at most " + Allocations.format(max) + " allocated but "
+					+ Allocations.format(allocated) + " was allocated", allocated <= max);
+		}
+		return this;
+	}
+}
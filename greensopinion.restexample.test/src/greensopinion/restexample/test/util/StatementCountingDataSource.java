@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A data source that counts the statements executed on its connections, for measuring the number of queries issued
+ * by the persistence provider in benchmarks.
+ *
+ * @author David Green
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+	private final AtomicLong statementCount = new AtomicLong();
+
+	public StatementCountingDataSource() {
+	}
+
+	public StatementCountingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	/**
+	 * the number of statements executed since this data source was created
+	 */
+	public long getStatementCount() {
+		return statementCount.get();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return proxy(Connection.class, super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return proxy(Connection.class, super.getConnection(username, password));
+	}
+
+	private <T> T proxy(Class<T> type, final T target) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+					@SuppressWarnings("unchecked")
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						Object result;
+						try {
+							result = method.invoke(target, args);
+						} catch (InvocationTargetException e) {
+							throw e.getTargetException();
+						}
+						if (target instanceof Statement && method.getName().startsWith("execute")) {
+							statementCount.incrementAndGet();
+						} else if (result instanceof Statement) {
+							// PreparedStatement and CallableStatement must keep their type
+							return proxy((Class<Statement>) method.getReturnType(), (Statement) result);
+						}
+						return result;
+					}
+				}));
+	}
+}
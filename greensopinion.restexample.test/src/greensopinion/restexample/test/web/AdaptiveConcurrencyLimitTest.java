@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.web.AdaptiveConcurrencyLimit;
+
+import org.junit.Test;
+
+/**
+ * Test {@link AdaptiveConcurrencyLimit}
+ *
+ * @author David Green
+ */
+public class AdaptiveConcurrencyLimitTest {
+
+	private static final long MILLIS = 1000000L;
+
+	private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit();
+
+	@Test
+	public void testRejectsAtLimit() {
+		limit.setInitialLimit(2);
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+		assertEquals(1L, limit.getRejectedCount());
+		limit.release(MILLIS, false);
+		assertTrue(limit.tryAcquire());
+		assertEquals(2, limit.getInFlight());
+	}
+
+	@Test
+	public void testGrowsWhileLatencyIsSteady() {
+		limit.setInitialLimit(10);
+		runSaturated(200, 10 * MILLIS);
+		assertTrue(limit.getLimit() > 50);
+	}
+
+	@Test
+	public void testShrinksWhenLatencyRises() {
+		limit.setInitialLimit(10);
+		runSaturated(200, 10 * MILLIS);
+		int steadyLimit = limit.getLimit();
+		runSaturated(100, 100 * MILLIS);
+		assertTrue(limit.getLimit() < steadyLimit / 2);
+	}
+
+	@Test
+	public void testDoesNotGrowWhenUnderused() {
+		limit.setInitialLimit(10);
+		for (int x = 0; x < 200; ++x) {
+			assertTrue(limit.tryAcquire());
+			limit.release(10 * MILLIS, false);
+		}
+		assertEquals(10, limit.getLimit());
+	}
+
+	@Test
+	public void testFailuresReduceLimit() {
+		limit.setInitialLimit(100);
+		for (int x = 0; x < 10; ++x) {
+			assertTrue(limit.tryAcquire());
+			limit.release(MILLIS, true);
+		}
+		assertEquals(34, limit.getLimit());
+	}
+
+	@Test
+	public void testBounds() {
+		limit.setMinLimit(5);
+		limit.setMaxLimit(30);
+		runSaturated(500, 10 * MILLIS);
+		assertEquals(30, limit.getLimit());
+		while (limit.getInFlight() > 0) {
+			limit.release(MILLIS, true);
+		}
+		assertEquals(5, limit.getLimit());
+	}
+
+	/**
+	 * fill the limit and complete requests one at a time, as a server at capacity would
+	 */
+	private void runSaturated(int requests, long latencyNanos) {
+		while (limit.tryAcquire()) {
+		}
+		for (int x = 0; x < requests; ++x) {
+			limit.release(latencyNanos, false);
+			while (limit.tryAcquire()) {
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.web.AdmissionControlFilter;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Test {@link AdmissionControlFilter}
+ *
+ * @author David Green
+ */
+public class AdmissionControlFilterTest {
+
+	private AdmissionControlFilter filter;
+
+	@Before
+	public void before() throws ServletException {
+		MockFilterConfig config = new MockFilterConfig("AdmissionControlFilter");
+		config.addInitParameter("readLimit.initialLimit", "1");
+		config.addInitParameter("writeLimit.initialLimit", "1");
+		config.addInitParameter("retryAfterSeconds", "3");
+		filter = new AdmissionControlFilter();
+		filter.init(config);
+	}
+
+	@Test
+	public void testRejectsWhenLimitIsReached() throws Exception {
+		final MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+		MockHttpServletResponse response = doFilter("GET", "/api/article/1", new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) throws IOException,
+					ServletException {
+				// a second read arrives while the first is in flight
+				nested[0] = AdmissionControlFilterTest.this.doFilter("GET", "/api/article/2", null);
+			}
+		});
+		assertEquals(200, response.getStatus());
+		assertEquals(503, nested[0].getStatus());
+		assertEquals("3", nested[0].getHeader("Retry-After"));
+		assertTrue(nested[0].getContentAsString().contains("\"code\":\"overloaded\""));
+		assertEquals(1L, filter.getReadLimit().getRejectedCount());
+		assertEquals(0, filter.getReadLimit().getInFlight());
+	}
+
+	@Test
+	public void testReadsAndWritesHaveSeparateLimits() throws Exception {
+		final MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+		doFilter("GET", "/api/article/1", new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) throws IOException,
+					ServletException {
+				nested[0] = AdmissionControlFilterTest.this.doFilter("POST", "/api/article/1", null);
+			}
+		});
+		assertEquals(200, nested[0].getStatus());
+	}
+
+	@Test
+	public void testLongPollsAreNotLimited() throws Exception {
+		final MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+		doFilter("GET", "/api/blog/1/events", new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) throws IOException,
+					ServletException {
+				nested[0] = AdmissionControlFilterTest.this.doFilter("GET", "/api/article/1", null);
+			}
+		});
+		assertEquals(200, nested[0].getStatus());
+	}
+
+	@Test
+	public void testBulkRequestsAreNotLimited() throws Exception {
+		final MockHttpServletResponse[] nested = new MockHttpServletResponse[2];
+		doFilter("GET", "/api/blog/1/export", new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) throws IOException,
+					ServletException {
+				nested[0] = AdmissionControlFilterTest.this.doFilter("GET", "/api/article/1", null);
+			}
+		});
+		doFilter("POST", "/api/blog/import", new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) throws IOException,
+					ServletException {
+				nested[1] = AdmissionControlFilterTest.this.doFilter("POST", "/api/article/1", null);
+			}
+		});
+		assertEquals(200, nested[0].getStatus());
+		assertEquals(200, nested[1].getStatus());
+	}
+
+	@Test
+	public void testServerErrorStatusIsFailure() throws Exception {
+		filter.getReadLimit().setInitialLimit(20);
+		doFilter("GET", "/api/blog/1/articles/20100101", new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) {
+				((HttpServletResponse) response).setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+			}
+		});
+		assertTrue(filter.getReadLimit().getLimit() < 20);
+	}
+
+	@Test
+	public void testFailureReleasesPermit() throws Exception {
+		try {
+			doFilter("POST", "/api/article/1", new FilterChain() {
+				public void doFilter(ServletRequest request, ServletResponse response) {
+					throw new IllegalStateException();
+				}
+			});
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(0, filter.getWriteLimit().getInFlight());
+		assertEquals(200, doFilter("POST", "/api/article/1", null).getStatus());
+	}
+
+	private MockHttpServletResponse doFilter(String method, String uri, FilterChain chain) throws IOException,
+			ServletException {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain == null ? new FilterChain() {
+			public void doFilter(ServletRequest request, ServletResponse response) {
+			}
+		} : chain);
+		return response;
+	}
+}
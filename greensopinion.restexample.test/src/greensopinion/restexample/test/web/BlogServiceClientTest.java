@@ -15,6 +15,7 @@ import java.io.File;
 import junit.framework.TestResult;
 import greensopinion.restexample.service.BlogService;
 import greensopinion.restexample.test.service.BlogServiceTest;
+import greensopinion.restexample.test.util.PerformanceBudget;
 import greensopinion.restexample.test.util.TestUtil;
 import greensopinion.restexample.web.BlogServiceClient;
 import greensopinion.restexample.web.BlogServiceController;
@@ -54,6 +55,21 @@ public class BlogServiceClientTest extends BlogServiceTest {
 		service = blogServiceClient;
 	}
 
+	@Override
+	protected PerformanceBudget measure() {
+		// requests are handled by the threads of the web container
+		return PerformanceBudget.measureAllThreads(dataSource);
+	}
+	
+	/**
+	 * includes the allocation of the web container, which in Winstone allocates on every byte of a response: measured
+	 * at 50-160 MB depending on how far the JIT has compiled it
+	 */
+	@Override
+	protected long listArticlesAllocationBudget() {
+		return 256L * 1024L * 1024L;
+	}
+
 	private File computeWebRoot() {
 		File folder = new File(TestUtil.computeClasspathRoot(BlogServiceClientTest.class).getParentFile(),"resources/"+BlogServiceClientTest.class.getSimpleName());
 		if (!folder.exists()) {
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.web.ByteRange;
+
+import org.junit.Test;
+
+/**
+ * Test {@link ByteRange}
+ *
+ * @author David Green
+ */
+public class ByteRangeTest {
+
+	@Test
+	public void testRange() {
+		ByteRange range = ByteRange.parse("bytes=10-19", 100);
+		assertTrue(range.isSatisfiable());
+		assertEquals(10L, range.getStart());
+		assertEquals(19L, range.getEnd());
+		assertEquals(10L, range.getLength());
+		assertEquals("bytes 10-19/100", range.toContentRange());
+	}
+
+	@Test
+	public void testOpenEnded() {
+		assertEquals("bytes 90-99/100", ByteRange.parse("bytes=90-", 100).toContentRange());
+		assertEquals("bytes 90-99/100", ByteRange.parse("bytes=90-200", 100).toContentRange());
+	}
+
+	@Test
+	public void testSuffix() {
+		assertEquals("bytes 80-99/100", ByteRange.parse("bytes=-20", 100).toContentRange());
+		assertEquals("bytes 0-99/100", ByteRange.parse("bytes=-200", 100).toContentRange());
+	}
+
+	@Test
+	public void testUnsatisfiable() {
+		ByteRange range = ByteRange.parse("bytes=100-", 100);
+		assertFalse(range.isSatisfiable());
+		assertEquals("bytes */100", range.toContentRange());
+		assertFalse(ByteRange.parse("bytes=0-", 0).isSatisfiable());
+	}
+
+	@Test
+	public void testIgnored() {
+		assertNull(ByteRange.parse(null, 100));
+		assertNull(ByteRange.parse("bytes=0-1,5-6", 100));
+		assertNull(ByteRange.parse("bytes=5-1", 100));
+		assertNull(ByteRange.parse("bytes=a-b", 100));
+		assertNull(ByteRange.parse("items=0-1", 100));
+	}
+}
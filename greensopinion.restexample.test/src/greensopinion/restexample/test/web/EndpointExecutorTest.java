@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import greensopinion.restexample.jdbc.RoutingContext;
+import greensopinion.restexample.web.AdmissionControlFilter;
+import greensopinion.restexample.web.EndpointExecutor;
+import greensopinion.restexample.web.EndpointUnavailableException;
+import greensopinion.restexample.web.StreamFence;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * Test {@link EndpointExecutor}
+ *
+ * @author David Green
+ */
+public class EndpointExecutorTest {
+
+	private final EndpointExecutor executor = new EndpointExecutor();
+
+	@Before
+	public void before() {
+		executor.setName("test");
+		executor.setThreads(1);
+		executor.setQueueCapacity(0);
+		executor.setTimeoutMillis(5000L);
+	}
+
+	@After
+	public void after() {
+		executor.stop();
+	}
+
+	@Test
+	public void testRunsOnExecutorThread() throws IOException {
+		executor.start();
+		assertEquals("test-1", executor.execute(new EndpointExecutor.Task<String>() {
+			public String call() {
+				return Thread.currentThread().getName();
+			}
+		}));
+	}
+
+	@Test
+	public void testRejectsAtCapacity() throws Exception {
+		executor.start();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					executor.execute(new EndpointExecutor.Task<Void>() {
+						public Void call() {
+							started.countDown();
+							try {
+								release.await();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+							return null;
+						}
+					});
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		thread.start();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		try {
+			executor.execute(new EndpointExecutor.Task<Void>() {
+				public Void call() {
+					return null;
+				}
+			});
+			fail();
+		} catch (EndpointUnavailableException e) {
+			assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getError().getStatus());
+			assertEquals(AdmissionControlFilter.CODE_OVERLOADED, e.getError().getCode());
+			assertEquals(1, e.getRetryAfterSeconds());
+		} finally {
+			release.countDown();
+			thread.join();
+		}
+		assertEquals(1L, executor.getRejectedCount());
+	}
+
+	@Test
+	public void testTimeoutInterruptsWork() throws Exception {
+		executor.setTimeoutMillis(50L);
+		executor.start();
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		try {
+			executor.execute(new EndpointExecutor.Task<Void>() {
+				public Void call() {
+					try {
+						Thread.sleep(10000L);
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+					}
+					return null;
+				}
+			});
+			fail();
+		} catch (EndpointUnavailableException e) {
+			assertEquals(HttpServletResponse.SC_GATEWAY_TIMEOUT, e.getError().getStatus());
+			assertEquals(EndpointExecutor.CODE_TIMEOUT, e.getError().getCode());
+		}
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		assertEquals(1L, executor.getTimeoutCount());
+	}
+
+	@Test
+	public void testTimeoutDoesNotWaitForWorkThatIgnoresInterrupt() throws IOException {
+		executor.setTimeoutMillis(50L);
+		executor.start();
+		final CountDownLatch release = new CountDownLatch(1);
+		long start = System.currentTimeMillis();
+		try {
+			executor.execute(new EndpointExecutor.Task<Void>() {
+				public Void call() {
+					// stands in for a read that can't be interrupted, such as a JDBC read
+					while (release.getCount() > 0) {
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							// ignore
+						}
+					}
+					return null;
+				}
+			});
+			fail();
+		} catch (EndpointUnavailableException e) {
+			assertEquals(HttpServletResponse.SC_GATEWAY_TIMEOUT, e.getError().getStatus());
+		} finally {
+			release.countDown();
+		}
+		assertTrue(System.currentTimeMillis() - start < 2000L);
+	}
+
+	@Test(expected = IOException.class)
+	public void testPropagatesIOException() throws IOException {
+		executor.start();
+		executor.execute(new EndpointExecutor.Task<Void>() {
+			public Void call() throws IOException {
+				throw new IOException();
+			}
+		});
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPropagatesRuntimeException() throws IOException {
+		executor.start();
+		executor.execute(new EndpointExecutor.Task<Void>() {
+			public Void call() {
+				throw new IllegalArgumentException();
+			}
+		});
+	}
+
+	@Test
+	public void testCarriesRoutingContext() throws IOException {
+		// the second task may be submitted before the thread of the first is ready to take it
+		executor.setQueueCapacity(1);
+		executor.start();
+		EndpointExecutor.Task<Boolean> pinned = new EndpointExecutor.Task<Boolean>() {
+			public Boolean call() {
+				return RoutingContext.isPinnedToPrimary();
+			}
+		};
+		RoutingContext.begin(true);
+		try {
+			assertTrue(executor.execute(pinned));
+		} finally {
+			RoutingContext.end();
+		}
+		assertFalse(executor.execute(pinned));
+	}
+
+	@Test
+	public void testRespondsOnRequestThreadWithoutAsyncSupport() throws IOException {
+		// the mock context is of a Servlet 2.5 container
+		executor.setServletContext(new MockServletContext());
+		executor.start();
+		final StreamFence fence = new StreamFence();
+		final String[] responded = new String[1];
+		executor.execute(new MockHttpServletRequest(), new MockHttpServletResponse(), fence,
+				new EndpointExecutor.Task<String>() {
+					public String call() {
+						return Thread.currentThread().getName();
+					}
+				}, new EndpointExecutor.Responder<String>() {
+					public void respond(String result, HttpServletRequest request, HttpServletResponse response) {
+						assertTrue(fence.isClosed());
+						responded[0] = result + " " + Thread.currentThread().getName();
+					}
+
+					public void fail(Exception exception, HttpServletRequest request, HttpServletResponse response) {
+						throw new IllegalStateException(exception);
+					}
+				});
+		assertEquals("test-1 " + Thread.currentThread().getName(), responded[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testThrowsFailureWithoutAsyncSupport() throws IOException {
+		executor.start();
+		final StreamFence fence = new StreamFence();
+		try {
+			executor.execute(new MockHttpServletRequest(), new MockHttpServletResponse(), fence,
+					new EndpointExecutor.Task<Void>() {
+						public Void call() {
+							throw new IllegalArgumentException();
+						}
+					}, new EndpointExecutor.Responder<Void>() {
+						public void respond(Void result, HttpServletRequest request, HttpServletResponse response) {
+							throw new IllegalStateException();
+						}
+
+						public void fail(Exception exception, HttpServletRequest request,
+								HttpServletResponse response) {
+							throw new IllegalStateException(exception);
+						}
+					});
+		} finally {
+			assertTrue(fence.isClosed());
+		}
+	}
+}
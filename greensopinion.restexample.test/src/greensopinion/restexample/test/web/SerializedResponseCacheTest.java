@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.web.SerializedResponseCache;
+import greensopinion.restexample.web.SerializedResponseCache.Entry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * Test {@link SerializedResponseCache}
+ *
+ * @author David Green
+ */
+public class SerializedResponseCacheTest {
+
+	private final SerializedResponseCache cache = new SerializedResponseCache();
+
+	@Test
+	public void testPutAndGet() throws IOException {
+		byte[] content = "{\"article\":{}}".getBytes("UTF-8");
+		Entry entry = cache.put(1L, new Date(5L), content, cache.stamp());
+		assertNotNull(entry);
+		assertSame(entry, cache.get(1L));
+		assertTrue(entry.getETag().startsWith("\""));
+		assertFalse(entry.isCompressed());
+		assertArrayEquals(content, write(entry, false));
+		assertNull(cache.get(2L));
+		assertEquals(1L, cache.getHitCount());
+		assertEquals(1L, cache.getMissCount());
+	}
+
+	@Test
+	public void testETagChangesWithContentWithinTheSameSecond() throws IOException {
+		String eTag = cache.put(1L, new Date(5000L), "{\"title\":\"a\"}".getBytes("UTF-8"), cache.stamp()).getETag();
+		cache.invalidate(1L);
+		String nextETag = cache.put(1L, new Date(5000L), "{\"title\":\"b\"}".getBytes("UTF-8"), cache.stamp())
+				.getETag();
+		assertFalse(eTag.equals(nextETag));
+		cache.invalidate(1L);
+		assertEquals(eTag, cache.put(1L, new Date(5000L), "{\"title\":\"a\"}".getBytes("UTF-8"), cache.stamp())
+				.getETag());
+	}
+
+	@Test
+	public void testInvalidate() {
+		cache.put(1L, new Date(5L), new byte[10], cache.stamp());
+		cache.invalidate(1L);
+		assertNull(cache.get(1L));
+		assertEquals(0L, cache.getSize());
+	}
+
+	@Test
+	public void testPutAfterInvalidateIsIgnored() {
+		long stamp = cache.stamp();
+		cache.invalidate(1L);
+		assertNull(cache.put(1L, new Date(5L), new byte[10], stamp));
+		assertNull(cache.get(1L));
+	}
+
+	@Test
+	public void testPutAfterInvalidateOfOtherIdIsCached() {
+		long stamp = cache.stamp();
+		cache.invalidate(2L);
+		assertNotNull(cache.put(1L, new Date(5L), new byte[10], stamp));
+		assertNotNull(cache.get(1L));
+	}
+
+	@Test
+	public void testPutAfterClearIsIgnored() {
+		long stamp = cache.stamp();
+		cache.clear();
+		assertNull(cache.put(1L, new Date(5L), new byte[10], stamp));
+		assertNotNull(cache.put(1L, new Date(5L), new byte[10], cache.stamp()));
+	}
+
+	@Test
+	public void testInvalidateGroup() {
+		cache.put(1L, 7L, new Date(5L), new byte[10], cache.stamp());
+		cache.put(2L, 8L, new Date(5L), new byte[10], cache.stamp());
+		cache.put(3L, new Date(5L), new byte[10], cache.stamp());
+		long stamp = cache.stamp();
+		cache.invalidateGroup(7L);
+		assertNull(cache.get(1L));
+		assertNotNull(cache.get(2L));
+		assertNotNull(cache.get(3L));
+		assertEquals(20L, cache.getSize());
+		assertNull(cache.put(1L, 7L, new Date(5L), new byte[10], stamp));
+	}
+
+	@Test
+	public void testOlderPutDoesNotReplaceNewer() {
+		Entry newer = cache.put(1L, new Date(10L), new byte[10], cache.stamp());
+		assertSame(newer, cache.put(1L, new Date(5L), new byte[10], cache.stamp()));
+		assertEquals(10L, cache.get(1L).getModified());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		cache.setMaxSize(30);
+		cache.put(1L, null, new byte[10], cache.stamp());
+		cache.put(2L, null, new byte[10], cache.stamp());
+		cache.put(3L, null, new byte[10], cache.stamp());
+		cache.get(1L);
+		cache.put(4L, null, new byte[10], cache.stamp());
+		assertNotNull(cache.get(1L));
+		assertNull(cache.get(2L));
+		assertEquals(30L, cache.getSize());
+	}
+
+	@Test
+	public void testMaxEntrySize() {
+		cache.setMaxEntrySize(10);
+		assertNull(cache.put(1L, null, new byte[11], cache.stamp()));
+		assertEquals(0, cache.getEntryCount());
+	}
+
+	@Test
+	public void testCompressedDirect() throws IOException {
+		cache.setDirect(true);
+		cache.setCompressionThreshold(100);
+		byte[] content = new byte[1000];
+		Arrays.fill(content, (byte) 'a');
+		Entry entry = cache.put(1L, null, content, cache.stamp());
+		assertTrue(entry.isCompressed());
+		assertTrue(entry.getContentLength(true) < entry.getContentLength(false));
+		assertArrayEquals(content, write(entry, false));
+		assertArrayEquals(content, gunzip(write(entry, true)));
+	}
+
+	private byte[] write(Entry entry, boolean compressed) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entry.writeTo(out, compressed);
+		assertEquals(entry.getContentLength(compressed), out.size());
+		return out.toByteArray();
+	}
+
+	private byte[] gunzip(byte[] compressed) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			out.write(buffer, 0, length);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import greensopinion.restexample.web.StreamFence;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Test {@link StreamFence}
+ *
+ * @author David Green
+ */
+public class StreamFenceTest {
+
+	private final StreamFence fence = new StreamFence();
+
+	private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+	@Test
+	public void testWritesUntilClosed() throws IOException {
+		HttpServletResponse guarded = fence.guard(response);
+		guarded.setContentType("text/plain");
+		OutputStream out = guarded.getOutputStream();
+		out.write('a');
+		fence.close();
+		try {
+			out.write('b');
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		guarded.setHeader("Content-Encoding", "gzip");
+		guarded.setStatus(HttpServletResponse.SC_OK);
+		assertTrue(guarded.isCommitted());
+		assertFalse(response.isCommitted());
+		assertNull(response.getHeader("Content-Encoding"));
+		assertEquals("text/plain", response.getContentType());
+		assertEquals("a", response.getContentAsString());
+	}
+
+	@Test
+	public void testReadsUntilClosed() throws IOException {
+		InputStream in = fence.guard(new ByteArrayInputStream(new byte[] { 1, 2 }));
+		assertEquals(1, in.read());
+		fence.close();
+		try {
+			in.read();
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
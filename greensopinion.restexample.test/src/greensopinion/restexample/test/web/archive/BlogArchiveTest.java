@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.service.InvalidRequestException;
+import greensopinion.restexample.web.archive.BlogArchiveImporter;
+import greensopinion.restexample.web.archive.BlogArchiveReader;
+import greensopinion.restexample.web.archive.BlogArchiveWriter;
+import greensopinion.restexample.web.archive.ImportCheckpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Test {@link BlogArchiveWriter}, {@link BlogArchiveReader} and {@link BlogArchiveImporter}
+ * 
+ * @author David Green
+ */
+public class BlogArchiveTest {
+
+	/**
+	 * records the blogs and batches of articles created through a {@link BlogService}
+	 */
+	private static class RecordingService implements InvocationHandler {
+		private final List<Blog> blogs = new ArrayList<Blog>();
+
+		private final List<List<Article>> batches = new ArrayList<List<Article>>();
+
+		private long nextId = 100L;
+
+		@SuppressWarnings("unchecked")
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getName().equals("createBlog")) {
+				Blog blog = (Blog) args[0];
+				assertNull(blog.getId());
+				blog.setId(nextId++);
+				blogs.add(blog);
+				return blog;
+			} else if (method.getName().equals("createArticles")) {
+				List<Article> articles = (List<Article>) args[1];
+				batches.add(articles);
+				List<Long> ids = new ArrayList<Long>();
+				for (int x = 0; x < articles.size(); ++x) {
+					ids.add(nextId++);
+				}
+				return ids;
+			}
+			throw new UnsupportedOperationException(method.getName());
+		}
+
+		BlogService proxy() {
+			return (BlogService) Proxy.newProxyInstance(BlogService.class.getClassLoader(),
+					new Class<?>[] { BlogService.class }, this);
+		}
+	}
+
+	private final RecordingService service = new RecordingService();
+
+	private final List<ImportCheckpoint> checkpoints = new ArrayList<ImportCheckpoint>();
+
+	private final BlogArchiveImporter.Listener listener = new BlogArchiveImporter.Listener() {
+		public void checkpoint(ImportCheckpoint checkpoint) {
+			checkpoints.add(checkpoint);
+		}
+	};
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		Article article = article(2L);
+		article.setContent("line one\nline two");
+		article.setContentRef("ref");
+		byte[] archive = archive(blog(), article);
+		assertEquals(2, new String(gunzip(archive), "UTF-8").split("\n").length);
+
+		BlogArchiveReader reader = reader(archive);
+		Blog blog = (Blog) reader.read();
+		assertEquals(Long.valueOf(1L), blog.getId());
+		assertEquals("a blog", blog.getName());
+		assertEquals(new Date(1000L), blog.getCreated());
+		Article readArticle = (Article) reader.read();
+		assertEquals(Long.valueOf(2L), readArticle.getId());
+		assertEquals("title 2", readArticle.getTitle());
+		assertEquals("line one\nline two", readArticle.getContent());
+		assertEquals(new Date(2000L), readArticle.getCreated());
+		assertNull(readArticle.getContentRef());
+		assertNull(reader.read());
+	}
+
+	@Test
+	public void testImport() throws IOException {
+		BlogArchiveImporter importer = new BlogArchiveImporter(service.proxy());
+		importer.setBatchSize(2);
+		ImportCheckpoint checkpoint = importer.importArchive(reader(archive(blog(), article(2L), article(3L),
+				article(4L), article(5L), article(6L))), null, listener);
+
+		assertEquals(1, service.blogs.size());
+		assertEquals("a blog", service.blogs.get(0).getName());
+		assertEquals(3, service.batches.size());
+		assertEquals(2, service.batches.get(0).size());
+		assertEquals(1, service.batches.get(2).size());
+		assertEquals("title 6", service.batches.get(2).get(0).getTitle());
+
+		assertEquals(Long.valueOf(100L), checkpoint.getBlogId());
+		assertEquals(5L, checkpoint.getArticles());
+		assertTrue(checkpoint.isComplete());
+		// the blog, two full batches and the end
+		assertEquals(4, checkpoints.size());
+		assertEquals(0L, checkpoints.get(0).getArticles());
+		assertEquals(4L, checkpoints.get(2).getArticles());
+		assertFalse(checkpoints.get(2).isComplete());
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		BlogArchiveImporter importer = new BlogArchiveImporter(service.proxy());
+		importer.setBatchSize(2);
+		ImportCheckpoint checkpoint = importer.importArchive(reader(archive(blog(), article(2L), article(3L),
+				article(4L))), new ImportCheckpoint(7L, 2L, false), listener);
+
+		assertTrue(service.blogs.isEmpty());
+		assertEquals(1, service.batches.size());
+		assertEquals("title 4", service.batches.get(0).get(0).getTitle());
+		assertEquals(Long.valueOf(7L), checkpoint.getBlogId());
+		assertEquals(3L, checkpoint.getArticles());
+		assertTrue(checkpoint.isComplete());
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testResumeBeyondEnd() throws IOException {
+		new BlogArchiveImporter(service.proxy()).importArchive(reader(archive(blog(), article(2L))),
+				new ImportCheckpoint(7L, 2L, false), listener);
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testMustBeginWithBlog() throws IOException {
+		new BlogArchiveImporter(service.proxy()).importArchive(reader(archive(article(2L))), null, listener);
+	}
+
+	@Test(expected = InvalidRequestException.class)
+	public void testInvalidLine() throws IOException {
+		new BlogArchiveReader(new ByteArrayInputStream("{\"blog\":{\"id\":".getBytes("UTF-8"))).read();
+	}
+
+	private Blog blog() {
+		Blog blog = new Blog();
+		blog.setId(1L);
+		blog.setName("a blog");
+		blog.setCreated(new Date(1000L));
+		return blog;
+	}
+
+	private Article article(long id) {
+		Article article = new Article();
+		article.setId(id);
+		article.setTitle("title " + id);
+		article.setAuthor("author");
+		article.setContent("content " + id);
+		article.setCreated(new Date(id * 1000L));
+		return article;
+	}
+
+	private byte[] archive(Object... records) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		BlogArchiveWriter writer = new BlogArchiveWriter(gzip);
+		for (Object record : records) {
+			if (record instanceof Blog) {
+				writer.blog((Blog) record);
+			} else {
+				writer.article((Article) record);
+			}
+		}
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	private BlogArchiveReader reader(byte[] archive) throws IOException {
+		return new BlogArchiveReader(new GZIPInputStream(new ByteArrayInputStream(archive)));
+	}
+
+	private byte[] gunzip(byte[] compressed) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			out.write(buffer, 0, length);
+		}
+		return out.toByteArray();
+	}
+}
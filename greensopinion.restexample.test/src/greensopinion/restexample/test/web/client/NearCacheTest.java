@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import greensopinion.restexample.web.client.NearCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test {@link NearCache}
+ *
+ * @author David Green
+ */
+public class NearCacheTest {
+
+	private class TestLoader implements NearCache.Loader<String> {
+		private final List<String> eTags = Collections.synchronizedList(new ArrayList<String>());
+
+		private String value = "v1";
+
+		private String eTag;
+
+		private String cacheControl;
+
+		private boolean notModified;
+
+		public NearCache.Loaded<String> load(Long id, String eTag) {
+			eTags.add(eTag);
+			return new NearCache.Loaded<String>(notModified ? null : value, notModified, this.eTag, cacheControl);
+		}
+	}
+
+	private final NearCache<String> cache = new NearCache<String>();
+
+	private final TestLoader loader = new TestLoader();
+
+	@After
+	public void after() {
+		cache.shutdown();
+	}
+
+	@Test
+	public void testHitAndMiss() {
+		assertEquals("v1", cache.get(1L, loader));
+		loader.value = "v2";
+		assertEquals("v1", cache.get(1L, loader));
+		assertEquals(1, loader.eTags.size());
+		assertEquals(1L, cache.getHitCount());
+		assertEquals(1L, cache.getMissCount());
+		assertEquals(0.5d, cache.getHitRatio(), 0.001d);
+	}
+
+	@Test
+	public void testStaleWhileRevalidate() throws InterruptedException {
+		cache.setTimeToLiveMillis(0L);
+		cache.get(1L, loader);
+		loader.value = "v2";
+		// the stale value is returned while it is refreshed in the background
+		assertEquals("v1", cache.get(1L, loader));
+		assertEquals(1L, cache.getStaleHitCount());
+		for (int x = 0; x < 100 && loader.eTags.size() < 2; ++x) {
+			Thread.sleep(10L);
+		}
+		Thread.sleep(10L);
+		assertEquals("v2", cache.get(1L, loader));
+	}
+
+	@Test
+	public void testExpired() {
+		cache.setTimeToLiveMillis(0L);
+		cache.setStaleWhileRevalidateMillis(0L);
+		cache.get(1L, loader);
+		loader.value = "v2";
+		assertEquals("v2", cache.get(1L, loader));
+		assertEquals(2L, cache.getMissCount());
+	}
+
+	@Test
+	public void testNoStore() {
+		loader.cacheControl = "no-store";
+		cache.get(1L, loader);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testMaxAge() {
+		loader.cacheControl = "max-age=0";
+		cache.setStaleWhileRevalidateMillis(0L);
+		cache.get(1L, loader);
+		cache.get(1L, loader);
+		assertEquals(2, loader.eTags.size());
+	}
+
+	@Test
+	public void testNoCacheRevalidatesWithETag() {
+		loader.cacheControl = "no-cache";
+		loader.eTag = "\"1-5\"";
+		cache.get(1L, loader);
+		loader.notModified = true;
+		assertEquals("v1", cache.get(1L, loader));
+		assertNull(loader.eTags.get(0));
+		assertEquals("\"1-5\"", loader.eTags.get(1));
+		assertEquals(1L, cache.getRevalidatedHitCount());
+		assertEquals(1L, cache.getMissCount());
+	}
+
+	@Test
+	public void testLoadAfterModificationOfSameIdIsNotCached() {
+		NearCache.Loader<String> modifyingLoader = new NearCache.Loader<String>() {
+			public NearCache.Loaded<String> load(Long id, String eTag) {
+				cache.invalidate(id);
+				return new NearCache.Loaded<String>("v1", false, null, null);
+			}
+		};
+		cache.get(1L, modifyingLoader);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testLoadAfterModificationOfOtherIdIsCached() {
+		NearCache.Loader<String> modifyingLoader = new NearCache.Loader<String>() {
+			public NearCache.Loaded<String> load(Long id, String eTag) {
+				cache.put(2L, "other");
+				cache.invalidate(3L);
+				return new NearCache.Loaded<String>("v1", false, null, null);
+			}
+		};
+		cache.get(1L, modifyingLoader);
+		assertEquals("v1", cache.get(1L, loader));
+		assertEquals(0, loader.eTags.size());
+	}
+
+	@Test
+	public void testPutWritesThrough() {
+		cache.get(1L, loader);
+		cache.put(1L, "v3");
+		assertEquals("v3", cache.get(1L, loader));
+		assertEquals(1, loader.eTags.size());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		cache.setMaxEntries(2);
+		cache.get(1L, loader);
+		cache.get(2L, loader);
+		cache.get(1L, loader);
+		cache.get(3L, loader);
+		assertEquals(2, cache.size());
+		cache.get(1L, loader);
+		assertEquals(3, loader.eTags.size());
+	}
+}
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.test.web.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import greensopinion.restexample.service.NotFoundException;
+import greensopinion.restexample.web.AdmissionControlFilter;
+import greensopinion.restexample.web.EndpointExecutor;
+import greensopinion.restexample.web.client.CircuitBreaker;
+import greensopinion.restexample.web.client.CircuitOpenException;
+import greensopinion.restexample.web.client.ResilientInvoker;
+import greensopinion.restexample.web.client.RetryBudget;
+import greensopinion.restexample.web.client.ServerBusyException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Test {@link ResilientInvoker} and {@link CircuitBreaker}
+ *
+ * @author David Green
+ */
+public class ResilientInvokerTest {
+
+	private ResilientInvoker invoker;
+
+	private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+	@Before
+	public void before() {
+		invoker = new ResilientInvoker();
+		invoker.setInitialBackoffMillis(1L);
+		invoker.setBaseUrls(Arrays.asList("a", "b"));
+	}
+
+	@After
+	public void after() {
+		invoker.shutdown();
+	}
+
+	@Test
+	public void testRetriesOnAnotherEndpoint() {
+		String result = invoker.execute(new ResilientInvoker.Call<String>() {
+			public String call(String baseUrl) {
+				calls.add(baseUrl);
+				if (calls.size() == 1) {
+					throw new ResourceAccessException("unavailable", new IOException());
+				}
+				return baseUrl;
+			}
+		}, true);
+		assertEquals(2, calls.size());
+		assertFalse(calls.get(0).equals(calls.get(1)));
+		assertEquals(calls.get(1), result);
+	}
+
+	@Test
+	public void testPermanentFailureIsNotRetried() {
+		try {
+			invoker.execute(new ResilientInvoker.Call<String>() {
+				public String call(String baseUrl) {
+					calls.add(baseUrl);
+					throw new NotFoundException("missing");
+				}
+			}, true);
+			fail();
+		} catch (NotFoundException e) {
+			// expected
+		}
+		assertEquals(1, calls.size());
+	}
+
+	@Test
+	public void testNonIdempotentRetriedOnlyIfNotSent() {
+		try {
+			invoker.execute(new ResilientInvoker.Call<String>() {
+				public String call(String baseUrl) {
+					calls.add(baseUrl);
+					throw new ResourceAccessException("read timed out", new IOException());
+				}
+			}, false);
+			fail();
+		} catch (ResourceAccessException e) {
+			// expected
+		}
+		assertEquals(1, calls.size());
+
+		calls.clear();
+		try {
+			invoker.execute(new ResilientInvoker.Call<String>() {
+				public String call(String baseUrl) {
+					calls.add(baseUrl);
+					throw new ResourceAccessException("refused", new ConnectException());
+				}
+			}, false);
+			fail();
+		} catch (ResourceAccessException e) {
+			// expected
+		}
+		assertEquals(invoker.getMaxAttempts(), calls.size());
+	}
+
+	@Test
+	public void testRetryBudget() {
+		invoker.setRetryBudget(new RetryBudget(0d, 1));
+		ResilientInvoker.Call<String> failing = new ResilientInvoker.Call<String>() {
+			public String call(String baseUrl) {
+				calls.add(baseUrl);
+				throw new ResourceAccessException("unavailable", new IOException());
+			}
+		};
+		for (int x = 0; x < 2; ++x) {
+			try {
+				invoker.execute(failing, true);
+				fail();
+			} catch (ResourceAccessException e) {
+				// expected
+			}
+		}
+		// one retry for the first request, none for the second
+		assertEquals(3, calls.size());
+	}
+
+	@Test
+	public void testCircuitOpensAndFailsFast() {
+		invoker.setFailureThreshold(2);
+		invoker.setOpenMillis(60000L);
+		invoker.setMaxAttempts(1);
+		invoker.setBaseUrls(Collections.singletonList("a"));
+		ResilientInvoker.Call<String> failing = new ResilientInvoker.Call<String>() {
+			public String call(String baseUrl) {
+				calls.add(baseUrl);
+				throw new ResourceAccessException("unavailable", new IOException());
+			}
+		};
+		for (int x = 0; x < 3; ++x) {
+			try {
+				invoker.execute(failing, true);
+				fail();
+			} catch (CircuitOpenException e) {
+				assertEquals(2, x);
+			} catch (ResourceAccessException e) {
+				assertTrue(x < 2);
+			}
+		}
+		assertEquals(2, calls.size());
+		assertEquals(CircuitBreaker.State.OPEN, invoker.getEndpoints().get(0).getCircuitBreaker().getState());
+	}
+
+	@Test
+	public void testNoAvailableEndpointFailsFast() {
+		invoker.setFailureThreshold(1);
+		invoker.setOpenMillis(60000L);
+		invoker.setInitialBackoffMillis(10000L);
+		invoker.setBaseUrls(Arrays.asList("a", "b"));
+		invoker.getEndpoints().get(0).getCircuitBreaker().onFailure();
+		invoker.getEndpoints().get(1).getCircuitBreaker().onFailure();
+		long start = System.currentTimeMillis();
+		try {
+			invoker.execute(new ResilientInvoker.Call<String>() {
+				public String call(String baseUrl) {
+					calls.add(baseUrl);
+					return baseUrl;
+				}
+			}, true);
+			fail();
+		} catch (CircuitOpenException e) {
+			// expected
+		}
+		// not retried after a backoff
+		assertTrue(System.currentTimeMillis() - start < 5000L);
+		assertTrue(calls.isEmpty());
+	}
+
+	@Test
+	public void testSelectBaseUrl() {
+		invoker.setFailureThreshold(1);
+		invoker.setOpenMillis(60000L);
+		invoker.setBaseUrls(Arrays.asList("a", "b"));
+		invoker.getEndpoints().get(0).getCircuitBreaker().onFailure();
+		for (int x = 0; x < 10; ++x) {
+			assertEquals("b", invoker.selectBaseUrl());
+		}
+		invoker.getEndpoints().get(1).getCircuitBreaker().onFailure();
+		try {
+			invoker.selectBaseUrl();
+			fail();
+		} catch (CircuitOpenException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testTimeoutIsNotRetried() {
+		invoker.setFailureThreshold(1);
+		invoker.setBaseUrls(Arrays.asList("a", "b"));
+		try {
+			invoker.execute(new ResilientInvoker.Call<String>() {
+				public String call(String baseUrl) {
+					calls.add(baseUrl);
+					throw new ServerBusyException(HttpStatus.GATEWAY_TIMEOUT, "Gateway Timeout",
+							EndpointExecutor.CODE_TIMEOUT, 0);
+				}
+			}, true);
+			fail();
+		} catch (ServerBusyException e) {
+			assertTrue(e.isTimeout());
+		}
+		assertEquals(1, calls.size());
+		assertEquals(CircuitBreaker.State.CLOSED, invoker.getEndpoints().get(0).getCircuitBreaker().getState());
+		assertEquals(CircuitBreaker.State.CLOSED, invoker.getEndpoints().get(1).getCircuitBreaker().getState());
+	}
+
+	@Test
+	public void testOverloadedEndpointIsAvoidedForRetryAfter() {
+		invoker.setFailureThreshold(1);
+		invoker.setBaseUrls(Arrays.asList("a", "b"));
+		ResilientInvoker.Call<String> call = new ResilientInvoker.Call<String>() {
+			public String call(String baseUrl) {
+				calls.add(baseUrl);
+				if (baseUrl.equals("a")) {
+					throw new ServerBusyException(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable",
+							AdmissionControlFilter.CODE_OVERLOADED, 60);
+				}
+				return baseUrl;
+			}
+		};
+		for (int x = 0; x < 20; ++x) {
+			assertEquals("b", invoker.execute(call, false));
+		}
+		assertTrue(Collections.frequency(calls, "a") <= 1);
+		assertEquals(CircuitBreaker.State.CLOSED, invoker.getEndpoints().get(0).getCircuitBreaker().getState());
+		assertFalse(invoker.getEndpoints().get(0).isAccepting());
+	}
+
+	@Test
+	public void testCircuitBreakerProbe() throws InterruptedException {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 10L);
+		assertTrue(circuitBreaker.allowRequest());
+		circuitBreaker.onFailure();
+		assertFalse(circuitBreaker.allowRequest());
+		Thread.sleep(20L);
+		assertTrue(circuitBreaker.allowRequest());
+		assertFalse(circuitBreaker.allowRequest());
+		circuitBreaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.allowRequest());
+	}
+
+	@Test
+	public void testHedgesSlowRequest() {
+		invoker.setHedgeMinimumSamples(1);
+		invoker.setHedgeMinimumDelayMillis(1L);
+		ResilientInvoker.Call<String> fast = new ResilientInvoker.Call<String>() {
+			public String call(String baseUrl) {
+				return baseUrl;
+			}
+		};
+		for (int x = 0; x < 10; ++x) {
+			invoker.execute(fast, true);
+		}
+		long start = System.currentTimeMillis();
+		String result = invoker.execute(new ResilientInvoker.Call<String>() {
+			public String call(String baseUrl) {
+				calls.add(baseUrl);
+				if (calls.size() == 1) {
+					try {
+						Thread.sleep(5000L);
+					} catch (InterruptedException e) {
+						// cancelled
+					}
+				}
+				return baseUrl;
+			}
+		}, true);
+		assertTrue(System.currentTimeMillis() - start < 5000L);
+		assertEquals(2, calls.size());
+		assertEquals(calls.get(1), result);
+	}
+}
@@ -0,0 +1,6 @@
+-- the schema previously created by eclipselink.ddl-generation, for MySQL
+CREATE TABLE BLOG (ID BIGINT NOT NULL, CREATED DATETIME NOT NULL, MODIFIED DATETIME, NAME VARCHAR(255), PRIMARY KEY (ID));
+CREATE TABLE ARTICLE (ID BIGINT NOT NULL, CREATED DATETIME NOT NULL, MODIFIED DATETIME, AUTHOR VARCHAR(255), PUBLISHED DATETIME, TITLE VARCHAR(255) NOT NULL, CONTENT MEDIUMTEXT, blogId BIGINT NOT NULL, PRIMARY KEY (ID));
+ALTER TABLE ARTICLE ADD CONSTRAINT FK_ARTICLE_blogId FOREIGN KEY (blogId) REFERENCES BLOG (ID);
+CREATE TABLE SEQUENCE (SEQ_NAME VARCHAR(50) NOT NULL, SEQ_COUNT DECIMAL(38), PRIMARY KEY (SEQ_NAME));
+INSERT INTO SEQUENCE (SEQ_NAME, SEQ_COUNT) VALUES ('SEQ_GEN', 0);
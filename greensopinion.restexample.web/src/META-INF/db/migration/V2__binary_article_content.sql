@@ -0,0 +1,6 @@
+-- article content is stored as binary so that it may be compressed, see CompressedContentConverter.
+-- the column is converted whether or not compression is enabled, since the converter always writes bytes;
+-- the conversion rewrites the table, so it should run in a maintenance window on a large database.
+-- the column is converted to utf8 first, so that existing rows become UTF-8 encoded bytes
+ALTER TABLE ARTICLE MODIFY CONTENT MEDIUMTEXT CHARACTER SET utf8;
+ALTER TABLE ARTICLE MODIFY CONTENT MEDIUMBLOB;
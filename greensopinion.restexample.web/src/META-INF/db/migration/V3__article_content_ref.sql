@@ -0,0 +1,2 @@
+-- the reference to article content held in a ContentStore
+ALTER TABLE ARTICLE ADD COLUMN CONTENTREF VARCHAR(64);
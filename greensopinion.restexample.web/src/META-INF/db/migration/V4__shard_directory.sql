@@ -0,0 +1,5 @@
+-- the directory of blogs and articles that were moved off the shard that allocated their id, see ShardMap.
+-- only the directory of the first shard is used
+CREATE TABLE SHARD_OVERRIDE (ID BIGINT NOT NULL, SHARD INTEGER NOT NULL, PRIMARY KEY (ID));
+-- the sequence from which ShardIdGenerator allocates ids
+INSERT INTO SEQUENCE (SEQ_NAME, SEQ_COUNT) VALUES ('SHARD_ID', 0);
@@ -0,0 +1,3 @@
+-- the time at which a blog was deleted. Deleted blogs are hidden immediately and their rows are removed by BlogPurgeJob
+ALTER TABLE BLOG ADD COLUMN DELETED DATETIME;
+CREATE INDEX BLOG_DELETED ON BLOG (DELETED);
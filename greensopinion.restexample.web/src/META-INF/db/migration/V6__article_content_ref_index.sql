@@ -0,0 +1,2 @@
+-- finds the articles that reference content in a ContentStore, see ContentSweepJob
+CREATE INDEX ARTICLE_CONTENTREF ON ARTICLE (CONTENTREF);
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.cluster;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An {@link InvalidationTransport} that sends each message as a UDP datagram to every peer. Delivery is not reliable,
+ * which the {@link InvalidationBus} tolerates by detecting lost messages. Peers are given as <code>host:port</code>,
+ * and may include this instance so that every instance can be configured with the same list. On a single machine,
+ * instances can use the loopback address with different ports.
+ *
+ * @author David Green
+ */
+public class DatagramInvalidationTransport implements InvalidationTransport {
+
+	private static final Logger log = Logger.getLogger(DatagramInvalidationTransport.class.getName());
+
+	/**
+	 * the largest payload of a UDP datagram
+	 */
+	private static final int MAX_MESSAGE_SIZE = 65507;
+
+	private String bindAddress = "0.0.0.0";
+
+	private int port;
+
+	private List<String> peers = Collections.emptyList();
+
+	private List<InetSocketAddress> peerAddresses = Collections.emptyList();
+
+	private DatagramSocket socket;
+
+	private Thread receiverThread;
+
+	public synchronized void start(final Receiver receiver) throws IOException {
+		if (socket != null) {
+			throw new IllegalStateException("already started");
+		}
+		final DatagramSocket datagramSocket = new DatagramSocket(new InetSocketAddress(bindAddress, port));
+		socket = datagramSocket;
+		receiverThread = new Thread(new Runnable() {
+			public void run() {
+				receive(datagramSocket, receiver);
+			}
+		}, "invalidation-receiver-" + datagramSocket.getLocalPort());
+		receiverThread.setDaemon(true);
+		receiverThread.start();
+	}
+
+	private void receive(DatagramSocket datagramSocket, Receiver receiver) {
+		byte[] buffer = new byte[MAX_MESSAGE_SIZE];
+		DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+		while (!datagramSocket.isClosed()) {
+			try {
+				packet.setLength(buffer.length);
+				datagramSocket.receive(packet);
+				receiver.receive(InvalidationMessage.decode(packet.getData(), packet.getOffset(), packet.getLength()));
+			} catch (SocketException e) {
+				// closed by stop
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Cannot read invalidation message from " + packet.getSocketAddress(), e);
+			} catch (RuntimeException e) {
+				log.log(Level.SEVERE, "Cannot process invalidation message", e);
+			}
+		}
+	}
+
+	public void send(InvalidationMessage message) throws IOException {
+		DatagramSocket datagramSocket;
+		List<InetSocketAddress> addresses;
+		synchronized (this) {
+			datagramSocket = socket;
+			addresses = peerAddresses;
+		}
+		if (datagramSocket == null) {
+			throw new IOException("not started");
+		}
+		byte[] bytes = message.encode();
+		if (bytes.length > MAX_MESSAGE_SIZE) {
+			throw new IOException("Message of " + bytes.length + " bytes exceeds the maximum datagram size");
+		}
+		IOException failure = null;
+		for (InetSocketAddress address : addresses) {
+			try {
+				datagramSocket.send(new DatagramPacket(bytes, bytes.length, address));
+			} catch (IOException e) {
+				// send to the remaining peers
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	public void stop() {
+		Thread thread;
+		synchronized (this) {
+			if (socket == null) {
+				return;
+			}
+			socket.close();
+			socket = null;
+			thread = receiverThread;
+			receiverThread = null;
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private InetSocketAddress parseAddress(String peer) {
+		int index = peer.lastIndexOf(':');
+		if (index <= 0) {
+			throw new IllegalArgumentException("Expected host:port but got " + peer);
+		}
+		return new InetSocketAddress(peer.substring(0, index).trim(), Integer.parseInt(peer.substring(index + 1)
+				.trim()));
+	}
+
+	/**
+	 * the port on which messages are received, which is assigned when started if the {@link #setPort(int) port} is 0
+	 */
+	public synchronized int getLocalPort() {
+		return socket == null ? port : socket.getLocalPort();
+	}
+
+	public String getBindAddress() {
+		return bindAddress;
+	}
+
+	/**
+	 * the address on which to receive messages. Defaults to all addresses.
+	 */
+	public void setBindAddress(String bindAddress) {
+		this.bindAddress = bindAddress;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * the port on which to receive messages, or 0 for any free port. Defaults to 0.
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public synchronized List<String> getPeers() {
+		return peers;
+	}
+
+	/**
+	 * the addresses of the instances to which messages are sent, as <code>host:port</code>. Can be changed while
+	 * started.
+	 */
+	public synchronized void setPeers(List<String> peers) {
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>(peers.size());
+		for (String peer : peers) {
+			addresses.add(parseAddress(peer));
+		}
+		this.peers = peers;
+		peerAddresses = addresses;
+	}
+}
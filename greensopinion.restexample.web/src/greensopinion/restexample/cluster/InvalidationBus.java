@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.cluster;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Tells the other instances of the application which blogs and articles were modified, so that they can remove them
+ * from their caches. Invalidations are {@link #publish(Class, Long) published} once the modification has committed,
+ * and are sent by a background thread in batches, so that a burst of writes is sent as a few messages and an entity
+ * that is modified repeatedly is sent once per batch. Modifications that affect too many entities to list can instead
+ * {@link #publishAll() invalidate everything}.
+ * <p>
+ * Messages are received by {@link InvalidationListener listeners} of the other instances only; the instance that makes
+ * a modification invalidates its own caches. A receiver that detects a missed message from a sender, because of a gap
+ * in the sequence numbers of its messages or heartbeats, cannot know what was modified and resyncs by
+ * {@link InvalidationListener#invalidateAll() invalidating everything}.
+ * </p>
+ *
+ * @author David Green
+ * @see InvalidationTransport
+ */
+public class InvalidationBus implements InvalidationTransport.Receiver {
+
+	private static final Logger log = Logger.getLogger(InvalidationBus.class.getName());
+
+	private final String node = UUID.randomUUID().toString();
+
+	private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<InvalidationListener>();
+
+	private final Map<String, Long> lastSequences = new HashMap<String, Long>();
+
+	private final Object sendLock = new Object();
+
+	private final AtomicLong sentMessages = new AtomicLong();
+
+	private final AtomicLong receivedMessages = new AtomicLong();
+
+	private final AtomicLong resyncs = new AtomicLong();
+
+	private Map<String, Set<Long>> pending = new LinkedHashMap<String, Set<Long>>();
+
+	private int pendingCount;
+
+	private boolean pendingAll;
+
+	private long sequence;
+
+	private volatile long lastSendTime;
+
+	private InvalidationTransport transport;
+
+	private long flushIntervalMillis = 50L;
+
+	private long heartbeatIntervalMillis = 1000L;
+
+	private int maxBatchSize = 1000;
+
+	private volatile Thread sender;
+
+	/**
+	 * start the transport and the thread that sends invalidations
+	 */
+	@PostConstruct
+	public void start() throws IOException {
+		if (transport == null) {
+			throw new IllegalStateException("transport is required");
+		}
+		transport.start(this);
+		lastSendTime = System.currentTimeMillis();
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				send();
+			}
+		}, "invalidation-bus");
+		thread.setDaemon(true);
+		sender = thread;
+		thread.start();
+	}
+
+	/**
+	 * send pending invalidations and stop
+	 */
+	@PreDestroy
+	public void stop() {
+		Thread thread = sender;
+		sender = null;
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+		transport.stop();
+	}
+
+	/**
+	 * invalidate an entity on the other instances
+	 *
+	 * @param entityClass
+	 *            the class of the entity that was modified
+	 * @param id
+	 *            the identity of the entity
+	 */
+	public void publish(Class<?> entityClass, Long id) {
+		String entityName = entityClass.getSimpleName();
+		synchronized (this) {
+			Set<Long> ids = pending.get(entityName);
+			if (ids == null) {
+				ids = new LinkedHashSet<Long>();
+				pending.put(entityName, ids);
+			}
+			if (ids.add(id) && ++pendingCount >= maxBatchSize) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * invalidate everything on the other instances, for a modification that affects too many entities to list
+	 */
+	public void publishAll() {
+		synchronized (this) {
+			pendingAll = true;
+		}
+	}
+
+	private void send() {
+		while (sender == Thread.currentThread()) {
+			try {
+				synchronized (this) {
+					if (pendingCount < maxBatchSize) {
+						wait(flushIntervalMillis);
+					}
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (flush() == 0 && System.currentTimeMillis() - lastSendTime >= heartbeatIntervalMillis) {
+				sendHeartbeat();
+			}
+		}
+	}
+
+	/**
+	 * send pending invalidations now rather than waiting for the next batch
+	 *
+	 * @return the number of messages sent
+	 */
+	public int flush() {
+		int count = 0;
+		synchronized (sendLock) {
+			boolean all;
+			synchronized (this) {
+				all = pendingAll;
+				pendingAll = false;
+			}
+			if (all) {
+				send(new InvalidationMessage(node, ++sequence, true, new LinkedHashMap<String, Set<Long>>()));
+				++count;
+			}
+			for (;;) {
+				Map<String, Set<Long>> batch = takeBatch();
+				if (batch.isEmpty()) {
+					return count;
+				}
+				send(new InvalidationMessage(node, ++sequence, batch));
+				++count;
+			}
+		}
+	}
+
+	/**
+	 * send the sequence number of the last message, so that other instances can detect that they missed it
+	 */
+	public void sendHeartbeat() {
+		synchronized (sendLock) {
+			send(new InvalidationMessage(node, sequence, new LinkedHashMap<String, Set<Long>>()));
+		}
+	}
+
+	private void send(InvalidationMessage message) {
+		lastSendTime = System.currentTimeMillis();
+		try {
+			transport.send(message);
+			sentMessages.incrementAndGet();
+		} catch (IOException e) {
+			// receivers detect the gap in sequence numbers and resync
+			log.log(Level.WARNING, "Cannot send " + message, e);
+		}
+	}
+
+	private synchronized Map<String, Set<Long>> takeBatch() {
+		if (pendingCount <= maxBatchSize) {
+			Map<String, Set<Long>> batch = pending;
+			pending = new LinkedHashMap<String, Set<Long>>();
+			pendingCount = 0;
+			return batch;
+		}
+		Map<String, Set<Long>> batch = new LinkedHashMap<String, Set<Long>>();
+		int batchSize = 0;
+		Iterator<Map.Entry<String, Set<Long>>> entries = pending.entrySet().iterator();
+		while (batchSize < maxBatchSize) {
+			Map.Entry<String, Set<Long>> entry = entries.next();
+			Set<Long> ids = new LinkedHashSet<Long>();
+			Iterator<Long> it = entry.getValue().iterator();
+			while (batchSize < maxBatchSize && it.hasNext()) {
+				ids.add(it.next());
+				it.remove();
+				++batchSize;
+			}
+			batch.put(entry.getKey(), ids);
+			if (entry.getValue().isEmpty()) {
+				entries.remove();
+			}
+		}
+		pendingCount -= batchSize;
+		return batch;
+	}
+
+	public void receive(InvalidationMessage message) {
+		if (node.equals(message.getNode())) {
+			return;
+		}
+		receivedMessages.incrementAndGet();
+		boolean missed;
+		synchronized (lastSequences) {
+			Long last = lastSequences.get(message.getNode());
+			long expected = message.isHeartbeat() ? message.getSequence() : message.getSequence() - 1;
+			missed = expected > (last == null ? 0L : last);
+			if (last == null || message.getSequence() > last) {
+				lastSequences.put(message.getNode(), message.getSequence());
+			}
+		}
+		if (missed) {
+			resyncs.incrementAndGet();
+			log.fine("Missed invalidations from " + message.getNode() + ", invalidating all");
+		}
+		if (missed || message.isAll()) {
+			for (InvalidationListener listener : listeners) {
+				listener.invalidateAll();
+			}
+			return;
+		}
+		for (Map.Entry<String, Set<Long>> entry : message.getInvalidations().entrySet()) {
+			for (Long id : entry.getValue()) {
+				for (InvalidationListener listener : listeners) {
+					listener.invalidate(entry.getKey(), id);
+				}
+			}
+		}
+	}
+
+	public void addListener(InvalidationListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(InvalidationListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * the identity of this instance, which changes whenever the application is restarted
+	 */
+	public String getNode() {
+		return node;
+	}
+
+	/**
+	 * the number of messages sent, including heartbeats
+	 */
+	public long getSentMessageCount() {
+		return sentMessages.get();
+	}
+
+	/**
+	 * the number of messages received from other instances, including heartbeats
+	 */
+	public long getReceivedMessageCount() {
+		return receivedMessages.get();
+	}
+
+	/**
+	 * the number of times that a missed message caused all caches to be invalidated
+	 */
+	public long getResyncCount() {
+		return resyncs.get();
+	}
+
+	public InvalidationTransport getTransport() {
+		return transport;
+	}
+
+	public void setTransport(InvalidationTransport transport) {
+		this.transport = transport;
+	}
+
+	public long getFlushIntervalMillis() {
+		return flushIntervalMillis;
+	}
+
+	/**
+	 * the longest time for which an invalidation waits to be batched with others. Defaults to 50ms.
+	 */
+	public void setFlushIntervalMillis(long flushIntervalMillis) {
+		this.flushIntervalMillis = flushIntervalMillis;
+	}
+
+	public long getHeartbeatIntervalMillis() {
+		return heartbeatIntervalMillis;
+	}
+
+	/**
+	 * the time without sending after which a heartbeat is sent, which bounds the time for which a lost message goes
+	 * undetected. Defaults to 1 second.
+	 */
+	public void setHeartbeatIntervalMillis(long heartbeatIntervalMillis) {
+		this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * the largest number of ids in a message. Defaults to 1000, which keeps a message within a single datagram.
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+}
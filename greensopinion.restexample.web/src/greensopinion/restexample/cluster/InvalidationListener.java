@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.cluster;
+
+/**
+ * Removes cached data when it is modified by another instance of the application, as reported by an
+ * {@link InvalidationBus}.
+ *
+ * @author David Green
+ */
+public interface InvalidationListener {
+
+	/**
+	 * remove cached data of the given entity
+	 *
+	 * @param entityName
+	 *            the simple name of the entity class, for example <code>Article</code>
+	 * @param id
+	 *            the identity of the entity
+	 */
+	public void invalidate(String entityName, Long id);
+
+	/**
+	 * remove all cached data, since invalidations from another instance may have been missed or another instance made a
+	 * modification that affects too many entities to list
+	 */
+	public void invalidateAll();
+}
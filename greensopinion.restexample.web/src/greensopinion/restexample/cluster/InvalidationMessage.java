@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A batch of invalidations sent by one instance of the application. Messages of an instance are numbered in sequence so
+ * that receivers can detect a lost message; a message without invalidations is a heartbeat, which carries the sequence
+ * number of the last message sent so that the loss of the last message is detected too. A message may instead
+ * invalidate {@link #isAll() everything}, for modifications that affect too many entities to list.
+ *
+ * @author David Green
+ */
+public class InvalidationMessage {
+
+	private static final int VERSION = 1;
+
+	private final String node;
+
+	private final long sequence;
+
+	private final boolean all;
+
+	private final Map<String, Set<Long>> invalidations;
+
+	/**
+	 * @param node
+	 *            the identity of the sending instance
+	 * @param sequence
+	 *            the sequence number of the message
+	 * @param invalidations
+	 *            the ids to invalidate, by entity name
+	 */
+	public InvalidationMessage(String node, long sequence, Map<String, Set<Long>> invalidations) {
+		this(node, sequence, false, invalidations);
+	}
+
+	/**
+	 * @param node
+	 *            the identity of the sending instance
+	 * @param sequence
+	 *            the sequence number of the message
+	 * @param all
+	 *            true if everything is to be invalidated
+	 * @param invalidations
+	 *            the ids to invalidate, by entity name
+	 */
+	public InvalidationMessage(String node, long sequence, boolean all, Map<String, Set<Long>> invalidations) {
+		this.node = node;
+		this.sequence = sequence;
+		this.all = all;
+		this.invalidations = Collections.unmodifiableMap(invalidations);
+	}
+
+	public String getNode() {
+		return node;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public Map<String, Set<Long>> getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * indicate whether everything is to be invalidated, in addition to the listed invalidations
+	 */
+	public boolean isAll() {
+		return all;
+	}
+
+	public boolean isHeartbeat() {
+		return !all && invalidations.isEmpty();
+	}
+
+	public byte[] encode() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(VERSION);
+			out.writeUTF(node);
+			out.writeLong(sequence);
+			out.writeBoolean(all);
+			out.writeInt(invalidations.size());
+			for (Map.Entry<String, Set<Long>> entry : invalidations.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue().size());
+				for (Long id : entry.getValue()) {
+					out.writeLong(id);
+				}
+			}
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * decode a message that was {@link #encode() encoded}
+	 *
+	 * @throws IOException
+	 *             if the bytes are not an encoded message
+	 */
+	public static InvalidationMessage decode(byte[] bytes, int offset, int length) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported invalidation message version " + version);
+		}
+		String node = in.readUTF();
+		long sequence = in.readLong();
+		boolean all = in.readBoolean();
+		int entityCount = in.readInt();
+		Map<String, Set<Long>> invalidations = new LinkedHashMap<String, Set<Long>>();
+		for (int x = 0; x < entityCount; ++x) {
+			String entityName = in.readUTF();
+			int idCount = in.readInt();
+			if (idCount < 0 || idCount > length / 8) {
+				throw new IOException("Invalid id count " + idCount);
+			}
+			Set<Long> ids = new LinkedHashSet<Long>(idCount * 2);
+			for (int y = 0; y < idCount; ++y) {
+				ids.add(in.readLong());
+			}
+			invalidations.put(entityName, ids);
+		}
+		return new InvalidationMessage(node, sequence, all, invalidations);
+	}
+
+	@Override
+	public String toString() {
+		return "InvalidationMessage[node=" + node + ",sequence=" + sequence + ",all=" + all + ",invalidations=" + invalidations + "]";
+	}
+}
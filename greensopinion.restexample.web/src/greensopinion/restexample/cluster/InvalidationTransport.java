@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.cluster;
+
+import java.io.IOException;
+
+/**
+ * Carries {@link InvalidationMessage invalidation messages} between the instances of the application. Transports need
+ * not be reliable: the {@link InvalidationBus} detects lost messages by their sequence numbers.
+ *
+ * @author David Green
+ */
+public interface InvalidationTransport {
+
+	/**
+	 * receives the messages of other instances
+	 */
+	public interface Receiver {
+		public void receive(InvalidationMessage message);
+	}
+
+	/**
+	 * begin delivering messages to the given receiver
+	 */
+	public void start(Receiver receiver) throws IOException;
+
+	/**
+	 * send a message to the other instances
+	 */
+	public void send(InvalidationMessage message) throws IOException;
+
+	/**
+	 * stop delivering messages and release resources
+	 */
+	public void stop();
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.cluster;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An {@link InvalidationTransport} between buses in the same JVM, for tests. Messages are encoded and decoded as they
+ * would be by a network transport, and delivered synchronously to the other members of the {@link Network}.
+ *
+ * @author David Green
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+	/**
+	 * the transports that receive each other's messages
+	 */
+	public static class Network {
+		private final List<LoopbackInvalidationTransport> members = new CopyOnWriteArrayList<LoopbackInvalidationTransport>();
+	}
+
+	private final Network network;
+
+	private volatile Receiver receiver;
+
+	public LoopbackInvalidationTransport(Network network) {
+		this.network = network;
+	}
+
+	public void start(Receiver receiver) {
+		this.receiver = receiver;
+		network.members.add(this);
+	}
+
+	public void send(InvalidationMessage message) throws IOException {
+		byte[] bytes = message.encode();
+		for (LoopbackInvalidationTransport member : network.members) {
+			Receiver memberReceiver = member.receiver;
+			if (member != this && memberReceiver != null) {
+				memberReceiver.receive(InvalidationMessage.decode(bytes, 0, bytes.length));
+			}
+		}
+	}
+
+	public void stop() {
+		network.members.remove(this);
+		receiver = null;
+	}
+}
@@ -18,6 +18,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 
@@ -65,4 +66,9 @@ public class AbstractEntity {
 		}
 		modified = new Date();
 	}
+
+	@PreUpdate
+	public void preUpdate() {
+		modified = new Date();
+	}
 }
@@ -20,6 +20,10 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.eclipse.persistence.annotations.Convert;
+import org.eclipse.persistence.annotations.Converter;
+
 /**
  * an article, which has an author, title, content, and may optionally be published.
  * 
@@ -31,6 +35,7 @@ public class Article extends AbstractEntity {
 	private Date published;
 	private String title;
 	private String content;
+	private String contentRef;
 	private Blog blog;
 
 	public String getAuthor() {
@@ -59,7 +64,16 @@ public class Article extends AbstractEntity {
 		this.title = title;
 	}
 
+	/**
+	 * the content, which is stored as binary and may be compressed. Null when the content is held in a content store
+	 * instead.
+	 * 
+	 * @see CompressedContentConverter
+	 * @see #getContentRef()
+	 */
 	@Column(length = 16777215)
+	@Converter(name = "compressedContent", converterClass = CompressedContentConverter.class)
+	@Convert("compressedContent")
 	public String getContent() {
 		return content;
 	}
@@ -68,6 +82,21 @@ public class Article extends AbstractEntity {
 		this.content = content;
 	}
 
+	/**
+	 * the reference to the content in a content store, or null if the content is held by the article. Derived by the
+	 * server from the content, so it is neither written to nor read from clients.
+	 */
+	@Column(length = 64)
+	@JsonIgnore
+	public String getContentRef() {
+		return contentRef;
+	}
+
+	@JsonIgnore
+	public void setContentRef(String contentRef) {
+		this.contentRef = contentRef;
+	}
+
 	@ManyToOne(fetch = FetchType.LAZY)
 	@JoinColumn(name = "blogId", nullable = false)
 	public Blog getBlog() {
@@ -11,6 +11,7 @@
 package greensopinion.restexample.domain;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import javax.persistence.CascadeType;
@@ -18,6 +19,8 @@ import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.OneToMany;
 import javax.persistence.OrderBy;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
 
 /**
  * A blog (web log), which is a named collection of articles.
@@ -28,6 +31,7 @@ import javax.persistence.OrderBy;
 public class Blog extends AbstractEntity {
 	private String name;
 	private List<Article> articles = new ArrayList<Article>();
+	private Date deleted;
 
 	public String getName() {
 		return name;
@@ -47,4 +51,17 @@ public class Blog extends AbstractEntity {
 		this.articles = articles;
 	}
 
+	/**
+	 * the time at which the blog was deleted, or null. A deleted blog and its articles are not found, and are removed
+	 * from the database later.
+	 */
+	@Temporal(TemporalType.TIMESTAMP)
+	public Date getDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(Date deleted) {
+		this.deleted = deleted;
+	}
+
 }
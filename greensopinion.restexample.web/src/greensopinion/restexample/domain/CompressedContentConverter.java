@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.domain;
+
+import org.eclipse.persistence.mappings.DatabaseMapping;
+import org.eclipse.persistence.mappings.converters.Converter;
+import org.eclipse.persistence.mappings.foundation.AbstractDirectMapping;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * An EclipseLink converter that stores text in a binary column using {@link ContentCodec}, compressing values at least
+ * as long as the compression threshold. Compression is opt-in: it is enabled by setting the persistence unit property
+ * {@value #COMPRESSION_THRESHOLD_PROPERTY} to the length of the shortest text to compress. Values are always readable,
+ * whether or not they were compressed.
+ *
+ * @author David Green
+ */
+public class CompressedContentConverter implements Converter {
+
+	public static final String COMPRESSION_THRESHOLD_PROPERTY = "greensopinion.restexample.content.compressionThreshold";
+
+	private static final long serialVersionUID = 1L;
+
+	private int compressionThreshold = -1;
+
+	public void initialize(DatabaseMapping mapping, Session session) {
+		((AbstractDirectMapping) mapping).setFieldClassification(byte[].class);
+		Object threshold = session.getProperty(COMPRESSION_THRESHOLD_PROPERTY);
+		if (threshold != null) {
+			compressionThreshold = Integer.parseInt(threshold.toString().trim());
+		}
+	}
+
+	public Object convertObjectValueToDataValue(Object objectValue, Session session) {
+		if (objectValue == null) {
+			return null;
+		}
+		return ContentCodec.encode((String) objectValue, compressionThreshold);
+	}
+
+	public Object convertDataValueToObjectValue(Object dataValue, Session session) {
+		if (dataValue == null) {
+			return null;
+		}
+		if (dataValue instanceof String) {
+			// a text column that has not yet been migrated
+			return dataValue;
+		}
+		return ContentCodec.decode((byte[]) dataValue);
+	}
+
+	public boolean isMutable() {
+		return false;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.domain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes text for storage in a binary column, optionally compressed. Compressed values start with a header:
+ * <ol>
+ * <li>the marker byte <code>0xFF</code>, which never occurs in UTF-8 encoded text</li>
+ * <li>the format, currently always {@link #FORMAT_DEFLATE}</li>
+ * <li>the length of the UTF-8 encoded text as 4 bytes, most significant first</li>
+ * </ol>
+ * followed by the deflated UTF-8 encoded text. Values without the marker are plain UTF-8 encoded text, so that content
+ * written before compression was introduced, or below the compression threshold, remains readable.
+ *
+ * @author David Green
+ */
+public class ContentCodec {
+
+	/**
+	 * the format of deflate-compressed content
+	 */
+	public static final byte FORMAT_DEFLATE = 1;
+
+	private static final byte MARKER = (byte) 0xFF;
+
+	private static final int HEADER_LENGTH = 6;
+
+	private static final String CHARSET = "UTF-8";
+
+	private ContentCodec() {
+	}
+
+	/**
+	 * encode the given text
+	 *
+	 * @param text
+	 *            the text to encode
+	 * @param compressionThreshold
+	 *            the length of the shortest text to compress, or -1 if the text should not be compressed
+	 * @return the encoded text
+	 */
+	public static byte[] encode(String text, int compressionThreshold) {
+		byte[] bytes = toBytes(text);
+		if (compressionThreshold < 0 || text.length() < compressionThreshold) {
+			return bytes;
+		}
+		byte[] compressed = compress(bytes);
+		// incompressible content is stored as text
+		return compressed.length < bytes.length ? compressed : bytes;
+	}
+
+	/**
+	 * decode a value produced by {@link #encode(String, int)}
+	 */
+	public static String decode(byte[] value) {
+		if (!isCompressed(value)) {
+			return toString(value);
+		}
+		if (value[1] != FORMAT_DEFLATE) {
+			throw new IllegalArgumentException("Unknown content format " + value[1]);
+		}
+		int length = decodedLength(value);
+		byte[] bytes = new byte[length];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(value, HEADER_LENGTH, value.length - HEADER_LENGTH);
+			int offset = 0;
+			while (offset < length) {
+				int count = inflater.inflate(bytes, offset, length - offset);
+				if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new IllegalArgumentException("Truncated content");
+				}
+				offset += count;
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalArgumentException(e);
+		} finally {
+			inflater.end();
+		}
+		return toString(bytes);
+	}
+
+	/**
+	 * indicate if the given value is compressed
+	 */
+	public static boolean isCompressed(byte[] value) {
+		return value.length >= HEADER_LENGTH && value[0] == MARKER;
+	}
+
+	/**
+	 * the length of the UTF-8 encoded text that the given value represents
+	 */
+	public static int decodedLength(byte[] value) {
+		if (!isCompressed(value)) {
+			return value.length;
+		}
+		return ((value[2] & 0xFF) << 24) | ((value[3] & 0xFF) << 16) | ((value[4] & 0xFF) << 8) | (value[5] & 0xFF);
+	}
+
+	private static byte[] compress(byte[] bytes) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_LENGTH + bytes.length / 2);
+		out.write(MARKER);
+		out.write(FORMAT_DEFLATE);
+		out.write(bytes.length >>> 24);
+		out.write(bytes.length >>> 16);
+		out.write(bytes.length >>> 8);
+		out.write(bytes.length);
+		Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+		} finally {
+			deflater.end();
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] toBytes(String text) {
+		try {
+			return text.getBytes(CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toString(byte[] bytes) {
+		try {
+			return new String(bytes, CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+
+/**
+ * Removes the rows of blogs that were deleted, which are only marked as deleted when the blog is deleted. The articles
+ * of a blog are deleted in batches of {@link #setBatchSize(int) batchSize} rows, each batch in its own short
+ * transaction, so that deleting a blog with many articles does not hold locks for long or delay replication; pausing
+ * between batches further limits the load on the database. The blog row is deleted once it has no articles.
+ * <p>
+ * The job can be stopped and run again, and can run while the application is serving requests. Batches are selected
+ * by id rather than with <code>DELETE ... LIMIT</code>, which is not portable. When blogs are sharded, each shard is
+ * purged in turn.
+ * </p>
+ *
+ * @author David Green
+ */
+public class BlogPurgeJob implements Runnable {
+
+	/**
+	 * the outcome of a run of the job
+	 */
+	public static class Result {
+		private long blogsPurged;
+
+		private long articlesDeleted;
+
+		private long batches;
+
+		public long getBlogsPurged() {
+			return blogsPurged;
+		}
+
+		public long getArticlesDeleted() {
+			return articlesDeleted;
+		}
+
+		/**
+		 * the number of transactions in which articles were deleted
+		 */
+		public long getBatches() {
+			return batches;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("purged %d blogs, deleted %d articles in %d batches", blogsPurged, articlesDeleted,
+					batches);
+		}
+	}
+
+	private List<DataSource> dataSources;
+
+	private int batchSize = 500;
+
+	private long pauseMillis = 100L;
+
+	private long graceMillis;
+
+	private volatile boolean stopped;
+
+	private Result result;
+
+	public void run() {
+		Result result = new Result();
+		this.result = result;
+		for (DataSource dataSource : dataSources) {
+			if (stopped) {
+				return;
+			}
+			run(new JdbcTemplate(dataSource), result);
+		}
+	}
+
+	private void run(JdbcTemplate jdbcTemplate, Result result) {
+		jdbcTemplate.setMaxRows(batchSize);
+		Long lastBlogId = Long.MIN_VALUE;
+		while (!stopped) {
+			List<Long> blogIds = jdbcTemplate.query(
+					"SELECT ID FROM BLOG WHERE ID > ? AND DELETED IS NOT NULL AND DELETED <= ? ORDER BY ID",
+					new Object[] { lastBlogId, new Timestamp(System.currentTimeMillis() - graceMillis) },
+					new SingleColumnRowMapper<Long>(Long.class));
+			for (Long blogId : blogIds) {
+				if (stopped) {
+					return;
+				}
+				lastBlogId = blogId;
+				purge(jdbcTemplate, blogId, result);
+			}
+			if (blogIds.size() < batchSize) {
+				break;
+			}
+		}
+	}
+
+	private void purge(JdbcTemplate jdbcTemplate, Long blogId, Result result) {
+		for (;;) {
+			List<Long> articleIds = jdbcTemplate.query("SELECT ID FROM ARTICLE WHERE blogId = ? ORDER BY ID",
+					new Object[] { blogId }, new SingleColumnRowMapper<Long>(Long.class));
+			if (articleIds.isEmpty()) {
+				break;
+			}
+			StringBuilder sql = new StringBuilder("DELETE FROM ARTICLE WHERE blogId = ? AND ID IN (");
+			for (int x = 0; x < articleIds.size(); ++x) {
+				sql.append(x == 0 ? "?" : ", ?");
+			}
+			sql.append(')');
+			Object[] parameters = new Object[articleIds.size() + 1];
+			parameters[0] = blogId;
+			for (int x = 0; x < articleIds.size(); ++x) {
+				parameters[x + 1] = articleIds.get(x);
+			}
+			result.articlesDeleted += jdbcTemplate.update(sql.toString(), parameters);
+			++result.batches;
+			pause();
+			if (stopped) {
+				return;
+			}
+		}
+		try {
+			result.blogsPurged += jdbcTemplate.update("DELETE FROM BLOG WHERE ID = ? AND DELETED IS NOT NULL",
+					new Object[] { blogId });
+		} catch (DataIntegrityViolationException e) {
+			// an article was created by a transaction that began before the blog was deleted; purged by the next run
+		}
+	}
+
+	private void pause() {
+		if (pauseMillis > 0) {
+			try {
+				Thread.sleep(pauseMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stopped = true;
+			}
+		}
+	}
+
+	/**
+	 * stop the job after the current batch
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * the result of the current or most recent run, or null if the job has not run
+	 */
+	public Result getResult() {
+		return result;
+	}
+
+	public List<DataSource> getDataSources() {
+		return dataSources;
+	}
+
+	/**
+	 * the data source of the primary database of each shard, or only of the primary database if the blogs are not
+	 * sharded. The data sources must not be in a transaction.
+	 */
+	public void setDataSources(List<DataSource> dataSources) {
+		this.dataSources = dataSources;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * the number of rows to delete in each transaction. Defaults to 500.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getPauseMillis() {
+		return pauseMillis;
+	}
+
+	/**
+	 * the time to wait between batches. Defaults to 100ms.
+	 */
+	public void setPauseMillis(long pauseMillis) {
+		this.pauseMillis = pauseMillis;
+	}
+
+	public long getGraceMillis() {
+		return graceMillis;
+	}
+
+	/**
+	 * the time for which the rows of a deleted blog are kept before they are purged. Defaults to 0.
+	 */
+	public void setGraceMillis(long graceMillis) {
+		this.graceMillis = graceMillis;
+	}
+}
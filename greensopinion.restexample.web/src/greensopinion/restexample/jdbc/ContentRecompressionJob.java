@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import greensopinion.restexample.domain.CompressedContentConverter;
+import greensopinion.restexample.domain.ContentCodec;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Compresses the content of existing articles that was stored uncompressed, in batches of
+ * {@link #setBatchSize(int) batchSize} rows ordered by id. Each row is updated in its own statement, and only if the
+ * article was not modified since it was read, so the job can run while the application is serving requests. Pausing
+ * between batches limits the load on the database and on replication.
+ * <p>
+ * The job can be stopped and run again; rows that are already compressed are skipped.
+ * </p>
+ *
+ * @author David Green
+ * @see CompressedContentConverter
+ */
+public class ContentRecompressionJob implements Runnable {
+
+	/**
+	 * the outcome of a run of the job
+	 */
+	public static class Result {
+		private long rowsRead;
+
+		private long rowsCompressed;
+
+		private long bytesBefore;
+
+		private long bytesAfter;
+
+		private long uncompressedBytes;
+
+		public long getRowsRead() {
+			return rowsRead;
+		}
+
+		public long getRowsCompressed() {
+			return rowsCompressed;
+		}
+
+		/**
+		 * the size of the content of all rows read before the job ran
+		 */
+		public long getBytesBefore() {
+			return bytesBefore;
+		}
+
+		/**
+		 * the size of the content of all rows read after the job ran
+		 */
+		public long getBytesAfter() {
+			return bytesAfter;
+		}
+
+		/**
+		 * the size of the stored content relative to the uncompressed content of all rows read, for example 0.25 if
+		 * content takes a quarter of the space it would take uncompressed
+		 */
+		public double getCompressionRatio() {
+			return uncompressedBytes == 0 ? 1d : bytesAfter / (double) uncompressedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("read %d rows, compressed %d, content %d bytes before, %d after, "
+					+ "stored at %.1f%% of uncompressed size", rowsRead, rowsCompressed, bytesBefore, bytesAfter,
+					getCompressionRatio() * 100d);
+		}
+	}
+
+	private static class Row {
+		Long id;
+
+		Timestamp modified;
+
+		byte[] content;
+	}
+
+	private DataSource dataSource;
+
+	private int batchSize = 100;
+
+	private long pauseMillis = 100L;
+
+	private int compressionThreshold = 1024;
+
+	private volatile boolean stopped;
+
+	private Result result;
+
+	public void run() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.setMaxRows(batchSize);
+		Result result = new Result();
+		this.result = result;
+		Long lastId = Long.MIN_VALUE;
+		while (!stopped) {
+			List<Row> rows = readBatch(jdbcTemplate, lastId);
+			if (rows.isEmpty()) {
+				break;
+			}
+			for (Row row : rows) {
+				lastId = row.id;
+				recompress(jdbcTemplate, row, result);
+			}
+			if (rows.size() < batchSize) {
+				break;
+			}
+			pause();
+		}
+	}
+
+	private List<Row> readBatch(JdbcTemplate jdbcTemplate, Long lastId) {
+		return jdbcTemplate.query("SELECT ID, MODIFIED, CONTENT FROM ARTICLE WHERE ID > ? ORDER BY ID",
+				new Object[] { lastId }, new RowMapper<Row>() {
+					public Row mapRow(ResultSet resultSet, int rowNum) throws SQLException {
+						Row row = new Row();
+						row.id = resultSet.getLong(1);
+						row.modified = resultSet.getTimestamp(2);
+						row.content = resultSet.getBytes(3);
+						return row;
+					}
+				});
+	}
+
+	private void recompress(JdbcTemplate jdbcTemplate, Row row, Result result) {
+		++result.rowsRead;
+		if (row.content == null) {
+			return;
+		}
+		result.bytesBefore += row.content.length;
+		result.uncompressedBytes += ContentCodec.decodedLength(row.content);
+		byte[] content = row.content;
+		if (!ContentCodec.isCompressed(content)) {
+			byte[] compressed = ContentCodec.encode(ContentCodec.decode(content), compressionThreshold);
+			if (ContentCodec.isCompressed(compressed)) {
+				// the modified timestamp guards against overwriting a concurrent update, and is not changed since the
+				// content is the same
+				int updated;
+				if (row.modified == null) {
+					updated = jdbcTemplate.update("UPDATE ARTICLE SET CONTENT = ? WHERE ID = ? AND MODIFIED IS NULL",
+							new Object[] { compressed, row.id });
+				} else {
+					updated = jdbcTemplate.update("UPDATE ARTICLE SET CONTENT = ? WHERE ID = ? AND MODIFIED = ?",
+							new Object[] { compressed, row.id, row.modified });
+				}
+				if (updated == 1) {
+					content = compressed;
+					++result.rowsCompressed;
+				}
+			}
+		}
+		result.bytesAfter += content.length;
+	}
+
+	private void pause() {
+		if (pauseMillis > 0) {
+			try {
+				Thread.sleep(pauseMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stopped = true;
+			}
+		}
+	}
+
+	/**
+	 * stop the job after the current row
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * the result of the current or most recent run, or null if the job has not run
+	 */
+	public Result getResult() {
+		return result;
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * the number of rows to read at a time. Defaults to 100.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getPauseMillis() {
+		return pauseMillis;
+	}
+
+	/**
+	 * the time to wait between batches. Defaults to 100ms.
+	 */
+	public void setPauseMillis(long pauseMillis) {
+		this.pauseMillis = pauseMillis;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * the length of the shortest content to compress, which should be the same as the threshold of the
+	 * {@link CompressedContentConverter}. Defaults to 1024.
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import greensopinion.restexample.service.ContentStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+
+/**
+ * Removes the files of a {@link ContentStore} that no article references, which are left behind when the content of
+ * an article is changed or an article is deleted. Files are checked in batches of {@link #setBatchSize(int)
+ * batchSize} against the articles of every shard; a file is removed only if no shard references it.
+ * <p>
+ * Content is stored before the transaction that references it commits, so files modified within
+ * {@link #setGraceMillis(long) graceMillis} are kept; storing content that is already stored touches its file. The job can be stopped and run again, and can run while the
+ * application is serving requests.
+ * </p>
+ * 
+ * @author David Green
+ */
+public class ContentSweepJob implements Runnable {
+
+	/**
+	 * the outcome of a run of the job
+	 */
+	public static class Result {
+		private long filesChecked;
+
+		private long filesRemoved;
+
+		private long bytesRemoved;
+
+		public long getFilesChecked() {
+			return filesChecked;
+		}
+
+		public long getFilesRemoved() {
+			return filesRemoved;
+		}
+
+		public long getBytesRemoved() {
+			return bytesRemoved;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("checked %d files, removed %d files of %d bytes", filesChecked, filesRemoved,
+					bytesRemoved);
+		}
+	}
+
+	private ContentStore contentStore;
+
+	private List<DataSource> dataSources;
+
+	private int batchSize = 500;
+
+	private long pauseMillis = 100L;
+
+	private long graceMillis = 60L * 60L * 1000L;
+
+	private volatile boolean stopped;
+
+	private Result result;
+
+	public void run() {
+		List<JdbcTemplate> jdbcTemplates = new ArrayList<JdbcTemplate>(dataSources.size());
+		for (DataSource dataSource : dataSources) {
+			jdbcTemplates.add(new JdbcTemplate(dataSource));
+		}
+		Result result = new Result();
+		this.result = result;
+		File[] folders = contentStore.getRoot().listFiles();
+		if (folders == null) {
+			return;
+		}
+		long modifiedBefore = System.currentTimeMillis() - graceMillis;
+		for (File folder : folders) {
+			if (stopped) {
+				return;
+			}
+			File[] files = folder.listFiles();
+			if (files == null) {
+				continue;
+			}
+			List<File> batch = new ArrayList<File>(batchSize);
+			for (File file : files) {
+				if (stopped) {
+					return;
+				}
+				if (isReference(file.getName()) && file.lastModified() < modifiedBefore) {
+					batch.add(file);
+					if (batch.size() >= batchSize) {
+						sweep(jdbcTemplates, batch, modifiedBefore, result);
+						batch.clear();
+					}
+				}
+			}
+			if (!batch.isEmpty()) {
+				sweep(jdbcTemplates, batch, modifiedBefore, result);
+			}
+		}
+	}
+
+	private boolean isReference(String name) {
+		try {
+			return contentStore.getFile(name).getName().equals(name);
+		} catch (RuntimeException e) {
+			// a temporary file or a file that was not written by the store
+			return false;
+		}
+	}
+
+	private void sweep(List<JdbcTemplate> jdbcTemplates, List<File> batch, long modifiedBefore, Result result) {
+		StringBuilder sql = new StringBuilder("SELECT CONTENTREF FROM ARTICLE WHERE CONTENTREF IN (");
+		Object[] parameters = new Object[batch.size()];
+		for (int x = 0; x < batch.size(); ++x) {
+			sql.append(x == 0 ? "?" : ", ?");
+			parameters[x] = batch.get(x).getName();
+		}
+		sql.append(')');
+		Set<String> referenced = new HashSet<String>();
+		for (JdbcTemplate jdbcTemplate : jdbcTemplates) {
+			referenced.addAll(jdbcTemplate.query(sql.toString(), parameters, new SingleColumnRowMapper<String>(
+					String.class)));
+		}
+		for (File file : batch) {
+			++result.filesChecked;
+			// the store touches a file when its content is stored again
+			if (!referenced.contains(file.getName()) && file.lastModified() < modifiedBefore) {
+				long length = file.length();
+				if (file.delete()) {
+					++result.filesRemoved;
+					result.bytesRemoved += length;
+				}
+			}
+		}
+		pause();
+	}
+
+	private void pause() {
+		if (pauseMillis > 0) {
+			try {
+				Thread.sleep(pauseMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				stopped = true;
+			}
+		}
+	}
+
+	/**
+	 * stop the job after the current batch
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * the result of the current or most recent run, or null if the job has not run
+	 */
+	public Result getResult() {
+		return result;
+	}
+
+	public ContentStore getContentStore() {
+		return contentStore;
+	}
+
+	/**
+	 * the store from which unreferenced content is removed
+	 */
+	public void setContentStore(ContentStore contentStore) {
+		this.contentStore = contentStore;
+	}
+
+	public List<DataSource> getDataSources() {
+		return dataSources;
+	}
+
+	/**
+	 * the data source of the primary database of each shard, or only of the primary database if the blogs are not
+	 * sharded
+	 */
+	public void setDataSources(List<DataSource> dataSources) {
+		this.dataSources = dataSources;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * the number of files to check with each query. Defaults to 500.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getPauseMillis() {
+		return pauseMillis;
+	}
+
+	/**
+	 * the time to wait between batches. Defaults to 100ms.
+	 */
+	public void setPauseMillis(long pauseMillis) {
+		this.pauseMillis = pauseMillis;
+	}
+
+	public long getGraceMillis() {
+		return graceMillis;
+	}
+
+	/**
+	 * the time for which a file is kept after it was written, which must exceed the longest transaction that stores
+	 * content. Defaults to 1 hour.
+	 */
+	public void setGraceMillis(long graceMillis) {
+		this.graceMillis = graceMillis;
+	}
+}
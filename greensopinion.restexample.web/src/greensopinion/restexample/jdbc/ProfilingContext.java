@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-bound {@link SqlProfile profiles} to which a {@link ProfilingDataSource} records statements. Scopes nest: a
+ * statement is recorded to every profile that is open on the thread, so that a service method is profiled within the
+ * profile of the request that called it.
+ *
+ * Usage:
+ *
+ * <pre><code>
+ * SqlProfile profile = ProfilingContext.begin(&quot;GET /api/article/1&quot;);
+ * try {
+ * 	// do work
+ * } finally {
+ * 	ProfilingContext.end(profile);
+ * }
+ * </code></pre>
+ *
+ * @author David Green
+ */
+public class ProfilingContext {
+
+	private static final ThreadLocal<List<SqlProfile>> profiles = new ThreadLocal<List<SqlProfile>>();
+
+	private ProfilingContext() {
+	}
+
+	/**
+	 * begin profiling a scope on the current thread
+	 *
+	 * @see #end(SqlProfile)
+	 */
+	public static SqlProfile begin(String name) {
+		List<SqlProfile> current = profiles.get();
+		if (current == null) {
+			current = new ArrayList<SqlProfile>(2);
+			profiles.set(current);
+		}
+		SqlProfile profile = new SqlProfile(name);
+		current.add(profile);
+		return profile;
+	}
+
+	/**
+	 * end profiling the given scope
+	 *
+	 * @see #begin(String)
+	 */
+	public static void end(SqlProfile profile) {
+		profile.end();
+		List<SqlProfile> current = profiles.get();
+		if (current != null) {
+			current.remove(profile);
+			if (current.isEmpty()) {
+				profiles.remove();
+			}
+		}
+	}
+
+	/**
+	 * indicate whether statements executed on the current thread are being profiled
+	 */
+	public static boolean isActive() {
+		return profiles.get() != null;
+	}
+
+	static void statementExecuted(String sql, long nanos) {
+		List<SqlProfile> current = profiles.get();
+		if (current != null) {
+			for (SqlProfile profile : current) {
+				profile.statementExecuted(sql, nanos);
+			}
+		}
+	}
+
+	static void rowRead(String sql) {
+		List<SqlProfile> current = profiles.get();
+		if (current != null) {
+			for (SqlProfile profile : current) {
+				profile.rowRead(sql);
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A data source that records the statements executed on its connections, and the rows read from their results, to
+ * the {@link SqlProfile profiles} of the {@link ProfilingContext} of the current thread. Statements executed when no
+ * profile is open are not timed.
+ *
+ * @author David Green
+ */
+public class ProfilingDataSource extends DelegatingDataSource {
+
+	public ProfilingDataSource() {
+	}
+
+	public ProfilingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return proxy(Connection.class, super.getConnection(), null);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return proxy(Connection.class, super.getConnection(username, password), null);
+	}
+
+	/**
+	 * @param sql
+	 *            the SQL of a prepared statement or of the statement that produced a result set, or null
+	 */
+	private <T> T proxy(Class<T> type, final T target, final String sql) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (target instanceof Statement && method.getName().startsWith("execute")
+								&& ProfilingContext.isActive()) {
+							String statementSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0]
+									: sql;
+							long start = System.nanoTime();
+							try {
+								return wrap(method, invoke(method, args), statementSql);
+							} finally {
+								ProfilingContext.statementExecuted(statementSql, System.nanoTime() - start);
+							}
+						}
+						Object result = invoke(method, args);
+						if (target instanceof ResultSet) {
+							if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+								ProfilingContext.rowRead(sql);
+							}
+							return result;
+						}
+						if (result instanceof Statement && target instanceof Connection) {
+							String statementSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0]
+									: null;
+							return proxyStatement(method, (Statement) result, statementSql);
+						}
+						return wrap(method, result, sql);
+					}
+
+					private Object invoke(Method method, Object[] args) throws Throwable {
+						try {
+							return method.invoke(target, args);
+						} catch (InvocationTargetException e) {
+							throw e.getTargetException();
+						}
+					}
+				}));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Statement proxyStatement(Method method, Statement statement, String sql) {
+		// PreparedStatement and CallableStatement must keep their type
+		return proxy((Class<Statement>) method.getReturnType(), statement, sql);
+	}
+
+	private Object wrap(Method method, Object result, String sql) {
+		if (result instanceof ResultSet && method.getReturnType() == ResultSet.class) {
+			return proxy(ResultSet.class, (ResultSet) result, sql);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A data source that routes read-only transactions to a pool of replicas, and everything else to the primary. Replicas
+ * are selected round-robin. Threads that are {@link RoutingContext#isPinnedToPrimary() pinned to the primary} always use
+ * the primary, which is how read-your-writes consistency is achieved.
+ * <p>
+ * The routing decision is made when a connection is requested, so this data source must be wrapped in a
+ * {@link LazyConnectionDataSourceProxy} for the read-only flag of the current transaction to be visible at that time.
+ * </p>
+ *
+ * @author David Green
+ * @see RoutingContext
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	private static final String PRIMARY_KEY = "primary";
+
+	private static final String REPLICA_KEY_PREFIX = "replica";
+
+	private DataSource primary;
+
+	private List<DataSource> replicas = new ArrayList<DataSource>();
+
+	private final AtomicInteger nextReplica = new AtomicInteger();
+
+	@Override
+	public void afterPropertiesSet() {
+		if (primary == null) {
+			throw new IllegalStateException("primary data source must be specified");
+		}
+		Map<Object, Object> targetDataSources = new HashMap<Object, Object>();
+		targetDataSources.put(PRIMARY_KEY, primary);
+		for (int x = 0; x < replicas.size(); ++x) {
+			targetDataSources.put(REPLICA_KEY_PREFIX + x, replicas.get(x));
+		}
+		setTargetDataSources(targetDataSources);
+		setDefaultTargetDataSource(primary);
+		super.afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			RoutingContext.writeOccurred();
+			return PRIMARY_KEY;
+		}
+		if (replicas.isEmpty() || RoutingContext.isPinnedToPrimary()) {
+			return PRIMARY_KEY;
+		}
+		int index = (nextReplica.getAndIncrement() & Integer.MAX_VALUE) % replicas.size();
+		return REPLICA_KEY_PREFIX + index;
+	}
+
+	public DataSource getPrimary() {
+		return primary;
+	}
+
+	public void setPrimary(DataSource primary) {
+		this.primary = primary;
+	}
+
+	public List<DataSource> getReplicas() {
+		return replicas;
+	}
+
+	/**
+	 * the replicas to which read-only transactions are routed, or an empty list if all traffic should go to the primary
+	 */
+	public void setReplicas(List<DataSource> replicas) {
+		this.replicas = replicas == null ? new ArrayList<DataSource>() : replicas;
+	}
+}
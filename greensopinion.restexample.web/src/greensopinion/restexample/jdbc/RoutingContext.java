@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+/**
+ * Thread-bound routing state used by {@link ReadWriteRoutingDataSource} to provide read-your-writes consistency.
+ * A scope is typically opened per request: within a scope, once a write has occurred all subsequent reads on the same
+ * thread are routed to the primary. Outside of a scope writes do not affect routing.
+ *
+ * Usage:
+ *
+ * <pre><code>
+ * RoutingContext.begin(false);
+ * try {
+ * 	// do work
+ * } finally {
+ * 	RoutingContext.end();
+ * }
+ * </code></pre>
+ *
+ * @author David Green
+ */
+public class RoutingContext {
+
+	private static class Scope {
+		private boolean pinnedToPrimary;
+	}
+
+	private static final ThreadLocal<Scope> scope = new ThreadLocal<Scope>();
+
+	private RoutingContext() {
+	}
+
+	/**
+	 * begin a routing scope on the current thread
+	 *
+	 * @param pinnedToPrimary
+	 *            true if all reads in the scope should be routed to the primary
+	 * @see #end()
+	 */
+	public static void begin(boolean pinnedToPrimary) {
+		Scope newScope = new Scope();
+		newScope.pinnedToPrimary = pinnedToPrimary;
+		scope.set(newScope);
+	}
+
+	/**
+	 * end the routing scope of the current thread
+	 *
+	 * @see #begin(boolean)
+	 */
+	public static void end() {
+		scope.remove();
+	}
+
+	/**
+	 * begin a scope on the current thread in which all reads are routed to the primary, nested within the current scope
+	 * if there is one. Used for reads that must observe every committed write, regardless of replication lag.
+	 *
+	 * @return the enclosing scope, which must be passed to {@link #restore(Object)}
+	 */
+	public static Object beginPinned() {
+		Scope enclosingScope = scope.get();
+		begin(true);
+		return enclosingScope;
+	}
+
+	/**
+	 * end a scope begun by {@link #beginPinned()}, restoring the enclosing scope
+	 *
+	 * @param enclosingScope
+	 *            the value returned by {@link #beginPinned()}
+	 */
+	public static void restore(Object enclosingScope) {
+		if (enclosingScope == null) {
+			scope.remove();
+		} else {
+			scope.set((Scope) enclosingScope);
+		}
+	}
+
+	/**
+	 * route all subsequent reads of the current scope to the primary. Has no effect if there is no current scope.
+	 */
+	public static void pinToPrimary() {
+		Scope currentScope = scope.get();
+		if (currentScope != null) {
+			currentScope.pinnedToPrimary = true;
+		}
+	}
+
+	/**
+	 * indicate if reads on the current thread must be routed to the primary
+	 */
+	public static boolean isPinnedToPrimary() {
+		Scope currentScope = scope.get();
+		return currentScope != null && currentScope.pinnedToPrimary;
+	}
+
+	static void writeOccurred() {
+		pinToPrimary();
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Brings a database schema up to date by applying versioned SQL scripts, so that the schema is created and changed in
+ * an explicit step before the application is deployed rather than by the persistence provider on every startup.
+ * <p>
+ * Scripts are named <code>V&lt;version&gt;__&lt;description&gt;.sql</code>, for example
+ * <code>V2__add_article_index.sql</code>, and are applied in order of version. The versions that have been applied are
+ * recorded in a {@link #setVersionTable(String) version table}, which is created if it does not exist. Scripts must
+ * not be changed once they have been applied to a database; make further changes with a new version.
+ * </p>
+ *
+ * @author David Green
+ */
+public class SchemaMigration {
+
+	private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+	private DataSource dataSource;
+
+	private String locationPattern = "classpath*:META-INF/db/migration/V*.sql";
+
+	private String versionTable = "SCHEMA_VERSION";
+
+	/**
+	 * apply the scripts with a version greater than the current version of the schema
+	 *
+	 * @return the number of scripts that were applied
+	 */
+	public int migrate() throws SQLException, IOException {
+		SortedMap<Integer, Resource> scripts = findScripts();
+		Connection connection = dataSource.getConnection();
+		try {
+			connection.setAutoCommit(true);
+			int currentVersion = readVersion(connection);
+			int count = 0;
+			for (Map.Entry<Integer, Resource> script : scripts.tailMap(currentVersion + 1).entrySet()) {
+				ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+				populator.setSqlScriptEncoding("UTF-8");
+				populator.addScript(script.getValue());
+				populator.populate(connection);
+				recordVersion(connection, script.getKey(), script.getValue().getFilename());
+				++count;
+			}
+			return count;
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * the version of the most recent script applied to the database, or 0 if none have been applied
+	 */
+	public int getCurrentVersion() throws SQLException {
+		Connection connection = dataSource.getConnection();
+		try {
+			return readVersion(connection);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private SortedMap<Integer, Resource> findScripts() throws IOException {
+		SortedMap<Integer, Resource> scripts = new TreeMap<Integer, Resource>();
+		for (Resource resource : new PathMatchingResourcePatternResolver().getResources(locationPattern)) {
+			Matcher matcher = SCRIPT_NAME.matcher(resource.getFilename());
+			if (!matcher.matches()) {
+				throw new IllegalStateException("Expected V<version>__<description>.sql but got " + resource);
+			}
+			Integer version = Integer.valueOf(matcher.group(1));
+			Resource previous = scripts.put(version, resource);
+			if (previous != null) {
+				throw new IllegalStateException("Duplicate version " + version + ": " + previous + ", " + resource);
+			}
+		}
+		return scripts;
+	}
+
+	private int readVersion(Connection connection) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet;
+			try {
+				resultSet = statement.executeQuery("SELECT MAX(VERSION) FROM " + versionTable);
+			} catch (SQLException e) {
+				// the version table does not exist, so no scripts have been applied
+				statement.executeUpdate("CREATE TABLE " + versionTable
+						+ " (VERSION INTEGER NOT NULL, DESCRIPTION VARCHAR(200), APPLIED TIMESTAMP, PRIMARY KEY (VERSION))");
+				return 0;
+			}
+			try {
+				return resultSet.next() ? resultSet.getInt(1) : 0;
+			} finally {
+				resultSet.close();
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	private void recordVersion(Connection connection, Integer version, String description) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("INSERT INTO " + versionTable
+				+ " (VERSION, DESCRIPTION, APPLIED) VALUES (?, ?, ?)");
+		try {
+			statement.setInt(1, version);
+			statement.setString(2, description);
+			statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+			statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public String getLocationPattern() {
+		return locationPattern;
+	}
+
+	/**
+	 * the location of the scripts, as a Spring resource pattern. Defaults to
+	 * <code>classpath*:META-INF/db/migration/V*.sql</code>.
+	 */
+	public void setLocationPattern(String locationPattern) {
+		this.locationPattern = locationPattern;
+	}
+
+	public String getVersionTable() {
+		return versionTable;
+	}
+
+	/**
+	 * the table in which applied versions are recorded. Defaults to <code>SCHEMA_VERSION</code>.
+	 */
+	public void setVersionTable(String versionTable) {
+		this.versionTable = versionTable;
+	}
+}
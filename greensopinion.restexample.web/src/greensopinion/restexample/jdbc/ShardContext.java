@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Thread-bound shard selection used by {@link ShardRoutingDataSource}. The shard must be entered before the first
+ * statement of a transaction, since the connection of a transaction is obtained from the shard that is current at that
+ * time. A transaction cannot span shards: entering a different shard within the same transaction fails.
+ *
+ * Usage:
+ *
+ * <pre><code>
+ * Integer previous = ShardContext.enter(shardMap.getShard(blogId));
+ * try {
+ * 	// do work
+ * } finally {
+ * 	ShardContext.restore(previous);
+ * }
+ * </code></pre>
+ *
+ * @author David Green
+ * @see ShardMap
+ */
+public class ShardContext {
+
+	private static final ThreadLocal<Integer> shard = new ThreadLocal<Integer>();
+
+	private static final Object TRANSACTION_SHARD_KEY = ShardContext.class.getName() + ".transactionShard";
+
+	private ShardContext() {
+	}
+
+	/**
+	 * route subsequent work on the current thread to the given shard
+	 * 
+	 * @return the previous shard, to be passed to {@link #restore(Integer)}
+	 * @throws IllegalStateException
+	 *             if the current transaction has already entered another shard
+	 */
+	public static Integer enter(int shardIndex) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			Integer transactionShard = (Integer) TransactionSynchronizationManager.getResource(TRANSACTION_SHARD_KEY);
+			if (transactionShard == null) {
+				TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD_KEY, shardIndex);
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+					@Override
+					public void afterCompletion(int status) {
+						TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SHARD_KEY);
+					}
+				});
+			} else if (transactionShard.intValue() != shardIndex) {
+				throw new IllegalStateException("A transaction cannot span shards: shard " + transactionShard
+						+ " was already entered, cannot enter shard " + shardIndex);
+			}
+		}
+		Integer previous = shard.get();
+		shard.set(shardIndex);
+		return previous;
+	}
+
+	/**
+	 * restore the shard of the current thread
+	 * 
+	 * @param previous
+	 *            the value returned by {@link #enter(int)}
+	 */
+	public static void restore(Integer previous) {
+		if (previous == null) {
+			shard.remove();
+		} else {
+			shard.set(previous);
+		}
+	}
+
+	/**
+	 * the shard of the current thread, or null if no shard was entered
+	 */
+	public static Integer getCurrentShard() {
+		return shard.get();
+	}
+}
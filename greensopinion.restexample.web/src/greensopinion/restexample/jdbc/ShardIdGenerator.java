@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Allocates ids that are unique across the shards of a {@link ShardMap}. Each shard allocates sequence numbers from a
+ * row of its own SEQUENCE table, {@link #setAllocationSize(int) a block at a time}, and the shard is encoded in the id
+ * so that ids allocated by different shards never collide.
+ * <p>
+ * The persistence provider only generates an id for an entity that has none, so entities that are given an id by this
+ * generator before they are persisted keep it.
+ * </p>
+ *
+ * @author David Green
+ */
+public class ShardIdGenerator {
+
+	private static class Block {
+		long next;
+
+		long last;
+	}
+
+	private ShardMap shardMap;
+
+	private String sequenceName = "SHARD_ID";
+
+	private int allocationSize = 50;
+
+	private final Map<Integer, Block> blocks = new HashMap<Integer, Block>();
+
+	/**
+	 * allocate an id for an entity to be created on the given shard
+	 */
+	public synchronized long nextId(int shard) {
+		Block block = blocks.get(shard);
+		if (block == null || block.next > block.last) {
+			block = allocate(shard);
+			blocks.put(shard, block);
+		}
+		return ShardMap.toShardedId(block.next++, shard);
+	}
+
+	private Block allocate(int shard) {
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(shardMap.getDataSource(shard));
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(shardMap
+				.getDataSource(shard)));
+		// allocation is independent of any transaction of the caller, so that allocated blocks are never reused
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		long last = transactionTemplate.execute(new TransactionCallback<Long>() {
+			public Long doInTransaction(TransactionStatus status) {
+				int updated = jdbcTemplate.update("UPDATE SEQUENCE SET SEQ_COUNT = SEQ_COUNT + ? WHERE SEQ_NAME = ?",
+						new Object[] { allocationSize, sequenceName });
+				if (updated != 1) {
+					throw new IllegalStateException("Sequence " + sequenceName + " does not exist");
+				}
+				return jdbcTemplate.queryForLong("SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = ?",
+						new Object[] { sequenceName });
+			}
+		});
+		Block block = new Block();
+		block.next = last - allocationSize + 1;
+		block.last = last;
+		return block;
+	}
+
+	public ShardMap getShardMap() {
+		return shardMap;
+	}
+
+	public void setShardMap(ShardMap shardMap) {
+		this.shardMap = shardMap;
+	}
+
+	public String getSequenceName() {
+		return sequenceName;
+	}
+
+	/**
+	 * the name of the row of the SEQUENCE table from which sequence numbers are allocated. Defaults to SHARD_ID.
+	 */
+	public void setSequenceName(String sequenceName) {
+		this.sequenceName = sequenceName;
+	}
+
+	public int getAllocationSize() {
+		return allocationSize;
+	}
+
+	/**
+	 * the number of sequence numbers allocated from the database at a time. Defaults to 50.
+	 */
+	public void setAllocationSize(int allocationSize) {
+		this.allocationSize = allocationSize;
+	}
+}
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maps blogs and articles to the shard on which they are stored. Each blog and all of its articles are stored on one
+ * shard.
+ * <p>
+ * Ids are allocated by a {@link ShardIdGenerator} and encode the shard on which the entity was created, its home
+ * shard, so that ids are unique across shards and most lookups need no directory. Entities that were moved off their
+ * home shard by a {@link ShardRebalancer} are recorded in a {@link #setOverrideTable(String) directory table} on the
+ * first shard, which is held in memory and re-read every {@link #setRefreshMillis(long) refreshMillis}. Ids that were
+ * allocated before sharding was introduced belong to the first shard.
+ * </p>
+ * <p>
+ * New blogs are placed round-robin on the {@link #setPlacementShards(List) placement shards}.
+ * </p>
+ *
+ * @author David Green
+ * @see ShardRoutingDataSource
+ */
+public class ShardMap {
+
+	/**
+	 * the maximum number of shards, which is limited by the number of bits of an id used to encode the shard
+	 */
+	public static final int MAX_SHARDS = 1024;
+
+	private static final int SHARD_BITS = 10;
+
+	/**
+	 * distinguishes ids that encode a shard from those allocated before sharding. Ids remain below 2^53 so that they
+	 * are represented exactly by JSON clients that use double precision numbers.
+	 */
+	private static final long SHARDED_ID_FLAG = 1L << 52;
+
+	static final long MAX_SEQUENCE = (1L << (52 - SHARD_BITS)) - 1;
+
+	private List<DataSource> shards = new ArrayList<DataSource>();
+
+	private List<Integer> placementShards;
+
+	private String overrideTable = "SHARD_OVERRIDE";
+
+	private long refreshMillis = 30000L;
+
+	private final AtomicInteger nextPlacement = new AtomicInteger();
+
+	private volatile Map<Long, Integer> overrides;
+
+	private volatile long refreshTime;
+
+	/**
+	 * compose an id from a sequence number allocated by the given shard
+	 */
+	public static long toShardedId(long sequence, int shard) {
+		if (sequence < 1 || sequence > MAX_SEQUENCE) {
+			throw new IllegalArgumentException("sequence out of range: " + sequence);
+		}
+		if (shard < 0 || shard >= MAX_SHARDS) {
+			throw new IllegalArgumentException("shard out of range: " + shard);
+		}
+		return SHARDED_ID_FLAG | (sequence << SHARD_BITS) | shard;
+	}
+
+	/**
+	 * the shard on which the entity with the given id was created
+	 */
+	public static int getHomeShard(Long id) {
+		long value = id.longValue();
+		if ((value & SHARDED_ID_FLAG) == 0) {
+			return 0;
+		}
+		return (int) (value & (MAX_SHARDS - 1));
+	}
+
+	/**
+	 * the shard on which the blog or article with the given id is stored
+	 */
+	public int getShard(Long id) {
+		Integer shard = getOverrides().get(id);
+		int index = shard == null ? getHomeShard(id) : shard;
+		if (index >= shards.size()) {
+			throw new IllegalStateException("Id " + id + " belongs to shard " + index + " which is not configured");
+		}
+		return index;
+	}
+
+	/**
+	 * select the shard on which to create a new blog
+	 */
+	public int selectShard() {
+		int next = nextPlacement.getAndIncrement() & Integer.MAX_VALUE;
+		if (placementShards == null) {
+			return next % shards.size();
+		}
+		return placementShards.get(next % placementShards.size());
+	}
+
+	/**
+	 * record that the entities with the given ids are stored on the given shard
+	 */
+	public void move(final Collection<Long> ids, final int shard) {
+		if (shard < 0 || shard >= shards.size()) {
+			throw new IllegalArgumentException("shard out of range: " + shard);
+		}
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(getDirectory());
+		new TransactionTemplate(new DataSourceTransactionManager(getDirectory()))
+				.execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						for (Long id : ids) {
+							jdbcTemplate.update("DELETE FROM " + overrideTable + " WHERE ID = ?", new Object[] { id });
+							if (getHomeShard(id) != shard) {
+								jdbcTemplate.update("INSERT INTO " + overrideTable + " (ID, SHARD) VALUES (?, ?)",
+										new Object[] { id, shard });
+							}
+						}
+					}
+				});
+		synchronized (this) {
+			Map<Long, Integer> newOverrides = new HashMap<Long, Integer>(getOverrides());
+			for (Long id : ids) {
+				if (getHomeShard(id) == shard) {
+					newOverrides.remove(id);
+				} else {
+					newOverrides.put(id, shard);
+				}
+			}
+			overrides = newOverrides;
+		}
+	}
+
+	/**
+	 * re-read the directory of entities that are not stored on their home shard
+	 */
+	public synchronized void refresh() {
+		final Map<Long, Integer> newOverrides = new HashMap<Long, Integer>();
+		new JdbcTemplate(getDirectory()).query("SELECT ID, SHARD FROM " + overrideTable, new RowCallbackHandler() {
+			public void processRow(ResultSet resultSet) throws SQLException {
+				newOverrides.put(resultSet.getLong(1), resultSet.getInt(2));
+			}
+		});
+		overrides = newOverrides;
+		refreshTime = System.currentTimeMillis();
+	}
+
+	private Map<Long, Integer> getOverrides() {
+		Map<Long, Integer> current = overrides;
+		if (current == null || isStale()) {
+			synchronized (this) {
+				// another thread may have refreshed while this one waited
+				if (overrides == null || isStale()) {
+					refresh();
+				}
+				current = overrides;
+			}
+		}
+		return current;
+	}
+
+	private boolean isStale() {
+		return System.currentTimeMillis() - refreshTime > refreshMillis;
+	}
+
+	private DataSource getDirectory() {
+		if (shards.isEmpty()) {
+			throw new IllegalStateException("at least one shard must be specified");
+		}
+		return shards.get(0);
+	}
+
+	public int getShardCount() {
+		return shards.size();
+	}
+
+	/**
+	 * the data source of the given shard
+	 */
+	public DataSource getDataSource(int shard) {
+		return shards.get(shard);
+	}
+
+	public List<DataSource> getShards() {
+		return shards;
+	}
+
+	/**
+	 * the primary data source of each shard. The first shard holds the directory. Shards may be added, but must not be
+	 * removed or reordered once they hold data.
+	 */
+	public void setShards(List<DataSource> shards) {
+		if (shards.size() > MAX_SHARDS) {
+			throw new IllegalArgumentException("at most " + MAX_SHARDS + " shards are supported");
+		}
+		this.shards = shards;
+	}
+
+	public List<Integer> getPlacementShards() {
+		return placementShards;
+	}
+
+	/**
+	 * the shards on which new blogs are created, or null for all shards. Defaults to null.
+	 */
+	public void setPlacementShards(List<Integer> placementShards) {
+		this.placementShards = placementShards == null || placementShards.isEmpty() ? null : placementShards;
+	}
+
+	public String getOverrideTable() {
+		return overrideTable;
+	}
+
+	/**
+	 * the directory table of entities that are not stored on their home shard. Defaults to SHARD_OVERRIDE.
+	 */
+	public void setOverrideTable(String overrideTable) {
+		this.overrideTable = overrideTable;
+	}
+
+	public long getRefreshMillis() {
+		return refreshMillis;
+	}
+
+	/**
+	 * the time after which the directory is re-read, which bounds the time for which an instance of the application
+	 * may route to the shard from which a blog was moved. Defaults to 30 seconds.
+	 */
+	public void setRefreshMillis(long refreshMillis) {
+		this.refreshMillis = refreshMillis;
+	}
+}
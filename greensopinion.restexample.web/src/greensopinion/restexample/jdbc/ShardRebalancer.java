@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves a blog and all of its articles from one shard of a {@link ShardMap} to another, keeping their ids. The rows are
+ * copied to the target shard, the directory is updated, and then the rows are deleted from the source shard.
+ * <p>
+ * A move should be made while the blog is not being written. If the blog or its articles are modified on the source
+ * shard while they are copied, the move is undone and fails. Instances of the application route to the source shard
+ * until they {@link ShardMap#setRefreshMillis(long) refresh} their shard map, and writes made through them in that
+ * time are lost, so writes to the blog should be held off for at least that long.
+ * </p>
+ * <p>
+ * A move that fails part way can be run again.
+ * </p>
+ *
+ * @author David Green
+ */
+public class ShardRebalancer {
+
+	private ShardMap shardMap;
+
+	/**
+	 * move a blog to the given shard
+	 * 
+	 * @return the number of articles moved
+	 * @throws IllegalArgumentException
+	 *             if the blog does not exist
+	 * @throws IllegalStateException
+	 *             if the blog was modified while it was moved
+	 */
+	public int move(Long blogId, int targetShard) {
+		int sourceShard = shardMap.getShard(blogId);
+		if (targetShard < 0 || targetShard >= shardMap.getShardCount()) {
+			throw new IllegalArgumentException("shard out of range: " + targetShard);
+		}
+		JdbcTemplate source = new JdbcTemplate(shardMap.getDataSource(sourceShard));
+		List<Map<String, Object>> blogs = source.queryForList("SELECT * FROM BLOG WHERE ID = ?", blogId);
+		if (blogs.isEmpty()) {
+			throw new IllegalArgumentException("Blog " + blogId + " does not exist on shard " + sourceShard);
+		}
+		List<Map<String, Object>> articles = source.queryForList(
+				"SELECT * FROM ARTICLE WHERE blogId = ? ORDER BY ID", blogId);
+		if (targetShard == sourceShard) {
+			return articles.size();
+		}
+		String version = version(source, blogId);
+
+		List<Long> ids = new ArrayList<Long>(articles.size() + 1);
+		ids.add(blogId);
+		for (Map<String, Object> article : articles) {
+			ids.add(((Number) article.get("ID")).longValue());
+		}
+
+		copy(blogId, blogs.get(0), articles, targetShard);
+		shardMap.move(ids, targetShard);
+		if (!version.equals(version(source, blogId))) {
+			shardMap.move(ids, sourceShard);
+			delete(blogId, targetShard);
+			throw new IllegalStateException("Blog " + blogId + " was modified while it was moved");
+		}
+		delete(blogId, sourceShard);
+		return articles.size();
+	}
+
+	/**
+	 * a summary of the rows of a blog that changes whenever the blog or one of its articles is created, modified or
+	 * deleted
+	 */
+	private String version(JdbcTemplate jdbcTemplate, Long blogId) {
+		Map<String, Object> blog = jdbcTemplate.queryForMap("SELECT MODIFIED FROM BLOG WHERE ID = ?", blogId);
+		Map<String, Object> articles = jdbcTemplate.queryForMap(
+				"SELECT COUNT(*) AS ARTICLES, MAX(MODIFIED) AS MODIFIED, SUM(ID) AS IDS FROM ARTICLE WHERE blogId = ?",
+				blogId);
+		return blog.get("MODIFIED") + "/" + articles.get("ARTICLES") + "/" + articles.get("MODIFIED") + "/"
+				+ articles.get("IDS");
+	}
+
+	private void copy(final Long blogId, final Map<String, Object> blog, final List<Map<String, Object>> articles,
+			final int targetShard) {
+		final JdbcTemplate target = new JdbcTemplate(shardMap.getDataSource(targetShard));
+		new TransactionTemplate(new DataSourceTransactionManager(shardMap.getDataSource(targetShard)))
+				.execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						// rows left by a previous attempt are replaced
+						deleteRows(target, blogId);
+						insert(target, "BLOG", blog);
+						for (Map<String, Object> article : articles) {
+							insert(target, "ARTICLE", article);
+						}
+					}
+				});
+	}
+
+	private void delete(final Long blogId, int shard) {
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(shardMap.getDataSource(shard));
+		new TransactionTemplate(new DataSourceTransactionManager(shardMap.getDataSource(shard)))
+				.execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						deleteRows(jdbcTemplate, blogId);
+					}
+				});
+	}
+
+	private void deleteRows(JdbcTemplate jdbcTemplate, Long blogId) {
+		jdbcTemplate.update("DELETE FROM ARTICLE WHERE blogId = ?", new Object[] { blogId });
+		jdbcTemplate.update("DELETE FROM BLOG WHERE ID = ?", new Object[] { blogId });
+	}
+
+	private void insert(JdbcTemplate jdbcTemplate, String table, Map<String, Object> row) {
+		// columns are copied as they are, so that columns added by later migrations are moved too
+		StringBuilder columns = new StringBuilder();
+		StringBuilder parameters = new StringBuilder();
+		for (String column : row.keySet()) {
+			if (columns.length() > 0) {
+				columns.append(", ");
+				parameters.append(", ");
+			}
+			columns.append(column);
+			parameters.append('?');
+		}
+		jdbcTemplate.update("INSERT INTO " + table + " (" + columns + ") VALUES (" + parameters + ")", row.values()
+				.toArray());
+	}
+
+	public ShardMap getShardMap() {
+		return shardMap;
+	}
+
+	public void setShardMap(ShardMap shardMap) {
+		this.shardMap = shardMap;
+	}
+}
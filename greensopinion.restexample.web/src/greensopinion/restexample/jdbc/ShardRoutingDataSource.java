@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * A data source that routes to one of several shards, selected by the {@link ShardContext} of the current thread.
+ * Work outside of a shard, such as the persistence provider reading database metadata at startup, is routed to the
+ * first shard. Each shard may itself be a {@link ReadWriteRoutingDataSource}.
+ * <p>
+ * As with {@link ReadWriteRoutingDataSource}, the routing decision is made when a connection is requested, so this
+ * data source must be wrapped in a {@link LazyConnectionDataSourceProxy} for the shard to be entered after a
+ * transaction begins.
+ * </p>
+ *
+ * @author David Green
+ * @see ShardMap
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+	private List<DataSource> shards = new ArrayList<DataSource>();
+
+	@Override
+	public void afterPropertiesSet() {
+		if (shards.isEmpty()) {
+			throw new IllegalStateException("at least one shard must be specified");
+		}
+		Map<Object, Object> targetDataSources = new HashMap<Object, Object>();
+		for (int x = 0; x < shards.size(); ++x) {
+			targetDataSources.put(x, shards.get(x));
+		}
+		setTargetDataSources(targetDataSources);
+		setDefaultTargetDataSource(shards.get(0));
+		setLenientFallback(false);
+		super.afterPropertiesSet();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		Integer shard = ShardContext.getCurrentShard();
+		return shard == null ? 0 : shard;
+	}
+
+	public List<DataSource> getShards() {
+		return shards;
+	}
+
+	/**
+	 * the shards, in the same order as the shards of the {@link ShardMap}
+	 */
+	public void setShards(List<DataSource> shards) {
+		this.shards = shards == null ? new ArrayList<DataSource>() : shards;
+	}
+}
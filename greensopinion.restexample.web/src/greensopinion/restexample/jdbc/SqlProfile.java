@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The SQL statements executed within a scope of work, such as an HTTP request or a service method, as recorded by a
+ * {@link ProfilingDataSource}. Statements are grouped by their SQL text, so that a statement that is executed
+ * repeatedly with different parameters, as in an N+1 select, is recognized.
+ *
+ * @author David Green
+ * @see ProfilingContext
+ */
+public class SqlProfile {
+
+	/**
+	 * the executions of one SQL statement
+	 */
+	public static class Statement {
+		private final String sql;
+
+		private int count;
+
+		private long rowsRead;
+
+		private long databaseNanos;
+
+		private Statement(String sql) {
+			this.sql = sql;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		/**
+		 * the number of times the statement was executed
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		public long getRowsRead() {
+			return rowsRead;
+		}
+
+		public long getDatabaseMillis() {
+			return databaseNanos / 1000000L;
+		}
+
+		@Override
+		public String toString() {
+			return count + " x " + sql + " (" + rowsRead + " rows, " + getDatabaseMillis() + "ms)";
+		}
+	}
+
+	/**
+	 * the maximum number of distinct statements recorded, beyond which statements are recorded as {@link #OTHER}
+	 */
+	private static final int MAX_DISTINCT_STATEMENTS = 100;
+
+	private static final String OTHER = "(other statements)";
+
+	private final String name;
+
+	private final long startNanos = System.nanoTime();
+
+	private long endNanos;
+
+	private int statementCount;
+
+	private long rowsRead;
+
+	private long databaseNanos;
+
+	private final Map<String, Statement> statements = new LinkedHashMap<String, Statement>();
+
+	public SqlProfile(String name) {
+		this.name = name;
+	}
+
+	void statementExecuted(String sql, long nanos) {
+		++statementCount;
+		databaseNanos += nanos;
+		Statement statement = getStatement(sql);
+		++statement.count;
+		statement.databaseNanos += nanos;
+	}
+
+	void rowRead(String sql) {
+		++rowsRead;
+		++getStatement(sql).rowsRead;
+	}
+
+	private Statement getStatement(String sql) {
+		if (sql == null) {
+			sql = OTHER;
+		}
+		Statement statement = statements.get(sql);
+		if (statement == null) {
+			if (statements.size() >= MAX_DISTINCT_STATEMENTS) {
+				sql = OTHER;
+				statement = statements.get(sql);
+			}
+			if (statement == null) {
+				statement = new Statement(sql);
+				statements.put(sql, statement);
+			}
+		}
+		return statement;
+	}
+
+	void end() {
+		endNanos = System.nanoTime();
+	}
+
+	/**
+	 * the name of the scope, for example the method and URI of a request
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public int getStatementCount() {
+		return statementCount;
+	}
+
+	public int getDistinctStatementCount() {
+		return statements.size();
+	}
+
+	public long getRowsRead() {
+		return rowsRead;
+	}
+
+	/**
+	 * the time spent executing statements, not including reading their results
+	 */
+	public long getDatabaseMillis() {
+		return databaseNanos / 1000000L;
+	}
+
+	/**
+	 * the duration of the scope
+	 */
+	public long getElapsedMillis() {
+		return ((endNanos == 0 ? System.nanoTime() : endNanos) - startNanos) / 1000000L;
+	}
+
+	/**
+	 * the statements, most frequently executed first
+	 */
+	public List<Statement> getStatements() {
+		List<Statement> list = new ArrayList<Statement>(statements.values());
+		Collections.sort(list, new Comparator<Statement>() {
+			public int compare(Statement o1, Statement o2) {
+				return o2.count - o1.count;
+			}
+		});
+		return list;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + statementCount + " statements (" + statements.size() + " distinct), " + rowsRead
+				+ " rows, " + getDatabaseMillis() + "ms in database, " + getElapsedMillis() + "ms elapsed";
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs {@link SqlProfile profiles} that exceed thresholds, with the statements that caused them. A statement that is
+ * executed more than {@link #setMaxRepeatedStatements(int) maxRepeatedStatements} times in one scope is reported as a
+ * likely N+1 select. Profiles within thresholds are logged at FINE.
+ *
+ * @author David Green
+ */
+public class SqlProfileReporter {
+
+	private static final Logger log = Logger.getLogger(SqlProfileReporter.class.getName());
+
+	private int maxStatements = 25;
+
+	private int maxRepeatedStatements = 10;
+
+	private long maxDatabaseMillis = 250L;
+
+	/**
+	 * report a profile
+	 *
+	 * @return true if the profile exceeded a threshold
+	 */
+	public boolean report(SqlProfile profile) {
+		List<String> problems = new ArrayList<String>();
+		if (profile.getStatementCount() > maxStatements) {
+			problems.add("more than " + maxStatements + " statements");
+		}
+		if (profile.getDatabaseMillis() > maxDatabaseMillis) {
+			problems.add("more than " + maxDatabaseMillis + "ms in database");
+		}
+		List<SqlProfile.Statement> statements = profile.getStatements();
+		if (!statements.isEmpty() && statements.get(0).getCount() > maxRepeatedStatements) {
+			problems.add("statement repeated " + statements.get(0).getCount() + " times, a likely N+1 select");
+		}
+		if (problems.isEmpty()) {
+			if (log.isLoggable(Level.FINE)) {
+				log.fine(profile.toString());
+			}
+			return false;
+		}
+		if (log.isLoggable(Level.WARNING)) {
+			StringBuilder message = new StringBuilder();
+			message.append(profile).append(": ").append(problems);
+			for (SqlProfile.Statement statement : statements) {
+				message.append("\n\t").append(statement);
+			}
+			log.warning(message.toString());
+		}
+		return true;
+	}
+
+	public int getMaxStatements() {
+		return maxStatements;
+	}
+
+	/**
+	 * the number of statements above which a profile is reported. Defaults to 25.
+	 */
+	public void setMaxStatements(int maxStatements) {
+		this.maxStatements = maxStatements;
+	}
+
+	public int getMaxRepeatedStatements() {
+		return maxRepeatedStatements;
+	}
+
+	/**
+	 * the number of executions of one statement above which a profile is reported. Defaults to 10.
+	 */
+	public void setMaxRepeatedStatements(int maxRepeatedStatements) {
+		this.maxRepeatedStatements = maxRepeatedStatements;
+	}
+
+	public long getMaxDatabaseMillis() {
+		return maxDatabaseMillis;
+	}
+
+	/**
+	 * the time spent executing statements above which a profile is reported. Defaults to 250ms.
+	 */
+	public void setMaxDatabaseMillis(long maxDatabaseMillis) {
+		this.maxDatabaseMillis = maxDatabaseMillis;
+	}
+}
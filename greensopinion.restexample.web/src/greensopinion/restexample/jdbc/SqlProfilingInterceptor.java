@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.jdbc;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * An interceptor that profiles the SQL statements executed by each invocation of a method, for example of the methods
+ * of a service, and reports them with a {@link SqlProfileReporter}.
+ *
+ * @author David Green
+ * @see ProfilingDataSource
+ */
+public class SqlProfilingInterceptor implements MethodInterceptor {
+
+	private SqlProfileReporter reporter = new SqlProfileReporter();
+
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		SqlProfile profile = ProfilingContext.begin(invocation.getMethod().getDeclaringClass().getSimpleName() + "."
+				+ invocation.getMethod().getName());
+		try {
+			return invocation.proceed();
+		} finally {
+			ProfilingContext.end(profile);
+			reporter.report(profile);
+		}
+	}
+
+	public SqlProfileReporter getReporter() {
+		return reporter;
+	}
+
+	public void setReporter(SqlProfileReporter reporter) {
+		this.reporter = reporter;
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+import java.util.Date;
+
+/**
+ * An event indicating that an article was created, updated or deleted, as published by an {@link ArticleEventLog}.
+ * 
+ * @author David Green
+ */
+public class ArticleEvent {
+
+	public static final String TYPE_CREATED = "created";
+
+	public static final String TYPE_UPDATED = "updated";
+
+	public static final String TYPE_DELETED = "deleted";
+
+	private long id;
+
+	private String type;
+
+	private Long blogId;
+
+	private Long articleId;
+
+	private Date modified;
+
+	public ArticleEvent() {
+	}
+
+	public ArticleEvent(long id, String type, Long blogId, Long articleId, Date modified) {
+		this.id = id;
+		this.type = type;
+		this.blogId = blogId;
+		this.articleId = articleId;
+		this.modified = modified == null ? null : new Date(modified.getTime());
+	}
+
+	/**
+	 * the id of the event, which increases monotonically within a {@link ArticleEvents#getStream() stream}
+	 */
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	/**
+	 * the type of event, one of {@link #TYPE_CREATED}, {@link #TYPE_UPDATED} or {@link #TYPE_DELETED}
+	 */
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public Long getBlogId() {
+		return blogId;
+	}
+
+	public void setBlogId(Long blogId) {
+		this.blogId = blogId;
+	}
+
+	public Long getArticleId() {
+		return articleId;
+	}
+
+	public void setArticleId(Long articleId) {
+		this.articleId = articleId;
+	}
+
+	/**
+	 * the modified timestamp of the article as of the event
+	 */
+	public Date getModified() {
+		return modified;
+	}
+
+	public void setModified(Date modified) {
+		this.modified = modified;
+	}
+
+	@Override
+	public String toString() {
+		return "ArticleEvent[id=" + id + ", type=" + type + ", blogId=" + blogId + ", articleId=" + articleId + "]";
+	}
+}
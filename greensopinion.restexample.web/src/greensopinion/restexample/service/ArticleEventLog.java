@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A bounded, in-memory log of {@link ArticleEvent article events} from which subscribers read the events of a blog by
+ * long-polling. Each subscriber holds only its position in the log, so the memory used by the log is bounded by its
+ * {@link #setCapacity(int) capacity} regardless of the number of subscribers, and a subscriber that falls further
+ * behind than the capacity is told to {@link ArticleEvents#isReset() reset} rather than holding events on its behalf.
+ * <p>
+ * The log holds the events published by this instance of the application only, and is lost on restart; event ids are
+ * scoped to a {@link ArticleEvents#getStream() stream} so that subscribers can detect either case.
+ * </p>
+ * <p>
+ * Subscribers either {@link #read(Long, String, long, long) wait} on a thread of their own, or
+ * {@link #subscribe(Long, String, long, Subscriber) subscribe} to receive the events once they are published without
+ * holding a thread while they wait.
+ * </p>
+ * 
+ * @author David Green
+ */
+public class ArticleEventLog {
+
+	/**
+	 * receives the events of a blog once they are published, see {@link ArticleEventLog#subscribe}
+	 */
+	public interface Subscriber {
+		/**
+		 * receive the events of the subscription. Called once, by the thread that published the events, after the log
+		 * is unlocked.
+		 */
+		public void events(ArticleEvents events);
+	}
+
+	private static class Subscription {
+		private final Subscriber subscriber;
+
+		private final Long blogId;
+
+		private final long afterEventId;
+
+		private ArticleEvents events;
+
+		private Subscription(Subscriber subscriber, Long blogId, long afterEventId) {
+			this.subscriber = subscriber;
+			this.blogId = blogId;
+			this.afterEventId = afterEventId;
+		}
+	}
+
+	private final String stream = UUID.randomUUID().toString();
+
+	private ArticleEvent[] events;
+
+	private long lastEventId;
+
+	private int waiterCount;
+
+	private final List<Subscription> subscriptions = new ArrayList<Subscription>();
+
+	private int capacity = 10000;
+
+	private int maxBatchSize = 100;
+
+	private int maxWaiters = 256;
+
+	/**
+	 * publish an event, waking subscribers that are waiting for events of the blog and passing the events to those that
+	 * are subscribed to them
+	 */
+	public ArticleEvent publish(String type, Long blogId, Long articleId, Date modified) {
+		ArticleEvent event;
+		List<Subscription> notified = null;
+		synchronized (this) {
+			if (events == null) {
+				events = new ArticleEvent[capacity];
+			}
+			event = new ArticleEvent(++lastEventId, type, blogId, articleId, modified);
+			events[(int) (event.getId() % events.length)] = event;
+			notifyAll();
+			for (Iterator<Subscription> it = subscriptions.iterator(); it.hasNext();) {
+				Subscription subscription = it.next();
+				if (subscription.blogId.equals(blogId)) {
+					it.remove();
+					List<ArticleEvent> batch = new ArrayList<ArticleEvent>();
+					long position = collect(blogId, subscription.afterEventId, batch);
+					subscription.events = new ArticleEvents(stream, position, false, batch);
+					if (notified == null) {
+						notified = new ArrayList<Subscription>();
+					}
+					notified.add(subscription);
+				}
+			}
+		}
+		if (notified != null) {
+			for (Subscription subscription : notified) {
+				subscription.subscriber.events(subscription.events);
+			}
+		}
+		return event;
+	}
+
+	/**
+	 * read the events of a blog that follow the given position, waiting for up to the given timeout if there are none.
+	 * Returns immediately without waiting if the {@link #setMaxWaiters(int) maximum number of waiters} is reached.
+	 * 
+	 * @param blogId
+	 *            the blog of which events are to be read
+	 * @param stream
+	 *            the stream of a previous read, or null to read events that are published after this call
+	 * @param afterEventId
+	 *            the {@link ArticleEvents#getLastEventId() last event id} of a previous read of the same stream
+	 * @param timeoutMillis
+	 *            the maximum time to wait for events
+	 */
+	public synchronized ArticleEvents read(Long blogId, String stream, long afterEventId, long timeoutMillis)
+			throws InterruptedException {
+		if (stream == null) {
+			afterEventId = lastEventId;
+		} else if (isReset(stream, afterEventId)) {
+			return new ArticleEvents(this.stream, lastEventId, true, new ArrayList<ArticleEvent>());
+		}
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		for (;;) {
+			List<ArticleEvent> batch = new ArrayList<ArticleEvent>();
+			long position = collect(blogId, afterEventId, batch);
+			long remaining = deadline - System.currentTimeMillis();
+			if (!batch.isEmpty() || remaining <= 0 || getWaiterCount() >= maxWaiters) {
+				return new ArticleEvents(this.stream, position, false, batch);
+			}
+			afterEventId = position;
+			++waiterCount;
+			try {
+				wait(remaining);
+			} finally {
+				--waiterCount;
+			}
+		}
+	}
+
+	/**
+	 * read the events of a blog that follow the given position as {@link #read(Long, String, long, long)} does, but
+	 * without waiting. If there are none, the subscriber receives them once they are published, until it is
+	 * {@link #unsubscribe(Subscriber) unsubscribed}. Returns immediately without subscribing if the
+	 * {@link #setMaxWaiters(int) maximum number of waiters} is reached.
+	 * 
+	 * @return the events to respond with, or null if the subscriber is to receive them
+	 */
+	public synchronized ArticleEvents subscribe(Long blogId, String stream, long afterEventId, Subscriber subscriber) {
+		if (stream == null) {
+			afterEventId = lastEventId;
+		} else if (isReset(stream, afterEventId)) {
+			return new ArticleEvents(this.stream, lastEventId, true, new ArrayList<ArticleEvent>());
+		}
+		List<ArticleEvent> batch = new ArrayList<ArticleEvent>();
+		long position = collect(blogId, afterEventId, batch);
+		if (!batch.isEmpty() || getWaiterCount() >= maxWaiters) {
+			return new ArticleEvents(this.stream, position, false, batch);
+		}
+		subscriptions.add(new Subscription(subscriber, blogId, position));
+		return null;
+	}
+
+	/**
+	 * end the subscription of a subscriber that stops waiting for events, for example when its wait times out
+	 * 
+	 * @return the events to respond with, or null if the subscriber has received or is about to receive events
+	 */
+	public synchronized ArticleEvents unsubscribe(Subscriber subscriber) {
+		for (Iterator<Subscription> it = subscriptions.iterator(); it.hasNext();) {
+			Subscription subscription = it.next();
+			if (subscription.subscriber == subscriber) {
+				it.remove();
+				List<ArticleEvent> batch = new ArrayList<ArticleEvent>();
+				long position = collect(subscription.blogId, subscription.afterEventId, batch);
+				return new ArticleEvents(stream, position, false, batch);
+			}
+		}
+		return null;
+	}
+
+	private boolean isReset(String stream, long afterEventId) {
+		return !stream.equals(this.stream) || afterEventId > lastEventId || afterEventId < firstEventId() - 1;
+	}
+
+	/**
+	 * collect the events of the blog after the given id, up to the maximum batch size
+	 * 
+	 * @return the id of the last event examined
+	 */
+	private long collect(Long blogId, long afterEventId, List<ArticleEvent> batch) {
+		long id = afterEventId;
+		while (id < lastEventId && batch.size() < maxBatchSize) {
+			ArticleEvent event = events[(int) (++id % events.length)];
+			if (event.getBlogId().equals(blogId)) {
+				batch.add(event);
+			}
+		}
+		return id;
+	}
+
+	private long firstEventId() {
+		return events == null ? 1 : Math.max(1, lastEventId - events.length + 1);
+	}
+
+	/**
+	 * the identity of this log, which changes whenever the application is restarted
+	 */
+	public String getStream() {
+		return stream;
+	}
+
+	public synchronized long getLastEventId() {
+		return lastEventId;
+	}
+
+	/**
+	 * the number of subscribers that are currently waiting for events, whether on a thread or subscribed
+	 */
+	public synchronized int getWaiterCount() {
+		return waiterCount + subscriptions.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * the number of events retained, which determines how far behind a subscriber can be before it must reset. Must be
+	 * set before any events are published. Defaults to 10000.
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * the maximum number of events returned by a single read. Defaults to 100.
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public int getMaxWaiters() {
+		return maxWaiters;
+	}
+
+	/**
+	 * the maximum number of subscribers that may wait for events at once, which bounds the number of threads held by
+	 * subscribers that wait on a thread, and the connections held by those that subscribe. Further reads return
+	 * immediately. Defaults to 256.
+	 */
+	public void setMaxWaiters(int maxWaiters) {
+		this.maxWaiters = maxWaiters;
+	}
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of {@link ArticleEvent events} read from an {@link ArticleEventLog}, with the position from which the next
+ * batch should be read.
+ * 
+ * @author David Green
+ */
+public class ArticleEvents {
+
+	private String stream;
+
+	private long lastEventId;
+
+	private boolean reset;
+
+	private List<ArticleEvent> events = Collections.emptyList();
+
+	public ArticleEvents() {
+	}
+
+	public ArticleEvents(String stream, long lastEventId, boolean reset, List<ArticleEvent> events) {
+		this.stream = stream;
+		this.lastEventId = lastEventId;
+		this.reset = reset;
+		this.events = events;
+	}
+
+	/**
+	 * the identity of the log from which events were read. Event ids are only meaningful within a stream: a new stream
+	 * begins whenever the server is restarted.
+	 */
+	public String getStream() {
+		return stream;
+	}
+
+	public void setStream(String stream) {
+		this.stream = stream;
+	}
+
+	/**
+	 * the id after which the next batch should be read
+	 */
+	public long getLastEventId() {
+		return lastEventId;
+	}
+
+	public void setLastEventId(long lastEventId) {
+		this.lastEventId = lastEventId;
+	}
+
+	/**
+	 * indicate whether events may have been missed since the requested position, either because they are no longer
+	 * retained or because the requested position is from another stream. When set, the subscriber should re-read the
+	 * articles that it depends on.
+	 */
+	public boolean isReset() {
+		return reset;
+	}
+
+	public void setReset(boolean reset) {
+		this.reset = reset;
+	}
+
+	public List<ArticleEvent> getEvents() {
+		return events;
+	}
+
+	public void setEvents(List<ArticleEvent> events) {
+		this.events = events;
+	}
+}
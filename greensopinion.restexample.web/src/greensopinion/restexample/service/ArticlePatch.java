@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+import greensopinion.restexample.domain.Article;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A partial update of an {@link Article} in the form of a JSON merge patch: fields that are present replace the values
+ * of the article, including with null, and fields that are absent are left unchanged. Usage:
+ *
+ * <pre><code>
+ * service.patchArticle(articleId, new ArticlePatch().setTitle(&quot;Corrected title&quot;));
+ * </code></pre>
+ *
+ * Instead of replacing the content, a patch can {@link #addContentEdit(int, int, String) edit} the content that the
+ * client last read, identified by its {@link #digest(String) digest}, so that a small change to a large article does
+ * not resend its content.
+ *
+ * @author David Green
+ */
+public class ArticlePatch {
+
+	public static final String TITLE = "title";
+
+	public static final String AUTHOR = "author";
+
+	public static final String PUBLISHED = "published";
+
+	public static final String CONTENT = "content";
+
+	public static final String CONTENT_EDITS = "contentEdits";
+
+	public static final String BASE_CONTENT_DIGEST = "baseContentDigest";
+
+	private static final Set<String> FIELDS = new HashSet<String>(Arrays.asList(TITLE, AUTHOR, PUBLISHED, CONTENT,
+			CONTENT_EDITS, BASE_CONTENT_DIGEST));
+
+	/**
+	 * the replacement of a range of content with text
+	 */
+	public static class ContentEdit {
+		private final int offset;
+
+		private final int length;
+
+		private final String text;
+
+		public ContentEdit(int offset, int length, String text) {
+			this.offset = offset;
+			this.length = length;
+			this.text = text;
+		}
+
+		/**
+		 * the offset of the range in the base content
+		 */
+		public int getOffset() {
+			return offset;
+		}
+
+		/**
+		 * the number of characters replaced, 0 for an insertion
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * the replacement text, empty for a deletion
+		 */
+		public String getText() {
+			return text;
+		}
+	}
+
+	private final Map<String, Object> changes;
+
+	public ArticlePatch() {
+		this(new LinkedHashMap<String, Object>());
+	}
+
+	/**
+	 * @param changes
+	 *            the members of a JSON merge patch
+	 */
+	public ArticlePatch(Map<String, Object> changes) {
+		this.changes = changes;
+	}
+
+	/**
+	 * the members of the patch, as sent in JSON
+	 */
+	public Map<String, Object> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * indicate if the patch changes the given field
+	 */
+	public boolean has(String field) {
+		return changes.containsKey(field);
+	}
+
+	/**
+	 * indicate if the patch changes the content, either by replacing it or by editing it
+	 */
+	public boolean hasContentChange() {
+		return has(CONTENT) || has(CONTENT_EDITS);
+	}
+
+	public ArticlePatch setTitle(String title) {
+		changes.put(TITLE, title);
+		return this;
+	}
+
+	public String getTitle() {
+		return getString(TITLE);
+	}
+
+	public ArticlePatch setAuthor(String author) {
+		changes.put(AUTHOR, author);
+		return this;
+	}
+
+	public String getAuthor() {
+		return getString(AUTHOR);
+	}
+
+	public ArticlePatch setPublished(Date published) {
+		// as Jackson writes dates
+		changes.put(PUBLISHED, published == null ? null : published.getTime());
+		return this;
+	}
+
+	public Date getPublished() {
+		Object value = changes.get(PUBLISHED);
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof Number) {
+			return new Date(((Number) value).longValue());
+		}
+		throw new InvalidRequestException(PUBLISHED + " must be a number of milliseconds");
+	}
+
+	public ArticlePatch setContent(String content) {
+		changes.put(CONTENT, content);
+		return this;
+	}
+
+	public String getContent() {
+		return getString(CONTENT);
+	}
+
+	/**
+	 * replace a range of the base content with the given text. Edits must be added in order of their offset and must
+	 * not overlap.
+	 *
+	 * @see #setBaseContentDigest(String)
+	 */
+	@SuppressWarnings("unchecked")
+	public ArticlePatch addContentEdit(int offset, int length, String text) {
+		List<Map<String, Object>> edits = (List<Map<String, Object>>) changes.get(CONTENT_EDITS);
+		if (edits == null) {
+			edits = new ArrayList<Map<String, Object>>();
+			changes.put(CONTENT_EDITS, edits);
+		}
+		Map<String, Object> edit = new LinkedHashMap<String, Object>();
+		edit.put("offset", offset);
+		edit.put("length", length);
+		edit.put("text", text);
+		edits.add(edit);
+		return this;
+	}
+
+	public List<ContentEdit> getContentEdits() {
+		Object value = changes.get(CONTENT_EDITS);
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		if (!(value instanceof List<?>)) {
+			throw new InvalidRequestException(CONTENT_EDITS + " must be a list");
+		}
+		List<ContentEdit> edits = new ArrayList<ContentEdit>();
+		for (Object item : (List<?>) value) {
+			if (!(item instanceof Map<?, ?>)) {
+				throw new InvalidRequestException(CONTENT_EDITS + " must be a list of edits");
+			}
+			Map<?, ?> edit = (Map<?, ?>) item;
+			Object offset = edit.get("offset");
+			Object length = edit.get("length");
+			Object text = edit.get("text");
+			if (!(offset instanceof Number) || !(length instanceof Number) || !(text == null || text instanceof String)) {
+				throw new InvalidRequestException("an edit must have a numeric offset and length, and text");
+			}
+			edits.add(new ContentEdit(((Number) offset).intValue(), ((Number) length).intValue(),
+					text == null ? "" : (String) text));
+		}
+		return edits;
+	}
+
+	/**
+	 * identify the content to which {@link #addContentEdit(int, int, String) edits} apply, so that they are rejected
+	 * if the content has since changed
+	 *
+	 * @param digest
+	 *            the {@link #digest(String) digest} of the content
+	 */
+	public ArticlePatch setBaseContentDigest(String digest) {
+		changes.put(BASE_CONTENT_DIGEST, digest);
+		return this;
+	}
+
+	public String getBaseContentDigest() {
+		return getString(BASE_CONTENT_DIGEST);
+	}
+
+	private String getString(String field) {
+		Object value = changes.get(field);
+		if (value == null || value instanceof String) {
+			return (String) value;
+		}
+		throw new InvalidRequestException(field + " must be a string");
+	}
+
+	/**
+	 * verify that the patch has only known fields
+	 *
+	 * @throws InvalidRequestException
+	 *             if the patch is not valid
+	 */
+	public void validate() {
+		for (String field : changes.keySet()) {
+			if (!FIELDS.contains(field)) {
+				throw new InvalidRequestException("Unknown field " + field + ", expected one of " + FIELDS);
+			}
+		}
+		if (has(TITLE) && getTitle() == null) {
+			throw new InvalidRequestException(TITLE + " must not be null");
+		}
+		if (has(CONTENT) && has(CONTENT_EDITS)) {
+			throw new InvalidRequestException(CONTENT + " and " + CONTENT_EDITS + " must not both be specified");
+		}
+		if (has(CONTENT_EDITS) && getBaseContentDigest() == null) {
+			throw new InvalidRequestException(CONTENT_EDITS + " require " + BASE_CONTENT_DIGEST);
+		}
+	}
+
+	/**
+	 * compute the content of the article after this patch is applied
+	 *
+	 * @param currentContent
+	 *            the content of the article
+	 * @throws ConflictException
+	 *             if the patch edits content other than the current content
+	 */
+	public String applyContent(String currentContent) {
+		if (has(CONTENT)) {
+			return getContent();
+		}
+		String base = currentContent == null ? "" : currentContent;
+		if (!digest(base).equals(getBaseContentDigest())) {
+			throw new ConflictException("The content was modified since it was read");
+		}
+		StringBuilder content = new StringBuilder(base.length());
+		int position = 0;
+		for (ContentEdit edit : getContentEdits()) {
+			if (edit.getOffset() < position || edit.getLength() < 0 || edit.getOffset() + edit.getLength() > base.length()) {
+				throw new InvalidRequestException("Edit at " + edit.getOffset() + " of " + edit.getLength()
+						+ " characters is out of order or out of bounds");
+			}
+			content.append(base, position, edit.getOffset());
+			content.append(edit.getText());
+			position = edit.getOffset() + edit.getLength();
+		}
+		content.append(base, position, base.length());
+		return content.toString();
+	}
+
+	/**
+	 * compute the digest of content, which identifies the version of the content that edits apply to
+	 *
+	 * @return the hex-encoded SHA-256 digest of the UTF-8 encoded content, treating null as empty
+	 */
+	public static String digest(String content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+					(content == null ? "" : content).getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+
+import java.io.IOException;
+
+/**
+ * Receives a blog and its articles one at a time as they are {@link BlogService#exportBlog(Long, BlogExportHandler)
+ * exported}, so that a blog of any size can be written out without holding its articles in memory.
+ * 
+ * @author David Green
+ */
+public interface BlogExportHandler {
+
+	/**
+	 * handle the blog, which is exported before its articles
+	 */
+	public void blog(Blog blog) throws IOException;
+
+	/**
+	 * handle an article of the blog. Articles are exported in order of their ids.
+	 */
+	public void article(Article article) throws IOException;
+}
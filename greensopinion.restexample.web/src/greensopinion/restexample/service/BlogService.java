@@ -13,11 +13,13 @@ package greensopinion.restexample.service;
 import greensopinion.restexample.domain.Article;
 import greensopinion.restexample.domain.Blog;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 /**
- * a means of accessing a {@link Blog}.
+ * a means of accessing a {@link Blog}. Failures are reported as a {@link BlogServiceException}.
  * 
  * @author David Green
  */
@@ -37,6 +39,8 @@ public interface BlogService {
 	 * @param blog
 	 *            the blog to modify
 	 * @return the blog with modified values as it was persisted
+	 * @throws NotFoundException
+	 *             if the blog does not exist
 	 */
 	public Blog updateBlog(Blog blog);
 
@@ -45,10 +49,25 @@ public interface BlogService {
 	 * 
 	 * @param blogId
 	 *            the identity of the blog
-	 * @return the blog, or null if it could not be found
+	 * @return the blog
+	 * @throws NotFoundException
+	 *             if the blog does not exist
 	 */
 	public Blog getBlog(Long blogId);
 
+	/**
+	 * get selected fields of a blog by its id
+	 * 
+	 * @param blogId
+	 *            the identity of the blog
+	 * @param fields
+	 *            the {@link FieldSelection#BLOG_FIELDS fields} to get, or null for all fields
+	 * @return the blog, with only the selected fields populated
+	 * @throws NotFoundException
+	 *             if the blog does not exist
+	 */
+	public Blog getBlog(Long blogId, Set<String> fields);
+
 	/**
 	 * List articles of the blog since the given date
 	 * 
@@ -57,9 +76,43 @@ public interface BlogService {
 	 * @param since
 	 *            the date from which articles should be returned
 	 * @return articles newer than the given date
+	 * @throws InvalidRequestException
+	 *             if the date is not specified
 	 */
 	public List<Article> listArticles(Long blogId, Date since);
 
+	/**
+	 * List selected fields of articles of the blog since the given date
+	 * 
+	 * @param blogId
+	 *            the identity of the blog
+	 * @param since
+	 *            the date from which articles should be returned
+	 * @param fields
+	 *            the {@link FieldSelection#ARTICLE_FIELDS fields} to get, or null for all fields
+	 * @return articles newer than the given date, with only the selected fields populated
+	 * @throws InvalidRequestException
+	 *             if the date is not specified
+	 */
+	public List<Article> listArticles(Long blogId, Date since, Set<String> fields);
+
+	/**
+	 * List the ids of the newest articles of the blog, which can be read with {@link #getArticle(Long)}
+	 * 
+	 * @param blogId
+	 *            the identity of the blog
+	 * @param since
+	 *            the date from which articles should be returned, or null for articles of any date
+	 * @param count
+	 *            the maximum number of ids to return
+	 * @return the ids of articles newer than the given date, newest first
+	 * @throws InvalidRequestException
+	 *             if the count is not positive
+	 * @throws NotFoundException
+	 *             if the blog does not exist
+	 */
+	public List<Long> listRecentArticleIds(Long blogId, Date since, int count);
+
 	/**
 	 * create a new article for the given blog
 	 * 
@@ -68,22 +121,106 @@ public interface BlogService {
 	 * @param article
 	 *            the article to create
 	 * @return the article with values as it was created
+	 * @throws NotFoundException
+	 *             if the blog does not exist
 	 */
 	public Article createArticle(Long blogId, Article article);
 
+	/**
+	 * create several articles for the given blog in a single transaction, for example when a blog is imported. The
+	 * articles are not published as article events.
+	 * 
+	 * @param blogId
+	 *            the identity of the blog
+	 * @param articles
+	 *            the articles to create
+	 * @return the ids of the created articles, in the same order
+	 * @throws NotFoundException
+	 *             if the blog does not exist
+	 */
+	public List<Long> createArticles(Long blogId, List<Article> articles);
+
 	/**
 	 * modify an article
 	 * 
 	 * @param article
 	 *            the article to modify
 	 * @return the article with values as it was modified
+	 * @throws NotFoundException
+	 *             if the article does not exist
 	 */
 	public Article updateArticle(Article article);
 
+	/**
+	 * modify the fields of an article that are present in the given patch, leaving other fields unchanged
+	 * 
+	 * @param articleId
+	 *            the identity of the article
+	 * @param patch
+	 *            the changes to make
+	 * @return the article with values as it was modified, including its content only if the patch changed it
+	 * @throws NotFoundException
+	 *             if the article does not exist
+	 * @throws InvalidRequestException
+	 *             if the patch is not valid
+	 * @throws ConflictException
+	 *             if the patch edits content that has since been modified
+	 */
+	public Article patchArticle(Long articleId, ArticlePatch patch);
+
+	/**
+	 * delete an article
+	 * 
+	 * @param articleId
+	 *            the identity of the article
+	 * @throws NotFoundException
+	 *             if the article does not exist
+	 */
+	public void deleteArticle(Long articleId);
+
+	/**
+	 * delete a blog and its articles. The blog and its articles are no longer found once this method returns, however
+	 * their rows are removed later by a {@link greensopinion.restexample.jdbc.BlogPurgeJob purge}.
+	 * 
+	 * @param blogId
+	 *            the identity of the blog
+	 * @throws NotFoundException
+	 *             if the blog does not exist
+	 */
+	public void deleteBlog(Long blogId);
+
+	/**
+	 * export a blog and all of its articles to the given handler. Articles are read a page at a time, so that memory use
+	 * does not depend on the size of the blog, and all pages are read in one transaction.
+	 * 
+	 * @param blogId
+	 *            the identity of the blog
+	 * @param handler
+	 *            the handler that receives the blog and then each article
+	 * @throws NotFoundException
+	 *             if the blog does not exist
+	 * @throws IOException
+	 *             if the handler fails to write
+	 */
+	public void exportBlog(Long blogId, BlogExportHandler handler) throws IOException;
+
 	/**
 	 * get an article by its identity
 	 * 
-	 * @return the article, or null if there was no such article
+	 * @return the article
+	 * @throws NotFoundException
+	 *             if there is no such article
 	 */
 	public Article getArticle(Long articleId);
+
+	/**
+	 * get selected fields of an article by its identity
+	 * 
+	 * @param fields
+	 *            the {@link FieldSelection#ARTICLE_FIELDS fields} to get, or null for all fields
+	 * @return the article, with only the selected fields populated
+	 * @throws NotFoundException
+	 *             if there is no such article
+	 */
+	public Article getArticle(Long articleId, Set<String> fields);
 }
@@ -10,21 +10,75 @@
  *******************************************************************************/
 package greensopinion.restexample.service;
 
+import greensopinion.restexample.cluster.InvalidationBus;
+import greensopinion.restexample.cluster.InvalidationListener;
 import greensopinion.restexample.domain.Article;
 import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.jdbc.BlogPurgeJob;
+import greensopinion.restexample.jdbc.RoutingContext;
+import greensopinion.restexample.jdbc.ShardContext;
+import greensopinion.restexample.jdbc.ShardIdGenerator;
+import greensopinion.restexample.jdbc.ShardMap;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * A {@link BlogService} that uses JPA as its backing data store.
+ * <p>
+ * Query methods are read-only: they don't begin a database transaction and entities are read with the EclipseLink
+ * read-only query hint, so that they are not registered with the unit of work. Such entities must not be modified; write
+ * operations find their own managed instances.
+ * </p>
+ * <p>
+ * When a {@link ContentStore} is configured, article content is written to the store and articles hold only a
+ * {@link Article#getContentRef() reference} to it.
+ * </p>
+ * <p>
+ * When an {@link ArticleEventLog} is configured, article creates and updates are published to it once their transaction
+ * commits, so that subscribers never see an event for a change that was rolled back.
+ * </p>
+ * <p>
+ * When an {@link InvalidationBus} is configured, the ids of modified blogs and articles are published to it once their
+ * transaction commits, so that other instances of the application remove them from their caches.
+ * </p>
+ * <p>
+ * Deleting a blog marks it as deleted, after which neither the blog nor its articles are found; the rows are removed
+ * later in small batches by the {@link BlogPurgeJob}, so that deleting a large blog does not hold locks for long.
+ * </p>
+ * <p>
+ * When a {@link RecentArticleIndex} is configured, the ids of recent articles are read from the index rather than the
+ * database, except in a transaction that may have written articles.
+ * </p>
+ * <p>
+ * Reads of {@link FieldSelection selected fields} query only the columns of those fields, and return detached entities
+ * in which only those fields are populated.
+ * </p>
+ * <p>
+ * When a {@link ShardMap} is configured, each operation is routed to the shard of the blog or article concerned by
+ * entering it in the {@link ShardContext} before the entity manager is used, and new blogs and articles are given ids
+ * that are unique across shards. A transaction of the caller must not span blogs on different shards.
+ * </p>
  * 
  * @author David Green
  */
@@ -32,66 +86,778 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 @Qualifier("main")
 public class BlogServiceBean implements BlogService {
+	private static final String HINT_READ_ONLY = "eclipselink.read-only";
+
+	private static final Map<String, Object> READ_ONLY = Collections.<String, Object> singletonMap(HINT_READ_ONLY,
+			Boolean.TRUE.toString());
+
+	/**
+	 * the number of articles read by each query of an export
+	 */
+	private static final int EXPORT_PAGE_SIZE = 500;
+
+	/**
+	 * the number of article ids read by each query when a blog is deleted
+	 */
+	private static final int INVALIDATION_PAGE_SIZE = 1000;
+
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@Autowired(required = false)
+	private ContentStore contentStore;
+
+	@Autowired(required = false)
+	private ArticleEventLog eventLog;
+
+	@Autowired(required = false)
+	private InvalidationBus invalidationBus;
+
+	@Autowired(required = false)
+	private RecentArticleIndex recentArticleIndex;
+
+	@Autowired(required = false)
+	private ShardMap shardMap;
+
+	@Autowired(required = false)
+	private ShardIdGenerator idGenerator;
+
+	@PostConstruct
+	public void listenForInvalidations() {
+		if (invalidationBus != null && recentArticleIndex != null) {
+			invalidationBus.addListener(new InvalidationListener() {
+				public void invalidate(String entityName, Long id) {
+					if (entityName.equals(Blog.class.getSimpleName())) {
+						recentArticleIndex.invalidate(id);
+					}
+				}
+
+				public void invalidateAll() {
+					recentArticleIndex.clear();
+				}
+			});
+		}
+	}
+
 	@Override
 	public Blog createBlog(Blog blog) {
-		entityManager.persist(blog);
-		entityManager.flush();
-		return blog;
+		Integer previousShard = null;
+		if (shardMap != null) {
+			int shard = shardMap.selectShard();
+			previousShard = ShardContext.enter(shard);
+			blog.setId(idGenerator.nextId(shard));
+		}
+		try {
+			blog.setDeleted(null);
+			entityManager.persist(blog);
+			entityManager.flush();
+			return blog;
+		} finally {
+			restoreShard(previousShard);
+		}
 	}
 
 	@Override
 	public Blog updateBlog(Blog blog) {
-		if (!entityManager.contains(blog)) {
-			Blog managedBlog = entityManager.find(Blog.class, blog.getId());
-			managedBlog.setName(blog.getName());
-			blog = managedBlog;
+		Integer previousShard = enterShard(blog.getId());
+		try {
+			if (!entityManager.contains(blog)) {
+				Blog managedBlog = find(Blog.class, blog.getId());
+				managedBlog.setName(blog.getName());
+				blog = managedBlog;
+			}
+			entityManager.flush();
+			invalidateAfterCommit(Blog.class, blog.getId());
+			return blog;
+		} finally {
+			restoreShard(previousShard);
 		}
-		entityManager.flush();
-		return blog;
 	}
 
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
 	@Override
 	public Blog getBlog(Long blogId) {
-		return entityManager.find(Blog.class, blogId);
+		Integer previousShard = enterShard(blogId);
+		try {
+			return find(Blog.class, blogId, readOnlyHints());
+		} finally {
+			restoreShard(previousShard);
+		}
 	}
 
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	@Override
+	public Blog getBlog(Long blogId, Set<String> fields) {
+		if (fields == null) {
+			return getBlog(blogId);
+		}
+		if (blogId == null) {
+			throw new InvalidRequestException(Blog.class.getSimpleName() + " id is required");
+		}
+		Integer previousShard = enterShard(blogId);
+		try {
+			List<String> selected = new ArrayList<String>(fields);
+			List<?> results = entityManager.createQuery(
+					"select " + select(selected) + " from " + Blog.class.getSimpleName() + " e where e.id = :id and e.deleted is null")
+					.setParameter("id", blogId).getResultList();
+			if (results.isEmpty()) {
+				throw new NotFoundException(Blog.class.getSimpleName() + " " + blogId + " does not exist");
+			}
+			Blog blog = new Blog();
+			blog.setArticles(null);
+			Object[] values = values(results.get(0));
+			for (int x = 0; x < values.length; ++x) {
+				FieldSelection.set(blog, selected.get(x), values[x]);
+			}
+			return blog;
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
 	@SuppressWarnings("unchecked")
 	@Override
 	public List<Article> listArticles(Long blogId, Date since) {
-		return entityManager
-				.createQuery("select e from " + Article.class.getSimpleName() + " e where e.created >= :date")
-				.setParameter("date", since).getResultList();
+		if (since == null) {
+			throw new InvalidRequestException("since is required");
+		}
+		Integer previousShard = enterShard(blogId);
+		try {
+			Query query = entityManager.createQuery(
+					"select e from " + Article.class.getSimpleName()
+							+ " e where e.created >= :date and e.blog.deleted is null").setParameter("date", since);
+			return setHints(query, readOnlyHints()).getResultList();
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	@Override
+	public List<Article> listArticles(Long blogId, Date since, Set<String> fields) {
+		if (fields == null) {
+			return listArticles(blogId, since);
+		}
+		if (since == null) {
+			throw new InvalidRequestException("since is required");
+		}
+		Integer previousShard = enterShard(blogId);
+		try {
+			List<String> selected = selectArticleFields(fields);
+			List<?> results = entityManager.createQuery(
+					"select " + select(selected) + " from " + Article.class.getSimpleName()
+							+ " e where e.created >= :date and e.blog.deleted is null").setParameter("date", since)
+					.getResultList();
+			List<Article> articles = new ArrayList<Article>(results.size());
+			for (Object result : results) {
+				articles.add(toArticle(selected, values(result)));
+			}
+			return articles;
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Long> listRecentArticleIds(Long blogId, Date since, int count) {
+		if (blogId == null) {
+			throw new InvalidRequestException(Blog.class.getSimpleName() + " id is required");
+		}
+		if (count <= 0) {
+			throw new InvalidRequestException("count must be positive: " + count);
+		}
+		long sinceTime = since == null ? Long.MIN_VALUE : since.getTime();
+		// the index holds committed articles only
+		boolean useIndex = recentArticleIndex != null
+				&& (!TransactionSynchronizationManager.isActualTransactionActive() || TransactionSynchronizationManager
+						.isCurrentTransactionReadOnly());
+		if (useIndex) {
+			List<Long> ids = recentArticleIndex.latest(blogId, sinceTime, count);
+			if (ids != null) {
+				return ids;
+			}
+		}
+		Integer previousShard = enterShard(blogId);
+		try {
+			if (useIndex) {
+				if (!loadRecentArticles(blogId)) {
+					find(Blog.class, blogId, readOnlyHints());
+					return new ArrayList<Long>();
+				}
+				List<Long> ids = recentArticleIndex.latest(blogId, sinceTime, count);
+				if (ids != null) {
+					return ids;
+				}
+			}
+			Query query = entityManager.createQuery("select e.id from " + Article.class.getSimpleName()
+					+ " e where e.blog.id = :blogId and e.blog.deleted is null"
+					+ (since == null ? "" : " and e.created >= :date")
+					+ " order by e.created desc, e.id desc");
+			query.setParameter("blogId", blogId).setMaxResults(count);
+			if (since != null) {
+				query.setParameter("date", since);
+			}
+			List<Long> ids = query.getResultList();
+			if (ids.isEmpty()) {
+				find(Blog.class, blogId, readOnlyHints());
+			}
+			return ids;
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	/**
+	 * load the ring of the {@link RecentArticleIndex} for the given blog. The ring is read from the primary: it is
+	 * loaded after an invalidation of the blog, and nothing refreshes it afterwards, so a replica that has not yet
+	 * received the change would leave the ring stale for as long as it is held.
+	 * 
+	 * @return true if the blog has articles
+	 */
+	private boolean loadRecentArticles(Long blogId) {
+		recentArticleIndex.beginLoad(blogId);
+		List<?> results;
+		Object enclosingScope = RoutingContext.beginPinned();
+		try {
+			results = entityManager.createQuery(
+					"select e.created, e.id from " + Article.class.getSimpleName()
+							+ " e where e.blog.id = :blogId and e.blog.deleted is null order by e.created desc, e.id desc")
+					.setParameter("blogId", blogId).setMaxResults(recentArticleIndex.getCapacity()).getResultList();
+		} finally {
+			RoutingContext.restore(enclosingScope);
+		}
+		if (results.isEmpty()) {
+			// don't hold a ring for a blog that may not exist
+			recentArticleIndex.invalidate(blogId);
+			return false;
+		}
+		long[] created = new long[results.size()];
+		long[] ids = new long[results.size()];
+		for (int x = 0; x < ids.length; ++x) {
+			Object[] values = (Object[]) results.get(x);
+			created[x] = ((Date) values[0]).getTime();
+			ids[x] = (Long) values[1];
+		}
+		recentArticleIndex.load(blogId, created, ids);
+		return true;
 	}
 
 	@Override
 	public Article createArticle(Long blogId, Article article) {
-		Blog blog = getBlog(blogId);
-		article.setBlog(blog);
-		blog.getArticles().add(article);
-		entityManager.persist(article);
-		entityManager.flush();
-		return article;
+		Integer previousShard = enterShard(blogId);
+		try {
+			Blog blog = find(Blog.class, blogId);
+			if (shardMap != null) {
+				article.setId(idGenerator.nextId(ShardContext.getCurrentShard()));
+			}
+			article.setBlog(blog);
+			article.setContentRef(null);
+			storeContent(article);
+			// adding to articles that are not loaded would read every article of the blog
+			if (entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(blog, "articles")) {
+				blog.getArticles().add(article);
+			}
+			entityManager.persist(article);
+			entityManager.flush();
+			publishAfterCommit(ArticleEvent.TYPE_CREATED, article);
+			indexAfterCommit(article);
+			// the articles of the blog changed
+			invalidateAfterCommit(Blog.class, blogId);
+			return article;
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	@Override
+	public List<Long> createArticles(Long blogId, List<Article> articles) {
+		Integer previousShard = enterShard(blogId);
+		try {
+			Blog blog = find(Blog.class, blogId);
+			List<Long> ids = new ArrayList<Long>(articles.size());
+			for (Article article : articles) {
+				article.setId(shardMap == null ? null : idGenerator.nextId(ShardContext.getCurrentShard()));
+				article.setBlog(blog);
+				article.setContentRef(null);
+				storeContent(article);
+				entityManager.persist(article);
+			}
+			entityManager.flush();
+			for (Article article : articles) {
+				ids.add(article.getId());
+			}
+			// the articles of the blog changed; the index is loaded again rather than added to once per article
+			final Long id = blog.getId();
+			afterCommit(new Runnable() {
+				public void run() {
+					if (recentArticleIndex != null) {
+						recentArticleIndex.invalidate(id);
+					}
+				}
+			});
+			invalidateAfterCommit(Blog.class, blogId);
+			return ids;
+		} finally {
+			restoreShard(previousShard);
+		}
 	}
 
 	@Override
 	public Article updateArticle(Article article) {
-		if (!entityManager.contains(article)) {
-			Article managedArticle = entityManager.find(Article.class, article.getId());
-			managedArticle.setAuthor(article.getAuthor());
-			managedArticle.setContent(article.getContent());
-			managedArticle.setTitle(article.getTitle());
-			managedArticle.setPublished(article.getPublished());
-			article = managedArticle;
-		}
-		entityManager.flush();
+		Integer previousShard = enterShard(article.getId());
+		try {
+			if (!entityManager.contains(article)) {
+				Article managedArticle = findArticle(article.getId(), Collections.<String, Object> emptyMap());
+				managedArticle.setAuthor(article.getAuthor());
+				managedArticle.setContent(article.getContent());
+				// the reference is derived from the content, never taken from the caller
+				managedArticle.setContentRef(null);
+				managedArticle.setTitle(article.getTitle());
+				managedArticle.setPublished(article.getPublished());
+				article = managedArticle;
+			}
+			storeContent(article);
+			entityManager.flush();
+			publishAfterCommit(ArticleEvent.TYPE_UPDATED, article);
+			invalidateAfterCommit(Article.class, article.getId());
+			return article;
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	@Override
+	public Article patchArticle(Long articleId, ArticlePatch patch) {
+		patch.validate();
+		Integer previousShard = enterShard(articleId);
+		try {
+			if (!patch.hasContentChange()) {
+				return patchArticleFields(articleId, patch);
+			}
+			if (patch.has(ArticlePatch.CONTENT_EDITS)) {
+				checkBaseContent(articleId, patch);
+			}
+			Article article = findArticle(articleId, Collections.<String, Object> emptyMap());
+			if (patch.has(ArticlePatch.TITLE)) {
+				article.setTitle(patch.getTitle());
+			}
+			if (patch.has(ArticlePatch.AUTHOR)) {
+				article.setAuthor(patch.getAuthor());
+			}
+			if (patch.has(ArticlePatch.PUBLISHED)) {
+				article.setPublished(patch.getPublished());
+			}
+			if (patch.hasContentChange()) {
+				String content = article.getContent();
+				if (content == null && article.getContentRef() != null && contentStore != null
+						&& patch.has(ArticlePatch.CONTENT_EDITS)) {
+					content = contentStore.get(article.getContentRef());
+				}
+				article.setContent(patch.applyContent(content));
+				article.setContentRef(null);
+				storeContent(article);
+			}
+			entityManager.flush();
+			publishAfterCommit(ArticleEvent.TYPE_UPDATED, article);
+			invalidateAfterCommit(Article.class, article.getId());
+			return article;
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	/**
+	 * patch the fields of an article other than its content with a bulk update, so that the content is neither read
+	 * nor written
+	 * 
+	 * @return the article without its content
+	 */
+	private Article patchArticleFields(Long articleId, ArticlePatch patch) {
+		List<String> fields = Arrays.asList("id", "created", "title", "author", "published");
+		List<?> results = entityManager.createQuery(
+				"select " + select(fields) + ", e.blog.id from " + Article.class.getSimpleName()
+						+ " e where e.id = :id and e.blog.deleted is null").setParameter("id", articleId)
+				.getResultList();
+		if (results.isEmpty()) {
+			throw new NotFoundException(Article.class.getSimpleName() + " " + articleId + " does not exist");
+		}
+		Object[] values = values(results.get(0));
+		Article article = toArticle(fields, Arrays.copyOf(values, fields.size()));
+		Blog blog = new Blog();
+		blog.setId((Long) values[fields.size()]);
+		article.setBlog(blog);
+		article.setModified(new Date());
+
+		StringBuilder update = new StringBuilder("update ").append(Article.class.getSimpleName()).append(
+				" e set e.modified = :modified");
+		for (String field : Arrays.asList(ArticlePatch.TITLE, ArticlePatch.AUTHOR, ArticlePatch.PUBLISHED)) {
+			if (patch.has(field)) {
+				update.append(", e.").append(field).append(" = :").append(field);
+			}
+		}
+		Query query = entityManager.createQuery(update.append(" where e.id = :id").toString());
+		query.setParameter("modified", article.getModified()).setParameter("id", articleId);
+		if (patch.has(ArticlePatch.TITLE)) {
+			article.setTitle(patch.getTitle());
+			query.setParameter(ArticlePatch.TITLE, article.getTitle());
+		}
+		if (patch.has(ArticlePatch.AUTHOR)) {
+			article.setAuthor(patch.getAuthor());
+			query.setParameter(ArticlePatch.AUTHOR, article.getAuthor());
+		}
+		if (patch.has(ArticlePatch.PUBLISHED)) {
+			article.setPublished(patch.getPublished());
+			query.setParameter(ArticlePatch.PUBLISHED, article.getPublished());
+		}
+		query.executeUpdate();
+		publishAfterCommit(ArticleEvent.TYPE_UPDATED, article);
+		invalidateAfterCommit(Article.class, articleId);
 		return article;
 	}
 
+	/**
+	 * reject content edits that apply to content other than the current content before the content is read. Content
+	 * in the {@link ContentStore} is referenced by the same digest that identifies the base of the edits, so the check
+	 * reads only the reference; the digest of content held by the article is computed when the edits are applied.
+	 */
+	private void checkBaseContent(Long articleId, ArticlePatch patch) {
+		List<?> results = entityManager.createQuery(
+				"select e.contentRef from " + Article.class.getSimpleName()
+						+ " e where e.id = :id and e.blog.deleted is null").setParameter("id", articleId)
+				.getResultList();
+		if (results.isEmpty()) {
+			throw new NotFoundException(Article.class.getSimpleName() + " " + articleId + " does not exist");
+		}
+		String contentRef = (String) results.get(0);
+		if (contentRef != null && !contentRef.equals(patch.getBaseContentDigest())) {
+			throw new ConflictException("The content was modified since it was read");
+		}
+	}
+
+	@Override
+	public void deleteArticle(Long articleId) {
+		Integer previousShard = enterShard(articleId);
+		try {
+			Article article = findArticle(articleId, Collections.<String, Object> emptyMap());
+			Blog blog = article.getBlog();
+			if (entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(blog, "articles")) {
+				blog.getArticles().remove(article);
+			}
+			entityManager.remove(article);
+			entityManager.flush();
+			publishAfterCommit(ArticleEvent.TYPE_DELETED, article);
+			removeFromIndexAfterCommit(blog.getId(), articleId);
+			invalidateAfterCommit(Article.class, articleId);
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	@Override
+	public void deleteBlog(Long blogId) {
+		Integer previousShard = enterShard(blogId);
+		try {
+			final Blog blog = find(Blog.class, blogId);
+			blog.setDeleted(new Date());
+			entityManager.flush();
+			afterCommit(new Runnable() {
+				public void run() {
+					if (recentArticleIndex != null) {
+						recentArticleIndex.invalidate(blog.getId());
+					}
+				}
+			});
+			invalidateArticlesAfterCommit(blogId);
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	/**
+	 * the pages are read in one read-only transaction, so that they are read from a single replica and, where the
+	 * database isolates transactions by snapshot, form a consistent export
+	 */
+	@SuppressWarnings("unchecked")
+	@Transactional(readOnly = true)
+	@Override
+	public void exportBlog(Long blogId, BlogExportHandler handler) throws IOException {
+		Integer previousShard = enterShard(blogId);
+		try {
+			handler.blog(find(Blog.class, blogId, readOnlyHints()));
+			// pages are read by id rather than by offset, so that each query reads only its own page
+			Long lastId = Long.MIN_VALUE;
+			for (;;) {
+				Query query = entityManager.createQuery(
+						"select e from " + Article.class.getSimpleName()
+								+ " e where e.blog.id = :blogId and e.id > :lastId order by e.id").setParameter(
+						"blogId", blogId).setParameter("lastId", lastId).setMaxResults(EXPORT_PAGE_SIZE);
+				List<Article> articles = setHints(query, readOnlyHints()).getResultList();
+				for (Article article : articles) {
+					handler.article(article);
+				}
+				if (articles.size() < EXPORT_PAGE_SIZE) {
+					break;
+				}
+				lastId = articles.get(articles.size() - 1).getId();
+			}
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
 	@Override
 	public Article getArticle(Long articleId) {
-		return entityManager.find(Article.class, articleId);
+		Integer previousShard = enterShard(articleId);
+		try {
+			return findArticle(articleId, readOnlyHints());
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+	@Override
+	public Article getArticle(Long articleId, Set<String> fields) {
+		if (fields == null) {
+			return getArticle(articleId);
+		}
+		if (articleId == null) {
+			throw new InvalidRequestException(Article.class.getSimpleName() + " id is required");
+		}
+		Integer previousShard = enterShard(articleId);
+		try {
+			List<String> selected = selectArticleFields(fields);
+			List<?> results = entityManager.createQuery(
+					"select " + select(selected) + " from " + Article.class.getSimpleName() + " e where e.id = :id and e.blog.deleted is null")
+					.setParameter("id", articleId).getResultList();
+			if (results.isEmpty()) {
+				throw new NotFoundException(Article.class.getSimpleName() + " " + articleId + " does not exist");
+			}
+			return toArticle(selected, values(results.get(0)));
+		} finally {
+			restoreShard(previousShard);
+		}
+	}
+
+	/**
+	 * the article fields to query, which include the content reference when content is selected since the content may
+	 * be held in the {@link ContentStore}
+	 */
+	private List<String> selectArticleFields(Set<String> fields) {
+		Set<String> selected = new LinkedHashSet<String>(fields);
+		if (selected.contains("content")) {
+			selected.add("contentRef");
+		}
+		return new ArrayList<String>(selected);
+	}
+
+	private String select(List<String> fields) {
+		StringBuilder buf = new StringBuilder();
+		for (String field : fields) {
+			if (buf.length() > 0) {
+				buf.append(", ");
+			}
+			buf.append("e.").append(field);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * the values of a projection, which is a single value rather than an array when one field is selected
+	 */
+	private Object[] values(Object result) {
+		if (result instanceof Object[]) {
+			return (Object[]) result;
+		}
+		return new Object[] { result };
+	}
+
+	private Article toArticle(List<String> fields, Object[] values) {
+		Article article = new Article();
+		for (int x = 0; x < values.length; ++x) {
+			FieldSelection.set(article, fields.get(x), values[x]);
+		}
+		return article;
+	}
+
+	/**
+	 * enter the shard of the blog or article with the given id, if sharding is configured
+	 * 
+	 * @return the shard to {@link #restoreShard(Integer) restore}
+	 */
+	private Integer enterShard(Long id) {
+		if (shardMap == null || id == null) {
+			return ShardContext.getCurrentShard();
+		}
+		return ShardContext.enter(shardMap.getShard(id));
+	}
+
+	private void restoreShard(Integer previousShard) {
+		if (shardMap != null) {
+			ShardContext.restore(previousShard);
+		}
+	}
+
+	private void storeContent(Article article) {
+		if (contentStore != null && article.getContent() != null) {
+			article.setContentRef(contentStore.put(article.getContent()));
+			article.setContent(null);
+		}
+	}
+
+	private void publishAfterCommit(final String type, Article article) {
+		if (eventLog == null) {
+			return;
+		}
+		final Long blogId = article.getBlog().getId();
+		final Long articleId = article.getId();
+		final Date modified = article.getModified();
+		afterCommit(new Runnable() {
+			public void run() {
+				eventLog.publish(type, blogId, articleId, modified);
+			}
+		});
+	}
+
+	private void indexAfterCommit(Article article) {
+		if (recentArticleIndex == null) {
+			return;
+		}
+		final Long blogId = article.getBlog().getId();
+		final Long articleId = article.getId();
+		final long created = article.getCreated().getTime();
+		afterCommit(new Runnable() {
+			public void run() {
+				recentArticleIndex.add(blogId, created, articleId);
+			}
+		});
+	}
+
+	private void removeFromIndexAfterCommit(final Long blogId, final Long articleId) {
+		if (recentArticleIndex == null) {
+			return;
+		}
+		afterCommit(new Runnable() {
+			public void run() {
+				recentArticleIndex.remove(blogId, articleId);
+			}
+		});
+	}
+
+	private void invalidateAfterCommit(final Class<?> entityClass, final Long id) {
+		if (invalidationBus == null) {
+			return;
+		}
+		afterCommit(new Runnable() {
+			public void run() {
+				invalidationBus.publish(entityClass, id);
+			}
+		});
+	}
+
+	/**
+	 * invalidate the articles of the given blog on other instances, which may have cached them. The ids are read a page
+	 * at a time and held as primitives until the transaction commits.
+	 */
+	@SuppressWarnings("unchecked")
+	private void invalidateArticlesAfterCommit(Long blogId) {
+		if (invalidationBus == null) {
+			return;
+		}
+		Long lastId = Long.MIN_VALUE;
+		for (;;) {
+			List<Long> ids = entityManager.createQuery(
+					"select e.id from " + Article.class.getSimpleName()
+							+ " e where e.blog.id = :blogId and e.id > :lastId order by e.id").setParameter("blogId",
+					blogId).setParameter("lastId", lastId).setMaxResults(INVALIDATION_PAGE_SIZE).getResultList();
+			if (ids.isEmpty()) {
+				break;
+			}
+			final long[] page = new long[ids.size()];
+			for (int x = 0; x < page.length; ++x) {
+				page[x] = ids.get(x);
+			}
+			afterCommit(new Runnable() {
+				public void run() {
+					for (long id : page) {
+						invalidationBus.publish(Article.class, id);
+					}
+				}
+			});
+			if (ids.size() < INVALIDATION_PAGE_SIZE) {
+				break;
+			}
+			lastId = ids.get(ids.size() - 1);
+		}
+	}
+
+	private void afterCommit(final Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+
+	/**
+	 * the hints for reading entities that the caller does not modify. Read-only entities bypass the unit of work and
+	 * are read through the shared session, which does not see the uncommitted writes of a transaction. Within a
+	 * read-write transaction entities are therefore read through the unit of work as usual.
+	 */
+	private Map<String, Object> readOnlyHints() {
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return Collections.emptyMap();
+		}
+		return READ_ONLY;
+	}
+
+	private Query setHints(Query query, Map<String, Object> hints) {
+		for (Map.Entry<String, Object> hint : hints.entrySet()) {
+			query.setHint(hint.getKey(), hint.getValue());
+		}
+		return query;
+	}
+
+	private <T> T find(Class<T> entityClass, Long id) {
+		return find(entityClass, id, Collections.<String, Object> emptyMap());
+	}
+
+	private <T> T find(Class<T> entityClass, Long id, Map<String, Object> hints) {
+		if (id == null) {
+			throw new InvalidRequestException(entityClass.getSimpleName() + " id is required");
+		}
+		T entity = entityManager.find(entityClass, id, hints);
+		if (entity == null || (entity instanceof Blog && ((Blog) entity).getDeleted() != null)) {
+			throw new NotFoundException(entityClass.getSimpleName() + " " + id + " does not exist");
+		}
+		return entity;
+	}
+
+	/**
+	 * find an article, which is not found if its blog was deleted
+	 */
+	private Article findArticle(Long articleId, Map<String, Object> hints) {
+		if (articleId == null) {
+			throw new InvalidRequestException(Article.class.getSimpleName() + " id is required");
+		}
+		// the blog is joined to check that it is not deleted, so it is fetched with the article rather than later
+		Query query = entityManager.createQuery(
+				"select e from " + Article.class.getSimpleName()
+						+ " e join fetch e.blog b where e.id = :id and b.deleted is null").setParameter("id", articleId);
+		List<?> results = setHints(query, hints).getResultList();
+		if (results.isEmpty()) {
+			throw new NotFoundException(Article.class.getSimpleName() + " " + articleId + " does not exist");
+		}
+		return (Article) results.get(0);
 	}
 }
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+/**
+ * The base class of failures reported by a {@link BlogService}. These are permanent failures: repeating the same
+ * request will fail in the same way, so they should not be retried.
+ *
+ * @author David Green
+ */
+public abstract class BlogServiceException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	protected BlogServiceException(String message) {
+		super(message);
+	}
+
+	/**
+	 * a short, stable identifier of the kind of failure, suitable for use by clients
+	 */
+	public abstract String getCode();
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+/**
+ * thrown when a request conflicts with the current state of a blog or article, for example when it was
+ * concurrently modified
+ *
+ * @author David Green
+ */
+public class ConflictException extends BlogServiceException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String CODE = "conflict";
+
+	public ConflictException(String message) {
+		super(message);
+	}
+
+	@Override
+	public String getCode() {
+		return CODE;
+	}
+
+	/**
+	 * the stack trace is not filled in, since a conflicting request is an expected outcome that is reported to the
+	 * client rather than logged
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+/**
+ * A content-addressed store of article bodies in a local directory. Each body is stored once in a file named by the
+ * SHA-256 hash of its UTF-8 encoding, which is the reference held by the database, so identical bodies share a file.
+ * Files are never modified: changed content has a different reference.
+ * <p>
+ * Files are written to a temporary name and renamed into place, so that readers never see a partially written file.
+ * Files that are no longer referenced are removed by
+ * {@link greensopinion.restexample.jdbc.ContentSweepJob}.
+ * </p>
+ *
+ * @author David Green
+ */
+public class ContentStore {
+
+	private static final Pattern REFERENCE = Pattern.compile("[0-9a-f]{64}");
+
+	private static final String CHARSET = "UTF-8";
+
+	private File root;
+
+	/**
+	 * store the given content, unless identical content is already stored
+	 *
+	 * @return the reference to the content
+	 */
+	public String put(String content) {
+		byte[] bytes = toBytes(content);
+		String reference = hash(bytes);
+		File file = getFile(reference);
+		// touching the file keeps it from being removed as unreferenced before the new reference is committed
+		if (file.exists() && file.setLastModified(System.currentTimeMillis())) {
+			return reference;
+		}
+		File folder = file.getParentFile();
+		if (!folder.exists() && !folder.mkdirs() && !folder.exists()) {
+			throw new IllegalStateException("Cannot create " + folder);
+		}
+		try {
+			File temporary = File.createTempFile(reference, ".tmp", folder);
+			try {
+				FileOutputStream out = new FileOutputStream(temporary);
+				try {
+					out.write(bytes);
+					out.getFD().sync();
+				} finally {
+					out.close();
+				}
+				// another thread may have stored the same content in the meantime
+				if (!temporary.renameTo(file) && !file.exists()) {
+					throw new IOException("Cannot rename " + temporary + " to " + file);
+				}
+			} finally {
+				temporary.delete();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return reference;
+	}
+
+	/**
+	 * read the content with the given reference
+	 *
+	 * @throws NotFoundException
+	 *             if there is no such content
+	 */
+	public String get(String reference) {
+		File file = getFile(reference);
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+				byte[] buffer = new byte[8192];
+				int length;
+				while ((length = in.read(buffer)) != -1) {
+					out.write(buffer, 0, length);
+				}
+				return new String(out.toByteArray(), CHARSET);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			if (!file.exists()) {
+				throw new NotFoundException("Content " + reference + " does not exist");
+			}
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * get the file holding the content with the given reference, which may not exist
+	 *
+	 * @throws InvalidRequestException
+	 *             if the reference is not a valid reference
+	 */
+	public File getFile(String reference) {
+		if (reference == null || !REFERENCE.matcher(reference).matches()) {
+			throw new InvalidRequestException("Invalid content reference " + reference);
+		}
+		return new File(new File(root, reference.substring(0, 2)), reference);
+	}
+
+	private String hash(byte[] bytes) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			StringBuilder buf = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return buf.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private byte[] toBytes(String content) {
+		try {
+			return content.getBytes(CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public File getRoot() {
+		return root;
+	}
+
+	/**
+	 * the directory in which content is stored
+	 */
+	public void setRoot(File root) {
+		this.root = root;
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The fields of blogs and articles that a client can select, so that only the selected fields are read from the
+ * database and written to the client. The id is always selected. The content reference of an article is read with
+ * its content but cannot be selected by clients.
+ *
+ * @author David Green
+ */
+public class FieldSelection {
+
+	public static final String ID = "id";
+
+	public static final List<String> BLOG_FIELDS = Collections.unmodifiableList(Arrays.asList(ID, "created",
+			"modified", "name"));
+
+	public static final List<String> ARTICLE_FIELDS = Collections.unmodifiableList(Arrays.asList(ID, "created",
+			"modified", "author", "published", "title", "content"));
+
+	private FieldSelection() {
+	}
+
+	/**
+	 * parse a comma-separated list of fields
+	 *
+	 * @param fields
+	 *            the fields, for example <code>title,modified</code>, or null
+	 * @param available
+	 *            the fields that can be selected
+	 * @return the selected fields including the id, or null if all fields are selected
+	 * @throws InvalidRequestException
+	 *             if a field is not available
+	 */
+	public static Set<String> parse(String fields, List<String> available) {
+		if (fields == null || fields.trim().length() == 0) {
+			return null;
+		}
+		Set<String> selection = new LinkedHashSet<String>();
+		selection.add(ID);
+		for (String field : fields.split(",")) {
+			field = field.trim();
+			if (!available.contains(field)) {
+				throw new InvalidRequestException("Unknown field " + field + ", expected one of " + available);
+			}
+			selection.add(field);
+		}
+		return selection;
+	}
+
+	/**
+	 * format fields as they are {@link #parse(String, List) parsed}
+	 */
+	public static String format(Set<String> fields) {
+		StringBuilder buf = new StringBuilder();
+		for (String field : fields) {
+			if (buf.length() > 0) {
+				buf.append(',');
+			}
+			buf.append(field);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * the selected fields of the given blog, in the form in which they are written to the client
+	 */
+	public static Map<String, Object> toMap(Blog blog, Set<String> fields) {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		for (String field : fields) {
+			values.put(field, get(blog, field));
+		}
+		return values;
+	}
+
+	/**
+	 * the selected fields of the given article, in the form in which they are written to the client
+	 */
+	public static Map<String, Object> toMap(Article article, Set<String> fields) {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		for (String field : fields) {
+			values.put(field, get(article, field));
+		}
+		return values;
+	}
+
+	public static Object get(Blog blog, String field) {
+		if (field.equals(ID)) {
+			return blog.getId();
+		} else if (field.equals("created")) {
+			return blog.getCreated();
+		} else if (field.equals("modified")) {
+			return blog.getModified();
+		} else if (field.equals("name")) {
+			return blog.getName();
+		}
+		throw new IllegalArgumentException(field);
+	}
+
+	public static void set(Blog blog, String field, Object value) {
+		if (field.equals(ID)) {
+			blog.setId((Long) value);
+		} else if (field.equals("created")) {
+			blog.setCreated((Date) value);
+		} else if (field.equals("modified")) {
+			blog.setModified((Date) value);
+		} else if (field.equals("name")) {
+			blog.setName((String) value);
+		} else {
+			throw new IllegalArgumentException(field);
+		}
+	}
+
+	public static Object get(Article article, String field) {
+		if (field.equals(ID)) {
+			return article.getId();
+		} else if (field.equals("created")) {
+			return article.getCreated();
+		} else if (field.equals("modified")) {
+			return article.getModified();
+		} else if (field.equals("author")) {
+			return article.getAuthor();
+		} else if (field.equals("published")) {
+			return article.getPublished();
+		} else if (field.equals("title")) {
+			return article.getTitle();
+		} else if (field.equals("content")) {
+			return article.getContent();
+		} else if (field.equals("contentRef")) {
+			return article.getContentRef();
+		}
+		throw new IllegalArgumentException(field);
+	}
+
+	public static void set(Article article, String field, Object value) {
+		if (field.equals(ID)) {
+			article.setId((Long) value);
+		} else if (field.equals("created")) {
+			article.setCreated((Date) value);
+		} else if (field.equals("modified")) {
+			article.setModified((Date) value);
+		} else if (field.equals("author")) {
+			article.setAuthor((String) value);
+		} else if (field.equals("published")) {
+			article.setPublished((Date) value);
+		} else if (field.equals("title")) {
+			article.setTitle((String) value);
+		} else if (field.equals("content")) {
+			article.setContent((String) value);
+		} else if (field.equals("contentRef")) {
+			article.setContentRef((String) value);
+		} else {
+			throw new IllegalArgumentException(field);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+/**
+ * thrown when a request is malformed or has invalid values
+ *
+ * @author David Green
+ */
+public class InvalidRequestException extends BlogServiceException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String CODE = "invalid-request";
+
+	public InvalidRequestException(String message) {
+		super(message);
+	}
+
+	@Override
+	public String getCode() {
+		return CODE;
+	}
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+/**
+ * thrown when a blog or article does not exist
+ *
+ * @author David Green
+ */
+public class NotFoundException extends BlogServiceException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String CODE = "not-found";
+
+	public NotFoundException(String message) {
+		super(message);
+	}
+
+	@Override
+	public String getCode() {
+		return CODE;
+	}
+
+	/**
+	 * the stack trace is not filled in, since a missing blog or article is an expected outcome that is reported to the
+	 * client rather than logged
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+}
@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory index of the newest articles of each blog, which answers requests for the latest articles of a blog
+ * without reading the database. Each blog has a ring of fixed {@link #setCapacity(int) capacity} holding the created
+ * time and id of its newest articles in primitive arrays, so that the memory used per blog is fixed; the number of
+ * blogs is bounded, and the least recently used blog is removed when the bound is reached.
+ * <p>
+ * A blog's ring is built from the database on first use: the caller {@link #beginLoad(Long) begins} the load before
+ * reading the newest articles of the blog and then {@link #load(Long, long[], long[]) loads} them. Articles
+ * {@link #add(Long, long, Long) added} in the meantime are kept, so that an article created while the ring is loaded is
+ * not lost.
+ * </p>
+ * <p>
+ * Articles must only be added or removed once they are committed, and blogs must be {@link #invalidate(Long)
+ * invalidated} when their articles are changed in any other way, for example by another instance of the application.
+ * </p>
+ * 
+ * @author David Green
+ */
+public class RecentArticleIndex {
+
+	/**
+	 * the approximate size of a ring without its arrays, and of its entry in the map of rings
+	 */
+	private static final int RING_OVERHEAD = 128;
+
+	private class Ring {
+		private final long[] created = new long[capacity];
+
+		private final long[] ids = new long[capacity];
+
+		/**
+		 * the position of the oldest entry
+		 */
+		private int start;
+
+		private int size;
+
+		private boolean loaded;
+
+		/**
+		 * true if the ring holds every article of the blog
+		 */
+		private boolean complete = true;
+
+		private int position(int index) {
+			return (start + index) % capacity;
+		}
+
+		private void insert(long articleCreated, long articleId) {
+			for (int x = 0; x < size; ++x) {
+				if (ids[position(x)] == articleId) {
+					return;
+				}
+			}
+			int index = size;
+			while (index > 0 && compare(position(index - 1), articleCreated, articleId) > 0) {
+				--index;
+			}
+			if (index == 0 && (size == capacity || (!complete && size > 0))) {
+				// older than the oldest article held, which are the newest articles of the blog
+				complete = false;
+				return;
+			}
+			if (size == capacity) {
+				start = position(1);
+				--size;
+				--index;
+				complete = false;
+			}
+			for (int x = size; x > index; --x) {
+				created[position(x)] = created[position(x - 1)];
+				ids[position(x)] = ids[position(x - 1)];
+			}
+			created[position(index)] = articleCreated;
+			ids[position(index)] = articleId;
+			++size;
+		}
+
+		private void remove(long articleId) {
+			for (int x = 0; x < size; ++x) {
+				if (ids[position(x)] == articleId) {
+					for (int y = x; y < size - 1; ++y) {
+						created[position(y)] = created[position(y + 1)];
+						ids[position(y)] = ids[position(y + 1)];
+					}
+					--size;
+					return;
+				}
+			}
+		}
+
+		private int compare(int position, long articleCreated, long articleId) {
+			if (created[position] != articleCreated) {
+				return created[position] < articleCreated ? -1 : 1;
+			}
+			return ids[position] < articleId ? -1 : (ids[position] == articleId ? 0 : 1);
+		}
+
+		/**
+		 * @return the ids, or null if the ring does not hold enough articles to answer
+		 */
+		private List<Long> latest(long since, int count) {
+			List<Long> latest = new ArrayList<Long>(Math.min(count, size));
+			for (int x = size - 1; x >= 0 && latest.size() < count; --x) {
+				int position = position(x);
+				if (created[position] < since) {
+					return latest;
+				}
+				latest.add(ids[position]);
+			}
+			return latest.size() == count || complete ? latest : null;
+		}
+	}
+
+	private final Map<Long, Ring> rings = new LinkedHashMap<Long, Ring>(16, 0.75f, true);
+
+	private int capacity = 100;
+
+	private int maxBlogs = 10000;
+
+	private long hits;
+
+	private long misses;
+
+	/**
+	 * get the ids of the newest articles of a blog, newest first
+	 * 
+	 * @param blogId
+	 *            the identity of the blog
+	 * @param since
+	 *            the time in milliseconds of the oldest article to return
+	 * @param count
+	 *            the maximum number of ids to return
+	 * @return the ids, or null if the index cannot answer because the blog is not loaded or the index does not hold
+	 *         enough of its articles
+	 */
+	public synchronized List<Long> latest(Long blogId, long since, int count) {
+		Ring ring = rings.get(blogId);
+		List<Long> latest = ring == null || !ring.loaded ? null : ring.latest(since, count);
+		if (latest == null) {
+			++misses;
+		} else {
+			++hits;
+		}
+		return latest;
+	}
+
+	/**
+	 * begin loading the ring of a blog, after which articles {@link #add(Long, long, Long) added} to the blog are kept
+	 * until it is {@link #load(Long, long[], long[]) loaded}
+	 */
+	public synchronized void beginLoad(Long blogId) {
+		if (!rings.containsKey(blogId)) {
+			rings.put(blogId, new Ring());
+			evict();
+		}
+	}
+
+	/**
+	 * load the ring of a blog with the newest articles read from the database, unless the blog was
+	 * {@link #invalidate(Long) invalidated} since the load {@link #beginLoad(Long) began}
+	 * 
+	 * @param created
+	 *            the created times of up to {@link #getCapacity() capacity} of the newest articles
+	 * @param ids
+	 *            the ids of the same articles
+	 */
+	public synchronized void load(Long blogId, long[] created, long[] ids) {
+		Ring ring = rings.get(blogId);
+		if (ring == null || ring.loaded) {
+			return;
+		}
+		for (int x = 0; x < ids.length; ++x) {
+			ring.insert(created[x], ids[x]);
+		}
+		if (ids.length >= capacity) {
+			ring.complete = false;
+		}
+		ring.loaded = true;
+	}
+
+	/**
+	 * add an article that was created, if the blog is held by the index
+	 */
+	public synchronized void add(Long blogId, long created, Long articleId) {
+		Ring ring = rings.get(blogId);
+		if (ring != null) {
+			ring.insert(created, articleId);
+		}
+	}
+
+	/**
+	 * remove an article that was deleted, if the blog is held by the index
+	 */
+	public synchronized void remove(Long blogId, Long articleId) {
+		Ring ring = rings.get(blogId);
+		if (ring != null) {
+			if (ring.loaded) {
+				ring.remove(articleId);
+			} else {
+				// the load may have read the article before it was deleted
+				rings.remove(blogId);
+			}
+		}
+	}
+
+	/**
+	 * remove a blog, so that it is loaded again on next use
+	 */
+	public synchronized void invalidate(Long blogId) {
+		rings.remove(blogId);
+	}
+
+	public synchronized void clear() {
+		rings.clear();
+	}
+
+	private void evict() {
+		Iterator<Long> it = rings.keySet().iterator();
+		while (rings.size() > maxBlogs && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	public synchronized int getBlogCount() {
+		return rings.size();
+	}
+
+	/**
+	 * the approximate number of bytes used by the ring of each blog, which is fixed by the capacity
+	 */
+	public int getBytesPerBlog() {
+		return RING_OVERHEAD + 2 * 8 * capacity;
+	}
+
+	/**
+	 * the approximate number of bytes held by the index
+	 */
+	public synchronized long getSize() {
+		return (long) rings.size() * getBytesPerBlog();
+	}
+
+	/**
+	 * the number of requests answered by the index
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * the number of requests that the index could not answer
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * the number of articles held for each blog, which must be set before the index is used. Defaults to 100.
+	 */
+	public synchronized void setCapacity(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		rings.clear();
+	}
+
+	public int getMaxBlogs() {
+		return maxBlogs;
+	}
+
+	/**
+	 * the largest number of blogs held. Defaults to 10000, which with the default capacity is about 17MB.
+	 */
+	public synchronized void setMaxBlogs(int maxBlogs) {
+		this.maxBlogs = maxBlogs;
+		evict();
+	}
+}
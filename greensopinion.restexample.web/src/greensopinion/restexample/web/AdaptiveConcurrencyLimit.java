@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+/**
+ * A limit on the number of requests in flight that adapts to observed latency, using a gradient algorithm. The limit
+ * is compared against a long-term average of latency, which approximates latency without queueing, and a short-term
+ * average: while short-term latency is within a {@link #setLatencyTolerance(double) tolerance} of the long-term
+ * average, the limit grows by roughly its square root; as short-term latency rises beyond the tolerance, the limit is
+ * reduced in proportion. Requests that fail reduce the limit multiplicatively.
+ * <p>
+ * The limit is not raised while fewer than half of the permitted requests are in flight, so that a lightly loaded
+ * server does not accumulate a limit that it has never been tested against.
+ * </p>
+ *
+ * @author David Green
+ * @see AdmissionControlFilter
+ */
+public class AdaptiveConcurrencyLimit {
+
+	private int inFlight;
+
+	private double limit = 20;
+
+	private double shortLatency;
+
+	private double longLatency;
+
+	private long sampleCount;
+
+	private long rejectedCount;
+
+	private int minLimit = 1;
+
+	private int maxLimit = 200;
+
+	private double latencyTolerance = 2d;
+
+	private double smoothing = 0.2d;
+
+	private int shortWindow = 10;
+
+	private int longWindow = 600;
+
+	private double failureBackoff = 0.9d;
+
+	/**
+	 * acquire a permit for a request
+	 *
+	 * @return true if the request may proceed, in which case it must be {@link #release(long, boolean) released}
+	 */
+	public synchronized boolean tryAcquire() {
+		if (inFlight >= (int) limit) {
+			++rejectedCount;
+			return false;
+		}
+		++inFlight;
+		return true;
+	}
+
+	/**
+	 * release the permit of a request that has completed
+	 *
+	 * @param latencyNanos
+	 *            the time taken by the request
+	 * @param failed
+	 *            true if the request failed, which is taken as a sign of overload
+	 */
+	public synchronized void release(long latencyNanos, boolean failed) {
+		int requestsInFlight = inFlight--;
+		if (failed) {
+			setLimit(limit * failureBackoff);
+			return;
+		}
+		if (sampleCount++ == 0) {
+			shortLatency = latencyNanos;
+			longLatency = latencyNanos;
+			return;
+		}
+		shortLatency += (latencyNanos - shortLatency) * 2d / (shortWindow + 1);
+		longLatency += (latencyNanos - longLatency) * 2d / (longWindow + 1);
+		if (longLatency > shortLatency * 2d) {
+			// latency has dropped for a sustained period, so the long-term average is stale
+			longLatency *= 0.95d;
+		}
+		if (requestsInFlight < limit / 2d) {
+			return;
+		}
+		double gradient = Math.max(0.5d, Math.min(1d, latencyTolerance * longLatency / shortLatency));
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		setLimit(limit * (1d - smoothing) + newLimit * smoothing);
+	}
+
+	private void setLimit(double newLimit) {
+		limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+	}
+
+	/**
+	 * the current limit on the number of requests in flight
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * the number of requests that were not permitted
+	 */
+	public synchronized long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * the short-term average latency in milliseconds
+	 */
+	public synchronized double getLatencyMillis() {
+		return shortLatency / 1000000d;
+	}
+
+	/**
+	 * the limit to start with, defaults to 20
+	 */
+	public synchronized void setInitialLimit(int initialLimit) {
+		setLimit(initialLimit);
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	/**
+	 * the lowest limit, defaults to 1
+	 */
+	public synchronized void setMinLimit(int minLimit) {
+		this.minLimit = minLimit;
+		setLimit(limit);
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	/**
+	 * the highest limit, which should not exceed the number of threads available to handle requests. Defaults to 200.
+	 */
+	public synchronized void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+		setLimit(limit);
+	}
+
+	public double getLatencyTolerance() {
+		return latencyTolerance;
+	}
+
+	/**
+	 * the ratio of short-term to long-term latency above which the limit is reduced. Defaults to 2.
+	 */
+	public void setLatencyTolerance(double latencyTolerance) {
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	public double getSmoothing() {
+		return smoothing;
+	}
+
+	/**
+	 * the weight given to each new estimate of the limit, between 0 and 1. Defaults to 0.2.
+	 */
+	public void setSmoothing(double smoothing) {
+		this.smoothing = smoothing;
+	}
+
+	public int getShortWindow() {
+		return shortWindow;
+	}
+
+	/**
+	 * the number of requests over which short-term latency is averaged. Defaults to 10.
+	 */
+	public void setShortWindow(int shortWindow) {
+		this.shortWindow = shortWindow;
+	}
+
+	public int getLongWindow() {
+		return longWindow;
+	}
+
+	/**
+	 * the number of requests over which long-term latency is averaged. Defaults to 600.
+	 */
+	public void setLongWindow(int longWindow) {
+		this.longWindow = longWindow;
+	}
+
+	public double getFailureBackoff() {
+		return failureBackoff;
+	}
+
+	/**
+	 * the factor by which the limit is reduced when a request fails. Defaults to 0.9.
+	 */
+	public void setFailureBackoff(double failureBackoff) {
+		this.failureBackoff = failureBackoff;
+	}
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * A filter that limits the number of requests in flight with an {@link AdaptiveConcurrencyLimit}, so that when the
+ * database slows down excess requests are rejected immediately rather than queueing for threads and connections. Reads
+ * (GET and HEAD) and writes have separate limits, so that a backlog of one does not starve the other. Rejected
+ * requests receive a 503 {@link ServiceError} with a <code>Retry-After</code> header, which
+ * {@link BlogServiceClient} retries within its retry budget.
+ * <p>
+ * Limits can be configured with init parameters such as <code>readLimit.maxLimit</code> and
+ * <code>writeLimit.maxLimit</code>. Requests matching the {@link #setExcludePattern(String) exclude pattern} are not
+ * limited: long polls for article events, whose latency is mostly waiting, and bulk creation, export and import of
+ * articles, which take minutes and are limited by their own {@link EndpointExecutor}. Their latency would otherwise
+ * be taken as a sign of overload and shrink the limit of every other request.
+ * </p>
+ * <p>
+ * A request fails if an exception escapes it or if it is answered with a server error status (5xx).
+ * </p>
+ *
+ * @author David Green
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+	public static final String CODE_OVERLOADED = "overloaded";
+
+	private final AdaptiveConcurrencyLimit readLimit = new AdaptiveConcurrencyLimit();
+
+	private final AdaptiveConcurrencyLimit writeLimit = new AdaptiveConcurrencyLimit();
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private int retryAfterSeconds = 1;
+
+	private Pattern excludePattern = Pattern.compile(".*/(events|articles|export|import)");
+
+	public AdmissionControlFilter() {
+		writeLimit.setInitialLimit(10);
+		writeLimit.setMaxLimit(50);
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
+		return excludePattern != null && excludePattern.matcher(request.getRequestURI()).matches();
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String method = request.getMethod();
+		final AdaptiveConcurrencyLimit limit = "GET".equals(method) || "HEAD".equals(method) ? readLimit : writeLimit;
+		if (!limit.tryAcquire()) {
+			reject(response);
+			return;
+		}
+		final long start = System.nanoTime();
+		boolean failed = true;
+		boolean async = false;
+		try {
+			final StatusResponse statusResponse = new StatusResponse(response);
+			filterChain.doFilter(request, statusResponse);
+			failed = statusResponse.status >= 500;
+			// a request processed asynchronously holds its permit until its response is complete
+			async = EndpointExecutor.isAsyncSupported(getServletContext())
+					&& AsyncExecution.whenComplete(request, new Runnable() {
+						public void run() {
+							limit.release(System.nanoTime() - start, statusResponse.status >= 500);
+						}
+					});
+		} finally {
+			if (!async) {
+				limit.release(System.nanoTime() - start, failed);
+			}
+		}
+	}
+
+	/**
+	 * records the status of a response, which the servlet API (2.5) does not provide
+	 */
+	private static class StatusResponse extends HttpServletResponseWrapper {
+		private int status = SC_OK;
+
+		public StatusResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+			super.setStatus(sc);
+		}
+
+		@SuppressWarnings("deprecation")
+		@Override
+		public void setStatus(int sc, String sm) {
+			status = sc;
+			super.setStatus(sc, sm);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			status = sc;
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			status = sc;
+			super.sendError(sc, msg);
+		}
+	}
+
+	private void reject(HttpServletResponse response) throws IOException {
+		ServiceError error = new ServiceError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, CODE_OVERLOADED,
+				"The server is overloaded, retry after " + retryAfterSeconds + " seconds");
+		byte[] content = objectMapper.writeValueAsBytes(Collections.singletonMap("error", error));
+		response.setStatus(error.getStatus());
+		response.setHeader("Retry-After", Integer.toString(retryAfterSeconds));
+		response.setContentType("application/json");
+		response.setContentLength(content.length);
+		response.getOutputStream().write(content);
+	}
+
+	/**
+	 * the limit applied to GET and HEAD requests
+	 */
+	public AdaptiveConcurrencyLimit getReadLimit() {
+		return readLimit;
+	}
+
+	/**
+	 * the limit applied to requests other than GET and HEAD, which starts at 10 and is at most 50 by default
+	 */
+	public AdaptiveConcurrencyLimit getWriteLimit() {
+		return writeLimit;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	/**
+	 * the time after which a client may retry a rejected request. Defaults to 1 second.
+	 */
+	public void setRetryAfterSeconds(int retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public String getExcludePattern() {
+		return excludePattern == null ? null : excludePattern.pattern();
+	}
+
+	/**
+	 * a regular expression matching the URIs of requests that are not limited, or null to limit all requests.
+	 * Defaults to <code>.*&#47;(events|articles|export|import)</code>, which matches long polls and bulk requests but
+	 * not listings of articles, whose URIs end with a date.
+	 */
+	public void setExcludePattern(String excludePattern) {
+		this.excludePattern = excludePattern == null || excludePattern.length() == 0 ? null : Pattern
+				.compile(excludePattern);
+	}
+}
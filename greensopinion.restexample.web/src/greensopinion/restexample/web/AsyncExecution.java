@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The work of a request that is processed asynchronously with the servlet API 3.0: the request thread starts the work
+ * and returns to the container, and the response is completed by the thread that does the work, or by the container
+ * when the work times out or the connection fails. This class must only be loaded in a container for which
+ * {@link EndpointExecutor#isAsyncSupported(javax.servlet.ServletContext)}.
+ *
+ * @author David Green
+ * @see EndpointExecutor#execute(HttpServletRequest, HttpServletResponse, StreamFence, EndpointExecutor.Task,
+ *      EndpointExecutor.Responder)
+ */
+class AsyncExecution<T> implements Callable<Void>, AsyncListener {
+
+	private static final Logger log = Logger.getLogger(AsyncExecution.class.getName());
+
+	private final EndpointExecutor executor;
+
+	private final Callable<T> work;
+
+	private final AsyncContext asyncContext;
+
+	private final HttpServletRequest request;
+
+	private final HttpServletResponse response;
+
+	private final StreamFence fence;
+
+	private final EndpointExecutor.Responder<T> responder;
+
+	private Future<Void> future;
+
+	private boolean done;
+
+	private AsyncExecution(EndpointExecutor executor, Callable<T> work, AsyncContext asyncContext,
+			HttpServletRequest request, HttpServletResponse response, StreamFence fence,
+			EndpointExecutor.Responder<T> responder) {
+		this.executor = executor;
+		this.work = work;
+		this.asyncContext = asyncContext;
+		this.request = request;
+		this.response = response;
+		this.fence = fence;
+		this.responder = responder;
+	}
+
+	/**
+	 * put the request into asynchronous mode and queue its work, with a timeout of the executor's timeout
+	 */
+	static <T> void start(EndpointExecutor executor, Callable<T> work, HttpServletRequest request,
+			HttpServletResponse response, StreamFence fence, EndpointExecutor.Responder<T> responder) {
+		AsyncContext asyncContext = request.startAsync(request, response);
+		asyncContext.setTimeout(executor.getTimeoutMillis());
+		AsyncExecution<T> execution = new AsyncExecution<T>(executor, work, asyncContext, request, response, fence,
+				responder);
+		asyncContext.addListener(execution);
+		try {
+			Future<Void> future = executor.submit(execution);
+			synchronized (execution) {
+				execution.future = future;
+			}
+		} catch (EndpointUnavailableException e) {
+			execution.complete(null, e);
+		}
+	}
+
+	/**
+	 * run the given callback once the asynchronous processing of a request completes, however it completes
+	 *
+	 * @return true if the request is processed asynchronously, or false if it is not, in which case the callback is not
+	 *         run
+	 */
+	static boolean whenComplete(ServletRequest request, final Runnable callback) {
+		if (!request.isAsyncStarted()) {
+			return false;
+		}
+		request.getAsyncContext().addListener(new AsyncListener() {
+			public void onComplete(AsyncEvent event) {
+				callback.run();
+			}
+
+			public void onTimeout(AsyncEvent event) {
+			}
+
+			public void onError(AsyncEvent event) {
+			}
+
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+		return true;
+	}
+
+	public Void call() {
+		T result;
+		try {
+			result = work.call();
+		} catch (Exception e) {
+			complete(null, e);
+			return null;
+		}
+		complete(result, null);
+		return null;
+	}
+
+	/**
+	 * respond with the outcome of the work and complete the request, unless it is already complete
+	 */
+	private synchronized void complete(T result, Exception failure) {
+		if (done) {
+			return;
+		}
+		done = true;
+		try {
+			if (failure == null) {
+				responder.respond(result, request, response);
+			} else {
+				try {
+					responder.fail(failure, request, response);
+				} catch (RuntimeException e) {
+					log.log(Level.SEVERE, "Request failed: " + request.getRequestURI(), e);
+					if (!response.isCommitted()) {
+						response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+					}
+				}
+			}
+		} catch (IOException e) {
+			// the client has gone away
+		} finally {
+			asyncContext.complete();
+		}
+	}
+
+	/**
+	 * stop the work from using the request, interrupting it or preventing it from starting
+	 */
+	private synchronized void abandon() {
+		if (future != null) {
+			future.cancel(true);
+		}
+		fence.close();
+	}
+
+	public synchronized void onTimeout(AsyncEvent event) {
+		if (!done) {
+			abandon();
+			complete(null, executor.timedOut());
+		}
+	}
+
+	public synchronized void onError(AsyncEvent event) {
+		if (!done) {
+			done = true;
+			abandon();
+			asyncContext.complete();
+		}
+	}
+
+	public void onComplete(AsyncEvent event) {
+	}
+
+	public void onStartAsync(AsyncEvent event) {
+	}
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import greensopinion.restexample.service.ArticleEventLog;
+import greensopinion.restexample.service.ArticleEvents;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A long poll for article events that is processed asynchronously with the servlet API 3.0, so that a subscriber
+ * holds a connection but no thread while it waits. The response is completed by the thread that publishes the events,
+ * or by the container when the wait times out. Like {@link AsyncExecution}, this class must only be loaded in a
+ * container for which {@link EndpointExecutor#isAsyncSupported(javax.servlet.ServletContext)}.
+ *
+ * @author David Green
+ * @see ArticleEventLog#subscribe(Long, String, long, ArticleEventLog.Subscriber)
+ */
+class AsyncSubscription implements ArticleEventLog.Subscriber, AsyncListener {
+
+	private final ArticleEventLog eventLog;
+
+	private final AsyncContext asyncContext;
+
+	private final HttpServletRequest request;
+
+	private final HttpServletResponse response;
+
+	private final EndpointExecutor.Responder<ArticleEvents> responder;
+
+	private boolean done;
+
+	private AsyncSubscription(ArticleEventLog eventLog, AsyncContext asyncContext, HttpServletRequest request,
+			HttpServletResponse response, EndpointExecutor.Responder<ArticleEvents> responder) {
+		this.eventLog = eventLog;
+		this.asyncContext = asyncContext;
+		this.request = request;
+		this.response = response;
+		this.responder = responder;
+	}
+
+	/**
+	 * respond with the events of a blog that follow the given position, waiting for up to the given timeout without
+	 * holding the request thread if there are none
+	 */
+	static void start(ArticleEventLog eventLog, Long blogId, String stream, long afterEventId, long timeoutMillis,
+			HttpServletRequest request, HttpServletResponse response,
+			EndpointExecutor.Responder<ArticleEvents> responder) {
+		AsyncContext asyncContext = request.startAsync(request, response);
+		asyncContext.setTimeout(timeoutMillis);
+		AsyncSubscription subscription = new AsyncSubscription(eventLog, asyncContext, request, response, responder);
+		asyncContext.addListener(subscription);
+		ArticleEvents events = eventLog.subscribe(blogId, stream, afterEventId, subscription);
+		if (events != null) {
+			subscription.events(events);
+		}
+	}
+
+	/**
+	 * respond with the events and complete the request, unless it is already complete
+	 */
+	public synchronized void events(ArticleEvents events) {
+		if (done) {
+			return;
+		}
+		done = true;
+		notifyAll();
+		try {
+			responder.respond(events, request, response);
+		} catch (IOException e) {
+			// the client has gone away
+		} finally {
+			asyncContext.complete();
+		}
+	}
+
+	public synchronized void onTimeout(AsyncEvent event) {
+		ArticleEvents events = eventLog.unsubscribe(this);
+		if (events != null) {
+			events(events);
+			return;
+		}
+		// a publisher has taken the subscription and is about to respond, which must happen before the container
+		// treats the timeout as unhandled
+		while (!done) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	public synchronized void onError(AsyncEvent event) {
+		if (eventLog.unsubscribe(this) != null) {
+			done = true;
+			asyncContext.complete();
+		}
+	}
+
+	public void onComplete(AsyncEvent event) {
+	}
+
+	public void onStartAsync(AsyncEvent event) {
+	}
+}
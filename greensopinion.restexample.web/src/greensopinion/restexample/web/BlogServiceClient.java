@@ -12,22 +12,60 @@ package greensopinion.restexample.web;
 
 import greensopinion.restexample.domain.Article;
 import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.ArticleEvent;
+import greensopinion.restexample.service.ArticleEvents;
+import greensopinion.restexample.service.ArticlePatch;
+import greensopinion.restexample.service.BlogExportHandler;
 import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.service.FieldSelection;
+import greensopinion.restexample.web.archive.BlogArchiveReader;
+import greensopinion.restexample.web.client.ArticleEventListener;
+import greensopinion.restexample.web.client.NearCache;
+import greensopinion.restexample.web.client.ResilientInvoker;
+
+import java.io.IOException;
+import java.io.InputStream;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 /**
- * A REST web service client for accessing a {@link BlogService}
+ * A REST web service client for accessing a {@link BlogService}. Requests are balanced across one or more servers,
+ * with retries, hedging and circuit breaking provided by a {@link ResilientInvoker}. Blogs and articles can optionally
+ * be cached in a {@link NearCache}, which is updated by writes made through this client.
+ * <p>
+ * Changes made to the articles of a blog by any client can be followed by {@link #subscribe(Long, ArticleEventListener)
+ * subscribing} to the blog, which long-polls the server for article events rather than polling
+ * {@link #listArticles(Long, Date)}.
+ * </p>
  * 
  * @author David Green
  */
@@ -35,10 +73,14 @@ import org.springframework.web.client.RestTemplate;
 @Qualifier("client")
 public class BlogServiceClient implements BlogService {
 
+	private static final Logger log = Logger.getLogger(BlogServiceClient.class.getName());
+
 	public static class Result {
 		private Blog blog;
 		private Article article;
 		private List<Article> articles;
+		private List<Long> articleIds;
+		private ArticleEvents articleEvents;
 
 		public Blog getBlog() {
 			return blog;
@@ -64,54 +106,417 @@ public class BlogServiceClient implements BlogService {
 			this.articles = articles;
 		}
 
+		public List<Long> getArticleIds() {
+			return articleIds;
+		}
+
+		public void setArticleIds(List<Long> articleIds) {
+			this.articleIds = articleIds;
+		}
+
+		public ArticleEvents getArticleEvents() {
+			return articleEvents;
+		}
+
+		public void setArticleEvents(ArticleEvents articleEvents) {
+			this.articleEvents = articleEvents;
+		}
+
+	}
+
+	/**
+	 * a subscription to the article events of a blog, which polls for events on its own thread until it is
+	 * {@link #cancel() cancelled}
+	 */
+	public class Subscription implements Runnable {
+		private final Long blogId;
+
+		private final ArticleEventListener listener;
+
+		private volatile boolean cancelled;
+
+		private volatile Thread thread;
+
+		private Subscription(Long blogId, ArticleEventListener listener) {
+			this.blogId = blogId;
+			this.listener = listener;
+		}
+
+		public Long getBlogId() {
+			return blogId;
+		}
+
+		public void run() {
+			String stream = null;
+			long lastEventId = 0L;
+			int server = 0;
+			try {
+				while (!cancelled) {
+					long start = System.currentTimeMillis();
+					ArticleEvents events;
+					try {
+						// polls are not made through the invoker: they are expected to be slow, and are neither hedged
+						// nor counted in the latency of the server
+						events = pollEvents(baseUrls.get(server % baseUrls.size()), stream, lastEventId);
+					} catch (RuntimeException e) {
+						if (cancelled) {
+							break;
+						}
+						log.log(Level.FINE, "Cannot poll events of blog " + blogId, e);
+						// each server has its own stream of events, so this one is as good as any
+						++server;
+						Thread.sleep(eventRetryMillis);
+						continue;
+					}
+					if (events.isReset()) {
+						listener.eventsLost(blogId);
+					}
+					stream = events.getStream();
+					lastEventId = events.getLastEventId();
+					for (ArticleEvent event : events.getEvents()) {
+						if (articleCache != null) {
+							articleCache.invalidate(event.getArticleId());
+						}
+						listener.articleChanged(event);
+					}
+					if (events.getEvents().isEmpty() && System.currentTimeMillis() - start < eventWaitSeconds * 1000L) {
+						// the server did not wait, for example because too many subscribers are waiting
+						Thread.sleep(eventRetryMillis);
+					}
+				}
+			} catch (InterruptedException e) {
+				// cancelled
+			} finally {
+				subscriptions.remove(this);
+			}
+		}
+
+		private ArticleEvents pollEvents(String baseUrl, String stream, long lastEventId) {
+			Map<String, Object> variables = new HashMap<String, Object>();
+			variables.put("blogId", blogId.toString());
+			variables.put("stream", stream == null ? "" : stream);
+			variables.put("after", Long.toString(lastEventId));
+			variables.put("wait", Integer.toString(eventWaitSeconds));
+			Result result = template.getForObject(computeUrl(baseUrl,
+					"blog/{blogId}/events?stream={stream}&after={after}&wait={wait}"), Result.class, variables);
+			if (result.getArticleEvents() != null) {
+				return result.getArticleEvents();
+			}
+			throw new IllegalStateException("Unexpected result");
+		}
+
+		/**
+		 * stop polling for events, waiting for an outstanding poll to complete. The listener is not notified of events
+		 * after this method returns, unless it is called on the thread of the subscription.
+		 */
+		public void cancel() {
+			cancelled = true;
+			Thread thread = this.thread;
+			if (thread != null && thread != Thread.currentThread()) {
+				thread.interrupt();
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
 	}
 
 	@Autowired
 	protected RestTemplate template;
-	private String baseUrl;
 
-	private DateFormat dateFormat = new SimpleDateFormat("yyyyMMdd");
+	private final ResilientInvoker invoker = new ResilientInvoker();
+
+	private List<String> baseUrls = Collections.emptyList();
+
+	private NearCache<Blog> blogCache;
+
+	private NearCache<Article> articleCache;
+
+	private long readYourWritesMillis;
 
+	private volatile long lastWriteTime;
+
+	private int eventWaitSeconds = 5;
+
+	private long eventRetryMillis = 1000L;
+
+	private final Set<Subscription> subscriptions = Collections
+			.newSetFromMap(new ConcurrentHashMap<Subscription, Boolean>());
+
+	private DateFormat createDateFormat() {
+		// SimpleDateFormat is not thread-safe
+		return new SimpleDateFormat("yyyyMMdd");
+	}
+
+	/**
+	 * compute the URL of the given path on the endpoint that a request would be sent to now, failing with a
+	 * CircuitOpenException if no endpoint admits requests
+	 */
 	protected String computeUrl(String relativePath) {
-		if (baseUrl == null) {
-			throw new IllegalStateException();
-		}
+		return computeUrl(invoker.selectBaseUrl(), relativePath);
+	}
+
+	protected String computeUrl(String baseUrl, String relativePath) {
 		return baseUrl + "/" + relativePath;
 	}
 
+	/**
+	 * the first of the {@link #getBaseUrls() base URLs}
+	 */
 	public String getBaseUrl() {
-		return baseUrl;
+		return baseUrls.isEmpty() ? null : baseUrls.get(0);
 	}
 
+	/**
+	 * set a single base URL
+	 */
 	public void setBaseUrl(String baseUrl) {
-		this.baseUrl = baseUrl;
+		setBaseUrls(Collections.singletonList(baseUrl));
+	}
+
+	public List<String> getBaseUrls() {
+		return baseUrls;
+	}
+
+	/**
+	 * set the base URLs of the servers across which requests are balanced
+	 */
+	public void setBaseUrls(List<String> baseUrls) {
+		this.baseUrls = Collections.unmodifiableList(new ArrayList<String>(baseUrls));
+		invoker.setBaseUrls(this.baseUrls);
+	}
+
+	/**
+	 * the invoker, which can be used to configure retries, hedging and circuit breaking
+	 */
+	public ResilientInvoker getInvoker() {
+		return invoker;
+	}
+
+	public NearCache<Blog> getBlogCache() {
+		return blogCache;
+	}
+
+	/**
+	 * the cache of blogs read by {@link #getBlog(Long)}, or null if blogs are not cached. Defaults to null.
+	 */
+	public void setBlogCache(NearCache<Blog> blogCache) {
+		this.blogCache = blogCache;
+	}
+
+	public NearCache<Article> getArticleCache() {
+		return articleCache;
+	}
+
+	/**
+	 * the cache of articles read by {@link #getArticle(Long)}, or null if articles are not cached. Defaults to null.
+	 * Unless the server is configured with an article max-age, each cached article is revalidated on every read.
+	 */
+	public void setArticleCache(NearCache<Article> articleCache) {
+		this.articleCache = articleCache;
+	}
+
+	@PreDestroy
+	public void dispose() {
+		for (Subscription subscription : new ArrayList<Subscription>(subscriptions)) {
+			subscription.cancel();
+		}
+		invoker.shutdown();
+		if (blogCache != null) {
+			blogCache.shutdown();
+		}
+		if (articleCache != null) {
+			articleCache.shutdown();
+		}
+	}
+
+	public long getReadYourWritesMillis() {
+		return readYourWritesMillis;
+	}
+
+	/**
+	 * the period of time after a write made by this client during which reads are served by the primary database, so
+	 * that this client can read its own writes regardless of replication lag. Defaults to 0 (disabled).
+	 */
+	public void setReadYourWritesMillis(long readYourWritesMillis) {
+		this.readYourWritesMillis = readYourWritesMillis;
+	}
+
+	public int getEventWaitSeconds() {
+		return eventWaitSeconds;
+	}
+
+	/**
+	 * the time for which the server is asked to wait for article events before responding to a poll. Must be less than
+	 * the read timeout of the request factory. Defaults to 5 seconds.
+	 */
+	public void setEventWaitSeconds(int eventWaitSeconds) {
+		this.eventWaitSeconds = eventWaitSeconds;
+	}
+
+	public long getEventRetryMillis() {
+		return eventRetryMillis;
+	}
+
+	/**
+	 * the time to wait before polling for article events again after a failed poll. Defaults to 1 second.
+	 */
+	public void setEventRetryMillis(long eventRetryMillis) {
+		this.eventRetryMillis = eventRetryMillis;
+	}
+
+	/**
+	 * subscribe to the article events of a blog. Events that are published after the first poll are delivered to the
+	 * listener on a daemon thread, until the subscription is {@link Subscription#cancel() cancelled}. Articles named by
+	 * events are removed from the {@link #getArticleCache() article cache} before the listener is notified.
+	 * Each subscription holds a thread of this client, and while it waits, a connection to the server, which holds a
+	 * request thread unless it processes the wait asynchronously.
+	 * 
+	 * @return the subscription
+	 */
+	public Subscription subscribe(Long blogId, ArticleEventListener listener) {
+		if (baseUrls.isEmpty()) {
+			throw new IllegalStateException("no base URL");
+		}
+		Subscription subscription = new Subscription(blogId, listener);
+		Thread thread = new Thread(subscription, "article-events-" + blogId);
+		thread.setDaemon(true);
+		subscription.thread = thread;
+		subscriptions.add(subscription);
+		thread.start();
+		return subscription;
+	}
+
+	private boolean isReadYourWrites() {
+		return readYourWritesMillis > 0 && System.currentTimeMillis() - lastWriteTime < readYourWritesMillis;
+	}
+
+	private Result getForResult(final String relativePath, final Map<String, ?> variables) {
+		final boolean readYourWrites = isReadYourWrites();
+		return invoker.execute(new ResilientInvoker.Call<Result>() {
+			public Result call(String baseUrl) {
+				String url = computeUrl(baseUrl, relativePath);
+				if (readYourWrites) {
+					HttpHeaders headers = new HttpHeaders();
+					headers.set(ReadYourWritesFilter.HEADER_READ_YOUR_WRITES, Boolean.TRUE.toString());
+					return template.exchange(url, HttpMethod.GET, new HttpEntity<Object>(headers), Result.class,
+							variables).getBody();
+				}
+				return template.getForObject(url, Result.class, variables);
+			}
+		}, true);
+	}
+
+	/**
+	 * get a result, revalidating with the given entity tag if there is one, and capturing the cache headers of the
+	 * response
+	 */
+	private NearCache.Loaded<Result> getForCacheableResult(final String relativePath, final Map<String, ?> variables,
+			final String eTag) {
+		final boolean readYourWrites = isReadYourWrites();
+		final ResponseExtractor<Result> resultExtractor = new HttpMessageConverterExtractor<Result>(Result.class,
+				template.getMessageConverters());
+		return invoker.execute(new ResilientInvoker.Call<NearCache.Loaded<Result>>() {
+			public NearCache.Loaded<Result> call(String baseUrl) {
+				return template.execute(computeUrl(baseUrl, relativePath), HttpMethod.GET, new RequestCallback() {
+					public void doWithRequest(ClientHttpRequest request) throws IOException {
+						HttpHeaders headers = request.getHeaders();
+						headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+						if (eTag != null) {
+							headers.setIfNoneMatch(eTag);
+						}
+						if (readYourWrites) {
+							headers.set(ReadYourWritesFilter.HEADER_READ_YOUR_WRITES, Boolean.TRUE.toString());
+						}
+					}
+				}, new ResponseExtractor<NearCache.Loaded<Result>>() {
+					public NearCache.Loaded<Result> extractData(ClientHttpResponse response) throws IOException {
+						HttpHeaders headers = response.getHeaders();
+						if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+							return new NearCache.Loaded<Result>(null, true, headers.getETag(), headers
+									.getCacheControl());
+						}
+						return new NearCache.Loaded<Result>(resultExtractor.extractData(response), false, headers
+								.getETag(), headers.getCacheControl());
+					}
+				}, variables);
+			}
+		}, true);
+	}
+
+	private Result postForResult(final String relativePath, final Object request, final Map<String, ?> variables) {
+		Result result = invoker.execute(new ResilientInvoker.Call<Result>() {
+			public Result call(String baseUrl) {
+				return template.postForObject(computeUrl(baseUrl, relativePath), request, Result.class, variables);
+			}
+		}, false);
+		lastWriteTime = System.currentTimeMillis();
+		return result;
+	}
+
+	private void delete(final String relativePath, final Map<String, ?> variables) {
+		invoker.execute(new ResilientInvoker.Call<Object>() {
+			public Object call(String baseUrl) {
+				template.delete(computeUrl(baseUrl, relativePath), variables);
+				return null;
+			}
+		}, false);
+		lastWriteTime = System.currentTimeMillis();
 	}
 
 	@Override
 	public Blog createBlog(Blog blog) {
-		Result result = template.postForObject(computeUrl("blog"), blog, Result.class);
-		if (result.getBlog() != null) {
-			return result.getBlog();
-		}
-		throw new IllegalStateException("Unexpected result");
+		return cache(toBlog(postForResult("blog", blog, Collections.<String, Object> emptyMap())));
 	}
 
 	@Override
 	public Blog updateBlog(Blog blog) {
-		Map<String, String> variables = new HashMap<String, String>();
-		variables.put("blogId", blog.getId().toString());
-		Result result = template.postForObject(computeUrl("blog/{blogId}"), blog, Result.class, variables);
-		if (result.getBlog() != null) {
-			return result.getBlog();
+		return cache(toBlog(postForResult("blog/{blogId}", blog, blogVariables(blog.getId()))));
+	}
+
+	private Blog cache(Blog blog) {
+		if (blogCache != null) {
+			blogCache.put(blog.getId(), blog);
 		}
-		throw new IllegalStateException("Unexpected result");
+		return blog;
 	}
 
 	@Override
 	public Blog getBlog(Long blogId) {
+		if (blogCache != null) {
+			return blogCache.get(blogId, new NearCache.Loader<Blog>() {
+				public NearCache.Loaded<Blog> load(Long id, String eTag) {
+					NearCache.Loaded<Result> loaded = getForCacheableResult("blog/{blogId}", blogVariables(id), eTag);
+					return new NearCache.Loaded<Blog>(loaded.getValue() == null ? null : toBlog(loaded.getValue()),
+							loaded.isNotModified(), loaded.getETag(), loaded.getCacheControl());
+				}
+			});
+		}
+		return toBlog(getForResult("blog/{blogId}", blogVariables(blogId)));
+	}
+
+	/**
+	 * get selected fields of a blog, which are not cached
+	 */
+	@Override
+	public Blog getBlog(Long blogId, Set<String> fields) {
+		if (fields == null) {
+			return getBlog(blogId);
+		}
+		Map<String, String> variables = blogVariables(blogId);
+		variables.put("fields", FieldSelection.format(fields));
+		return toBlog(getForResult("blog/{blogId}?fields={fields}", variables));
+	}
+
+	private Map<String, String> blogVariables(Long blogId) {
 		Map<String, String> variables = new HashMap<String, String>();
 		variables.put("blogId", blogId.toString());
-		Result result = template.getForObject(computeUrl("blog/{blogId}"), Result.class, variables);
+		return variables;
+	}
+
+	private Blog toBlog(Result result) {
 		if (result.getBlog() != null) {
 			return result.getBlog();
 		}
@@ -122,8 +527,8 @@ public class BlogServiceClient implements BlogService {
 	public List<Article> listArticles(Long blogId, Date since) {
 		Map<String, Object> variables = new HashMap<String, Object>();
 		variables.put("blogId", blogId.toString());
-		variables.put("since", dateFormat.format(since));
-		Result result = template.getForObject(computeUrl("blog/{blogId}/articles/{since}"), Result.class, variables);
+		variables.put("since", createDateFormat().format(since));
+		Result result = getForResult("blog/{blogId}/articles/{since}", variables);
 		if (result.getArticleList() != null) {
 			return result.getArticleList();
 		}
@@ -131,32 +536,181 @@ public class BlogServiceClient implements BlogService {
 	}
 
 	@Override
-	public Article createArticle(Long blogId, Article article) {
-		Map<String, String> variables = new HashMap<String, String>();
+	public List<Article> listArticles(Long blogId, Date since, Set<String> fields) {
+		if (fields == null) {
+			return listArticles(blogId, since);
+		}
+		Map<String, Object> variables = new HashMap<String, Object>();
 		variables.put("blogId", blogId.toString());
-		Result result = template.postForObject(computeUrl("blog/{blogId}/article"), article, Result.class, variables);
-		if (result.getArticle() != null) {
-			return result.getArticle();
+		variables.put("since", createDateFormat().format(since));
+		variables.put("fields", FieldSelection.format(fields));
+		Result result = getForResult("blog/{blogId}/articles/{since}?fields={fields}", variables);
+		if (result.getArticleList() != null) {
+			return result.getArticleList();
 		}
 		throw new IllegalStateException("Unexpected result");
 	}
 
+	/**
+	 * list the ids of recent articles, which can be read from the {@link #getArticleCache() article cache}
+	 */
 	@Override
-	public Article updateArticle(Article article) {
-		Map<String, String> variables = new HashMap<String, String>();
-		variables.put("articleId", article.getId().toString());
-		Result result = template.postForObject(computeUrl("article/{articleId}"), article, Result.class, variables);
-		if (result.getArticle() != null) {
-			return result.getArticle();
+	public List<Long> listRecentArticleIds(Long blogId, Date since, int count) {
+		Map<String, Object> variables = new HashMap<String, Object>();
+		variables.put("blogId", blogId.toString());
+		variables.put("count", Integer.toString(count));
+		String relativePath = "blog/{blogId}/recent?count={count}";
+		if (since != null) {
+			variables.put("since", Long.toString(since.getTime()));
+			relativePath += "&since={since}";
+		}
+		Result result = getForResult(relativePath, variables);
+		if (result.getArticleIds() != null) {
+			return result.getArticleIds();
 		}
 		throw new IllegalStateException("Unexpected result");
 	}
 
+	@Override
+	public Article createArticle(Long blogId, Article article) {
+		return cache(toArticle(postForResult("blog/{blogId}/article", article, blogVariables(blogId))));
+	}
+
+	@Override
+	public List<Long> createArticles(Long blogId, List<Article> articles) {
+		Result result = postForResult("blog/{blogId}/articles", articles.toArray(new Article[articles.size()]),
+				blogVariables(blogId));
+		if (result.getArticleIds() != null) {
+			return result.getArticleIds();
+		}
+		throw new IllegalStateException("Unexpected result");
+	}
+
+	@Override
+	public Article updateArticle(Article article) {
+		return cache(toArticle(postForResult("article/{articleId}", article, articleVariables(article.getId()))));
+	}
+
+	/**
+	 * send only the fields of the patch, which avoids uploading the content of an article to change its title. An
+	 * article returned without its content is not cached.
+	 */
+	@Override
+	public Article patchArticle(Long articleId, ArticlePatch patch) {
+		Article article = toArticle(postForResult("article/{articleId}/patch", patch.getChanges(),
+				articleVariables(articleId)));
+		if (patch.hasContentChange()) {
+			return cache(article);
+		}
+		if (articleCache != null) {
+			articleCache.invalidate(articleId);
+		}
+		return article;
+	}
+
+	@Override
+	public void deleteArticle(Long articleId) {
+		try {
+			delete("article/{articleId}", articleVariables(articleId));
+		} finally {
+			if (articleCache != null) {
+				articleCache.invalidate(articleId);
+			}
+		}
+	}
+
+	@Override
+	public void deleteBlog(Long blogId) {
+		try {
+			delete("blog/{blogId}", blogVariables(blogId));
+		} finally {
+			if (blogCache != null) {
+				blogCache.invalidate(blogId);
+			}
+			// cached articles are not keyed by blog
+			if (articleCache != null) {
+				articleCache.clear();
+			}
+		}
+	}
+
+	/**
+	 * read the archive of a blog as it is received, so that memory use does not depend on the size of the blog. The
+	 * export is not retried once it has begun, since the handler may already have received part of the blog.
+	 */
+	@Override
+	public void exportBlog(final Long blogId, final BlogExportHandler handler) throws IOException {
+		invoker.execute(new ResilientInvoker.Call<Object>() {
+			public Object call(String baseUrl) {
+				return template.execute(computeUrl(baseUrl, "blog/{blogId}/export"), HttpMethod.GET,
+						new RequestCallback() {
+							public void doWithRequest(ClientHttpRequest request) throws IOException {
+								request.getHeaders().set("Accept-Encoding", "gzip");
+							}
+						}, new ResponseExtractor<Object>() {
+							public Object extractData(ClientHttpResponse response) throws IOException {
+								InputStream in = response.getBody();
+								if ("gzip".equals(response.getHeaders().getFirst("Content-Encoding"))) {
+									in = new GZIPInputStream(in);
+								}
+								BlogArchiveReader reader = new BlogArchiveReader(in);
+								Object record;
+								while ((record = reader.read()) != null) {
+									if (record instanceof Blog) {
+										handler.blog((Blog) record);
+									} else {
+										handler.article((Article) record);
+									}
+								}
+								return null;
+							}
+						}, blogVariables(blogId));
+			}
+		}, false);
+	}
+
+	private Article cache(Article article) {
+		if (articleCache != null) {
+			articleCache.put(article.getId(), article);
+		}
+		return article;
+	}
+
 	@Override
 	public Article getArticle(Long articleId) {
+		if (articleCache != null) {
+			return articleCache.get(articleId, new NearCache.Loader<Article>() {
+				public NearCache.Loaded<Article> load(Long id, String eTag) {
+					NearCache.Loaded<Result> loaded = getForCacheableResult("article/{articleId}",
+							articleVariables(id), eTag);
+					return new NearCache.Loaded<Article>(loaded.getValue() == null ? null : toArticle(loaded
+							.getValue()), loaded.isNotModified(), loaded.getETag(), loaded.getCacheControl());
+				}
+			});
+		}
+		return toArticle(getForResult("article/{articleId}", articleVariables(articleId)));
+	}
+
+	/**
+	 * get selected fields of an article, which are not cached
+	 */
+	@Override
+	public Article getArticle(Long articleId, Set<String> fields) {
+		if (fields == null) {
+			return getArticle(articleId);
+		}
+		Map<String, String> variables = articleVariables(articleId);
+		variables.put("fields", FieldSelection.format(fields));
+		return toArticle(getForResult("article/{articleId}?fields={fields}", variables));
+	}
+
+	private Map<String, String> articleVariables(Long articleId) {
 		Map<String, String> variables = new HashMap<String, String>();
 		variables.put("articleId", articleId.toString());
-		Result result = template.getForObject(computeUrl("article/{articleId}"), Result.class, variables);
+		return variables;
+	}
+
+	private Article toArticle(Result result) {
 		if (result.getArticle() != null) {
 			return result.getArticle();
 		}
@@ -10,39 +10,153 @@
  *******************************************************************************/
 package greensopinion.restexample.web;
 
+import greensopinion.restexample.cluster.InvalidationBus;
+import greensopinion.restexample.cluster.InvalidationListener;
 import greensopinion.restexample.domain.Article;
 import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.ArticleEventLog;
+import greensopinion.restexample.service.ArticleEvents;
+import greensopinion.restexample.service.ArticlePatch;
+import greensopinion.restexample.service.BlogExportHandler;
 import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.service.BlogServiceException;
+import greensopinion.restexample.service.ConflictException;
+import greensopinion.restexample.service.ContentStore;
+import greensopinion.restexample.service.FieldSelection;
+import greensopinion.restexample.service.InvalidRequestException;
+import greensopinion.restexample.service.NotFoundException;
+import greensopinion.restexample.web.archive.BlogArchiveImporter;
+import greensopinion.restexample.web.archive.BlogArchiveReader;
+import greensopinion.restexample.web.archive.BlogArchiveWriter;
+import greensopinion.restexample.web.archive.ImportCheckpoint;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityExistsException;
+import javax.persistence.OptimisticLockException;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.springframework.beans.TypeMismatchException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.ServletContextAware;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.mvc.annotation.AnnotationMethodHandlerExceptionResolver;
 
 /**
- * A {@link BlogService} controller, with mappings to provide a REST web service.
+ * A {@link BlogService} controller, with mappings to provide a REST web service. Failures are rendered as a compact
+ * {@link ServiceError} with a 400, 404 or 409 status.
+ * <p>
+ * GET mappings accept a <code>fields</code> parameter, for example <code>?fields=title,modified</code>, with which the
+ * client selects the {@link FieldSelection fields} to read and write. The id is always included.
+ * </p>
+ * <p>
+ * When an {@link InvalidationBus} is configured, articles modified through other instances of the application are
+ * removed from the {@link SerializedResponseCache}.
+ * </p>
  * 
  * @author David Green
  * @see BlogServiceClient
  */
 @Controller
 @Qualifier("webservice")
-public class BlogServiceController implements BlogService {
+public class BlogServiceController implements BlogService, ServletContextAware {
 
 	@Qualifier("main")
 	@Autowired
 	private BlogService service;
 
+	@Autowired
+	private SerializedResponseCache articleCache;
+
+	@Autowired(required = false)
+	private ContentStore contentStore;
+
+	@Autowired(required = false)
+	private ArticleEventLog eventLog;
+
+	@Autowired(required = false)
+	private InvalidationBus invalidationBus;
+
+	private final InvalidationListener articleCacheInvalidator = new InvalidationListener() {
+		public void invalidate(String entityName, Long id) {
+			if (entityName.equals(Article.class.getSimpleName())) {
+				articleCache.invalidate(id);
+			}
+		}
+
+		public void invalidateAll() {
+			articleCache.clear();
+		}
+	};
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final HandlerExceptionResolver exceptionResolver = new AnnotationMethodHandlerExceptionResolver();
+
+	private int articleMaxAgeSeconds;
+
+	private int defaultRecentCount = 20;
+
+	private int maxEventWaitSeconds = 20;
+
+	private int importBatchSize = 100;
+
+	private EndpointExecutor listingExecutor;
+
+	private EndpointExecutor bulkExecutor;
+
+	private boolean asyncSupported;
+
+	@PostConstruct
+	public void listenForInvalidations() {
+		if (invalidationBus != null) {
+			invalidationBus.addListener(articleCacheInvalidator);
+		}
+	}
+
+	@PreDestroy
+	public void dispose() {
+		if (invalidationBus != null) {
+			invalidationBus.removeListener(articleCacheInvalidator);
+		}
+	}
+
 	// note: we use POST instead of PUT, due to shortcomings in RestTemplate
 	@RequestMapping(value = "/blog", method = RequestMethod.POST)
 	@Override
@@ -50,7 +164,10 @@ public class BlogServiceController implements BlogService {
 		return shallowCopy(service.createBlog(blog));
 	}
 
-	private DateFormat dateFormat = new SimpleDateFormat("yyyyMMdd");
+	private DateFormat createDateFormat() {
+		// SimpleDateFormat is not thread-safe
+		return new SimpleDateFormat("yyyyMMdd");
+	}
 
 	@RequestMapping(value = "/blog/{blogId}", method = RequestMethod.POST)
 	@Override
@@ -59,20 +176,50 @@ public class BlogServiceController implements BlogService {
 	}
 
 	@RequestMapping(value = "/blog/{blogId}", method = RequestMethod.GET)
+	@ModelAttribute("blog")
+	public Object getBlog(@PathVariable("blogId") Long blogId,
+			@RequestParam(value = "fields", required = false) String fields) {
+		Set<String> selection = FieldSelection.parse(fields, FieldSelection.BLOG_FIELDS);
+		if (selection == null) {
+			return getBlog(blogId);
+		}
+		return FieldSelection.toMap(getBlog(blogId, selection), selection);
+	}
+
 	@Override
-	public Blog getBlog(@PathVariable("blogId") Long blogId) {
+	public Blog getBlog(Long blogId) {
 		return shallowCopy(service.getBlog(blogId));
 	}
 
+	@Override
+	public Blog getBlog(Long blogId, Set<String> fields) {
+		return shallowCopy(service.getBlog(blogId, fields));
+	}
+
 	@RequestMapping(value = "/blog/{blogId}/articles/{since}", method = RequestMethod.GET)
-	public List<Article> listArticles(@PathVariable("blogId") Long blogId, @PathVariable("since") String since) {
-		Date date;
+	public void listArticles(@PathVariable("blogId") final Long blogId, @PathVariable("since") String since,
+			@RequestParam(value = "fields", required = false) String fields, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		final Date date;
 		try {
-			date = dateFormat.parse(since);
+			date = createDateFormat().parse(since);
 		} catch (ParseException e) {
-			date = null;
+			throw new InvalidRequestException("since must be formatted as yyyyMMdd: " + since);
 		}
-		return listArticles(blogId, date);
+		final Set<String> selection = FieldSelection.parse(fields, FieldSelection.ARTICLE_FIELDS);
+		execute(listingExecutor, request, response, "articleList", new EndpointExecutor.Task<Object>() {
+			public Object call() {
+				if (selection == null) {
+					return listArticles(blogId, date);
+				}
+				List<Article> articles = listArticles(blogId, date, selection);
+				List<Map<String, Object>> values = new ArrayList<Map<String, Object>>(articles.size());
+				for (Article article : articles) {
+					values.add(FieldSelection.toMap(article, selection));
+				}
+				return values;
+			}
+		});
 	}
 
 	@Override
@@ -80,6 +227,11 @@ public class BlogServiceController implements BlogService {
 		return shallowCopy(service.listArticles(blogId, since));
 	}
 
+	@Override
+	public List<Article> listArticles(Long blogId, Date since, Set<String> fields) {
+		return shallowCopy(service.listArticles(blogId, since, fields));
+	}
+
 	private List<Article> shallowCopy(List<Article> listArticles) {
 		List<Article> copies = new ArrayList<Article>(listArticles.size());
 		for (Article article : listArticles) {
@@ -88,24 +240,603 @@ public class BlogServiceController implements BlogService {
 		return copies;
 	}
 
+	/**
+	 * list the ids of the newest articles of a blog
+	 * 
+	 * @param since
+	 *            the created time in milliseconds of the oldest article to list, or null
+	 * @param count
+	 *            the number of ids to list, or null for the {@link #setDefaultRecentCount(int) default}
+	 */
+	@RequestMapping(value = "/blog/{blogId}/recent", method = RequestMethod.GET)
+	public void listRecentArticleIds(@PathVariable("blogId") final Long blogId,
+			@RequestParam(value = "since", required = false) final Long since,
+			@RequestParam(value = "count", required = false) final Integer count, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		execute(listingExecutor, request, response, "articleIds", new EndpointExecutor.Task<List<Long>>() {
+			public List<Long> call() {
+				return listRecentArticleIds(blogId, since == null ? null : new Date(since),
+						count == null ? defaultRecentCount : count);
+			}
+		});
+	}
+
+	@Override
+	public List<Long> listRecentArticleIds(Long blogId, Date since, int count) {
+		return service.listRecentArticleIds(blogId, since, count);
+	}
+
 	@RequestMapping(value = "/blog/{blogId}/article", method = RequestMethod.POST)
 	@Override
 	public Article createArticle(@PathVariable("blogId") Long blogId, @RequestBody Article article) {
 		return shallowCopy(service.createArticle(blogId, article));
 	}
 
+	/**
+	 * create a batch of articles in a single transaction
+	 */
+	@RequestMapping(value = "/blog/{blogId}/articles", method = RequestMethod.POST)
+	public void createArticles(@PathVariable("blogId") final Long blogId, @RequestBody final Article[] articles,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		execute(bulkExecutor, request, response, "articleIds", new EndpointExecutor.Task<List<Long>>() {
+			public List<Long> call() {
+				return createArticles(blogId, Arrays.asList(articles));
+			}
+		});
+	}
+
+	@Override
+	public List<Long> createArticles(Long blogId, List<Article> articles) {
+		return service.createArticles(blogId, articles);
+	}
+
 	@RequestMapping(value = "/article/{articleId}", method = RequestMethod.POST)
 	@Override
 	public Article updateArticle(@RequestBody Article article) {
-		return shallowCopy(service.updateArticle(article));
+		try {
+			return shallowCopy(service.updateArticle(article));
+		} finally {
+			articleCache.invalidate(article.getId());
+		}
+	}
+
+	/**
+	 * modify the fields of an article that are present in a JSON merge patch, see {@link ArticlePatch}
+	 */
+	@RequestMapping(value = "/article/{articleId}/patch", method = RequestMethod.POST)
+	public Article patchArticle(@PathVariable("articleId") Long articleId, @RequestBody Map<String, Object> changes) {
+		return patchArticle(articleId, new ArticlePatch(changes));
+	}
+
+	@Override
+	public Article patchArticle(Long articleId, ArticlePatch patch) {
+		try {
+			return shallowCopy(service.patchArticle(articleId, patch));
+		} finally {
+			articleCache.invalidate(articleId);
+		}
+	}
+
+	@RequestMapping(value = "/article/{articleId}", method = RequestMethod.DELETE)
+	public void deleteArticle(@PathVariable("articleId") Long articleId, HttpServletResponse response) {
+		deleteArticle(articleId);
+		response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+	}
+
+	@Override
+	public void deleteArticle(Long articleId) {
+		try {
+			service.deleteArticle(articleId);
+		} finally {
+			articleCache.invalidate(articleId);
+		}
+	}
+
+	@RequestMapping(value = "/blog/{blogId}", method = RequestMethod.DELETE)
+	public void deleteBlog(@PathVariable("blogId") Long blogId, HttpServletResponse response) {
+		deleteBlog(blogId);
+		response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+	}
+
+	@Override
+	public void deleteBlog(Long blogId) {
+		try {
+			service.deleteBlog(blogId);
+		} finally {
+			articleCache.invalidateGroup(blogId);
+		}
+	}
+
+	/**
+	 * write a blog and all of its articles as a {@link BlogArchiveWriter blog archive}, gzip-compressed when the client
+	 * accepts it. The archive is written as articles are read, so that memory use does not depend on the size of the
+	 * blog.
+	 */
+	@RequestMapping(value = "/blog/{blogId}/export", method = RequestMethod.GET)
+	public void exportBlog(@PathVariable("blogId") final Long blogId, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		StreamFence fence = new StreamFence();
+		final ArchiveResponse archiveResponse = new ArchiveResponse(fence.guard(response), acceptEncoding != null
+				&& acceptEncoding.contains("gzip"));
+		execute(bulkExecutor, request, response, fence, new EndpointExecutor.Task<Void>() {
+			public Void call() throws IOException {
+				exportBlog(blogId, archiveResponse);
+				archiveResponse.finish();
+				return null;
+			}
+		}, new TaskResponder<Void>(null));
+	}
+
+	@Override
+	public void exportBlog(Long blogId, final BlogExportHandler handler) throws IOException {
+		service.exportBlog(blogId, new BlogExportHandler() {
+			public void blog(Blog blog) throws IOException {
+				handler.blog(shallowCopy(blog));
+			}
+
+			public void article(Article article) throws IOException {
+				handler.article(shallowCopy(article));
+			}
+		});
+	}
+
+	/**
+	 * import a {@link BlogArchiveWriter blog archive} into a new blog, reading the archive as it is received. The
+	 * archive is gzip-compressed if the request has a <code>Content-Encoding</code> of <code>gzip</code>. Articles
+	 * are created in batches, each in its own transaction, and a {@link ImportCheckpoint checkpoint} is written to the
+	 * response as newline-delimited JSON after each batch. An import that fails is resumed by posting the same archive
+	 * with the <code>blogId</code> and <code>articles</code> of its last checkpoint.
+	 */
+	@RequestMapping(value = "/blog/import", method = RequestMethod.POST)
+	public void importBlog(@RequestParam(value = "blogId", required = false) Long blogId,
+			@RequestParam(value = "articles", required = false) Long articles, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		StreamFence fence = new StreamFence();
+		final HttpServletResponse guardedResponse = fence.guard(response);
+		InputStream in = fence.guard(request.getInputStream());
+		if ("gzip".equals(request.getHeader("Content-Encoding"))) {
+			in = new GZIPInputStream(in);
+		}
+		final BlogArchiveReader reader = new BlogArchiveReader(in);
+		final ImportCheckpoint resume = blogId == null ? null : new ImportCheckpoint(blogId, articles == null ? 0L
+				: articles, false);
+		final BlogArchiveImporter importer = new BlogArchiveImporter(service);
+		importer.setBatchSize(importBatchSize);
+		execute(bulkExecutor, request, response, fence, new EndpointExecutor.Task<Void>() {
+			public Void call() throws IOException {
+				importer.importArchive(reader, resume, new BlogArchiveImporter.Listener() {
+					public void checkpoint(ImportCheckpoint checkpoint) throws IOException {
+						if (!guardedResponse.isCommitted()) {
+							guardedResponse.setContentType(BlogArchiveWriter.CONTENT_TYPE);
+						}
+						OutputStream out = guardedResponse.getOutputStream();
+						out.write(objectMapper.writeValueAsBytes(Collections.singletonMap("checkpoint", checkpoint)));
+						out.write('\n');
+						// the client learns of each checkpoint as soon as it is committed
+						guardedResponse.flushBuffer();
+					}
+				});
+				return null;
+			}
+		}, new TaskResponder<Void>(null));
+	}
+
+	/**
+	 * long-poll for the events of a blog that follow the given position, responding as soon as there are events or when
+	 * the wait times out. Omit the stream to begin with events that are published after the request.
+	 * <p>
+	 * In a container that implements Servlet 3.0, a waiting request is processed asynchronously: it holds its
+	 * connection but no container thread, and is answered by the thread that publishes the events. Otherwise it holds
+	 * a container thread for the whole wait. Either way, the number of subscribers that can wait at once is limited by
+	 * the <code>maxWaiters</code> of the {@link ArticleEventLog}, beyond which requests are answered immediately
+	 * without waiting.
+	 * </p>
+	 */
+	@RequestMapping(value = "/blog/{blogId}/events", method = RequestMethod.GET)
+	public void listArticleEvents(@PathVariable("blogId") Long blogId,
+			@RequestParam(value = "stream", required = false) String stream,
+			@RequestParam(value = "after", required = false) Long after,
+			@RequestParam(value = "wait", required = false) Integer waitSeconds, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		if (eventLog == null) {
+			throw new NotFoundException("Article events are not available");
+		}
+		if (stream != null && (stream.length() == 0 || after == null)) {
+			stream = null;
+		}
+		int wait = waitSeconds == null ? maxEventWaitSeconds : Math.max(0, Math.min(waitSeconds,
+				maxEventWaitSeconds));
+		long afterEventId = stream == null ? 0L : after;
+		TaskResponder<ArticleEvents> responder = new TaskResponder<ArticleEvents>("articleEvents");
+		if (wait > 0 && asyncSupported && request.isAsyncSupported()) {
+			AsyncSubscription.start(eventLog, blogId, stream, afterEventId, wait * 1000L, request, response, responder);
+			return;
+		}
+		ArticleEvents events;
+		try {
+			events = eventLog.read(blogId, stream, afterEventId, wait * 1000L);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		responder.respond(events, request, response);
 	}
 
-	@RequestMapping(value = "/article/{articleId}", method = RequestMethod.GET)
 	@Override
-	public Article getArticle(@PathVariable("articleId") Long articleId) {
+	public Article getArticle(Long articleId) {
 		return shallowCopy(service.getArticle(articleId));
 	}
 
+	@Override
+	public Article getArticle(Long articleId, Set<String> fields) {
+		return shallowCopy(service.getArticle(articleId, fields));
+	}
+
+	/**
+	 * write an article in the same form as the JSON view would, using the {@link SerializedResponseCache} to avoid
+	 * reading and serializing articles that have not changed. Responses with selected fields are not cached.
+	 */
+	@RequestMapping(value = "/article/{articleId}", method = RequestMethod.GET)
+	public void writeArticle(@PathVariable("articleId") Long articleId,
+			@RequestParam(value = "fields", required = false) String fields, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		Set<String> selection = FieldSelection.parse(fields, FieldSelection.ARTICLE_FIELDS);
+		if (selection != null) {
+			byte[] content = objectMapper.writeValueAsBytes(Collections.singletonMap("article", FieldSelection
+					.toMap(getArticle(articleId, selection), selection)));
+			response.setContentType("application/json");
+			response.setContentLength(content.length);
+			response.getOutputStream().write(content);
+			return;
+		}
+		SerializedResponseCache.Entry entry = articleCache.get(articleId);
+		if (entry == null) {
+			long stamp = articleCache.stamp();
+			Article article = service.getArticle(articleId);
+			Article copy = shallowCopy(article);
+			byte[] content = objectMapper.writeValueAsBytes(Collections.singletonMap("article", copy));
+			entry = articleCache.put(articleId, article.getBlog() == null ? null : article.getBlog().getId(),
+					copy.getModified(), content, stamp);
+			if (entry == null) {
+				response.setContentType("application/json");
+				response.setContentLength(content.length);
+				response.getOutputStream().write(content);
+				return;
+			}
+		}
+		response.setHeader("ETag", entry.getETag());
+		response.setHeader("Cache-Control", articleMaxAgeSeconds > 0 ? "max-age=" + articleMaxAgeSeconds
+				: "no-cache");
+		if (entry.getETag().equals(request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		boolean compressed = false;
+		if (entry.isCompressed()) {
+			response.setHeader("Vary", "Accept-Encoding");
+			String acceptEncoding = request.getHeader("Accept-Encoding");
+			compressed = acceptEncoding != null && acceptEncoding.contains("gzip");
+		}
+		response.setContentType("application/json");
+		if (compressed) {
+			response.setHeader("Content-Encoding", "gzip");
+		}
+		response.setContentLength(entry.getContentLength(compressed));
+		OutputStream out = response.getOutputStream();
+		entry.writeTo(out, compressed);
+	}
+
+	/**
+	 * write the content of an article as text, supporting a single byte range. Content held in the
+	 * {@link ContentStore} is written from its file with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+	 * without reading it into the heap; the copy is zero-copy where the container's output is backed by a channel.
+	 */
+	@RequestMapping(value = "/article/{articleId}/content", method = RequestMethod.GET)
+	public void writeArticleContent(@PathVariable("articleId") Long articleId, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		Article article = service.getArticle(articleId);
+		if (article.getContentRef() != null && contentStore != null) {
+			File file = contentStore.getFile(article.getContentRef());
+			FileInputStream in;
+			try {
+				in = new FileInputStream(file);
+			} catch (IOException e) {
+				throw new NotFoundException("Content of article " + articleId + " does not exist");
+			}
+			try {
+				FileChannel channel = in.getChannel();
+				// content is addressed by its hash, so the reference is a strong entity tag
+				ByteRange range = writeContentHeaders(request, response, "\"" + article.getContentRef() + "\"",
+						channel.size());
+				if (range != null) {
+					WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+					long position = range.getStart();
+					long end = range.getEnd() + 1;
+					while (position < end) {
+						long count = channel.transferTo(position, end - position, out);
+						if (count <= 0) {
+							throw new IOException("Content of article " + articleId + " was truncated");
+						}
+						position += count;
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} else {
+			byte[] content = article.getContent() == null ? new byte[0] : article.getContent().getBytes("UTF-8");
+			// the modified timestamp may have a resolution of one second, so it can't identify the content
+			String eTag = "\"" + ArticlePatch.digest(article.getContent()) + "\"";
+			ByteRange range = writeContentHeaders(request, response, eTag, content.length);
+			if (range != null) {
+				response.getOutputStream().write(content, (int) range.getStart(), (int) range.getLength());
+			}
+		}
+	}
+
+	/**
+	 * set the status and headers of a content response
+	 *
+	 * @return the range of content to write, or null if no content should be written
+	 */
+	private ByteRange writeContentHeaders(HttpServletRequest request, HttpServletResponse response, String eTag,
+			long length) {
+		response.setHeader("ETag", eTag);
+		response.setHeader("Accept-Ranges", "bytes");
+		if (eTag.equals(request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return null;
+		}
+		response.setContentType("text/plain;charset=UTF-8");
+		String ifRange = request.getHeader("If-Range");
+		ByteRange range = ifRange == null || ifRange.equals(eTag) ? ByteRange.parse(request.getHeader("Range"),
+				length) : null;
+		if (range == null) {
+			response.setContentLength((int) length);
+			return length == 0 ? null : ByteRange.all(length);
+		}
+		response.setHeader("Content-Range", range.toContentRange());
+		if (!range.isSatisfiable()) {
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setContentLength(0);
+			return null;
+		}
+		response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		response.setContentLength((int) range.getLength());
+		return range;
+	}
+
+	@ExceptionHandler(BlogServiceException.class)
+	public void handleServiceException(BlogServiceException exception, HttpServletResponse response)
+			throws IOException {
+		int status;
+		if (exception instanceof NotFoundException) {
+			status = HttpServletResponse.SC_NOT_FOUND;
+		} else if (exception instanceof ConflictException) {
+			status = HttpServletResponse.SC_CONFLICT;
+		} else {
+			status = HttpServletResponse.SC_BAD_REQUEST;
+		}
+		writeError(response, new ServiceError(status, exception.getCode(), exception.getMessage()));
+	}
+
+	@ExceptionHandler( { EntityExistsException.class, OptimisticLockException.class,
+			ConcurrencyFailureException.class, DataIntegrityViolationException.class })
+	public void handleConflict(Exception exception, HttpServletResponse response) throws IOException {
+		// don't expose the details of persistence exceptions
+		writeError(response, new ServiceError(HttpServletResponse.SC_CONFLICT, ConflictException.CODE,
+				"The request conflicts with a concurrent modification"));
+	}
+
+	@ExceptionHandler( { HttpMessageNotReadableException.class, TypeMismatchException.class })
+	public void handleUnreadableRequest(Exception exception, HttpServletResponse response) throws IOException {
+		writeError(response, new ServiceError(HttpServletResponse.SC_BAD_REQUEST, InvalidRequestException.CODE,
+				"The request could not be read"));
+	}
+
+	@ExceptionHandler(EndpointUnavailableException.class)
+	public void handleUnavailable(EndpointUnavailableException exception, HttpServletResponse response)
+			throws IOException {
+		if (response.isCommitted()) {
+			// a streamed response was cut short, which the client detects by the missing end of the stream
+			return;
+		}
+		// discard the headers and any buffered content of a streamed response
+		response.reset();
+		if (exception.getRetryAfterSeconds() > 0) {
+			response.setHeader("Retry-After", Integer.toString(exception.getRetryAfterSeconds()));
+		}
+		writeError(response, exception.getError());
+	}
+
+	/**
+	 * execute a task and respond with its result in the same form as the JSON view would render the model attribute of
+	 * the given name
+	 */
+	private <T> void execute(EndpointExecutor executor, HttpServletRequest request, HttpServletResponse response,
+			String modelName, EndpointExecutor.Task<T> task) throws IOException {
+		execute(executor, request, response, new StreamFence(), task, new TaskResponder<T>(modelName));
+	}
+
+	/**
+	 * execute a task that uses the request or response through the given fence, which is closed once the request
+	 * stops waiting for the task
+	 */
+	private <T> void execute(EndpointExecutor executor, HttpServletRequest request, HttpServletResponse response,
+			StreamFence fence, EndpointExecutor.Task<T> task, EndpointExecutor.Responder<T> responder)
+			throws IOException {
+		if (executor == null) {
+			T result;
+			try {
+				result = task.call();
+			} finally {
+				fence.close();
+			}
+			responder.respond(result, request, response);
+			return;
+		}
+		executor.execute(request, response, fence, task, responder);
+	}
+
+	/**
+	 * responds with the result of a task as a model attribute, or not at all if the task writes the response itself.
+	 * The failures of asynchronous tasks are answered by the {@link ExceptionHandler exception handlers} of this
+	 * controller, as if they were thrown by a request mapping.
+	 */
+	private class TaskResponder<T> implements EndpointExecutor.Responder<T> {
+		private final String modelName;
+
+		public TaskResponder(String modelName) {
+			this.modelName = modelName;
+		}
+
+		public void respond(T result, HttpServletRequest request, HttpServletResponse response) throws IOException {
+			if (modelName != null) {
+				byte[] content = objectMapper.writeValueAsBytes(Collections.singletonMap(modelName, result));
+				response.setContentType("application/json");
+				response.setContentLength(content.length);
+				response.getOutputStream().write(content);
+			}
+		}
+
+		public void fail(Exception exception, HttpServletRequest request, HttpServletResponse response) {
+			if (exceptionResolver.resolveException(request, response, BlogServiceController.this, exception) == null) {
+				if (exception instanceof RuntimeException) {
+					throw (RuntimeException) exception;
+				}
+				throw new IllegalStateException(exception);
+			}
+		}
+	}
+
+	private void writeError(HttpServletResponse response, ServiceError error) throws IOException {
+		// errors are expected under normal operation, so they are reported to the client without logging
+		byte[] content = objectMapper.writeValueAsBytes(Collections.singletonMap("error", error));
+		response.setStatus(error.getStatus());
+		response.setContentType("application/json");
+		response.setContentLength(content.length);
+		response.getOutputStream().write(content);
+	}
+
+	public int getArticleMaxAgeSeconds() {
+		return articleMaxAgeSeconds;
+	}
+
+	/**
+	 * the time for which clients may use an article without revalidating it. Defaults to 0, in which case clients must
+	 * revalidate articles with their entity tag, so that the near cache of a {@link BlogServiceClient} saves the
+	 * transfer of an unchanged article but still makes a request for every read.
+	 */
+	public void setArticleMaxAgeSeconds(int articleMaxAgeSeconds) {
+		this.articleMaxAgeSeconds = articleMaxAgeSeconds;
+	}
+
+	public int getDefaultRecentCount() {
+		return defaultRecentCount;
+	}
+
+	/**
+	 * the number of article ids listed by a request for recent articles that doesn't specify a count. Defaults to 20.
+	 */
+	public void setDefaultRecentCount(int defaultRecentCount) {
+		this.defaultRecentCount = defaultRecentCount;
+	}
+
+	public int getMaxEventWaitSeconds() {
+		return maxEventWaitSeconds;
+	}
+
+	/**
+	 * the longest time for which a request for article events waits for an event. Each waiting request holds a
+	 * connection, and a container thread unless it is processed asynchronously, so this should be shorter than the idle
+	 * timeout of any proxy in front of the server. Defaults to 20 seconds.
+	 */
+	public void setMaxEventWaitSeconds(int maxEventWaitSeconds) {
+		this.maxEventWaitSeconds = maxEventWaitSeconds;
+	}
+
+	public int getImportBatchSize() {
+		return importBatchSize;
+	}
+
+	/**
+	 * the number of articles created in each transaction of an import. Defaults to 100.
+	 */
+	public void setImportBatchSize(int importBatchSize) {
+		this.importBatchSize = importBatchSize;
+	}
+
+	public EndpointExecutor getListingExecutor() {
+		return listingExecutor;
+	}
+
+	/**
+	 * the executor of requests that list articles, or null to list articles on the request thread. Defaults to null.
+	 */
+	public void setListingExecutor(EndpointExecutor listingExecutor) {
+		this.listingExecutor = listingExecutor;
+	}
+
+	public EndpointExecutor getBulkExecutor() {
+		return bulkExecutor;
+	}
+
+	/**
+	 * the executor of requests that create, export or import articles in bulk, or null to do so on the request thread.
+	 * Defaults to null.
+	 */
+	public void setBulkExecutor(EndpointExecutor bulkExecutor) {
+		this.bulkExecutor = bulkExecutor;
+	}
+
+	/**
+	 * the context of this controller, which determines whether requests for article events wait asynchronously
+	 */
+	public void setServletContext(ServletContext servletContext) {
+		asyncSupported = EndpointExecutor.isAsyncSupported(servletContext);
+	}
+
+	/**
+	 * writes an archive to the response once the blog is found, so that a blog that is not found is reported as an error
+	 */
+	private static class ArchiveResponse implements BlogExportHandler {
+		private final HttpServletResponse response;
+
+		private final boolean compressed;
+
+		private GZIPOutputStream gzip;
+
+		private BlogArchiveWriter writer;
+
+		public ArchiveResponse(HttpServletResponse response, boolean compressed) {
+			this.response = response;
+			this.compressed = compressed;
+		}
+
+		public void blog(Blog blog) throws IOException {
+			response.setContentType(BlogArchiveWriter.CONTENT_TYPE);
+			response.setHeader("Vary", "Accept-Encoding");
+			OutputStream out = response.getOutputStream();
+			if (compressed) {
+				response.setHeader("Content-Encoding", "gzip");
+				out = gzip = new GZIPOutputStream(out, 8192);
+			}
+			writer = new BlogArchiveWriter(out);
+			writer.blog(blog);
+		}
+
+		public void article(Article article) throws IOException {
+			writer.article(article);
+		}
+
+		public void finish() throws IOException {
+			if (gzip != null) {
+				gzip.finish();
+			}
+		}
+	}
+
 	private Blog shallowCopy(Blog blog) {
 		Blog copy = new Blog();
 		copy.setArticles(null);
@@ -125,6 +856,10 @@ public class BlogServiceController implements BlogService {
 		copy.setAuthor(article.getAuthor());
 		copy.setTitle(article.getTitle());
 		copy.setContent(article.getContent());
+		copy.setContentRef(article.getContentRef());
+		if (copy.getContent() == null && copy.getContentRef() != null && contentStore != null) {
+			copy.setContent(contentStore.get(copy.getContentRef()));
+		}
 		return copy;
 	}
 }
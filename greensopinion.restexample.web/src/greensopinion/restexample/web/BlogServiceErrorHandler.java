@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import greensopinion.restexample.service.BlogServiceException;
+import greensopinion.restexample.service.ConflictException;
+import greensopinion.restexample.service.InvalidRequestException;
+import greensopinion.restexample.service.NotFoundException;
+import greensopinion.restexample.web.client.ServerBusyException;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+
+/**
+ * A client error handler that translates the {@link ServiceError error responses} of {@link BlogServiceController}
+ * into the {@link BlogServiceException} that caused them, and those of a server that is busy into a
+ * {@link ServerBusyException}. Other errors are handled as they would be by the {@link DefaultResponseErrorHandler}.
+ *
+ * @author David Green
+ */
+public class BlogServiceErrorHandler extends DefaultResponseErrorHandler {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Override
+	public void handleError(ClientHttpResponse response) throws IOException {
+		HttpStatus status = response.getStatusCode();
+		if (status == HttpStatus.NOT_FOUND || status == HttpStatus.BAD_REQUEST || status == HttpStatus.CONFLICT) {
+			String message = status.value() + " " + response.getStatusText();
+			ServiceError error = readError(response);
+			if (error != null && error.getMessage() != null) {
+				message = error.getMessage();
+			}
+			switch (status) {
+			case NOT_FOUND:
+				throw new NotFoundException(message);
+			case CONFLICT:
+				throw new ConflictException(message);
+			default:
+				throw new InvalidRequestException(message);
+			}
+		}
+		if (status == HttpStatus.SERVICE_UNAVAILABLE || status == HttpStatus.GATEWAY_TIMEOUT) {
+			ServiceError error = readError(response);
+			if (error != null && error.getCode() != null) {
+				throw new ServerBusyException(status, response.getStatusText(), error.getCode(),
+						parseRetryAfter(response.getHeaders().getFirst("Retry-After")));
+			}
+		}
+		super.handleError(response);
+	}
+
+	private int parseRetryAfter(String retryAfter) {
+		if (retryAfter != null) {
+			try {
+				return Math.max(0, Integer.parseInt(retryAfter.trim()));
+			} catch (NumberFormatException e) {
+				// an HTTP date, which the server doesn't send
+			}
+		}
+		return 0;
+	}
+
+	private ServiceError readError(ClientHttpResponse response) throws IOException {
+		try {
+			ServiceError.Result result = objectMapper.readValue(response.getBody(), ServiceError.Result.class);
+			return result == null ? null : result.getError();
+		} catch (JsonProcessingException e) {
+			// not an error response of the controller
+			return null;
+		}
+	}
+}
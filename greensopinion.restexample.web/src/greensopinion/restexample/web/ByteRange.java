@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+/**
+ * A single range of bytes requested by an HTTP <code>Range</code> header.
+ *
+ * @author David Green
+ */
+public class ByteRange {
+
+	private static final String UNIT = "bytes=";
+
+	private final long start;
+
+	private final long end;
+
+	private final long length;
+
+	private ByteRange(long start, long end, long length) {
+		this.start = start;
+		this.end = end;
+		this.length = length;
+	}
+
+	/**
+	 * the range of all of the content, which must not be empty
+	 */
+	public static ByteRange all(long length) {
+		return new ByteRange(0L, length - 1, length);
+	}
+
+	/**
+	 * parse a <code>Range</code> header
+	 *
+	 * @param header
+	 *            the value of the header, or null
+	 * @param length
+	 *            the length of the content
+	 * @return the range, or null if the whole content should be sent because the header is absent, malformed or
+	 *         specifies more than one range
+	 */
+	public static ByteRange parse(String header, long length) {
+		if (header == null || !header.startsWith(UNIT) || header.indexOf(',') != -1) {
+			return null;
+		}
+		String spec = header.substring(UNIT.length()).trim();
+		int index = spec.indexOf('-');
+		if (index == -1) {
+			return null;
+		}
+		try {
+			String first = spec.substring(0, index).trim();
+			String last = spec.substring(index + 1).trim();
+			if (first.length() == 0) {
+				// a suffix, such as -500 for the last 500 bytes
+				if (last.length() == 0) {
+					return null;
+				}
+				long suffix = Long.parseLong(last);
+				return new ByteRange(Math.max(0L, length - suffix), length - 1, length);
+			}
+			long start = Long.parseLong(first);
+			long end = last.length() == 0 ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+			if (start < 0 || (last.length() > 0 && Long.parseLong(last) < start)) {
+				return null;
+			}
+			return new ByteRange(start, end, length);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * indicate if any of the range lies within the content; if not, the response status must be 416
+	 */
+	public boolean isSatisfiable() {
+		return start < length && start <= end;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * the position of the last byte of the range, inclusive
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * the number of bytes in the range
+	 */
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	/**
+	 * the value of the <code>Content-Range</code> header for this range
+	 */
+	public String toContentRange() {
+		if (!isSatisfiable()) {
+			return "bytes */" + length;
+		}
+		return "bytes " + start + "-" + end + "/" + length;
+	}
+}
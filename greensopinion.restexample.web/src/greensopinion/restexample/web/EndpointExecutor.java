@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import greensopinion.restexample.jdbc.RoutingContext;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.context.ServletContextAware;
+
+/**
+ * Runs the work of one class of expensive requests, such as listings or bulk transfers, on its own bounded pool of
+ * threads with a timeout. Work that cannot be queued is rejected immediately with a 503, and work that does not
+ * complete in time is interrupted and reported with a 504. A burst of expensive requests is thereby limited to the
+ * threads and queue of its executor, and cannot occupy every container thread while cheap requests wait.
+ * <p>
+ * In a container that implements Servlet 3.0, requests whose filters and servlet are <code>async-supported</code> are
+ * processed asynchronously: the request thread starts the work and returns to the container, and the response is
+ * completed by the thread that does the work, or by the container at the timeout. Elsewhere, such as in a Servlet 2.5
+ * container, the request thread waits for the work, for no longer than the timeout.
+ * </p>
+ * <p>
+ * A request is answered at the timeout even if the work ignores the interrupt, for example while it waits for the
+ * database; the work then continues to occupy a thread of this executor until it stops. Work must therefore not use the
+ * request or response directly, but through a {@link StreamFence} that is closed when the request stops waiting for
+ * the work. The {@link RoutingContext} of the request is carried to the thread that does the work.
+ * </p>
+ *
+ * @author David Green
+ */
+public class EndpointExecutor implements ServletContextAware {
+
+	public static final String CODE_TIMEOUT = "timeout";
+
+	/**
+	 * the work of a request
+	 */
+	public interface Task<T> {
+		public T call() throws IOException;
+	}
+
+	/**
+	 * writes the outcome of the work of a request to its response
+	 */
+	public interface Responder<T> {
+		public void respond(T result, HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+		/**
+		 * respond to a failure of asynchronous work, which is an exception thrown by the work or an
+		 * {@link EndpointUnavailableException}
+		 *
+		 * @throws RuntimeException
+		 *             if the failure cannot be reported to the client, in which case the request fails with a 500
+		 */
+		public void fail(Exception exception, HttpServletRequest request, HttpServletResponse response)
+				throws IOException;
+	}
+
+	private static class Work<T> implements Callable<T> {
+		private final Task<T> task;
+
+		private final boolean pinnedToPrimary = RoutingContext.isPinnedToPrimary();
+
+		private Work(Task<T> task) {
+			this.task = task;
+		}
+
+		public T call() throws IOException {
+			RoutingContext.begin(pinnedToPrimary);
+			try {
+				return task.call();
+			} finally {
+				RoutingContext.end();
+			}
+		}
+	}
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong timeouts = new AtomicLong();
+
+	private String name = "endpoint";
+
+	private int threads = 4;
+
+	private int queueCapacity = 16;
+
+	private long timeoutMillis = 10000L;
+
+	private int retryAfterSeconds = 1;
+
+	private boolean asyncSupported;
+
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * indicate whether the given context is of a container that can process requests asynchronously. Classes that use
+	 * the servlet API 3.0, such as {@link AsyncExecution}, must not be loaded unless it can.
+	 */
+	static boolean isAsyncSupported(ServletContext servletContext) {
+		return servletContext != null && servletContext.getMajorVersion() >= 3;
+	}
+
+	/**
+	 * the context of the web application, with which the executor determines whether requests can be processed
+	 * asynchronously. Without a context, requests are processed synchronously.
+	 */
+	public void setServletContext(ServletContext servletContext) {
+		asyncSupported = isAsyncSupported(servletContext);
+	}
+
+	@PostConstruct
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<Runnable>(queueCapacity)
+				: new SynchronousQueue<Runnable>();
+		executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, queue, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * do the given work on a thread of this executor, waiting for it to complete for no longer than the timeout. Work
+	 * that times out is interrupted, or doesn't start if it is still queued.
+	 *
+	 * @return the result of the work
+	 * @throws EndpointUnavailableException
+	 *             if the executor is at capacity or the work did not complete in time
+	 */
+	public <T> T execute(Task<T> task) throws IOException {
+		Future<T> future = submit(new Work<T>(task));
+		try {
+			return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw timedOut();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * do the given work of a request on a thread of this executor and respond with its outcome, asynchronously if the
+	 * container and the request support it. The fence guards the streams of the request that are used by the work,
+	 * and is closed when the request stops waiting for the work.
+	 * <p>
+	 * A request that is processed asynchronously is answered by the responder, including when the executor is at
+	 * capacity or the work fails or does not complete in time. Otherwise the request thread waits for the work as for
+	 * {@link #execute(Task)}, which throws its failures to the caller.
+	 * </p>
+	 */
+	public <T> void execute(HttpServletRequest request, HttpServletResponse response, StreamFence fence, Task<T> task,
+			Responder<T> responder) throws IOException {
+		if (asyncSupported && request.isAsyncSupported()) {
+			AsyncExecution.start(this, new Work<T>(task), request, response, fence, responder);
+			return;
+		}
+		T result;
+		try {
+			result = execute(task);
+		} finally {
+			fence.close();
+		}
+		responder.respond(result, request, response);
+	}
+
+	/**
+	 * queue the given work
+	 *
+	 * @throws EndpointUnavailableException
+	 *             if the executor is at capacity
+	 */
+	<T> Future<T> submit(Callable<T> work) {
+		ThreadPoolExecutor executor;
+		synchronized (this) {
+			executor = this.executor;
+		}
+		if (executor == null) {
+			throw new IllegalStateException("Not started");
+		}
+		try {
+			return executor.submit(work);
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			throw new EndpointUnavailableException(new ServiceError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+					AdmissionControlFilter.CODE_OVERLOADED, "Too many " + name + " requests, retry after "
+							+ retryAfterSeconds + " seconds"), retryAfterSeconds);
+		}
+	}
+
+	/**
+	 * count a request whose work did not complete in time
+	 *
+	 * @return the failure with which to answer the request
+	 */
+	EndpointUnavailableException timedOut() {
+		timeouts.incrementAndGet();
+		return new EndpointUnavailableException(new ServiceError(HttpServletResponse.SC_GATEWAY_TIMEOUT, CODE_TIMEOUT,
+				"The " + name + " request did not complete within " + timeoutMillis + "ms"), 0);
+	}
+
+	/**
+	 * the number of requests that were rejected because the executor was at capacity
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * the number of requests that did not complete in time
+	 */
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * the name of the class of requests, which names the threads of the executor and appears in errors
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * the number of requests whose work may run at once. Defaults to 4.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * the number of requests that may wait for a thread before requests are rejected. Defaults to 16.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * the time for which a request waits for its work, including time spent in the queue. Defaults to 10 seconds.
+	 */
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	/**
+	 * the time after which a client may retry a rejected request. Defaults to 1 second.
+	 */
+	public void setRetryAfterSeconds(int retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+/**
+ * Indicates that the work of a request was not done by an {@link EndpointExecutor}, either because the executor was at
+ * capacity or because the work did not complete in time. Unlike a
+ * {@link greensopinion.restexample.service.BlogServiceException BlogServiceException} this is a temporary failure.
+ *
+ * @author David Green
+ */
+public class EndpointUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final ServiceError error;
+
+	private final int retryAfterSeconds;
+
+	public EndpointUnavailableException(ServiceError error, int retryAfterSeconds) {
+		super(error.getMessage());
+		this.error = error;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * the error to report to the client, with a status of 503 if the request was not accepted or 504 if it timed out
+	 */
+	public ServiceError getError() {
+		return error;
+	}
+
+	/**
+	 * the time after which the client may retry the request, or 0 if there is no such time
+	 */
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import greensopinion.restexample.jdbc.ReadWriteRoutingDataSource;
+import greensopinion.restexample.jdbc.RoutingContext;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * A filter that opens a {@link RoutingContext} for each request, so that reads following a write in the same request
+ * are served by the primary database. Clients that need to read their own writes from a previous request can send the
+ * {@link #HEADER_READ_YOUR_WRITES} header to have all reads of the request routed to the primary.
+ *
+ * @author David Green
+ * @see ReadWriteRoutingDataSource
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	public static final String HEADER_READ_YOUR_WRITES = "X-Read-Your-Writes";
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		RoutingContext.begin(Boolean.parseBoolean(request.getHeader(HEADER_READ_YOUR_WRITES)));
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			RoutingContext.end();
+		}
+	}
+}
@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A bounded, least-recently-used cache of serialized responses keyed by entity id. Each entry holds the encoded bytes
+ * of a response, and optionally a gzip-compressed copy, so that a hit can be written directly to the response without
+ * reading the entity or serializing it again.
+ * <p>
+ * Entries are tagged with the <code>modified</code> timestamp of the entity from which they were produced, and must be
+ * {@link #invalidate(Long) invalidated} whenever the entity is modified. To avoid caching a response that was read
+ * before a concurrent modification, callers take a {@link #stamp() stamp} before reading the entity and pass it to
+ * {@link #put(Long, Date, byte[], long)}; the put is ignored if the same id was invalidated in the meantime, so that
+ * invalidations of other entities don't prevent the cache from filling. The generation of the most recent
+ * invalidations is kept per id; once an id is no longer tracked, only puts stamped before its invalidation are
+ * ignored.
+ * </p>
+ * <p>
+ * Entries may be put with the id of a group, such as the blog of an article, so that the entries of a group can be
+ * {@link #invalidateGroup(Long) invalidated} together when the ids of its entities are not known.
+ * </p>
+ * <p>
+ * When {@link #setDirect(boolean) direct} is set, content is held in direct byte buffers outside of the Java heap so
+ * that a large cache does not add to garbage collection work.
+ * </p>
+ *
+ * @author David Green
+ */
+public class SerializedResponseCache {
+
+	public static class Entry {
+		private final Long id;
+
+		private final Long groupId;
+
+		private final long modified;
+
+		private final ByteBuffer content;
+
+		private final ByteBuffer compressedContent;
+
+		private final String eTag;
+
+		private Entry(Long id, Long groupId, long modified, ByteBuffer content, ByteBuffer compressedContent,
+				String eTag) {
+			this.id = id;
+			this.groupId = groupId;
+			this.modified = modified;
+			this.content = content;
+			this.compressedContent = compressedContent;
+			this.eTag = eTag;
+		}
+
+		public Long getId() {
+			return id;
+		}
+
+		/**
+		 * the id of the group of this entry, or null if it has none
+		 */
+		public Long getGroupId() {
+			return groupId;
+		}
+
+		public long getModified() {
+			return modified;
+		}
+
+		/**
+		 * an entity tag derived from the content of this entry. The modified timestamp can't be used, since the
+		 * database may store it with a resolution of one second.
+		 */
+		public String getETag() {
+			return eTag;
+		}
+
+		public boolean isCompressed() {
+			return compressedContent != null;
+		}
+
+		public int getContentLength(boolean compressed) {
+			return (compressed ? compressedContent : content).remaining();
+		}
+
+		/**
+		 * write the content of this entry to the given output stream
+		 *
+		 * @param compressed
+		 *            true if the gzip-compressed content should be written, which requires that the entry
+		 *            {@link #isCompressed() is compressed}
+		 */
+		public void writeTo(OutputStream out, boolean compressed) throws IOException {
+			ByteBuffer buffer = compressed ? compressedContent : content;
+			if (buffer.hasArray()) {
+				out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				return;
+			}
+			// duplicate so that concurrent writers don't share a position
+			buffer = buffer.duplicate();
+			byte[] chunk = new byte[Math.min(buffer.remaining(), 8192)];
+			while (buffer.hasRemaining()) {
+				int length = Math.min(buffer.remaining(), chunk.length);
+				buffer.get(chunk, 0, length);
+				out.write(chunk, 0, length);
+			}
+		}
+
+		private int size() {
+			return content.capacity() + (compressedContent == null ? 0 : compressedContent.capacity());
+		}
+	}
+
+	private static final int MAX_TRACKED_INVALIDATIONS = 4096;
+
+	private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true);
+
+	/**
+	 * the generation of the most recent invalidation of each id, oldest first
+	 */
+	private final Map<Long, Long> invalidatedGenerations = new LinkedHashMap<Long, Long>();
+
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * the generation of the most recent invalidation that is no longer tracked by id
+	 */
+	private long untrackedGeneration;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private long size;
+
+	private long maxSize = 16L * 1024L * 1024L;
+
+	private int maxEntrySize = 64 * 1024;
+
+	private int compressionThreshold = 1024;
+
+	private boolean direct;
+
+	/**
+	 * get the entry for the given id
+	 *
+	 * @return the entry, or null if there is none
+	 */
+	public Entry get(Long id) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(id);
+		}
+		(entry == null ? misses : hits).incrementAndGet();
+		return entry;
+	}
+
+	/**
+	 * provide a stamp that must be taken before reading an entity that is to be {@link #put(Long, Date, byte[], long)
+	 * put} in this cache
+	 */
+	public long stamp() {
+		return generation.get();
+	}
+
+	/**
+	 * add an entry that is not part of a group
+	 *
+	 * @see #put(Long, Long, Date, byte[], long)
+	 */
+	public Entry put(Long id, Date modified, byte[] content, long stamp) {
+		return put(id, null, modified, content, stamp);
+	}
+
+	/**
+	 * add an entry to the cache, unless the id was invalidated since the given stamp was taken or the cache already has
+	 * a more recent entry for the same id
+	 *
+	 * @param id
+	 *            the identity of the entity
+	 * @param groupId
+	 *            the id of the group of the entity, or null if it has none
+	 * @param modified
+	 *            the modified timestamp of the entity, or null if unknown
+	 * @param content
+	 *            the serialized response
+	 * @param stamp
+	 *            the {@link #stamp()} taken before the entity was read
+	 * @return the cached entry, or null if the content was not cached
+	 */
+	public Entry put(Long id, Long groupId, Date modified, byte[] content, long stamp) {
+		if (content.length > maxEntrySize) {
+			return null;
+		}
+		// check before allocating, since direct memory is not reclaimed until the next collection
+		synchronized (entries) {
+			if (!isCurrent(id, stamp)) {
+				return null;
+			}
+		}
+		Entry entry = new Entry(id, groupId, modified == null ? 0L : modified.getTime(), allocate(content),
+				compress(content), computeETag(content));
+		synchronized (entries) {
+			if (!isCurrent(id, stamp)) {
+				return null;
+			}
+			Entry previous = entries.get(id);
+			if (previous != null) {
+				if (previous.modified > entry.modified) {
+					return previous;
+				}
+				remove(id);
+			}
+			entries.put(id, entry);
+			size += entry.size();
+			evict();
+		}
+		return entry;
+	}
+
+	/**
+	 * remove the entry for the given id, which must be done when the entity is modified
+	 */
+	public void invalidate(Long id) {
+		synchronized (entries) {
+			invalidatedGenerations.remove(id);
+			invalidatedGenerations.put(id, generation.incrementAndGet());
+			if (invalidatedGenerations.size() > MAX_TRACKED_INVALIDATIONS) {
+				Iterator<Long> it = invalidatedGenerations.values().iterator();
+				untrackedGeneration = it.next();
+				it.remove();
+			}
+			remove(id);
+		}
+	}
+
+	/**
+	 * remove the entries of the given group. Since the ids of the group are not known, puts stamped before the
+	 * invalidation are ignored whatever their id.
+	 */
+	public void invalidateGroup(Long groupId) {
+		synchronized (entries) {
+			untrackedGeneration = generation.incrementAndGet();
+			Iterator<Entry> it = entries.values().iterator();
+			while (it.hasNext()) {
+				Entry entry = it.next();
+				if (groupId.equals(entry.groupId)) {
+					it.remove();
+					size -= entry.size();
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			untrackedGeneration = generation.incrementAndGet();
+			invalidatedGenerations.clear();
+			entries.clear();
+			size = 0;
+		}
+	}
+
+	/**
+	 * indicate whether content read after the given stamp was taken is current, which requires holding the lock
+	 */
+	private boolean isCurrent(Long id, long stamp) {
+		if (stamp < untrackedGeneration) {
+			return false;
+		}
+		Long invalidated = invalidatedGenerations.get(id);
+		return invalidated == null || invalidated <= stamp;
+	}
+
+	private void remove(Long id) {
+		Entry entry = entries.remove(id);
+		if (entry != null) {
+			size -= entry.size();
+		}
+	}
+
+	private void evict() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (size > maxSize && it.hasNext()) {
+			Entry eldest = it.next();
+			it.remove();
+			size -= eldest.size();
+		}
+	}
+
+	private ByteBuffer compress(byte[] content) {
+		if (compressionThreshold < 0 || content.length < compressionThreshold) {
+			return null;
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+			GZIPOutputStream gzip = new GZIPOutputStream(out);
+			gzip.write(content);
+			gzip.close();
+			byte[] compressed = out.toByteArray();
+			if (compressed.length >= content.length) {
+				return null;
+			}
+			return allocate(compressed);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String computeETag(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+			StringBuilder eTag = new StringBuilder(digest.length * 2 + 2).append('"');
+			for (byte b : digest) {
+				eTag.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return eTag.append('"').toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ByteBuffer allocate(byte[] bytes) {
+		if (!direct) {
+			return ByteBuffer.wrap(bytes);
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * the number of bytes held by the cache
+	 */
+	public long getSize() {
+		synchronized (entries) {
+			return size;
+		}
+	}
+
+	public int getEntryCount() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * the maximum number of bytes to hold, including compressed content. Defaults to 16MB.
+	 */
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	/**
+	 * the size of the largest response to cache, so that a few large responses cannot displace many small ones.
+	 * Defaults to 64KB.
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * the size of the smallest response for which a compressed copy is kept, or -1 to disable compression. Defaults to
+	 * 1KB.
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * indicate whether content should be held in direct (off-heap) buffers. Defaults to false.
+	 */
+	public void setDirect(boolean direct) {
+		this.direct = direct;
+	}
+}
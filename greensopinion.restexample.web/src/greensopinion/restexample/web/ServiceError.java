@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import greensopinion.restexample.service.BlogServiceException;
+
+/**
+ * The body of an error response, rendered as <code>{"error":{"status":404,"code":"not-found","message":"..."}}</code>.
+ *
+ * @author David Green
+ * @see BlogServiceException#getCode()
+ */
+public class ServiceError {
+
+	public static class Result {
+		private ServiceError error;
+
+		public ServiceError getError() {
+			return error;
+		}
+
+		public void setError(ServiceError error) {
+			this.error = error;
+		}
+	}
+
+	private int status;
+
+	private String code;
+
+	private String message;
+
+	public ServiceError() {
+	}
+
+	public ServiceError(int status, String code, String message) {
+		this.status = status;
+		this.code = code;
+		this.message = message;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	public String getCode() {
+		return code;
+	}
+
+	public void setCode(String code) {
+		this.code = code;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import greensopinion.restexample.jdbc.ProfilingContext;
+import greensopinion.restexample.jdbc.ProfilingDataSource;
+import greensopinion.restexample.jdbc.SqlProfile;
+import greensopinion.restexample.jdbc.SqlProfileReporter;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * A filter that profiles the SQL statements executed by each request, and reports them with a
+ * {@link SqlProfileReporter}. Thresholds can be configured with init parameters such as
+ * <code>reporter.maxStatements</code>.
+ *
+ * @author David Green
+ * @see ProfilingDataSource
+ */
+public class SqlProfilingFilter extends OncePerRequestFilter {
+
+	private SqlProfileReporter reporter = new SqlProfileReporter();
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		SqlProfile profile = ProfilingContext.begin(request.getMethod() + " " + request.getRequestURI());
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			ProfilingContext.end(profile);
+			reporter.report(profile);
+		}
+	}
+
+	public SqlProfileReporter getReporter() {
+		return reporter;
+	}
+
+	public void setReporter(SqlProfileReporter reporter) {
+		this.reporter = reporter;
+	}
+}
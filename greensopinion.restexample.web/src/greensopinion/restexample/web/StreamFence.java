@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Guards the streams of a request that are used by work on another thread, so that the work can be stopped from
+ * using them once the request no longer waits for it. After the fence is {@link #close() closed}, guarded
+ * streams throw an {@link IOException} and changes to a guarded response are ignored. Closing waits for a read or
+ * write that is in progress, but not for the work to stop, so that work blocked elsewhere, such as in the database,
+ * does not hold the request thread. Usage:
+ *
+ * <pre><code>
+ * StreamFence fence = new StreamFence();
+ * try {
+ * 	executor.execute(taskUsing(fence.guard(request.getInputStream()), fence.guard(response)));
+ * } finally {
+ * 	fence.close();
+ * }
+ * </code></pre>
+ *
+ * @author David Green
+ */
+public class StreamFence {
+
+	private boolean closed;
+
+	/**
+	 * stop guarded streams from being used, waiting for a read or write that is in progress
+	 */
+	public synchronized void close() {
+		closed = true;
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	private void check() throws IOException {
+		if (closed) {
+			throw new IOException("The request is no longer available");
+		}
+	}
+
+	public InputStream guard(final InputStream in) {
+		return new InputStream() {
+			@Override
+			public int read() throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					return in.read();
+				}
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					return in.read(b, off, len);
+				}
+			}
+
+			@Override
+			public int available() throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					return in.available();
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					in.close();
+				}
+			}
+		};
+	}
+
+	public HttpServletResponse guard(HttpServletResponse response) {
+		return new HttpServletResponseWrapper(response) {
+			private ServletOutputStream out;
+
+			@Override
+			public ServletOutputStream getOutputStream() throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					if (out == null) {
+						out = guard(super.getOutputStream());
+					}
+					return out;
+				}
+			}
+
+			@Override
+			public PrintWriter getWriter() throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void flushBuffer() throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					super.flushBuffer();
+				}
+			}
+
+			@Override
+			public boolean isCommitted() {
+				synchronized (StreamFence.this) {
+					// a closed response must not be written, as if it were committed
+					return closed || super.isCommitted();
+				}
+			}
+
+			@Override
+			public void setContentType(String type) {
+				synchronized (StreamFence.this) {
+					if (!closed) {
+						super.setContentType(type);
+					}
+				}
+			}
+
+			@Override
+			public void setContentLength(int len) {
+				synchronized (StreamFence.this) {
+					if (!closed) {
+						super.setContentLength(len);
+					}
+				}
+			}
+
+			@Override
+			public void setHeader(String name, String value) {
+				synchronized (StreamFence.this) {
+					if (!closed) {
+						super.setHeader(name, value);
+					}
+				}
+			}
+
+			@Override
+			public void addHeader(String name, String value) {
+				synchronized (StreamFence.this) {
+					if (!closed) {
+						super.addHeader(name, value);
+					}
+				}
+			}
+
+			@Override
+			public void setStatus(int sc) {
+				synchronized (StreamFence.this) {
+					if (!closed) {
+						super.setStatus(sc);
+					}
+				}
+			}
+
+			@Override
+			public void sendError(int sc, String msg) throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					super.sendError(sc, msg);
+				}
+			}
+
+			@Override
+			public void sendError(int sc) throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					super.sendError(sc);
+				}
+			}
+
+			@Override
+			public void reset() {
+				synchronized (StreamFence.this) {
+					if (!closed) {
+						super.reset();
+					}
+				}
+			}
+
+			@Override
+			public void resetBuffer() {
+				synchronized (StreamFence.this) {
+					if (!closed) {
+						super.resetBuffer();
+					}
+				}
+			}
+		};
+	}
+
+	private ServletOutputStream guard(final ServletOutputStream out) {
+		return new ServletOutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					out.write(b);
+				}
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					out.write(b, off, len);
+				}
+			}
+
+			@Override
+			public void flush() throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					out.flush();
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				synchronized (StreamFence.this) {
+					check();
+					out.close();
+				}
+			}
+		};
+	}
+}
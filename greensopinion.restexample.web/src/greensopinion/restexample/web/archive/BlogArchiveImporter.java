@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.archive;
+
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.BlogService;
+import greensopinion.restexample.service.InvalidRequestException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports a blog archive into a {@link BlogService}, creating a new blog with the articles of the archive. Articles are
+ * {@link BlogService#createArticles(Long, List) created} in batches, each in its own transaction, and a
+ * {@link ImportCheckpoint checkpoint} is reported after each batch. An import that fails is resumed by reading the same
+ * archive again from its last checkpoint, which skips the articles that were already imported. Usage:
+ * 
+ * <pre><code>
+ * BlogArchiveImporter importer = new BlogArchiveImporter(client);
+ * ImportCheckpoint checkpoint = importer.importArchive(new BlogArchiveReader(new GZIPInputStream(in)), null, listener);
+ * </code></pre>
+ * 
+ * Only one batch of articles is held in memory at a time.
+ * 
+ * @author David Green
+ * @see BlogArchiveWriter
+ */
+public class BlogArchiveImporter {
+
+	/**
+	 * notified of the progress of an import
+	 */
+	public interface Listener {
+		/**
+		 * called once the blog is created and after each batch of articles is committed
+		 */
+		public void checkpoint(ImportCheckpoint checkpoint) throws IOException;
+	}
+
+	private final BlogService service;
+
+	private int batchSize = 100;
+
+	public BlogArchiveImporter(BlogService service) {
+		this.service = service;
+	}
+
+	/**
+	 * import an archive
+	 * 
+	 * @param reader
+	 *            the archive
+	 * @param resume
+	 *            the last checkpoint of an import of the same archive that did not complete, or null to import into a
+	 *            new blog
+	 * @param listener
+	 *            the listener to notify of each checkpoint, or null
+	 * @return the final checkpoint
+	 * @throws InvalidRequestException
+	 *             if the archive is not valid
+	 */
+	public ImportCheckpoint importArchive(BlogArchiveReader reader, ImportCheckpoint resume, Listener listener)
+			throws IOException {
+		Object record = reader.read();
+		if (!(record instanceof Blog)) {
+			throw new InvalidRequestException("The archive must begin with a blog");
+		}
+		ImportCheckpoint checkpoint;
+		if (resume == null) {
+			Blog blog = (Blog) record;
+			blog.setId(null);
+			checkpoint = new ImportCheckpoint(service.createBlog(blog).getId(), 0L, false);
+			notify(listener, checkpoint);
+		} else {
+			if (resume.getBlogId() == null) {
+				throw new InvalidRequestException("The checkpoint must have a blog id");
+			}
+			for (long x = 0; x < resume.getArticles(); ++x) {
+				if (!(reader.read() instanceof Article)) {
+					throw new InvalidRequestException("The archive has fewer than " + resume.getArticles()
+							+ " articles");
+				}
+			}
+			checkpoint = new ImportCheckpoint(resume.getBlogId(), resume.getArticles(), false);
+		}
+		List<Article> batch = new ArrayList<Article>(batchSize);
+		while ((record = reader.read()) != null) {
+			if (!(record instanceof Article)) {
+				throw new InvalidRequestException("Line " + reader.getLineNumber() + " of the archive must be an "
+						+ BlogArchiveWriter.ARTICLE);
+			}
+			Article article = (Article) record;
+			article.setContentRef(null);
+			batch.add(article);
+			if (batch.size() >= batchSize) {
+				checkpoint = importBatch(checkpoint, batch);
+				batch = new ArrayList<Article>(batchSize);
+				notify(listener, checkpoint);
+			}
+		}
+		if (!batch.isEmpty()) {
+			checkpoint = importBatch(checkpoint, batch);
+		}
+		checkpoint = new ImportCheckpoint(checkpoint.getBlogId(), checkpoint.getArticles(), true);
+		notify(listener, checkpoint);
+		return checkpoint;
+	}
+
+	private ImportCheckpoint importBatch(ImportCheckpoint checkpoint, List<Article> batch) {
+		service.createArticles(checkpoint.getBlogId(), batch);
+		return new ImportCheckpoint(checkpoint.getBlogId(), checkpoint.getArticles() + batch.size(), false);
+	}
+
+	private void notify(Listener listener, ImportCheckpoint checkpoint) throws IOException {
+		if (listener != null) {
+			listener.checkpoint(checkpoint);
+		}
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * the number of articles to create in each transaction. Defaults to 100.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+}
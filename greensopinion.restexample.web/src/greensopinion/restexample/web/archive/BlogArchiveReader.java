@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.archive;
+
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.InvalidRequestException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Reads the records of a blog archive as written by a {@link BlogArchiveWriter}, one line at a time.
+ * 
+ * @author David Green
+ */
+public class BlogArchiveReader {
+
+	/**
+	 * a line of an archive, which holds either a blog or an article
+	 */
+	public static class Record {
+		private Blog blog;
+
+		private Article article;
+
+		public Blog getBlog() {
+			return blog;
+		}
+
+		public void setBlog(Blog blog) {
+			this.blog = blog;
+		}
+
+		public Article getArticle() {
+			return article;
+		}
+
+		public void setArticle(Article article) {
+			this.article = article;
+		}
+	}
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final BufferedReader reader;
+
+	private long lineNumber;
+
+	/**
+	 * @param in
+	 *            the archive, which must already be decompressed
+	 */
+	public BlogArchiveReader(InputStream in) {
+		try {
+			reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * read the next record
+	 * 
+	 * @return the {@link Blog} or {@link Article} of the next record, or null at the end of the archive
+	 * @throws InvalidRequestException
+	 *             if the record is not valid
+	 */
+	public Object read() throws IOException {
+		String line;
+		do {
+			line = reader.readLine();
+			if (line == null) {
+				return null;
+			}
+			++lineNumber;
+		} while (line.trim().length() == 0);
+		Record record;
+		try {
+			record = objectMapper.readValue(line, Record.class);
+		} catch (JsonProcessingException e) {
+			throw new InvalidRequestException("Line " + lineNumber + " of the archive is not valid: " + e.getMessage());
+		}
+		if (record.getBlog() != null && record.getArticle() == null) {
+			return record.getBlog();
+		}
+		if (record.getArticle() != null && record.getBlog() == null) {
+			return record.getArticle();
+		}
+		throw new InvalidRequestException("Line " + lineNumber + " of the archive must have either a "
+				+ BlogArchiveWriter.BLOG + " or an " + BlogArchiveWriter.ARTICLE);
+	}
+
+	/**
+	 * the number of the line that was last read, starting from 1
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+}
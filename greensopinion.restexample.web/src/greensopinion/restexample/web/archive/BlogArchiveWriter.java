@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.archive;
+
+import greensopinion.restexample.domain.Article;
+import greensopinion.restexample.domain.Blog;
+import greensopinion.restexample.service.BlogExportHandler;
+import greensopinion.restexample.service.FieldSelection;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Writes a blog archive, which is newline-delimited JSON with one record per line: the blog followed by each of its
+ * articles. For example:
+ * 
+ * <pre>
+ * {&quot;blog&quot;:{&quot;id&quot;:1,&quot;created&quot;:1277856000000,&quot;modified&quot;:1277856000000,&quot;name&quot;:&quot;a blog&quot;}}
+ * {&quot;article&quot;:{&quot;id&quot;:2,&quot;created&quot;:1277856000000,&quot;modified&quot;:1277856000000,&quot;author&quot;:&quot;...&quot;,...}}
+ * </pre>
+ * 
+ * Each record is written as it is handled, so that a blog of any size is written without holding its articles in
+ * memory. Archives are usually gzip-compressed by the caller. Articles must have their content, since the
+ * {@link Article#getContentRef() content reference} is not written.
+ * 
+ * @author David Green
+ * @see BlogArchiveReader
+ */
+public class BlogArchiveWriter implements BlogExportHandler {
+
+	public static final String CONTENT_TYPE = "application/x-ndjson";
+
+	static final String BLOG = "blog";
+
+	static final String ARTICLE = "article";
+
+	private static final Set<String> ARTICLE_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<String>(
+			FieldSelection.ARTICLE_FIELDS));
+
+	private static final Set<String> BLOG_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<String>(
+			FieldSelection.BLOG_FIELDS));
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final OutputStream out;
+
+	public BlogArchiveWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	public void blog(Blog blog) throws IOException {
+		write(BLOG, FieldSelection.toMap(blog, BLOG_FIELDS));
+	}
+
+	public void article(Article article) throws IOException {
+		write(ARTICLE, FieldSelection.toMap(article, ARTICLE_FIELDS));
+	}
+
+	private void write(String name, Object value) throws IOException {
+		// JSON strings escape line breaks, so each record is a single line
+		out.write(objectMapper.writeValueAsBytes(Collections.singletonMap(name, value)));
+		out.write('\n');
+	}
+}
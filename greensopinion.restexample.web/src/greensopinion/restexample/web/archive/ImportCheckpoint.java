@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.archive;
+
+/**
+ * The progress of a {@link BlogArchiveImporter blog import}: the blog that was created and the number of articles of
+ * the archive that were committed. An import that did not complete is resumed from its last checkpoint.
+ * 
+ * @author David Green
+ */
+public class ImportCheckpoint {
+
+	private Long blogId;
+
+	private long articles;
+
+	private boolean complete;
+
+	public ImportCheckpoint() {
+	}
+
+	public ImportCheckpoint(Long blogId, long articles, boolean complete) {
+		this.blogId = blogId;
+		this.articles = articles;
+		this.complete = complete;
+	}
+
+	/**
+	 * the identity of the blog created by the import
+	 */
+	public Long getBlogId() {
+		return blogId;
+	}
+
+	public void setBlogId(Long blogId) {
+		this.blogId = blogId;
+	}
+
+	/**
+	 * the number of articles of the archive, from its beginning, that were imported
+	 */
+	public long getArticles() {
+		return articles;
+	}
+
+	public void setArticles(long articles) {
+		this.articles = articles;
+	}
+
+	/**
+	 * true if every article of the archive was imported
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public void setComplete(boolean complete) {
+		this.complete = complete;
+	}
+
+	@Override
+	public String toString() {
+		return "blog " + blogId + ", " + articles + " articles" + (complete ? ", complete" : "");
+	}
+}
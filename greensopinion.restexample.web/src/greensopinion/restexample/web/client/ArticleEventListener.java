@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+import greensopinion.restexample.service.ArticleEvent;
+
+/**
+ * A listener for the article events of a blog, notified by a subscription of a
+ * {@link greensopinion.restexample.web.BlogServiceClient}. Listeners are notified on the thread of the subscription, one
+ * event at a time and in the order in which the events were published.
+ *
+ * @author David Green
+ */
+public interface ArticleEventListener {
+
+	/**
+	 * notify the listener that an article was created, updated or deleted
+	 */
+	public void articleChanged(ArticleEvent event);
+
+	/**
+	 * notify the listener that events of the blog may have been missed, for example because the server was restarted
+	 * or the subscription fell too far behind. The listener should re-read the articles that it depends on.
+	 */
+	public void eventsLost(Long blogId);
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+/**
+ * A circuit breaker for a single {@link Endpoint}. After a number of consecutive failures the circuit opens and
+ * requests fail fast without being sent. Once the circuit has been open for a while a single probe request is allowed
+ * through: if it succeeds the circuit closes, otherwise it opens again.
+ *
+ * @author David Green
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+
+	private final long openMillis;
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	private long openedTime;
+
+	private boolean probeInProgress;
+
+	/**
+	 * @param failureThreshold
+	 *            the number of consecutive failures after which the circuit opens
+	 * @param openMillis
+	 *            the time for which the circuit stays open before a probe is allowed
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		if (failureThreshold <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * indicate whether a request could be allowed, without reserving a probe. Used to choose between endpoints.
+	 */
+	public synchronized boolean isAvailable() {
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			return currentTimeMillis() - openedTime >= openMillis;
+		default:
+			return !probeInProgress;
+		}
+	}
+
+	/**
+	 * determine whether a request may be sent. When the circuit is not closed this reserves the probe, and the caller
+	 * must report the outcome with {@link #onSuccess()}, {@link #onFailure()} or {@link #release()}.
+	 */
+	public synchronized boolean allowRequest() {
+		if (state == State.OPEN && currentTimeMillis() - openedTime >= openMillis) {
+			state = State.HALF_OPEN;
+			probeInProgress = false;
+		}
+		switch (state) {
+		case CLOSED:
+			return true;
+		case HALF_OPEN:
+			if (!probeInProgress) {
+				probeInProgress = true;
+				return true;
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	public synchronized void onSuccess() {
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		probeInProgress = false;
+	}
+
+	public synchronized void onFailure() {
+		++consecutiveFailures;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			openedTime = currentTimeMillis();
+		}
+		probeInProgress = false;
+	}
+
+	/**
+	 * release a request that completed without an outcome, for example a hedged request that was cancelled
+	 */
+	public synchronized void release() {
+		probeInProgress = false;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * thrown when a request is not sent because the circuit of every endpoint is open
+ *
+ * @author David Green
+ * @see CircuitBreaker
+ */
+public class CircuitOpenException extends RestClientException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+}
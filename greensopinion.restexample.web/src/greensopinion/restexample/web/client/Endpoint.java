@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A server that can handle requests, identified by its base URL.
+ *
+ * @author David Green
+ */
+public class Endpoint {
+
+	private final String baseUrl;
+
+	private final CircuitBreaker circuitBreaker;
+
+	private final LatencyTracker latency;
+
+	private final AtomicInteger requestsInProgress = new AtomicInteger();
+
+	private volatile long retryAfterTime;
+
+	public Endpoint(String baseUrl, CircuitBreaker circuitBreaker, LatencyTracker latency) {
+		this.baseUrl = baseUrl;
+		this.circuitBreaker = circuitBreaker;
+		this.latency = latency;
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public LatencyTracker getLatency() {
+		return latency;
+	}
+
+	public int getRequestsInProgress() {
+		return requestsInProgress.get();
+	}
+
+	/**
+	 * indicate whether the server is accepting requests, which it is unless it asked for requests to be deferred
+	 */
+	public boolean isAccepting() {
+		return System.currentTimeMillis() >= retryAfterTime;
+	}
+
+	void retryAfter(long retryAfterTime) {
+		this.retryAfterTime = retryAfterTime;
+	}
+
+	void beginRequest() {
+		requestsInProgress.incrementAndGet();
+	}
+
+	void endRequest() {
+		requestsInProgress.decrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return baseUrl;
+	}
+}
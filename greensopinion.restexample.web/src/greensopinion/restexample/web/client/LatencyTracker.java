@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the latency of recent requests to an {@link Endpoint}, so that a request that is slower than most can be
+ * hedged.
+ *
+ * @author David Green
+ */
+public class LatencyTracker {
+
+	private static final int RECOMPUTE_INTERVAL = 32;
+
+	private final long[] samples;
+
+	private final double percentile;
+
+	private int count;
+
+	private int position;
+
+	private long percentileValue = -1L;
+
+	/**
+	 * @param size
+	 *            the number of recent requests to track
+	 * @param percentile
+	 *            the percentile to compute, for example 95
+	 */
+	public LatencyTracker(int size, double percentile) {
+		this.samples = new long[size];
+		this.percentile = percentile;
+	}
+
+	public synchronized void record(long latencyMillis) {
+		samples[position] = latencyMillis;
+		position = (position + 1) % samples.length;
+		++count;
+		if (count % RECOMPUTE_INTERVAL == 0) {
+			percentileValue = -1L;
+		}
+	}
+
+	/**
+	 * the latency at the configured percentile of recent requests
+	 *
+	 * @param minimumSamples
+	 *            the number of requests that must have been recorded for the value to be meaningful
+	 * @return the latency in milliseconds, or -1 if fewer than the minimum samples have been recorded
+	 */
+	public synchronized long getPercentile(int minimumSamples) {
+		if (count < minimumSamples || count == 0) {
+			return -1L;
+		}
+		if (percentileValue == -1L) {
+			long[] sorted = Arrays.copyOf(samples, Math.min(count, samples.length));
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+			percentileValue = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+		}
+		return percentileValue;
+	}
+}
@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, in-process cache of values read from a server, keyed by id. Entries are fresh for a time-to-live, after
+ * which they are stale: a stale entry is returned immediately while a single background refresh reloads it. Entries
+ * that are older still are reloaded before they are returned.
+ * <p>
+ * Cache headers of the server take precedence over the time-to-live: <code>max-age</code> sets the time-to-live of an
+ * entry, <code>no-cache</code> causes it to be revalidated on each use, and <code>no-store</code> prevents it from
+ * being cached. Revalidation uses the entity tag of the entry, if any, so that an unchanged value need not be
+ * transferred again. An entry that must be revalidated saves the transfer of the value but not the request, so a
+ * near cache of articles only avoids requests when the server sends a <code>max-age</code>; see
+ * <code>BlogServiceController.setArticleMaxAgeSeconds(int)</code>.
+ * </p>
+ * <p>
+ * A load that was started before the same id was {@link #put(Long, Object) put} or {@link #invalidate(Long)
+ * invalidated} is not cached. Modifications of other ids don't affect it.
+ * </p>
+ * <p>
+ * Cached values are shared, and must not be modified by callers.
+ * </p>
+ *
+ * @author David Green
+ */
+public class NearCache<V> {
+
+	/**
+	 * loads values from the server
+	 */
+	public interface Loader<V> {
+		/**
+		 * @param id
+		 *            the id of the value to load
+		 * @param eTag
+		 *            the entity tag of the cached value, or null
+		 * @return the loaded value
+		 */
+		public Loaded<V> load(Long id, String eTag);
+	}
+
+	/**
+	 * a value as it was loaded from the server
+	 */
+	public static class Loaded<V> {
+		private final V value;
+
+		private final boolean notModified;
+
+		private final String eTag;
+
+		private final String cacheControl;
+
+		/**
+		 * @param value
+		 *            the value, which is ignored if it was not modified
+		 * @param notModified
+		 *            true if the server indicated that the cached value is current
+		 * @param eTag
+		 *            the entity tag, or null
+		 * @param cacheControl
+		 *            the Cache-Control header, or null
+		 */
+		public Loaded(V value, boolean notModified, String eTag, String cacheControl) {
+			this.value = value;
+			this.notModified = notModified;
+			this.eTag = eTag;
+			this.cacheControl = cacheControl;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public boolean isNotModified() {
+			return notModified;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+
+		public String getCacheControl() {
+			return cacheControl;
+		}
+	}
+
+	private static class Entry<V> {
+		private final V value;
+
+		private final String eTag;
+
+		private final long expiryTime;
+
+		private final boolean mustRevalidate;
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private Entry(V value, String eTag, long expiryTime, boolean mustRevalidate) {
+			this.value = value;
+			this.eTag = eTag;
+			this.expiryTime = expiryTime;
+			this.mustRevalidate = mustRevalidate;
+		}
+	}
+
+	private static final int MAX_TRACKED_MODIFICATIONS = 4096;
+
+	private final Map<Long, Entry<V>> entries = new LinkedHashMap<Long, Entry<V>>(16, 0.75f, true);
+
+	/**
+	 * the generation of the most recent modification of each id, oldest first
+	 */
+	private final Map<Long, Long> modifiedGenerations = new LinkedHashMap<Long, Long>();
+
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * the generation of the most recent modification that is no longer tracked by id
+	 */
+	private long untrackedGeneration;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong staleHits = new AtomicLong();
+
+	private final AtomicLong revalidatedHits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private int maxEntries = 1000;
+
+	private long timeToLiveMillis = 10000L;
+
+	private long staleWhileRevalidateMillis = 30000L;
+
+	private ThreadPoolExecutor refreshExecutor;
+
+	/**
+	 * get the value with the given id, loading it if necessary
+	 */
+	public V get(Long id, Loader<V> loader) {
+		Entry<V> entry;
+		synchronized (entries) {
+			entry = entries.get(id);
+		}
+		if (entry != null && !entry.mustRevalidate) {
+			long now = System.currentTimeMillis();
+			if (now < entry.expiryTime) {
+				hits.incrementAndGet();
+				return entry.value;
+			}
+			if (now < entry.expiryTime + staleWhileRevalidateMillis) {
+				staleHits.incrementAndGet();
+				refresh(id, entry, loader);
+				return entry.value;
+			}
+		}
+		Loaded<V> loaded = load(id, entry, loader);
+		if (loaded.notModified && entry != null) {
+			revalidatedHits.incrementAndGet();
+			return entry.value;
+		}
+		misses.incrementAndGet();
+		return loaded.value;
+	}
+
+	private Loaded<V> load(Long id, Entry<V> previous, Loader<V> loader) {
+		long stamp = generation.get();
+		Loaded<V> loaded = loader.load(id, previous == null ? null : previous.eTag);
+		V value = loaded.notModified && previous != null ? previous.value : loaded.value;
+		store(id, value, loaded.eTag, loaded.cacheControl, stamp);
+		return loaded;
+	}
+
+	private void refresh(final Long id, final Entry<V> entry, final Loader<V> loader) {
+		if (!entry.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			getRefreshExecutor().execute(new Runnable() {
+				public void run() {
+					try {
+						load(id, entry, loader);
+					} catch (RuntimeException e) {
+						// the stale entry continues to be used until it expires
+					} finally {
+						entry.refreshing.set(false);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			entry.refreshing.set(false);
+		}
+	}
+
+	private void store(Long id, V value, String eTag, String cacheControl, long stamp) {
+		long timeToLive = timeToLiveMillis;
+		boolean mustRevalidate = false;
+		if (cacheControl != null) {
+			for (String directive : cacheControl.toLowerCase().split(",")) {
+				directive = directive.trim();
+				if (directive.equals("no-store")) {
+					synchronized (entries) {
+						entries.remove(id);
+					}
+					return;
+				} else if (directive.equals("no-cache")) {
+					mustRevalidate = true;
+				} else if (directive.startsWith("max-age=")) {
+					try {
+						timeToLive = Long.parseLong(directive.substring("max-age=".length())) * 1000L;
+					} catch (NumberFormatException e) {
+						// ignore
+					}
+				}
+			}
+		}
+		Entry<V> entry = new Entry<V>(value, eTag, System.currentTimeMillis() + timeToLive, mustRevalidate);
+		synchronized (entries) {
+			if (isModifiedSince(id, stamp)) {
+				// the value was modified while it was loading
+				return;
+			}
+			entries.put(id, entry);
+			evict();
+		}
+	}
+
+	private boolean isModifiedSince(Long id, long stamp) {
+		if (stamp < untrackedGeneration) {
+			return true;
+		}
+		Long modified = modifiedGenerations.get(id);
+		return modified != null && modified > stamp;
+	}
+
+	private void modified(Long id) {
+		modifiedGenerations.remove(id);
+		modifiedGenerations.put(id, generation.incrementAndGet());
+		if (modifiedGenerations.size() > MAX_TRACKED_MODIFICATIONS) {
+			Iterator<Long> it = modifiedGenerations.values().iterator();
+			untrackedGeneration = it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * put a value that was written through this client, so that subsequent reads see it
+	 */
+	public void put(Long id, V value) {
+		Entry<V> entry = new Entry<V>(value, null, System.currentTimeMillis() + timeToLiveMillis, false);
+		synchronized (entries) {
+			modified(id);
+			entries.put(id, entry);
+			evict();
+		}
+	}
+
+	public void invalidate(Long id) {
+		synchronized (entries) {
+			modified(id);
+			entries.remove(id);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			untrackedGeneration = generation.incrementAndGet();
+			modifiedGenerations.clear();
+			entries.clear();
+		}
+	}
+
+	private void evict() {
+		while (entries.size() > maxEntries) {
+			entries.remove(entries.keySet().iterator().next());
+		}
+	}
+
+	private synchronized ThreadPoolExecutor getRefreshExecutor() {
+		if (refreshExecutor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			refreshExecutor = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(
+					maxEntries), new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "near-cache-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			refreshExecutor.allowCoreThreadTimeOut(true);
+		}
+		return refreshExecutor;
+	}
+
+	/**
+	 * release the threads used for background refresh
+	 */
+	public synchronized void shutdown() {
+		if (refreshExecutor != null) {
+			refreshExecutor.shutdown();
+			refreshExecutor = null;
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * the number of requests answered with a fresh entry
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * the number of requests answered with a stale entry while it was refreshed
+	 */
+	public long getStaleHitCount() {
+		return staleHits.get();
+	}
+
+	/**
+	 * the number of requests answered with a cached entry after the server confirmed that it is current
+	 */
+	public long getRevalidatedHitCount() {
+		return revalidatedHits.get();
+	}
+
+	/**
+	 * the number of requests for which the value was transferred from the server
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * the proportion of requests that were answered with a cached entry, including entries that were revalidated
+	 */
+	public double getHitRatio() {
+		long hits = getHitCount() + getStaleHitCount() + getRevalidatedHitCount();
+		long total = hits + getMissCount();
+		return total == 0 ? 0d : hits / (double) total;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * the maximum number of entries, defaults to 1000
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	/**
+	 * the time for which an entry is fresh unless the server specifies otherwise, defaults to 10 seconds
+	 */
+	public void setTimeToLiveMillis(long timeToLiveMillis) {
+		this.timeToLiveMillis = timeToLiveMillis;
+	}
+
+	public long getStaleWhileRevalidateMillis() {
+		return staleWhileRevalidateMillis;
+	}
+
+	/**
+	 * the time after an entry expires during which it may be returned while it is refreshed, defaults to 30 seconds
+	 */
+	public void setStaleWhileRevalidateMillis(long staleWhileRevalidateMillis) {
+		this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+	}
+}
@@ -0,0 +1,504 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+import greensopinion.restexample.service.BlogServiceException;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Invokes requests against one of several {@link Endpoint endpoints}, with client-side load balancing, retries and
+ * hedging:
+ * <ul>
+ * <li>each request goes to the less busy of two randomly chosen endpoints whose {@link CircuitBreaker circuit} is not
+ * open</li>
+ * <li>failures caused by the server being unavailable are retried on another endpoint after a jittered exponential
+ * backoff, within a {@link RetryBudget retry budget}. Requests that are not idempotent are only retried if they could
+ * not have reached the server.</li>
+ * <li>a {@link ServerBusyException busy server} is not a failure and does not open its circuit. A request that the
+ * server declined is retried on another endpoint, and no request is sent to that server for the time it asked for
+ * with <code>Retry-After</code>. A request that the server gave up on is not retried, since each retry would run until
+ * the same timeout.</li>
+ * <li>idempotent requests that take longer than the configured percentile of recent requests to the same endpoint are
+ * hedged: a second request is sent to another endpoint, and the first response to arrive is used</li>
+ * </ul>
+ * A {@link BlogServiceException} is a permanent failure and is never retried. When no endpoint admits requests, a
+ * request fails fast with a {@link CircuitOpenException} rather than waiting for a circuit to close.
+ *
+ * @author David Green
+ */
+public class ResilientInvoker {
+
+	/**
+	 * a request that can be sent to any endpoint
+	 */
+	public interface Call<T> {
+		public T call(String baseUrl);
+	}
+
+	private volatile List<Endpoint> endpoints = Collections.emptyList();
+
+	private final Random random = new Random();
+
+	private int maxAttempts = 3;
+
+	private long initialBackoffMillis = 50L;
+
+	private long maxBackoffMillis = 2000L;
+
+	private RetryBudget retryBudget = new RetryBudget(0.1d, 10);
+
+	private int failureThreshold = 5;
+
+	private long openMillis = 5000L;
+
+	private boolean hedging = true;
+
+	private double hedgePercentile = 95d;
+
+	private int hedgeMinimumSamples = 20;
+
+	private long hedgeMinimumDelayMillis = 5L;
+
+	private int maxHedgeThreads = 64;
+
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * invoke the given call, retrying and hedging as needed
+	 *
+	 * @param call
+	 *            the call to make
+	 * @param idempotent
+	 *            true if the call can be repeated without side-effects, for example a GET
+	 * @return the result of the call
+	 */
+	public <T> T execute(Call<T> call, boolean idempotent) {
+		List<Endpoint> endpoints = this.endpoints;
+		if (endpoints.isEmpty()) {
+			throw new IllegalStateException("No base URL");
+		}
+		retryBudget.onRequest();
+		Set<Endpoint> attempted = new HashSet<Endpoint>();
+		for (int attempt = 1;; ++attempt) {
+			try {
+				Endpoint endpoint = select(endpoints, attempted, false);
+				if (endpoint == null) {
+					throw new CircuitOpenException("No endpoint is available: " + endpoints);
+				}
+				attempted.add(endpoint);
+				if (idempotent && hedging && endpoints.size() > 1) {
+					return invokeHedged(call, endpoint, endpoints, attempted);
+				}
+				return invoke(call, endpoint);
+			} catch (RuntimeException e) {
+				if (attempt >= maxAttempts || !isRetryable(e, idempotent, endpoints) || !retryBudget.tryRetry()) {
+					throw e;
+				}
+			}
+			backoff(attempt);
+		}
+	}
+
+	/**
+	 * the base URL of the endpoint that a request would be sent to, chosen as for a request but without sending one
+	 *
+	 * @throws CircuitOpenException
+	 *             if no endpoint admits requests
+	 */
+	public String selectBaseUrl() {
+		List<Endpoint> endpoints = this.endpoints;
+		if (endpoints.isEmpty()) {
+			throw new IllegalStateException("No base URL");
+		}
+		List<Endpoint> candidates = available(endpoints, Collections.<Endpoint> emptySet());
+		if (candidates.isEmpty()) {
+			throw new CircuitOpenException("No endpoint is available: " + endpoints);
+		}
+		return lessBusy(candidates).getBaseUrl();
+	}
+
+	private <T> T invoke(Call<T> call, Endpoint endpoint) {
+		CircuitBreaker circuitBreaker = endpoint.getCircuitBreaker();
+		boolean completed = false;
+		endpoint.beginRequest();
+		try {
+			long start = System.currentTimeMillis();
+			T result = call.call(endpoint.getBaseUrl());
+			endpoint.getLatency().record(System.currentTimeMillis() - start);
+			circuitBreaker.onSuccess();
+			completed = true;
+			return result;
+		} catch (RuntimeException e) {
+			if (e instanceof ServerBusyException) {
+				int retryAfterSeconds = ((ServerBusyException) e).getRetryAfterSeconds();
+				if (retryAfterSeconds > 0) {
+					endpoint.retryAfter(System.currentTimeMillis() + retryAfterSeconds * 1000L);
+				}
+			}
+			if (isEndpointFailure(e)) {
+				circuitBreaker.onFailure();
+			} else {
+				// the server responded
+				circuitBreaker.onSuccess();
+			}
+			completed = true;
+			throw e;
+		} finally {
+			endpoint.endRequest();
+			if (!completed) {
+				circuitBreaker.release();
+			}
+		}
+	}
+
+	private <T> T invokeHedged(final Call<T> call, Endpoint endpoint, List<Endpoint> endpoints,
+			Set<Endpoint> attempted) {
+		long delay = endpoint.getLatency().getPercentile(hedgeMinimumSamples);
+		if (delay < 0) {
+			// not enough is known about the endpoint to tell whether a request is slow
+			return invoke(call, endpoint);
+		}
+		CompletionService<T> completionService = new ExecutorCompletionService<T>(getExecutor());
+		List<Future<T>> futures = new ArrayList<Future<T>>(2);
+		try {
+			try {
+				futures.add(completionService.submit(callable(call, endpoint)));
+			} catch (RejectedExecutionException e) {
+				return invoke(call, endpoint);
+			}
+			Future<T> completed = completionService.poll(Math.max(delay, hedgeMinimumDelayMillis),
+					TimeUnit.MILLISECONDS);
+			if (completed == null) {
+				Endpoint hedge = select(endpoints, attempted, true);
+				if (hedge != null) {
+					try {
+						futures.add(completionService.submit(callable(call, hedge)));
+						attempted.add(hedge);
+					} catch (RejectedExecutionException e) {
+						hedge.getCircuitBreaker().release();
+					}
+				}
+			}
+			for (int pending = futures.size();; --pending) {
+				Future<T> future = completed == null ? completionService.take() : completed;
+				completed = null;
+				try {
+					return future.get();
+				} catch (ExecutionException e) {
+					if (pending == 1) {
+						throw unwrap(e);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RestClientException("Interrupted", e);
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private <T> Callable<T> callable(final Call<T> call, final Endpoint endpoint) {
+		return new Callable<T>() {
+			public T call() {
+				return invoke(call, endpoint);
+			}
+		};
+	}
+
+	private RuntimeException unwrap(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new RestClientException(cause.getMessage(), cause);
+	}
+
+	/**
+	 * select an endpoint using the power of two choices: of two endpoints chosen at random, the one with fewer requests
+	 * in progress. Endpoints that have been attempted are only chosen if there are no others, unless exclusive.
+	 *
+	 * @return the endpoint, or null if there are none available
+	 */
+	private Endpoint select(List<Endpoint> endpoints, Set<Endpoint> attempted, boolean exclusive) {
+		List<Endpoint> candidates = available(endpoints, attempted);
+		if (candidates.isEmpty() && !exclusive) {
+			candidates = available(endpoints, Collections.<Endpoint> emptySet());
+		}
+		while (!candidates.isEmpty()) {
+			Endpoint choice = lessBusy(candidates);
+			if (choice.getCircuitBreaker().allowRequest()) {
+				return choice;
+			}
+			candidates.remove(choice);
+		}
+		return null;
+	}
+
+	/**
+	 * the endpoints that have not been attempted and admit requests
+	 */
+	private List<Endpoint> available(List<Endpoint> endpoints, Set<Endpoint> attempted) {
+		List<Endpoint> candidates = new ArrayList<Endpoint>(endpoints.size());
+		for (Endpoint endpoint : endpoints) {
+			if (!attempted.contains(endpoint) && endpoint.isAccepting() && endpoint.getCircuitBreaker().isAvailable()) {
+				candidates.add(endpoint);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * the less busy of two endpoints chosen at random
+	 */
+	private Endpoint lessBusy(List<Endpoint> candidates) {
+		Endpoint choice = candidates.get(random.nextInt(candidates.size()));
+		if (candidates.size() > 1) {
+			Endpoint other = candidates.get(random.nextInt(candidates.size()));
+			if (other.getRequestsInProgress() < choice.getRequestsInProgress()) {
+				choice = other;
+			}
+		}
+		return choice;
+	}
+
+	private boolean isRetryable(RuntimeException e, boolean idempotent, List<Endpoint> endpoints) {
+		if (e instanceof BlogServiceException || e instanceof CircuitOpenException) {
+			// no endpoint admits requests, and waiting for a circuit to close would only hold up the caller
+			return false;
+		}
+		if (e instanceof ServerBusyException) {
+			if (((ServerBusyException) e).isTimeout()) {
+				return false;
+			}
+			// the server did not accept the request, but don't wait for it
+			for (Endpoint endpoint : endpoints) {
+				if (endpoint.isAccepting()) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (e instanceof HttpServerErrorException) {
+			HttpStatus status = ((HttpServerErrorException) e).getStatusCode();
+			if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+				// the server did not accept the request
+				return true;
+			}
+			return idempotent && (status == HttpStatus.BAD_GATEWAY || status == HttpStatus.GATEWAY_TIMEOUT);
+		}
+		if (e instanceof ResourceAccessException) {
+			return idempotent || e.getCause() instanceof ConnectException;
+		}
+		return false;
+	}
+
+	private boolean isEndpointFailure(RuntimeException e) {
+		return e instanceof ResourceAccessException
+				|| (e instanceof HttpServerErrorException && !(e instanceof ServerBusyException));
+	}
+
+	private void backoff(int attempt) {
+		long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+		// full jitter spreads out retries from clients that failed at the same time
+		long delay = (long) (random.nextDouble() * ceiling);
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RestClientException("Interrupted", e);
+		}
+	}
+
+	private synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			executor = new ThreadPoolExecutor(0, maxHedgeThreads, 60L, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new ThreadFactory() {
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "blog-client-" + threadCount.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return executor;
+	}
+
+	/**
+	 * release threads used for hedged requests
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	public List<Endpoint> getEndpoints() {
+		return endpoints;
+	}
+
+	/**
+	 * set the base URLs of the servers to which requests are sent
+	 */
+	public void setBaseUrls(List<String> baseUrls) {
+		List<Endpoint> endpoints = new ArrayList<Endpoint>(baseUrls.size());
+		for (String baseUrl : baseUrls) {
+			endpoints.add(new Endpoint(baseUrl, new CircuitBreaker(failureThreshold, openMillis), new LatencyTracker(
+					256, hedgePercentile)));
+		}
+		this.endpoints = Collections.unmodifiableList(endpoints);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * the maximum number of attempts for a request, including the first. Defaults to 3.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	public long getInitialBackoffMillis() {
+		return initialBackoffMillis;
+	}
+
+	/**
+	 * the upper bound of the delay before the first retry, which doubles with each subsequent retry
+	 */
+	public void setInitialBackoffMillis(long initialBackoffMillis) {
+		this.initialBackoffMillis = initialBackoffMillis;
+	}
+
+	public long getMaxBackoffMillis() {
+		return maxBackoffMillis;
+	}
+
+	public void setMaxBackoffMillis(long maxBackoffMillis) {
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	public RetryBudget getRetryBudget() {
+		return retryBudget;
+	}
+
+	public void setRetryBudget(RetryBudget retryBudget) {
+		this.retryBudget = retryBudget;
+	}
+
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	/**
+	 * the number of consecutive failures after which the circuit of an endpoint opens. Applies to base URLs that are
+	 * set after this value.
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+
+	public long getOpenMillis() {
+		return openMillis;
+	}
+
+	/**
+	 * the time for which the circuit of an endpoint stays open before a probe is allowed. Applies to base URLs that
+	 * are set after this value.
+	 */
+	public void setOpenMillis(long openMillis) {
+		this.openMillis = openMillis;
+	}
+
+	public boolean isHedging() {
+		return hedging;
+	}
+
+	/**
+	 * indicate whether idempotent requests should be hedged when there is more than one endpoint. Defaults to true.
+	 */
+	public void setHedging(boolean hedging) {
+		this.hedging = hedging;
+	}
+
+	public double getHedgePercentile() {
+		return hedgePercentile;
+	}
+
+	/**
+	 * the percentile of recent latency after which a request is hedged. Applies to base URLs that are set after this
+	 * value.
+	 */
+	public void setHedgePercentile(double hedgePercentile) {
+		this.hedgePercentile = hedgePercentile;
+	}
+
+	public int getHedgeMinimumSamples() {
+		return hedgeMinimumSamples;
+	}
+
+	/**
+	 * the number of requests to an endpoint that must complete before requests to it are hedged
+	 */
+	public void setHedgeMinimumSamples(int hedgeMinimumSamples) {
+		this.hedgeMinimumSamples = hedgeMinimumSamples;
+	}
+
+	public long getHedgeMinimumDelayMillis() {
+		return hedgeMinimumDelayMillis;
+	}
+
+	public void setHedgeMinimumDelayMillis(long hedgeMinimumDelayMillis) {
+		this.hedgeMinimumDelayMillis = hedgeMinimumDelayMillis;
+	}
+
+	public int getMaxHedgeThreads() {
+		return maxHedgeThreads;
+	}
+
+	/**
+	 * the maximum number of threads used for hedged requests. When all are busy requests are not hedged.
+	 */
+	public void setMaxHedgeThreads(int maxHedgeThreads) {
+		this.maxHedgeThreads = maxHedgeThreads;
+	}
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+/**
+ * Limits retries to a proportion of requests, so that retries cannot multiply the load on a service that is already
+ * failing. Each request deposits a fraction of a token and each retry withdraws a whole token.
+ *
+ * @author David Green
+ */
+public class RetryBudget {
+
+	private final double ratio;
+
+	private final double maxTokens;
+
+	private double tokens;
+
+	/**
+	 * @param ratio
+	 *            the number of retries allowed per request, for example 0.1 to allow retries to add 10% to the load
+	 * @param maxTokens
+	 *            the number of retries that can be saved up, which is also the number available initially
+	 */
+	public RetryBudget(double ratio, int maxTokens) {
+		this.ratio = ratio;
+		this.maxTokens = maxTokens;
+		this.tokens = maxTokens;
+	}
+
+	public synchronized void onRequest() {
+		tokens = Math.min(maxTokens, tokens + ratio);
+	}
+
+	/**
+	 * withdraw a token for a retry
+	 *
+	 * @return true if the retry is within budget
+	 */
+	public synchronized boolean tryRetry() {
+		if (tokens >= 1d) {
+			tokens -= 1d;
+			return true;
+		}
+		return false;
+	}
+}
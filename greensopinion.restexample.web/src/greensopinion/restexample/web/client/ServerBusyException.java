@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+import greensopinion.restexample.web.AdmissionControlFilter;
+import greensopinion.restexample.web.EndpointExecutor;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * thrown when a server declines a request because it is at capacity, or gives up on a request that did not complete in
+ * time. Neither indicates that the server has failed.
+ *
+ * @author David Green
+ * @see AdmissionControlFilter
+ * @see EndpointExecutor
+ */
+public class ServerBusyException extends HttpServerErrorException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String code;
+
+	private final int retryAfterSeconds;
+
+	public ServerBusyException(HttpStatus statusCode, String statusText, String code, int retryAfterSeconds) {
+		super(statusCode, statusText);
+		this.code = code;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * the code of the error, such as {@link AdmissionControlFilter#CODE_OVERLOADED} or
+	 * {@link EndpointExecutor#CODE_TIMEOUT}
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * indicate whether the server gave up on the request after working on it, in which case repeating it would add to
+	 * the load that caused it to time out
+	 */
+	public boolean isTimeout() {
+		return EndpointExecutor.CODE_TIMEOUT.equals(code);
+	}
+
+	/**
+	 * the time after which the server asked for the request to be retried, or 0 if it did not
+	 */
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
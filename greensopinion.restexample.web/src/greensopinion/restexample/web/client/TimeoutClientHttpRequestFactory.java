@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2010 David Green.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     David Green - initial API and implementation
+ *******************************************************************************/
+package greensopinion.restexample.web.client;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+/**
+ * A request factory that applies connect and read timeouts, so that callers don't block indefinitely on a server that
+ * is unavailable or slow.
+ *
+ * @author David Green
+ */
+public class TimeoutClientHttpRequestFactory extends SimpleClientHttpRequestFactory {
+
+	private int connectTimeoutMillis = 2000;
+
+	private int readTimeoutMillis = 10000;
+
+	@Override
+	protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+		super.prepareConnection(connection, httpMethod);
+		connection.setConnectTimeout(connectTimeoutMillis);
+		connection.setReadTimeout(readTimeoutMillis);
+	}
+
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	/**
+	 * the time to wait for a connection to be established, defaults to 2 seconds
+	 */
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public int getReadTimeoutMillis() {
+		return readTimeoutMillis;
+	}
+
+	/**
+	 * the time to wait for a response, defaults to 10 seconds
+	 */
+	public void setReadTimeoutMillis(int readTimeoutMillis) {
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+}